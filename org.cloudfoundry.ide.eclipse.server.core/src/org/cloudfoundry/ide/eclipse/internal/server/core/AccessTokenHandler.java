@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.lang.ref.WeakReference;
+import java.util.Date;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.cloudfoundry.client.lib.CloudFoundryOperations;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudOperationsConstants;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+
+/**
+ * Tracks the expiry of the OAuth access token of a Cloud Foundry client, and
+ * refreshes the token in the background shortly before it expires, so that
+ * client requests do not have to fail first with an authorisation error before
+ * logging in again.
+ * <p/>
+ * There is only one handler per client. Logins for the same client are
+ * performed only once at a time: if a login is already in progress, any other
+ * caller requesting a login waits for the result of the ongoing login rather
+ * than performing its own.
+ * <p/>
+ * Handlers only keep a weak reference to the client, and are discarded when
+ * the client is no longer used.
+ */
+public class AccessTokenHandler {
+
+	private static final Map<CloudFoundryOperations, AccessTokenHandler> handlers = new WeakHashMap<CloudFoundryOperations, AccessTokenHandler>();
+
+	private static final long WAIT_INTERVAL = 200;
+
+	private final WeakReference<CloudFoundryOperations> clientRef;
+
+	/**
+	 * Time in milliseconds when the current access token expires, or -1 if no
+	 * token has been obtained yet or its expiry is not known.
+	 */
+	private long expiresAt = -1;
+
+	private FutureTask<Boolean> pendingLogin;
+
+	private final TokenRefreshJob refreshJob;
+
+	protected AccessTokenHandler(CloudFoundryOperations client) {
+		this.clientRef = new WeakReference<CloudFoundryOperations>(client);
+		this.refreshJob = new TokenRefreshJob();
+	}
+
+	/**
+	 *
+	 * @param client must not be null
+	 * @return non-null token handler for the given client. Creates one if it
+	 * doesn't exist yet.
+	 */
+	public static synchronized AccessTokenHandler getHandler(CloudFoundryOperations client) {
+		AccessTokenHandler handler = handlers.get(client);
+		if (handler == null) {
+			handler = new AccessTokenHandler(client);
+			handlers.put(client, handler);
+		}
+		return handler;
+	}
+
+	/**
+	 * Stops any scheduled token refresh for the given client and discards its
+	 * handler. Should be invoked when a client is no longer going to be used,
+	 * for example when the client is reset or the server disconnected.
+	 * @param client may be null
+	 */
+	public static synchronized void dispose(CloudFoundryOperations client) {
+		if (client == null) {
+			return;
+		}
+		AccessTokenHandler handler = handlers.remove(client);
+		if (handler != null) {
+			handler.refreshJob.cancel();
+		}
+	}
+
+	/**
+	 * Performs the given login operation, unless a login for the same client
+	 * is already in progress, in which case the caller will wait for that
+	 * login to complete and share its result.
+	 * @param login operation that performs the actual login. It is expected to
+	 * notify this handler of the obtained token through
+	 * {@link #tokenObtained(OAuth2AccessToken)}
+	 * @param monitor may be null. If cancelled while waiting for another login
+	 * to complete, the wait is terminated.
+	 * @return result of the login operation
+	 * @throws CoreException if the login failed.
+	 * @throws OperationCanceledException if the monitor was cancelled while
+	 * waiting
+	 */
+	public boolean login(Callable<Boolean> login, IProgressMonitor monitor) throws CoreException {
+		FutureTask<Boolean> task = null;
+		boolean performLogin = false;
+		synchronized (this) {
+			if (pendingLogin == null) {
+				pendingLogin = new FutureTask<Boolean>(login);
+				performLogin = true;
+			}
+			task = pendingLogin;
+		}
+
+		if (performLogin) {
+			try {
+				task.run();
+			}
+			finally {
+				synchronized (this) {
+					pendingLogin = null;
+				}
+			}
+		}
+
+		return waitForLogin(task, monitor);
+	}
+
+	protected boolean waitForLogin(FutureTask<Boolean> task, IProgressMonitor monitor) throws CoreException {
+		while (true) {
+			if (monitor != null && monitor.isCanceled()) {
+				throw new OperationCanceledException();
+			}
+			try {
+				Boolean result = task.get(WAIT_INTERVAL, TimeUnit.MILLISECONDS);
+				return result != null && result.booleanValue();
+			}
+			catch (TimeoutException e) {
+				// Check for cancellation and continue waiting
+			}
+			catch (InterruptedException e) {
+				throw new OperationCanceledException();
+			}
+			catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof CoreException) {
+					throw (CoreException) cause;
+				}
+				else if (cause instanceof OperationCanceledException) {
+					throw (OperationCanceledException) cause;
+				}
+				throw CloudErrorUtil.toCoreException(cause);
+			}
+		}
+	}
+
+	/**
+	 * Records the expiry of a newly obtained access token and schedules a
+	 * background refresh shortly before the token expires.
+	 * @param token may be null, in which case expiry is no longer tracked
+	 */
+	public void tokenObtained(OAuth2AccessToken token) {
+		long expiry = getExpiry(token);
+		synchronized (this) {
+			expiresAt = expiry;
+		}
+		refreshJob.cancel();
+		if (expiry > 0) {
+			long delay = expiry - System.currentTimeMillis() - CloudOperationsConstants.ACCESS_TOKEN_REFRESH_MARGIN;
+			refreshJob.schedule(delay > 0 ? delay : 0);
+		}
+	}
+
+	/**
+	 *
+	 * @return true if the expiry of the current token is known, and the token
+	 * has expired or is about to expire. False if the token is valid, or its
+	 * expiry is not known.
+	 */
+	public synchronized boolean isExpiring() {
+		return expiresAt > 0
+				&& System.currentTimeMillis() >= expiresAt - CloudOperationsConstants.ACCESS_TOKEN_REFRESH_MARGIN;
+	}
+
+	protected static long getExpiry(OAuth2AccessToken token) {
+		if (token == null) {
+			return -1;
+		}
+		Date expiration = token.getExpiration();
+		if (expiration != null) {
+			return expiration.getTime();
+		}
+		int expiresIn = token.getExpiresIn();
+		return expiresIn > 0 ? System.currentTimeMillis() + expiresIn * 1000L : -1;
+	}
+
+	/**
+	 * Refreshes the access token in the background. Failures are not reported
+	 * to the user, as the next client request will attempt to log in again if
+	 * necessary.
+	 */
+	class TokenRefreshJob extends Job {
+
+		public TokenRefreshJob() {
+			super("Refreshing Cloud Foundry access token");
+			setSystem(true);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			final CloudFoundryOperations client = clientRef.get();
+			if (client == null) {
+				return Status.OK_STATUS;
+			}
+			try {
+				login(new Callable<Boolean>() {
+
+					public Boolean call() throws Exception {
+						tokenObtained(client.login());
+						return Boolean.TRUE;
+					}
+
+				}, monitor);
+			}
+			catch (CoreException e) {
+				CloudFoundryPlugin.trace("Failed to refresh access token: " + e.getMessage());
+			}
+			catch (OperationCanceledException e) {
+				return Status.CANCEL_STATUS;
+			}
+			catch (RuntimeException e) {
+				CloudFoundryPlugin.trace("Failed to refresh access token: " + e.getMessage());
+			}
+			return Status.OK_STATUS;
+		}
+	}
+
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Delivers events to listeners asynchronously, so that firing an event never
+ * runs listener code on the firing thread.
+ * <p/>
+ * Each listener has its own queue, and receives events in the order they
+ * were fired, one at a time. Events are held for a short delay before being
+ * delivered, and an event that has the same coalescing key as an event still
+ * waiting in a listener's queue replaces that event, so that a burst of
+ * redundant events, like refresh events fired by an operation on many
+ * applications, is delivered once.
+ * <p/>
+ * Listeners can be added and removed at any time, including while events are
+ * delivered.
+ * @param <L> type of listener
+ * @param <E> type of event
+ */
+public abstract class AsyncEventDispatcher<L, E> {
+
+	private final List<ListenerQueue> queues = new CopyOnWriteArrayList<ListenerQueue>();
+
+	private final String name;
+
+	private final long coalesceDelay;
+
+	/**
+	 *
+	 * @param name of the jobs that deliver the events
+	 * @param coalesceDelay in milliseconds, how long events are held before
+	 * being delivered
+	 */
+	public AsyncEventDispatcher(String name, long coalesceDelay) {
+		this.name = name;
+		this.coalesceDelay = coalesceDelay;
+	}
+
+	public synchronized void addListener(L listener) {
+		if (listener != null && getQueue(listener) == null) {
+			queues.add(new ListenerQueue(listener));
+		}
+	}
+
+	/**
+	 * Removes the listener. Events still waiting to be delivered to the
+	 * listener are discarded.
+	 * @param listener
+	 */
+	public synchronized void removeListener(L listener) {
+		ListenerQueue queue = getQueue(listener);
+		if (queue != null) {
+			queues.remove(queue);
+			queue.dispose();
+		}
+	}
+
+	/**
+	 * Queues the event for each listener that accepts it, and returns without
+	 * waiting for the event to be delivered.
+	 * @param event
+	 */
+	public void dispatch(E event) {
+		for (ListenerQueue queue : queues) {
+			if (accepts(queue.listener, event)) {
+				queue.post(event);
+			}
+		}
+	}
+
+	protected ListenerQueue getQueue(L listener) {
+		for (ListenerQueue queue : queues) {
+			if (queue.listener.equals(listener)) {
+				return queue;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 *
+	 * @param listener
+	 * @param event
+	 * @return true if the event should be delivered to the listener. By
+	 * default, all events are delivered to all listeners.
+	 */
+	protected boolean accepts(L listener, E event) {
+		return true;
+	}
+
+	/**
+	 *
+	 * @param event
+	 * @return key identifying events that are redundant with each other, of
+	 * which only the last one fired needs to be delivered, or null if the
+	 * event must always be delivered.
+	 */
+	protected abstract Object getCoalescingKey(E event);
+
+	/**
+	 * Delivers the event to the listener. Invoked in a job, never
+	 * concurrently for the same listener.
+	 * @param listener
+	 * @param event
+	 */
+	protected abstract void deliver(L listener, E event);
+
+	/**
+	 * Events waiting to be delivered to one listener, and the job that
+	 * delivers them.
+	 */
+	protected class ListenerQueue extends Job {
+
+		final L listener;
+
+		private final LinkedList<E> pending = new LinkedList<E>();
+
+		private boolean disposed = false;
+
+		ListenerQueue(L listener) {
+			super(name);
+			this.listener = listener;
+			setSystem(true);
+		}
+
+		void post(E event) {
+			Object key = getCoalescingKey(event);
+			synchronized (pending) {
+				if (disposed) {
+					return;
+				}
+				if (key != null) {
+					// The latest event takes the place of redundant ones, after
+					// any other event fired before it
+					for (Iterator<E> it = pending.iterator(); it.hasNext();) {
+						if (key.equals(getCoalescingKey(it.next()))) {
+							it.remove();
+						}
+					}
+				}
+				pending.add(event);
+			}
+			// Has no effect if the job is already waiting to run. If it is
+			// running, it runs again once done.
+			schedule(coalesceDelay);
+		}
+
+		void dispose() {
+			synchronized (pending) {
+				disposed = true;
+				pending.clear();
+			}
+			cancel();
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			while (!monitor.isCanceled()) {
+				E event;
+				synchronized (pending) {
+					if (pending.isEmpty()) {
+						break;
+					}
+					event = pending.removeFirst();
+				}
+				try {
+					deliver(listener, event);
+				}
+				catch (RuntimeException e) {
+					// A failing listener must not prevent further events from
+					// being delivered
+					CloudFoundryPlugin.logError("Failed to deliver event to listener " + listener, e);
+				}
+			}
+			return Status.OK_STATUS;
+		}
+
+	}
+
+}
@@ -13,13 +13,16 @@ package org.cloudfoundry.ide.eclipse.internal.server.core;
 import java.net.UnknownHostException;
 
 import org.cloudfoundry.client.lib.CloudFoundryException;
+import org.cloudfoundry.client.lib.NotFinishedStagingException;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.wst.server.core.IServer;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClientException;
 
@@ -29,7 +32,39 @@ import org.springframework.web.client.RestClientException;
  */
 public class CloudErrorUtil {
 
-	
+	/*
+	 * Categories used to group errors, for example in request metrics.
+	 */
+	public static final String CATEGORY_UNAUTHORISED = "unauthorised";
+
+	public static final String CATEGORY_FORBIDDEN = "forbidden";
+
+	public static final String CATEGORY_NOT_FOUND = "not found";
+
+	public static final String CATEGORY_BAD_REQUEST = "bad request";
+
+	public static final String CATEGORY_APP_STOPPED = "app stopped";
+
+	public static final String CATEGORY_STAGING_NOT_FINISHED = "staging not finished";
+
+	public static final String CATEGORY_CLIENT_ERROR = "client error";
+
+	public static final String CATEGORY_SERVER_ERROR = "server error";
+
+	public static final String CATEGORY_UNKNOWN_HOST = "unknown host";
+
+	public static final String CATEGORY_CONNECTION = "connection";
+
+	public static final String CATEGORY_CANCELLED = "cancelled";
+
+	public static final String CATEGORY_OTHER = "other";
+
+	/**
+	 * Cloud Foundry error code when creating an application with a name that
+	 * is already used in the space.
+	 */
+	public static final int APP_NAME_TAKEN_ERROR_CODE = 100002;
+
 	private CloudErrorUtil() {
 		// Util class
 	}
@@ -56,6 +91,55 @@ public class CloudErrorUtil {
 		return null;
 	}
 
+	/**
+	 * 
+	 * @param error
+	 * @return non-null category of the given error, one of the CATEGORY
+	 * constants.
+	 */
+	public static String getErrorCategory(Throwable error) {
+		if (error instanceof OperationCanceledException) {
+			return CATEGORY_CANCELLED;
+		}
+		CoreException ce = error instanceof CoreException ? (CoreException) error : toCoreException(error);
+		Throwable cause = ce.getCause() != null ? ce.getCause() : error;
+
+		if (cause instanceof NotFinishedStagingException) {
+			return CATEGORY_STAGING_NOT_FINISHED;
+		}
+		else if (isUnauthorisedException(ce)) {
+			return CATEGORY_UNAUTHORISED;
+		}
+		else if (isForbiddenException(ce)) {
+			return CATEGORY_FORBIDDEN;
+		}
+		else if (isNotFoundException(ce)) {
+			return CATEGORY_NOT_FOUND;
+		}
+		else if (cause instanceof Exception && isAppStoppedStateError((Exception) cause)) {
+			return CATEGORY_APP_STOPPED;
+		}
+		else if (cause instanceof Exception && getBadRequestException((Exception) cause) != null) {
+			return CATEGORY_BAD_REQUEST;
+		}
+		else if (cause instanceof HttpClientErrorException) {
+			// Any other 4xx response, for example a conflict or an
+			// unsatisfiable range
+			return CATEGORY_CLIENT_ERROR;
+		}
+		else if (cause instanceof HttpServerErrorException) {
+			return CATEGORY_SERVER_ERROR;
+		}
+		else if (isUnknownHostException(ce)) {
+			return CATEGORY_UNKNOWN_HOST;
+		}
+		else if (cause instanceof ResourceAccessException) {
+			// I/O error while connecting to or reading from the server
+			return CATEGORY_CONNECTION;
+		}
+		return CATEGORY_OTHER;
+	}
+
 	public static boolean isCloudFoundryServer(IServer server) {
 		String serverId = server.getServerType().getId();
 		return serverId.startsWith("org.cloudfoundry.appcloudserver.");
@@ -87,6 +171,29 @@ public class CloudErrorUtil {
 		return false;
 	}
 
+	/**
+	 * 
+	 * @param e
+	 * @return true if the given exception is a Bad Request 400 error because
+	 * the application name is already taken in the space.
+	 */
+	public static boolean isAppNameTakenError(Exception e) {
+		HttpClientErrorException badRequestException = getBadRequestException(e);
+		if (badRequestException != null) {
+			if (badRequestException instanceof CloudFoundryException
+					&& ((CloudFoundryException) badRequestException).getCloudFoundryErrorCode() == APP_NAME_TAKEN_ERROR_CODE) {
+				return true;
+			}
+			String message = getHttpErrorMessage(badRequestException);
+
+			if (message != null) {
+				message = message.toLowerCase();
+				return message.contains("name") && message.contains("taken");
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * 
 	 * @param error
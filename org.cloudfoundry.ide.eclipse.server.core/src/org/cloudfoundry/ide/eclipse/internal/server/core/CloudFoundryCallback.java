@@ -91,6 +91,19 @@ public abstract class CloudFoundryCallback {
 		return true;
 	}
 
+	/**
+	 * Background refresh of the given server only runs while this returns
+	 * true. It is started by {@link RefreshHandler#resume()}, which should be
+	 * invoked when the server becomes visible.
+	 * @param server
+	 * @return true if the server, or its applications, are visible to the
+	 * user. False by default, so that servers are not refreshed in the
+	 * background.
+	 */
+	public boolean isServerVisible(CloudFoundryServer server) {
+		return false;
+	}
+
 	public void handleError(IStatus status, BehaviourEventType eventType) {
 
 	}
@@ -10,13 +10,11 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.core;
 
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.util.concurrent.Callable;
 
 import org.cloudfoundry.client.lib.CloudFoundryException;
 import org.cloudfoundry.client.lib.CloudFoundryOperations;
 import org.cloudfoundry.client.lib.HttpProxyConfiguration;
-import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudFoundryClientFactory;
 import org.cloudfoundry.ide.eclipse.internal.server.core.client.WaitWithProgressJob;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -61,26 +59,53 @@ public class CloudFoundryLoginHandler {
 		internalLogin(monitor, tries, sleep);
 	}
 
-	protected boolean internalLogin(IProgressMonitor monitor, int tries, long sleep) throws CoreException {
-		Boolean result = new WaitWithProgressJob(tries, sleep) {
-
-			@Override
-			protected boolean internalRunInWait(IProgressMonitor monitor) throws CoreException {
-				// Do not wrap CloudFoundryException or RestClientException in a
-				// CoreException.
-				// as they are uncaught exceptions and can be inspected directly
-				// by the shouldRetryOnError(..) method.
-				operations.login();
-				return true;
-			}
+	/**
+	 * Logs in only if the client's access token is known to have expired, or
+	 * is about to expire. Does nothing if the token is still valid or its
+	 * expiry is not yet known.
+	 * @return true if a login was performed. False otherwise
+	 * @throws CoreException if login failed
+	 */
+	public boolean loginIfTokenExpiring(IProgressMonitor monitor, int tries, long sleep) throws CoreException {
+		if (AccessTokenHandler.getHandler(operations).isExpiring()) {
+			return internalLogin(monitor, tries, sleep);
+		}
+		return false;
+	}
 
-			@Override
-			protected boolean shouldRetryOnError(Throwable t) {
-				return (t instanceof CloudFoundryException) && shouldAttemptClientLogin((CloudFoundryException) t);
+	protected boolean internalLogin(final IProgressMonitor monitor, final int tries, final long sleep)
+			throws CoreException {
+		final AccessTokenHandler tokenHandler = AccessTokenHandler.getHandler(operations);
+
+		// Concurrent logins for the same client are performed only once. Other
+		// callers wait for the ongoing login to complete.
+		return tokenHandler.login(new Callable<Boolean>() {
+
+			public Boolean call() throws Exception {
+				return new WaitWithProgressJob(tries, sleep) {
+
+					@Override
+					protected boolean internalRunInWait(IProgressMonitor monitor) throws CoreException {
+						// Do not wrap CloudFoundryException or
+						// RestClientException in a
+						// CoreException.
+						// as they are uncaught exceptions and can be inspected
+						// directly
+						// by the shouldRetryOnError(..) method.
+						tokenHandler.tokenObtained(operations.login());
+						return true;
+					}
+
+					@Override
+					protected boolean shouldRetryOnError(Throwable t) {
+						return (t instanceof CloudFoundryException)
+								&& shouldAttemptClientLogin((CloudFoundryException) t);
+					}
+
+				}.run(monitor);
 			}
 
-		}.run(monitor);
-		return result != null ? result.booleanValue() : false;
+		}, monitor);
 	}
 
 	protected SubMonitor getProgressMonitor(IProgressMonitor progressMonitor) {
@@ -99,9 +124,11 @@ public class CloudFoundryLoginHandler {
 	 */
 	public boolean updateProxyInClient(CloudFoundryOperations client) throws CoreException {
 		if (client != null && cloudURL != null) {
-			try {
-				URL actualUrl = new URL(cloudURL);
-				HttpProxyConfiguration proxyConfiguration = CloudFoundryClientFactory.getProxy(actualUrl);
+			CloudFoundryPlugin plugin = CloudFoundryPlugin.getDefault();
+			if (plugin != null) {
+				// Resolved once per server, and cached until the proxy settings
+				// change
+				HttpProxyConfiguration proxyConfiguration = plugin.getProxyConfigurationCache().getProxy(cloudURL);
 				// FIXNS: As of CF Java client-lib version 1.0.2, update proxy
 				// API has been removed. Therefore unless a new client
 				// is created on proxy change, or the client indirectly detects
@@ -113,9 +140,6 @@ public class CloudFoundryLoginHandler {
 
 				return true;
 			}
-			catch (MalformedURLException e) {
-				throw CloudErrorUtil.toCoreException("Failed to update proxy settings due to " + e.getMessage(), e);
-			}
 		}
 		return false;
 	}
@@ -14,6 +14,8 @@ import java.util.List;
 
 import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudFoundryApplicationModule;
 import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudFoundryClientFactory;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.ProxyConfigurationCache;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.RequestMetrics;
 import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.CaldecottTunnelCache;
 import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.CaldecottTunnelDescriptor;
 import org.cloudfoundry.ide.eclipse.internal.server.core.tunnel.PredefinedServiceCommands;
@@ -159,6 +161,30 @@ public class CloudFoundryPlugin extends Plugin {
 
 	public static final boolean DEFAULT_INCREMENTAL_PUBLISH_PREFERENCE_VAL = true;
 
+	/**
+	 * Time to live, in milliseconds, of cached metadata like service offerings,
+	 * domains, and orgs and spaces.
+	 */
+	public static final String METADATA_CACHE_TTL_PREFERENCE = PLUGIN_ID + ".metadata.cache.ttl";
+
+	public static final long DEFAULT_METADATA_CACHE_TTL_PREFERENCE_VAL = 10 * 60 * 1000;
+
+	/**
+	 * Maximum number of modules published to a server at the same time.
+	 */
+	public static final String PUBLISH_CONCURRENCY_PREFERENCE = PLUGIN_ID + ".publish.concurrency";
+
+	public static final int DEFAULT_PUBLISH_CONCURRENCY_PREFERENCE_VAL = 3;
+
+	/**
+	 * Maximum number of characters kept in the console of an application
+	 * instance. Older content is dropped once exceeded. Zero or less keeps all
+	 * content.
+	 */
+	public static final String CONSOLE_BUFFER_SIZE_PREFERENCE = PLUGIN_ID + ".console.buffer.size";
+
+	public static final int DEFAULT_CONSOLE_BUFFER_SIZE_PREFERENCE_VAL = 512 * 1024;
+
 	private static CloudFoundryCallback callback;
 
 	private static ModuleCache moduleCache;
@@ -167,6 +193,8 @@ public class CloudFoundryPlugin extends Plugin {
 
 	private static IProxyService proxyService;
 
+	private static final ProxyConfigurationCache proxyConfigurationCache = new ProxyConfigurationCache();
+
 	private DeployedResourceCache sha1Cache = new DeployedResourceCache();
 
 	private InstanceScope INSTANCE_SCOPE = new InstanceScope();
@@ -205,6 +233,51 @@ public class CloudFoundryPlugin extends Plugin {
 				DEFAULT_INCREMENTAL_PUBLISH_PREFERENCE_VAL);
 	}
 
+	public synchronized void setMetadataCacheTimeToLive(long timeToLive) {
+		IEclipsePreferences prefs = getPreferences();
+		prefs.putLong(METADATA_CACHE_TTL_PREFERENCE, timeToLive);
+		try {
+			prefs.flush();
+		}
+		catch (BackingStoreException e) {
+			logError(e);
+		}
+	}
+
+	public synchronized long getMetadataCacheTimeToLive() {
+		return getPreferences().getLong(METADATA_CACHE_TTL_PREFERENCE, DEFAULT_METADATA_CACHE_TTL_PREFERENCE_VAL);
+	}
+
+	public synchronized void setPublishConcurrency(int concurrency) {
+		IEclipsePreferences prefs = getPreferences();
+		prefs.putInt(PUBLISH_CONCURRENCY_PREFERENCE, concurrency);
+		try {
+			prefs.flush();
+		}
+		catch (BackingStoreException e) {
+			logError(e);
+		}
+	}
+
+	public synchronized int getPublishConcurrency() {
+		return getPreferences().getInt(PUBLISH_CONCURRENCY_PREFERENCE, DEFAULT_PUBLISH_CONCURRENCY_PREFERENCE_VAL);
+	}
+
+	public synchronized void setConsoleBufferSize(int size) {
+		IEclipsePreferences prefs = getPreferences();
+		prefs.putInt(CONSOLE_BUFFER_SIZE_PREFERENCE, size);
+		try {
+			prefs.flush();
+		}
+		catch (BackingStoreException e) {
+			logError(e);
+		}
+	}
+
+	public synchronized int getConsoleBufferSize() {
+		return getPreferences().getInt(CONSOLE_BUFFER_SIZE_PREFERENCE, DEFAULT_CONSOLE_BUFFER_SIZE_PREFERENCE_VAL);
+	}
+
 	public IEclipsePreferences getPreferences() {
 		return INSTANCE_SCOPE.getNode(PLUGIN_ID);
 	}
@@ -267,18 +340,41 @@ public class CloudFoundryPlugin extends Plugin {
 			}
 
 			proxyService = (IProxyService) tracker.getService();
+			if (proxyService != null) {
+				proxyService.addProxyChangeListener(proxyConfigurationCache);
+			}
 		}
 		return proxyService;
 	}
 
+	/**
+	 * 
+	 * @return non-null cache of proxy configurations per server URL, cleared
+	 * when the network proxy settings change.
+	 */
+	public ProxyConfigurationCache getProxyConfigurationCache() {
+		// The cache is registered as proxy change listener when the proxy
+		// service is first obtained, which happens on the first cache miss
+		return proxyConfigurationCache;
+	}
+
 	@Override
 	public void start(BundleContext context) throws Exception {
 		super.start(context);
 		plugin = this;
+		RequestMetrics.registerMBean();
 	}
 
 	@Override
 	public void stop(BundleContext context) throws Exception {
+		RequestMetrics.unregisterMBean();
+
+		if (proxyService != null) {
+			proxyService.removeProxyChangeListener(proxyConfigurationCache);
+			proxyService = null;
+		}
+		proxyConfigurationCache.clear();
+
 		if (tracker != null) {
 			tracker.close();
 			tracker = null;
@@ -289,6 +385,8 @@ public class CloudFoundryPlugin extends Plugin {
 			moduleCache = null;
 		}
 
+		LogArchive.disposeDefault();
+
 		plugin = null;
 		super.stop(context);
 	}
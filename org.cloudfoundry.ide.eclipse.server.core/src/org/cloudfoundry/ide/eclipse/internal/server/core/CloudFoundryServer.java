@@ -14,10 +14,12 @@ import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 import org.cloudfoundry.client.lib.domain.CloudApplication;
 import org.cloudfoundry.client.lib.domain.CloudSpace;
@@ -614,15 +616,27 @@ public class CloudFoundryServer extends ServerDelegate {
 	 * {@link CloudApplication} ). Local WST modules ( {@link IModule} ) that do
 	 * not have a corresponding deployed application ( {@link CloudApplication})
 	 * will be removed.
+	 * <p/>
+	 * Only modules whose application was added, removed or changed since the
+	 * last update get the new application, as determined by
+	 * {@link #isApplicationChanged(CloudApplication, CloudApplication)}. If
+	 * any were, a {@link ModulesChangedEvent} is fired once the update is
+	 * complete. The module state is updated for all modules, as other
+	 * operations, like refreshing application stats, also set the application
+	 * of a module without updating its state.
 	 * @param deployedApplications
+	 * @return true if any module was added, changed or removed
 	 * @throws CoreException
 	 */
-	public void updateModules(Map<String, CloudApplication> deployedApplications) throws CoreException {
+	public boolean updateModules(Map<String, CloudApplication> deployedApplications) throws CoreException {
 		Server server = (Server) getServer();
 
 		final Set<CloudFoundryApplicationModule> allModules = new HashSet<CloudFoundryApplicationModule>();
 		List<CloudFoundryApplicationModule> externalModules = new ArrayList<CloudFoundryApplicationModule>();
 		final Set<IModule> deletedModules = new HashSet<IModule>();
+		List<CloudFoundryApplicationModule> addedModules = new ArrayList<CloudFoundryApplicationModule>();
+		List<CloudFoundryApplicationModule> changedModules = new ArrayList<CloudFoundryApplicationModule>();
+		List<CloudFoundryApplicationModule> deployedModules = new ArrayList<CloudFoundryApplicationModule>();
 
 		synchronized (this) {
 			// Iterate through the local WST modules, and update them based on
@@ -651,8 +665,15 @@ public class CloudFoundryServer extends ServerDelegate {
 
 				// Update the cloud module mapping to the cloud application,
 				// such that the cloud module
-				// has the latest cloud application reference.
-				cloudModule.setCloudApplication(actualApplication);
+				// has the latest cloud application reference. Unchanged
+				// applications are skipped, as updating the mapping rebuilds
+				// the deployment info.
+				if (isApplicationChanged(cloudModule.getApplication(), actualApplication)) {
+					cloudModule.setCloudApplication(actualApplication);
+					if (actualApplication != null) {
+						changedModules.add(cloudModule);
+					}
+				}
 
 				// the modules maps to an existing application
 				if (actualApplication != null) {
@@ -660,6 +681,7 @@ public class CloudFoundryServer extends ServerDelegate {
 						externalModules.add(cloudModule);
 					}
 					allModules.add(cloudModule);
+					deployedModules.add(cloudModule);
 				}
 				else if (getData() != null && getData().isUndeployed(module)) {
 					// deployment is still in progress
@@ -677,17 +699,18 @@ public class CloudFoundryServer extends ServerDelegate {
 					CloudFoundryApplicationModule appModule = getData().createModule(application);
 					externalModules.add(appModule);
 					allModules.add(appModule);
+					addedModules.add(appModule);
 				}
 			}
 
 			// update state for cloud applications
 			server.setExternalModules(externalModules.toArray(new IModule[0]));
 
-			for (IModule module : server.getModules()) {
-				CloudFoundryApplicationModule appModule = getExistingCloudModule(module);
-				if (appModule != null) {
-					updateState(server, appModule);
-				}
+			for (CloudFoundryApplicationModule appModule : deployedModules) {
+				updateState(server, appModule);
+			}
+			for (CloudFoundryApplicationModule appModule : addedModules) {
+				updateState(server, appModule);
 			}
 
 			// FIXNS: This seems to trigger an infinite "recursion", since
@@ -711,6 +734,103 @@ public class CloudFoundryServer extends ServerDelegate {
 				getData().removeObsoleteModules(allModules);
 			}
 		}
+
+		if (!addedModules.isEmpty() || !changedModules.isEmpty() || !deletedModules.isEmpty()) {
+			ServerEventHandler.getDefault().fireModulesChanged(this, addedModules, changedModules,
+					new ArrayList<IModule>(deletedModules));
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Updates only the modules of the given deployed applications, for
+	 * example after an operation on these applications, rather than all
+	 * modules as in {@link #updateModules(Map)}. A {@link ModulesChangedEvent}
+	 * listing the modules of the given applications as changed is then fired,
+	 * as operations may have changed a module's state even if its application
+	 * did not change.
+	 * <p/>
+	 * If the set of deployed applications changed, that is, an existing
+	 * application has no module or a module's application no longer exists,
+	 * no module is updated, and all modules should be updated instead.
+	 * @param deployedApplications by deployed application name. The value is
+	 * null if the application does not exist.
+	 * @return true if the modules were updated. False if the set of deployed
+	 * applications changed.
+	 * @throws CoreException
+	 */
+	public boolean updateApplicationModules(Map<String, CloudApplication> deployedApplications) throws CoreException {
+		Server server = (Server) getServer();
+		List<CloudFoundryApplicationModule> changedModules = new ArrayList<CloudFoundryApplicationModule>();
+		List<CloudApplication> actualApplications = new ArrayList<CloudApplication>();
+
+		synchronized (this) {
+			for (Map.Entry<String, CloudApplication> entry : deployedApplications.entrySet()) {
+				CloudFoundryApplicationModule cloudModule = getExistingCloudModule(entry.getKey());
+				CloudApplication actualApplication = entry.getValue();
+				if (cloudModule == null) {
+					if (actualApplication != null) {
+						return false;
+					}
+				}
+				else if (actualApplication == null
+						&& (getData() == null || !getData().isUndeployed(cloudModule.getLocalModule()))) {
+					return false;
+				}
+				else {
+					changedModules.add(cloudModule);
+					actualApplications.add(actualApplication);
+				}
+			}
+
+			for (int i = 0; i < changedModules.size(); i++) {
+				CloudFoundryApplicationModule cloudModule = changedModules.get(i);
+				CloudApplication actualApplication = actualApplications.get(i);
+				if (isApplicationChanged(cloudModule.getApplication(), actualApplication)) {
+					cloudModule.setCloudApplication(actualApplication);
+				}
+				if (actualApplication != null) {
+					updateState(server, cloudModule);
+				}
+			}
+		}
+
+		if (!changedModules.isEmpty()) {
+			ServerEventHandler.getDefault().fireModulesChanged(this, new ArrayList<CloudFoundryApplicationModule>(0),
+					changedModules, new ArrayList<IModule>(0));
+		}
+		return true;
+	}
+
+	/**
+	 * Determines whether a deployed application has changed since the given
+	 * previous version of it was retrieved. Applications are compared by guid
+	 * and metadata update time. The state and number of running instances are
+	 * compared as well, as they change without the update time changing.
+	 * @param previous previous version of the application. May be null.
+	 * @param current current version of the application. May be null.
+	 * @return true if the application was added, removed or changed, or if
+	 * this cannot be determined from the metadata.
+	 */
+	public static boolean isApplicationChanged(CloudApplication previous, CloudApplication current) {
+		if (previous == current) {
+			return false;
+		}
+		if (previous == null || current == null || previous.getMeta() == null || current.getMeta() == null) {
+			return true;
+		}
+		UUID previousGuid = previous.getMeta().getGuid();
+		Date previousUpdated = previous.getMeta().getUpdated();
+		Date currentUpdated = current.getMeta().getUpdated();
+		if (previousGuid == null || !previousGuid.equals(current.getMeta().getGuid())) {
+			return true;
+		}
+		if (currentUpdated == null || !currentUpdated.equals(previousUpdated)) {
+			return true;
+		}
+		return previous.getState() != current.getState()
+				|| previous.getRunningInstances() != current.getRunningInstances();
 	}
 
 	private void deleteModules(final Set<IModule> deletedModules) {
@@ -803,18 +923,7 @@ public class CloudFoundryServer extends ServerDelegate {
 	 * Null otherwise.
 	 */
 	public CloudFoundryApplicationModule getExistingCloudModule(String appName) throws CoreException {
-
-		CloudFoundryApplicationModule appModule = null;
-		Collection<CloudFoundryApplicationModule> modules = getExistingCloudModules();
-		if (modules != null) {
-			for (CloudFoundryApplicationModule module : modules) {
-				if (appName.equals(module.getDeployedApplicationName())) {
-					appModule = module;
-					break;
-				}
-			}
-		}
-		return appModule;
+		return getData() != null ? getData().getExistingCloudModule(appName) : null;
 	}
 
 	/**
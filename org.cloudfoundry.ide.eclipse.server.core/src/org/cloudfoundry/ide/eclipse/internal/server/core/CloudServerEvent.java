@@ -30,6 +30,10 @@ public class CloudServerEvent extends EventObject {
 
 	public static final int EVENT_SERVER_REFRESHED = 400;
 
+	public static final int EVENT_CONNECTIVITY_CHANGED = 500;
+
+	public static final int EVENT_MODULES_CHANGED = 600;
+
 	private static final long serialVersionUID = 1L;
 
 	private int type = -1;
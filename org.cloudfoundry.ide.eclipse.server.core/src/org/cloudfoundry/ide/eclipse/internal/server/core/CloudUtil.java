@@ -393,6 +393,20 @@ public class CloudUtil {
 		return targetFile;
 	}
 
+	/**
+	 * @param content
+	 * @return number of line feeds in the content
+	 */
+	public static int countLines(String content) {
+		int lines = 0;
+		for (int i = 0; i < content.length(); i++) {
+			if (content.charAt(i) == '\n') {
+				lines++;
+			}
+		}
+		return lines;
+	}
+
 	public static void merge(List<IStatus> result, IStatus[] status) {
 		if (result == null || status == null || status.length == 0) {
 			return;
@@ -0,0 +1,800 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.wst.server.core.IServer;
+import org.eclipse.wst.server.core.IServerLifecycleListener;
+import org.eclipse.wst.server.core.ServerCore;
+
+/**
+ * Keeps a local copy of the content of tailed application log files, so that
+ * log content can be shown again and searched without fetching it from the
+ * server.
+ * <p/>
+ * Each log file, identified by server, application, instance and path, is
+ * archived in its own directory as a series of segments. Content is appended
+ * to the current segment, which is compressed once it reaches
+ * {@link #SEGMENT_SIZE}. At most {@link #MAX_SEGMENTS} segments are kept per
+ * log file, older ones are deleted.
+ * <p/>
+ * An index records, for each segment, the range of byte offsets of the remote
+ * file it holds and its number of lines, as well as the offset up to which the
+ * file was archived and the last bytes of the file before that offset, from
+ * which tailing can resume if the file still holds them. A log file that restarts,
+ * for example because the application was restarted, starts a new generation
+ * of segments. Older generations can still be searched.
+ * <p/>
+ * The index is saved when a segment is rolled, when the file restarts, at most
+ * every {@link #SAVE_INTERVAL} while content is appended, and when the log is
+ * closed. Content appended after the last save is archived again if the
+ * workbench exits abnormally, as tailing then resumes from the saved offset.
+ * <p/>
+ * Each log file is locked separately, so that files tailed at the same time
+ * do not wait for each other. The archive of an application or server is
+ * deleted when it is deleted, and archives of servers that no longer exist
+ * are deleted when the archive is first used.
+ */
+public class LogArchive {
+
+	public static final int SEGMENT_SIZE = 256 * 1024;
+
+	public static final int MAX_SEGMENTS = 16;
+
+	/**
+	 * Maximum time in milliseconds content is appended without saving the
+	 * index
+	 */
+	public static final long SAVE_INTERVAL = 10000;
+
+	private static final String INDEX_FILE = "index.properties";
+
+	private static final String OFFSET_KEY = "offset";
+
+	private static final String END_BYTES_KEY = "endBytes";
+
+	private static final String GENERATION_KEY = "generation";
+
+	private static final String SEGMENTS_KEY = "segments";
+
+	private static final String SEGMENT_KEY_PREFIX = "segment.";
+
+	private static final String SEGMENT_EXTENSION = ".log";
+
+	private static final String COMPRESSED_EXTENSION = ".gz";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static LogArchive archive;
+
+	private final File root;
+
+	private final Map<String, Index> indices = new HashMap<String, Index>();
+
+	private final IServerLifecycleListener listener = new IServerLifecycleListener() {
+
+		public void serverAdded(IServer server) {
+			// ignore
+		}
+
+		public void serverChanged(IServer server) {
+			// ignore
+		}
+
+		public void serverRemoved(IServer server) {
+			deleteServer(server.getId());
+		}
+	};
+
+	public static synchronized LogArchive getDefault() {
+		if (archive == null) {
+			archive = new LogArchive(CloudFoundryPlugin.getDefault().getStateLocation().append("logs").toFile());
+			ServerCore.addServerLifecycleListener(archive.listener);
+
+			Set<String> serverIds = new HashSet<String>();
+			for (IServer server : ServerCore.getServers()) {
+				serverIds.add(server.getId());
+			}
+			archive.deleteServersExcept(serverIds);
+		}
+		return archive;
+	}
+
+	/**
+	 * Saves the indices of all archived log files, and stops deleting the
+	 * archives of removed servers, if the archive was used.
+	 */
+	public static synchronized void disposeDefault() {
+		if (archive != null) {
+			ServerCore.removeServerLifecycleListener(archive.listener);
+			archive.closeAll();
+			archive = null;
+		}
+	}
+
+	/**
+	 *
+	 * @param root directory where logs are archived
+	 */
+	public LogArchive(File root) {
+		this.root = root;
+	}
+
+	/**
+	 *
+	 * @return id of the archived log file, which is also its path relative to
+	 * the archive directory.
+	 */
+	public static String getLogId(String serverId, String appName, int instanceIndex, String path) {
+		return toFileName(serverId) + '/' + toFileName(appName) + '/' + instanceIndex + '/' + toFileName(path);
+	}
+
+	/**
+	 * Escapes a name so that it can be used as a file name. Lower case
+	 * letters, digits, '-' and '.' other than a leading one are kept, and each
+	 * UTF-8 byte of any other character is written as '_' followed by its two
+	 * hexadecimal digits. Distinct names therefore have distinct file names,
+	 * also on file systems that ignore case.
+	 * @param name
+	 * @return escaped name, or "_" if the name is null or empty
+	 */
+	protected static String toFileName(String name) {
+		if (name == null || name.length() == 0) {
+			return "_";
+		}
+		StringBuilder fileName = new StringBuilder();
+		for (byte b : name.getBytes(UTF8)) {
+			if ((b >= 'a' && b <= 'z') || (b >= '0' && b <= '9') || b == '-' || (b == '.' && fileName.length() > 0)) {
+				fileName.append((char) b);
+			}
+			else {
+				fileName.append('_').append(Character.forDigit((b >> 4) & 0xF, 16))
+						.append(Character.forDigit(b & 0xF, 16));
+			}
+		}
+		return fileName.toString();
+	}
+
+	/**
+	 * Archives content tailed from a log file.
+	 * @param logId
+	 * @param startOffset byte offset in the remote file of the content
+	 * @param endOffset byte offset in the remote file following the content,
+	 * from which tailing resumes
+	 * @param endBytes last bytes of the remote file before the end offset,
+	 * checked before tailing resumes
+	 * @param content
+	 * @throws CoreException if the content could not be archived
+	 */
+	public void append(String logId, int startOffset, int endOffset, byte[] endBytes, String content)
+			throws CoreException {
+		if (content == null || content.length() == 0) {
+			return;
+		}
+		try {
+			Index index = getIndex(logId);
+			synchronized (index) {
+				// The archive was deleted while content was being fetched
+				if (index.deleted) {
+					return;
+				}
+				Segment segment = index.getCurrentSegment();
+				boolean rolled = false;
+				if (segment == null || segment.generation != index.generation
+						|| index.getFile(segment).length() >= SEGMENT_SIZE) {
+					if (segment != null) {
+						compress(index, segment);
+					}
+					segment = index.addSegment(startOffset);
+					while (index.segments.size() > MAX_SEGMENTS) {
+						Segment oldest = index.segments.remove(0);
+						index.getFile(oldest).delete();
+					}
+					rolled = true;
+				}
+
+				index.directory.mkdirs();
+				OutputStream out = new FileOutputStream(index.getFile(segment), true);
+				try {
+					out.write(content.getBytes(UTF8));
+				}
+				finally {
+					out.close();
+				}
+
+				segment.endOffset = endOffset;
+				segment.lines += CloudUtil.countLines(content);
+				index.offset = endOffset;
+				index.endBytes = endBytes != null ? endBytes.clone() : new byte[0];
+				index.dirty = true;
+				if (rolled || getCurrentTime() - index.savedTime >= SAVE_INTERVAL) {
+					index.save(getCurrentTime());
+				}
+			}
+		}
+		catch (IOException e) {
+			throw CloudErrorUtil.toCoreException(e);
+		}
+	}
+
+	/**
+	 *
+	 * @param logId
+	 * @return byte offset in the remote file up to which it was archived, or 0
+	 * if it was not archived.
+	 * @throws CoreException
+	 */
+	public int getOffset(String logId) throws CoreException {
+		try {
+			Index index = getIndex(logId);
+			synchronized (index) {
+				return index.offset;
+			}
+		}
+		catch (IOException e) {
+			throw CloudErrorUtil.toCoreException(e);
+		}
+	}
+
+	/**
+	 *
+	 * @param logId
+	 * @return last bytes of the remote file before the offset up to which it
+	 * was archived, which are empty if it was not archived.
+	 * @throws CoreException
+	 */
+	public byte[] getEndBytes(String logId) throws CoreException {
+		try {
+			Index index = getIndex(logId);
+			synchronized (index) {
+				return index.endBytes.clone();
+			}
+		}
+		catch (IOException e) {
+			throw CloudErrorUtil.toCoreException(e);
+		}
+	}
+
+	/**
+	 * Notifies that the remote file restarted from the beginning. Archived
+	 * content is kept, but is no longer read back, and tailing resumes from
+	 * the beginning of the file.
+	 * @param logId
+	 * @throws CoreException
+	 */
+	public void restart(String logId) throws CoreException {
+		try {
+			Index index = getIndex(logId);
+			synchronized (index) {
+				Segment segment = index.getCurrentSegment();
+				if (segment != null) {
+					compress(index, segment);
+				}
+				index.generation++;
+				index.offset = 0;
+				index.endBytes = new byte[0];
+				index.save(getCurrentTime());
+			}
+		}
+		catch (IOException e) {
+			throw CloudErrorUtil.toCoreException(e);
+		}
+	}
+
+	/**
+	 * Reads back the end of the archived content of the current generation of
+	 * the log file.
+	 * @param logId
+	 * @param maxChars maximum number of characters read, or zero or less to
+	 * read all content.
+	 * @return archived content, which is empty if there is none
+	 * @throws CoreException
+	 */
+	public String read(String logId, int maxChars) throws CoreException {
+		try {
+			Index index = getIndex(logId);
+			List<String> contents = new ArrayList<String>();
+			int length = 0;
+			synchronized (index) {
+				for (int i = index.segments.size() - 1; i >= 0; i--) {
+					Segment segment = index.segments.get(i);
+					if (segment.generation != index.generation || (maxChars > 0 && length >= maxChars)) {
+						break;
+					}
+					String content = readSegment(index, segment);
+					contents.add(0, content);
+					length += content.length();
+				}
+			}
+
+			StringBuilder builder = new StringBuilder(length);
+			for (String content : contents) {
+				builder.append(content);
+			}
+			if (maxChars > 0 && builder.length() > maxChars) {
+				return builder.substring(builder.length() - maxChars);
+			}
+			return builder.toString();
+		}
+		catch (IOException e) {
+			throw CloudErrorUtil.toCoreException(e);
+		}
+	}
+
+	/**
+	 * Searches all archived content of the log file, including earlier
+	 * generations, for lines that contain the given text, ignoring case.
+	 * @param logId
+	 * @param text
+	 * @param maxMatches maximum number of matches returned
+	 * @return matching lines, oldest first
+	 * @throws CoreException
+	 */
+	public List<LogMatch> search(String logId, String text, int maxMatches) throws CoreException {
+		List<LogMatch> matches = new ArrayList<LogMatch>();
+		String lowerCaseText = text.toLowerCase();
+		try {
+			Index index = getIndex(logId);
+			synchronized (index) {
+				for (Segment segment : index.segments) {
+					if (!index.getFile(segment).exists()) {
+						continue;
+					}
+					BufferedReader reader = new BufferedReader(new InputStreamReader(openSegment(index, segment),
+							UTF8));
+					try {
+						String line;
+						int lineNumber = 0;
+						while ((line = reader.readLine()) != null) {
+							if (line.toLowerCase().contains(lowerCaseText)) {
+								matches.add(new LogMatch(segment.generation, segment.startOffset, lineNumber, line));
+								if (matches.size() >= maxMatches) {
+									return matches;
+								}
+							}
+							lineNumber++;
+						}
+					}
+					finally {
+						reader.close();
+					}
+				}
+			}
+		}
+		catch (IOException e) {
+			throw CloudErrorUtil.toCoreException(e);
+		}
+		return matches;
+	}
+
+	/**
+	 * Saves the index of the log file if content was appended since it was
+	 * last saved, and no longer keeps it in memory. Called once the file is no
+	 * longer tailed.
+	 * @param logId
+	 * @throws CoreException if the index could not be saved
+	 */
+	public void close(String logId) throws CoreException {
+		Index index;
+		synchronized (indices) {
+			index = indices.remove(logId);
+		}
+		if (index != null) {
+			try {
+				synchronized (index) {
+					if (index.dirty) {
+						index.save(getCurrentTime());
+					}
+				}
+			}
+			catch (IOException e) {
+				throw CloudErrorUtil.toCoreException(e);
+			}
+		}
+	}
+
+	/**
+	 * Closes all log files, logging indices that could not be saved.
+	 */
+	public void closeAll() {
+		List<String> logIds;
+		synchronized (indices) {
+			logIds = new ArrayList<String>(indices.keySet());
+		}
+		for (String logId : logIds) {
+			try {
+				close(logId);
+			}
+			catch (CoreException e) {
+				CloudFoundryPlugin.logError(e);
+			}
+		}
+	}
+
+	/**
+	 * Deletes the archived log files of all instances of an application.
+	 * @param serverId
+	 * @param appName
+	 */
+	public void deleteApplication(String serverId, String appName) {
+		delete(toFileName(serverId) + '/' + toFileName(appName));
+	}
+
+	/**
+	 * Deletes the archived log files of all applications of a server.
+	 * @param serverId
+	 */
+	public void deleteServer(String serverId) {
+		delete(toFileName(serverId));
+	}
+
+	/**
+	 * Deletes the archived log files of servers other than the given ones.
+	 * @param serverIds
+	 */
+	public void deleteServersExcept(Set<String> serverIds) {
+		Set<String> kept = new HashSet<String>();
+		for (String serverId : serverIds) {
+			kept.add(toFileName(serverId));
+		}
+		File[] directories = root.listFiles();
+		if (directories != null) {
+			for (File directory : directories) {
+				if (!kept.contains(directory.getName())) {
+					delete(directory.getName());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Deletes the archived log files under a directory of the archive, and
+	 * no longer keeps their indices in memory.
+	 * @param path relative to the archive directory
+	 */
+	protected void delete(String path) {
+		List<Index> deleted = new ArrayList<Index>();
+		synchronized (indices) {
+			for (Iterator<Map.Entry<String, Index>> it = indices.entrySet().iterator(); it.hasNext();) {
+				Map.Entry<String, Index> entry = it.next();
+				if (entry.getKey().startsWith(path + '/')) {
+					deleted.add(entry.getValue());
+					it.remove();
+				}
+			}
+		}
+		// Content fetched after this point is not archived again
+		for (Index index : deleted) {
+			synchronized (index) {
+				index.deleted = true;
+			}
+		}
+		File directory = new File(root, path);
+		if (directory.exists() && !deleteFile(directory)) {
+			CloudFoundryPlugin.logWarning("Failed to delete archived logs in " + directory);
+		}
+	}
+
+	protected boolean deleteFile(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteFile(child);
+			}
+		}
+		return file.delete();
+	}
+
+	protected Index getIndex(String logId) throws IOException {
+		synchronized (indices) {
+			Index index = indices.get(logId);
+			if (index == null) {
+				index = new Index(new File(root, logId));
+				index.load();
+				indices.put(logId, index);
+			}
+			return index;
+		}
+	}
+
+	protected long getCurrentTime() {
+		return System.currentTimeMillis();
+	}
+
+	protected void compress(Index index, Segment segment) throws IOException {
+		if (segment.compressed) {
+			return;
+		}
+		File file = index.getFile(segment);
+		segment.compressed = true;
+		File compressedFile = index.getFile(segment);
+		if (file.exists()) {
+			InputStream in = new FileInputStream(file);
+			try {
+				OutputStream out = new GZIPOutputStream(new FileOutputStream(compressedFile));
+				try {
+					byte[] buffer = new byte[8192];
+					int read;
+					while ((read = in.read(buffer)) != -1) {
+						out.write(buffer, 0, read);
+					}
+				}
+				finally {
+					out.close();
+				}
+			}
+			finally {
+				in.close();
+			}
+			file.delete();
+		}
+		index.save(getCurrentTime());
+	}
+
+	protected InputStream openSegment(Index index, Segment segment) throws IOException {
+		File file = index.getFile(segment);
+		InputStream in = new FileInputStream(file);
+		return segment.compressed ? new GZIPInputStream(in) : in;
+	}
+
+	protected String readSegment(Index index, Segment segment) throws IOException {
+		if (!index.getFile(segment).exists()) {
+			return "";
+		}
+		InputStreamReader reader = new InputStreamReader(openSegment(index, segment), UTF8);
+		try {
+			StringBuilder builder = new StringBuilder();
+			char[] buffer = new char[8192];
+			int read;
+			while ((read = reader.read(buffer)) != -1) {
+				builder.append(buffer, 0, read);
+			}
+			return builder.toString();
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * A line of archived log content that matched a search.
+	 */
+	public static class LogMatch {
+
+		private final int generation;
+
+		private final int segmentOffset;
+
+		private final int lineNumber;
+
+		private final String line;
+
+		public LogMatch(int generation, int segmentOffset, int lineNumber, String line) {
+			this.generation = generation;
+			this.segmentOffset = segmentOffset;
+			this.lineNumber = lineNumber;
+			this.line = line;
+		}
+
+		/**
+		 *
+		 * @return generation of the log file the line belongs to. It changes
+		 * each time the remote file restarts.
+		 */
+		public int getGeneration() {
+			return generation;
+		}
+
+		/**
+		 *
+		 * @return byte offset in the remote file of the segment containing the
+		 * line
+		 */
+		public int getSegmentOffset() {
+			return segmentOffset;
+		}
+
+		/**
+		 *
+		 * @return number of the line in its segment, starting at 0
+		 */
+		public int getLineNumber() {
+			return lineNumber;
+		}
+
+		public String getLine() {
+			return line;
+		}
+
+	}
+
+	protected static class Segment {
+
+		final int id;
+
+		final int generation;
+
+		final int startOffset;
+
+		int endOffset;
+
+		int lines;
+
+		boolean compressed;
+
+		Segment(int id, int generation, int startOffset) {
+			this.id = id;
+			this.generation = generation;
+			this.startOffset = startOffset;
+			this.endOffset = startOffset;
+		}
+
+	}
+
+	/**
+	 * Index of the archived segments of one log file.
+	 */
+	protected static class Index {
+
+		final File directory;
+
+		final List<Segment> segments = new ArrayList<Segment>();
+
+		int offset = 0;
+
+		byte[] endBytes = new byte[0];
+
+		int generation = 0;
+
+		/**
+		 * Whether the index changed since it was saved
+		 */
+		boolean dirty;
+
+		long savedTime;
+
+		/**
+		 * Whether the archived files were deleted, after which the index is
+		 * no longer saved
+		 */
+		boolean deleted;
+
+		Index(File directory) {
+			this.directory = directory;
+		}
+
+		Segment getCurrentSegment() {
+			return segments.isEmpty() ? null : segments.get(segments.size() - 1);
+		}
+
+		Segment addSegment(int startOffset) {
+			Segment current = getCurrentSegment();
+			Segment segment = new Segment(current != null ? current.id + 1 : 0, generation, startOffset);
+			segments.add(segment);
+			return segment;
+		}
+
+		File getFile(Segment segment) {
+			return new File(directory, segment.id + SEGMENT_EXTENSION
+					+ (segment.compressed ? COMPRESSED_EXTENSION : ""));
+		}
+
+		void load() throws IOException {
+			File file = new File(directory, INDEX_FILE);
+			if (!file.exists()) {
+				return;
+			}
+			Properties properties = new Properties();
+			InputStream in = new FileInputStream(file);
+			try {
+				properties.load(in);
+			}
+			finally {
+				in.close();
+			}
+			try {
+				offset = Integer.parseInt(properties.getProperty(OFFSET_KEY, "0"));
+				endBytes = fromHex(properties.getProperty(END_BYTES_KEY, ""));
+				generation = Integer.parseInt(properties.getProperty(GENERATION_KEY, "0"));
+				String ids = properties.getProperty(SEGMENTS_KEY, "");
+				for (String id : ids.split(",")) {
+					String value = properties.getProperty(SEGMENT_KEY_PREFIX + id);
+					if (value != null) {
+						String[] fields = value.split(",");
+						Segment segment = new Segment(Integer.parseInt(id), Integer.parseInt(fields[0]),
+								Integer.parseInt(fields[1]));
+						segment.endOffset = Integer.parseInt(fields[2]);
+						segment.lines = Integer.parseInt(fields[3]);
+						segment.compressed = Boolean.parseBoolean(fields[4]);
+						segments.add(segment);
+					}
+				}
+			}
+			catch (RuntimeException e) {
+				// Start over rather than fail on a corrupt index
+				segments.clear();
+				offset = 0;
+				endBytes = new byte[0];
+				generation++;
+				CloudFoundryPlugin.logError("Ignoring corrupt log archive index in " + directory, e);
+			}
+		}
+
+		void save(long time) throws IOException {
+			if (deleted) {
+				return;
+			}
+			Properties properties = new Properties();
+			properties.setProperty(OFFSET_KEY, Integer.toString(offset));
+			properties.setProperty(END_BYTES_KEY, toHex(endBytes));
+			properties.setProperty(GENERATION_KEY, Integer.toString(generation));
+			StringBuilder ids = new StringBuilder();
+			for (Segment segment : segments) {
+				if (ids.length() > 0) {
+					ids.append(',');
+				}
+				ids.append(segment.id);
+				properties.setProperty(SEGMENT_KEY_PREFIX + segment.id, segment.generation + "," + segment.startOffset
+						+ "," + segment.endOffset + "," + segment.lines + "," + segment.compressed);
+			}
+			properties.setProperty(SEGMENTS_KEY, ids.toString());
+
+			directory.mkdirs();
+			OutputStream out = new FileOutputStream(new File(directory, INDEX_FILE));
+			try {
+				properties.store(out, null);
+			}
+			finally {
+				out.close();
+			}
+			dirty = false;
+			savedTime = time;
+		}
+
+		static String toHex(byte[] bytes) {
+			StringBuilder hex = new StringBuilder(bytes.length * 2);
+			for (byte b : bytes) {
+				hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			}
+			return hex.toString();
+		}
+
+		static byte[] fromHex(String hex) {
+			byte[] bytes = new byte[hex.length() / 2];
+			for (int i = 0; i < bytes.length; i++) {
+				bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+			}
+			return bytes;
+		}
+
+	}
+
+}
@@ -10,18 +10,23 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.core;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.cloudfoundry.client.lib.domain.CloudApplication;
 import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudFoundryApplicationModule;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.wst.server.core.IModule;
@@ -36,6 +41,11 @@ import org.osgi.service.prefs.BackingStoreException;
  * disposed every time a working copy is saved. The module cache may be accessed
  * by multiple threads therefore multi-threaded access needs to be taken into
  * account when modifying server data state.
+ * <p/>
+ * The mapping of local modules to deployed applications is kept in memory,
+ * and written to the preferences in the background shortly after it changes,
+ * so that a refresh that updates many modules writes the preferences once.
+ * Pending changes are also written when the cache is disposed.
  * @author Steffen Pingel
  */
 public class ModuleCache {
@@ -44,6 +54,21 @@ public class ModuleCache {
 
 		private final List<CloudFoundryApplicationModule> cloudModules = new ArrayList<CloudFoundryApplicationModule>();
 
+		/*
+		 * Indexes of the cloud modules, so that lookups during refresh do not
+		 * scan all modules. Where several modules have the same key, the one
+		 * added first is indexed, as a scan of the modules would find.
+		 */
+		private final Map<String, CloudFoundryApplicationModule> modulesByDeployedName = new HashMap<String, CloudFoundryApplicationModule>();
+
+		private final Map<String, CloudFoundryApplicationModule> modulesByLocalName = new HashMap<String, CloudFoundryApplicationModule>();
+
+		/**
+		 * Deployed name under which each module is indexed, to re-index it
+		 * when the deployed name changes.
+		 */
+		private final Map<CloudFoundryApplicationModule, String> indexedDeployedNames = new IdentityHashMap<CloudFoundryApplicationModule, String>();
+
 		/** Cached password in case secure store fails. */
 		private String password;
 
@@ -58,12 +83,37 @@ public class ModuleCache {
 
 		private int[] applicationMemoryChoices;
 
-		ServerData(IServer server) {
+		private final ModuleCache cache;
+
+		/**
+		 * Local module ID to deployed application name. Loaded from the
+		 * preferences on first use.
+		 */
+		private Map<String, String> moduleMapping;
+
+		/**
+		 * Server ID under which the mapping is stored.
+		 */
+		private String mappingServerId;
+
+		/**
+		 * Server IDs under which the mapping was previously stored, and which
+		 * are removed when the mapping is next written.
+		 */
+		private final Set<String> obsoleteMappingServerIds = new HashSet<String>();
+
+		private boolean mappingDirty = false;
+
+		ServerData(IServer server, ModuleCache cache) {
 			this.server = server;
+			this.cache = cache;
 		}
 
 		public synchronized void clear() {
 			cloudModules.clear();
+			modulesByDeployedName.clear();
+			modulesByLocalName.clear();
+			indexedDeployedNames.clear();
 		}
 
 		public synchronized CloudFoundryApplicationModule createModule(CloudApplication application) {
@@ -85,9 +135,17 @@ public class ModuleCache {
 		public synchronized void updateCloudApplicationModule(CloudFoundryApplicationModule module) {
 			// Update the map of module ID -> Deployed Application name
 			if (module.getLocalModule() != null) {
-				Map<String, String> mapping = getLocalModuleToCloudModuleMapping();
-				mapping.put(module.getLocalModule().getId(), module.getDeployedApplicationName());
-				setLocalModuleToCloudModuleMapping(mapping);
+				String deployedName = module.getDeployedApplicationName();
+				if (!deployedName.equals(getLocalModuleToCloudModuleMapping().put(module.getLocalModule().getId(),
+						deployedName))) {
+					mappingChanged();
+				}
+			}
+
+			String indexedName = indexedDeployedNames.get(module);
+			if (indexedName != null && !indexedName.equals(module.getDeployedApplicationName())) {
+				unindex(module);
+				index(module);
 			}
 		}
 
@@ -109,10 +167,10 @@ public class ModuleCache {
 
 		public synchronized void remove(CloudFoundryApplicationModule module) {
 			cloudModules.remove(module);
-			if (module.getLocalModule() != null) {
-				Map<String, String> mapping = getLocalModuleToCloudModuleMapping();
-				mapping.remove(module.getLocalModule().getId());
-				setLocalModuleToCloudModuleMapping(mapping);
+			unindex(module);
+			if (module.getLocalModule() != null
+					&& getLocalModuleToCloudModuleMapping().remove(module.getLocalModule().getId()) != null) {
+				mappingChanged();
 			}
 		}
 
@@ -129,7 +187,7 @@ public class ModuleCache {
 					}
 				}
 				if (mappingModified) {
-					setLocalModuleToCloudModuleMapping(mapping);
+					mappingChanged();
 				}
 			}
 		}
@@ -157,22 +215,64 @@ public class ModuleCache {
 
 		private void add(CloudFoundryApplicationModule module) {
 			cloudModules.add(module);
+			index(module);
 		}
 
-		private String convertMapToString(Map<String, String> map) {
-			if (map == null) {
-				return "";
+		private void index(CloudFoundryApplicationModule module) {
+			String deployedName = module.getDeployedApplicationName();
+			indexedDeployedNames.put(module, deployedName);
+			indexIfAbsent(modulesByDeployedName, deployedName, module);
+			indexIfAbsent(modulesByLocalName, module.getName(), module);
+		}
+
+		/**
+		 * Removes the keys of the given module from the indexes. Where another
+		 * module has the same key, it is indexed under that key instead. Other
+		 * keys, including the deployed name under which any other module is
+		 * indexed, are left unchanged.
+		 */
+		private void unindex(CloudFoundryApplicationModule module) {
+			String deployedName = indexedDeployedNames.remove(module);
+			if (removeFromIndex(modulesByDeployedName, deployedName, module)) {
+				for (CloudFoundryApplicationModule other : cloudModules) {
+					if (other != module && deployedName.equals(indexedDeployedNames.get(other))) {
+						modulesByDeployedName.put(deployedName, other);
+						break;
+					}
+				}
 			}
-			StringBuilder result = new StringBuilder();
-			for (Map.Entry<String, String> entry : map.entrySet()) {
-				result.append(entry.getKey());
-				result.append(",");
-				result.append(entry.getValue());
-				result.append(",");
+			String localName = module.getName();
+			if (removeFromIndex(modulesByLocalName, localName, module)) {
+				for (CloudFoundryApplicationModule other : cloudModules) {
+					if (other != module && localName.equals(other.getName())) {
+						modulesByLocalName.put(localName, other);
+						break;
+					}
+				}
+			}
+		}
+
+		private void indexIfAbsent(Map<String, CloudFoundryApplicationModule> index, String key,
+				CloudFoundryApplicationModule module) {
+			if (key != null && !index.containsKey(key)) {
+				index.put(key, module);
 			}
-			return result.toString();
 		}
 
+		private boolean removeFromIndex(Map<String, CloudFoundryApplicationModule> index, String key,
+				CloudFoundryApplicationModule module) {
+			if (key != null && index.get(key) == module) {
+				index.remove(key);
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Parses the mapping in the format used by earlier versions, which
+		 * alternates module IDs and application names separated by commas.
+		 * Names containing commas cannot be read back correctly.
+		 */
 		private Map<String, String> convertStringToMap(String str) {
 			if (str == null) {
 				return new HashMap<String, String>();
@@ -193,18 +293,70 @@ public class ModuleCache {
 		 * application name (value)
 		 */
 		private Map<String, String> getLocalModuleToCloudModuleMapping() {
-			IEclipsePreferences node = new InstanceScope().getNode(CloudFoundryPlugin.PLUGIN_ID);
-			String string = node.get(KEY_MODULE_MAPPING_LIST + ":" + getServerId(), "");
-			return convertStringToMap(string);
+			if (moduleMapping == null) {
+				mappingServerId = getServerId();
+				moduleMapping = loadMapping(mappingServerId);
+			}
+			return moduleMapping;
 		}
 
-		private CloudFoundryApplicationModule getCloudModuleByDeployedAppName(String deployedApplicationName) {
-			for (CloudFoundryApplicationModule module : cloudModules) {
-				if (deployedApplicationName.equals(module.getDeployedApplicationName())) {
-					return module;
+		@SuppressWarnings("unchecked")
+		private Map<String, String> loadMapping(String serverId) {
+			IEclipsePreferences node = new InstanceScope().getNode(CloudFoundryPlugin.PLUGIN_ID);
+			String json = node.get(KEY_MODULE_MAPPINGS + ":" + serverId, null);
+			if (json != null) {
+				try {
+					return new HashMap<String, String>(mapper.readValue(json, Map.class));
+				}
+				catch (IOException e) {
+					CloudFoundryPlugin.logError("Failed to read application mappings", e);
+					return new HashMap<String, String>();
 				}
 			}
-			return null;
+			// Mapping stored by an earlier version, which is migrated when the
+			// mapping is next written
+			return convertStringToMap(node.get(KEY_MODULE_MAPPING_LIST + ":" + serverId, null));
+		}
+
+		private void mappingChanged() {
+			mappingDirty = true;
+			cache.scheduleMappingWrite();
+		}
+
+		/**
+		 * Writes the mapping to the given preferences node if it changed. The
+		 * node is not flushed.
+		 * @param node
+		 * @return true if the node was modified
+		 */
+		synchronized boolean writeMapping(IEclipsePreferences node) {
+			if (!mappingDirty) {
+				return false;
+			}
+			String json;
+			try {
+				json = mapper.writeValueAsString(moduleMapping);
+			}
+			catch (IOException e) {
+				CloudFoundryPlugin.logError("Failed to write application mappings", e);
+				return false;
+			}
+			mappingDirty = false;
+
+			for (String serverId : obsoleteMappingServerIds) {
+				node.remove(KEY_MODULE_MAPPINGS + ":" + serverId);
+				node.remove(KEY_MODULE_MAPPING_LIST + ":" + serverId);
+			}
+			obsoleteMappingServerIds.clear();
+
+			CloudFoundryPlugin.trace("Updated mapping: " + json);
+			node.put(KEY_MODULE_MAPPINGS + ":" + mappingServerId, json);
+			node.remove(KEY_MODULE_MAPPING_LIST + ":" + mappingServerId);
+			return true;
+		}
+
+		private CloudFoundryApplicationModule getCloudModuleByDeployedAppName(String deployedApplicationName) {
+			return modulesByDeployedName.get(deployedApplicationName);
 		}
 
 		/**
@@ -221,36 +373,19 @@ public class ModuleCache {
 		 * @return
 		 */
 		private CloudFoundryApplicationModule getCloudModuleToLocalModuleName(String localName) {
-			for (CloudFoundryApplicationModule module : cloudModules) {
-				if (localName.equals(module.getName())) {
-					return module;
-				}
-			}
-			return null;
+			return modulesByLocalName.get(localName);
 		}
 
 		private String getServerId() {
 			return server.getAttribute(CloudFoundryServer.PROP_SERVER_ID, (String) null);
 		}
 
-		private void setLocalModuleToCloudModuleMapping(Map<String, String> list) {
-			String string = convertMapToString(list);
-			IEclipsePreferences node = new InstanceScope().getNode(CloudFoundryPlugin.PLUGIN_ID);
-			CloudFoundryPlugin.trace("Updated mapping: " + string);
-			node.put(KEY_MODULE_MAPPING_LIST + ":" + getServerId(), string);
-			try {
-				node.flush();
-			}
-			catch (BackingStoreException e) {
-				CloudFoundryPlugin
-						.getDefault()
-						.getLog()
-						.log(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID,
-								"Failed to update application mappings", e));
-			}
-		}
-
-		synchronized CloudFoundryApplicationModule getExistingCloudModule(IModule module) {
+		/**
+		 * 
+		 * @param module local module
+		 * @return existing cloud module for the given local module, or null
+		 */
+		public synchronized CloudFoundryApplicationModule getExistingCloudModule(IModule module) {
 			if (module == null) {
 				return null;
 			}
@@ -276,6 +411,16 @@ public class ModuleCache {
 			return null;
 		}
 
+		/**
+		 * 
+		 * @param deployedApplicationName
+		 * @return existing cloud module for the given deployed application
+		 * name, or null
+		 */
+		public synchronized CloudFoundryApplicationModule getExistingCloudModule(String deployedApplicationName) {
+			return deployedApplicationName != null ? getCloudModuleByDeployedAppName(deployedApplicationName) : null;
+		}
+
 		synchronized CloudFoundryApplicationModule getOrCreateCloudModule(IModule module) {
 
 			// See if the cloud module for the given local IModule has been
@@ -303,11 +448,16 @@ public class ModuleCache {
 			return appModule;
 		}
 
-		void updateServerId(String oldServerId, String newServerId) {
-			IEclipsePreferences node = new InstanceScope().getNode(CloudFoundryPlugin.PLUGIN_ID);
-			String string = node.get(KEY_MODULE_MAPPING_LIST + ":" + oldServerId, "");
-			node.remove(KEY_MODULE_MAPPING_LIST + ":" + oldServerId);
-			node.put(KEY_MODULE_MAPPING_LIST + ":" + newServerId, string);
+		synchronized void updateServerId(String oldServerId, String newServerId) {
+			if (moduleMapping == null) {
+				mappingServerId = oldServerId;
+				moduleMapping = loadMapping(oldServerId);
+			}
+			if (mappingServerId == null ? newServerId != null : !mappingServerId.equals(newServerId)) {
+				obsoleteMappingServerIds.add(mappingServerId);
+				mappingServerId = newServerId;
+				mappingChanged();
+			}
 		}
 
 		public synchronized void setApplicationMemoryChoices(int[] applicationMemoryChoices) {
@@ -320,12 +470,33 @@ public class ModuleCache {
 	}
 
 	/**
-	 * List of appName, module id pairs.
+	 * List of appName, module id pairs, as stored by earlier versions.
 	 */
 	static final String KEY_MODULE_MAPPING_LIST = "org.cloudfoundry.ide.eclipse.moduleMapping";
 
+	/**
+	 * JSON map of module id to appName.
+	 */
+	public static final String KEY_MODULE_MAPPINGS = "org.cloudfoundry.ide.eclipse.moduleMappings";
+
+	/**
+	 * How long after a change the module mappings are written, so that
+	 * changes made in the meantime are written together.
+	 */
+	static final long MAPPING_WRITE_DELAY = 2000;
+
+	private static final ObjectMapper mapper = new ObjectMapper();
+
 	private Map<IServer, ServerData> dataByServer;
 
+	private final Job mappingWriteJob = new Job("Saving application mappings") {
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			writeMappings();
+			return Status.OK_STATUS;
+		}
+	};
+
 	private IServerLifecycleListener listener = new IServerLifecycleListener() {
 
 		public void serverAdded(IServer server) {
@@ -345,16 +516,51 @@ public class ModuleCache {
 	public ModuleCache() {
 		dataByServer = new HashMap<IServer, ServerData>();
 		ServerCore.addServerLifecycleListener(listener);
+		mappingWriteJob.setSystem(true);
 	}
 
 	public void dispose() {
 		ServerCore.removeServerLifecycleListener(listener);
+		mappingWriteJob.cancel();
+		writeMappings();
+	}
+
+	void scheduleMappingWrite() {
+		mappingWriteJob.schedule(MAPPING_WRITE_DELAY);
+	}
+
+	/**
+	 * Writes the module mappings that changed since they were last written,
+	 * and flushes the preferences.
+	 */
+	protected void writeMappings() {
+		List<ServerData> allData;
+		synchronized (this) {
+			allData = new ArrayList<ServerData>(dataByServer.values());
+		}
+		IEclipsePreferences node = new InstanceScope().getNode(CloudFoundryPlugin.PLUGIN_ID);
+		boolean modified = false;
+		for (ServerData data : allData) {
+			modified |= data.writeMapping(node);
+		}
+		if (modified) {
+			try {
+				node.flush();
+			}
+			catch (BackingStoreException e) {
+				CloudFoundryPlugin
+						.getDefault()
+						.getLog()
+						.log(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID,
+								"Failed to update application mappings", e));
+			}
+		}
 	}
 
 	public synchronized ServerData getData(IServer server) {
 		ServerData data = dataByServer.get(server);
 		if (data == null && server != null) {
-			data = new ServerData(server);
+			data = new ServerData(server, this);
 			dataByServer.put(server, data);
 		}
 		return data;
@@ -367,6 +573,7 @@ public class ModuleCache {
 		if (serverId != null) {
 			IEclipsePreferences node = new InstanceScope().getNode(CloudFoundryPlugin.PLUGIN_ID);
 			node.remove(KEY_MODULE_MAPPING_LIST + ":" + serverId);
+			node.remove(KEY_MODULE_MAPPINGS + ":" + serverId);
 			try {
 				node.flush();
 			}
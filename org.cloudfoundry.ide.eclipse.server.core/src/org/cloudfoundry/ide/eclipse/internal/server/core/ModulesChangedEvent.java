@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudFoundryApplicationModule;
+import org.eclipse.wst.server.core.IModule;
+
+/**
+ * Fired when updating the modules of a server from the deployed applications
+ * added, changed or removed modules. Modules whose application did not change
+ * are not included.
+ */
+public class ModulesChangedEvent extends CloudServerEvent {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<CloudFoundryApplicationModule> addedModules;
+
+	private final List<CloudFoundryApplicationModule> changedModules;
+
+	private final List<IModule> removedModules;
+
+	public ModulesChangedEvent(CloudFoundryServer server, List<CloudFoundryApplicationModule> addedModules,
+			List<CloudFoundryApplicationModule> changedModules, List<IModule> removedModules) {
+		super(server, EVENT_MODULES_CHANGED);
+		this.addedModules = Collections.unmodifiableList(addedModules);
+		this.changedModules = Collections.unmodifiableList(changedModules);
+		this.removedModules = Collections.unmodifiableList(removedModules);
+	}
+
+	/**
+	 *
+	 * @return modules created for newly deployed applications
+	 */
+	public List<CloudFoundryApplicationModule> getAddedModules() {
+		return addedModules;
+	}
+
+	/**
+	 *
+	 * @return modules whose deployed application changed
+	 */
+	public List<CloudFoundryApplicationModule> getChangedModules() {
+		return changedModules;
+	}
+
+	/**
+	 *
+	 * @return local modules whose application no longer exists
+	 */
+	public List<IModule> getRemovedModules() {
+		return removedModules;
+	}
+
+}
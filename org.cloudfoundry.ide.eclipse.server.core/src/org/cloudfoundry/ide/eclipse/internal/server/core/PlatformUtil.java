@@ -11,6 +11,7 @@
 package org.cloudfoundry.ide.eclipse.internal.server.core;
 
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.jobs.Job;
 
 public class PlatformUtil {
 
@@ -39,4 +40,20 @@ public class PlatformUtil {
 		return os;
 	}
 
+	/**
+	 * Schedules the job to run after the given delay. A sleeping job is not
+	 * rescheduled, so it is woken up after the delay instead. A running job is
+	 * scheduled again once it completes.
+	 * @param job
+	 * @param delay in milliseconds
+	 */
+	public static void scheduleOrWakeUp(Job job, long delay) {
+		if (job.getState() == Job.SLEEPING) {
+			job.wakeUp(delay);
+		}
+		else {
+			job.schedule(delay);
+		}
+	}
+
 }
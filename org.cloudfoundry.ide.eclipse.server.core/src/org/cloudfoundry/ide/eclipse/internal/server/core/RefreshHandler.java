@@ -10,7 +10,14 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.core;
 
-import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudOperationsConstants;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudApplication.AppState;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudFoundryApplicationModule;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudFoundryServerBehaviour;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.RefreshSchedule;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
@@ -21,6 +28,17 @@ import org.eclipse.wst.server.core.IServer;
  * Handles refresh operations across the Cloud Foundry Eclipse plugin, including
  * stopping and starting ongoing refresh operations, as well as notifying
  * listeners on a refresh event.
+ * <p/>
+ * Periodic refresh is not started when connecting to the server. It is only
+ * started by {@link #resume()} when the server becomes visible to the user,
+ * as reported by {@link CloudFoundryCallback#isServerVisible(CloudFoundryServer)},
+ * and pauses once the server is no longer visible.
+ * <p/>
+ * When started without an interval, refresh is adaptive: see
+ * {@link RefreshSchedule}.
+ * <p/>
+ * Refreshes are run when the {@link RefreshScheduler} allows, which limits
+ * how many servers on the same Cloud Controller host refresh at once.
  * 
  */
 public class RefreshHandler {
@@ -35,8 +53,30 @@ public class RefreshHandler {
 
 	private final CloudFoundryServer cloudServer;
 
+	private final RefreshSchedule schedule;
+
+	private final RefreshScheduler scheduler;
+
+	private boolean adaptive = false;
+
+	private boolean paused = false;
+
+	private int suspendingOperations = 0;
+
+	private boolean restartAfterOperations = false;
+
 	public RefreshHandler(CloudFoundryServer cloudServer) {
+		this(cloudServer, new RefreshSchedule());
+	}
+
+	public RefreshHandler(CloudFoundryServer cloudServer, RefreshSchedule schedule) {
+		this(cloudServer, schedule, RefreshScheduler.getDefault());
+	}
+
+	public RefreshHandler(CloudFoundryServer cloudServer, RefreshSchedule schedule, RefreshScheduler scheduler) {
 		this.cloudServer = cloudServer;
+		this.schedule = schedule;
+		this.scheduler = scheduler;
 		this.refreshJob = new BehaviourRefreshJob();
 	}
 
@@ -49,27 +89,134 @@ public class RefreshHandler {
 	}
 
 	/**
-	 * Start refresh operation after the given interval.
+	 * Start refresh operation after the given interval. The operation is then
+	 * repeated at the same interval.
 	 * @param interval if interval > 0 operation will start. If interval <= -1,
 	 * operation will stop at next available opportunity.
 	 */
 	public synchronized void start(long interval) {
+		adaptive = false;
 		doStart(interval);
 	}
 
 	/**
-	 * Starts a refresh operation. Implementing classes can specify a default
-	 * interval time before the operation begins.
+	 * Starts an adaptive refresh operation, which is fast to begin with, as it
+	 * is typically started after the user connected to the server or completed
+	 * an operation.
 	 */
 	public synchronized void start() {
-		interval = CloudOperationsConstants.DEFAULT_INTERVAL;
-		doStart(interval);
+		adaptive = true;
+		schedule.operationCompleted();
+		doStart(schedule.getFastInterval());
+	}
+
+	/**
+	 * Notifies that a user operation completed, so that changes to the
+	 * deployed applications are expected. If adaptive refresh is running, it
+	 * is made fast again.
+	 */
+	public synchronized void operationCompleted() {
+		if (adaptive && interval > -1) {
+			schedule.operationCompleted();
+			doStart(schedule.getFastInterval());
+		}
+	}
+
+	/**
+	 * Stops the refresh while an operation that changes the deployed
+	 * applications runs. Several operations may run concurrently, for
+	 * example when modules are published concurrently, and the refresh is
+	 * only restarted once all of them have ended.
+	 * @see #resumeAfterOperation()
+	 */
+	public synchronized void suspendForOperation() {
+		if (suspendingOperations++ == 0) {
+			restartAfterOperations = interval > -1;
+			stop();
+		}
+	}
+
+	/**
+	 * Notifies that an operation that suspended the refresh has ended. Once
+	 * no such operation is running, an adaptive refresh is started if a
+	 * refresh was running before the operations, or if the server became
+	 * visible in the meantime.
+	 */
+	public synchronized void resumeAfterOperation() {
+		if (suspendingOperations > 0 && --suspendingOperations == 0 && restartAfterOperations) {
+			restartAfterOperations = false;
+			start();
+		}
+	}
+
+	/**
+	 * Starts an adaptive refresh operation when the server becomes visible, or
+	 * resumes one that was paused because the server was not visible. Does
+	 * nothing if the server is not connected or a refresh is already running.
+	 */
+	public synchronized void resume() {
+		if (suspendingOperations > 0) {
+			restartAfterOperations = true;
+		}
+		else if (interval > -1) {
+			if (paused) {
+				paused = false;
+				scheduler.schedule(this, 0);
+			}
+		}
+		else if (isConnected()) {
+			start();
+		}
+	}
+
+	public synchronized boolean isPaused() {
+		return paused;
 	}
 
 	protected void doStart(long interval) {
+		this.interval = interval;
+		paused = false;
 		if (interval > -1) {
-			refreshJob.schedule(interval);
+			scheduler.schedule(this, interval);
+		}
+		else {
+			scheduler.cancel(this);
+		}
+	}
+
+	/**
+	 * 
+	 * @return host of the server's Cloud Controller, used to limit how many
+	 * servers on the same host refresh at once.
+	 */
+	protected String getRefreshHost() {
+		String url = cloudServer.getUrl();
+		if (url != null) {
+			try {
+				return new URL(url).getHost();
+			}
+			catch (MalformedURLException e) {
+				// Use the URL as is
+			}
 		}
+		return url;
+	}
+
+	/**
+	 * 
+	 * @return id of the WST server, used to boost the refresh of servers
+	 * that are shown to the user.
+	 */
+	protected String getServerId() {
+		return cloudServer.getServer().getId();
+	}
+
+	/**
+	 * Runs a refresh now. Invoked by the {@link RefreshScheduler}, which
+	 * must be notified once the refresh completes.
+	 */
+	protected void runScheduledRefresh() {
+		refreshJob.schedule();
 	}
 
 	/**
@@ -87,16 +234,82 @@ public class RefreshHandler {
 		ServerEventHandler.getDefault().fireServerRefreshed(cloudServer);
 	}
 
-	protected void refreshFromJob(IProgressMonitor monitor) {
+	/**
+	 * Refreshes the application modules. A refresh event is only fired if
+	 * any module changed, so that listeners are not refreshed on every run
+	 * of a periodic refresh.
+	 * @param monitor
+	 * @return true if any application module was added, changed or removed
+	 */
+	protected boolean refreshFromJob(IProgressMonitor monitor) {
+		boolean modulesChanged = false;
 		if (shouldRefresh()) {
-			fireRefreshEvent(monitor);
+			CloudFoundryServerBehaviour behaviour = cloudServer.getBehaviour();
+			if (behaviour != null) {
+				modulesChanged = behaviour.refreshModules(monitor);
+			}
+			if (modulesChanged) {
+				fireRefreshEvent(monitor);
+			}
 		}
+		return modulesChanged;
 	}
 
 	protected synchronized boolean shouldRefresh() {
 		return interval > -1;
 	}
 
+	protected boolean isConnected() {
+		IServer server = cloudServer.getServer();
+		return server != null && server.getServerState() == IServer.STATE_STARTED;
+	}
+
+	/**
+	 * 
+	 * @return true if any application is staging or starting, or started with
+	 * fewer running instances than requested.
+	 */
+	protected boolean isStaging() {
+		for (CloudFoundryApplicationModule module : cloudServer.getExistingCloudModules()) {
+			if (module.getState() == IServer.STATE_STARTING) {
+				return true;
+			}
+			CloudApplication application = module.getApplication();
+			if (application != null && application.getState() == AppState.STARTED
+					&& application.getRunningInstances() < application.getInstances()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Runs a refresh, and schedules the next one. Adaptive refresh pauses
+	 * instead if the server is not visible.
+	 */
+	protected void runRefresh(IProgressMonitor monitor) {
+		synchronized (this) {
+			if (adaptive && interval > -1 && !CloudFoundryPlugin.getCallback().isServerVisible(cloudServer)) {
+				paused = true;
+				return;
+			}
+		}
+
+		boolean modulesChanged = refreshFromJob(monitor);
+
+		long nextInterval = adaptive ? schedule.getNextInterval(modulesChanged, isStaging()) : interval;
+
+		synchronized (this) {
+			// The refresh may have been stopped in the meantime
+			if (interval > 0) {
+				if (adaptive) {
+					interval = nextInterval;
+				}
+				scheduler.schedule(this, interval);
+			}
+		}
+	}
+
 	/**
 	 * Standard Behaviour refresh job, which refreshes the application modules
 	 * through Behaviour API.
@@ -112,12 +325,14 @@ public class RefreshHandler {
 		@Override
 		public IStatus run(IProgressMonitor monitor) {
 
-			if (RefreshHandler.this.cloudServer.getServer().getServerState() == IServer.STATE_STARTED) {
-				RefreshHandler.this.refreshFromJob(monitor);
-				if (interval > 0) {
-					schedule(interval);
+			try {
+				if (RefreshHandler.this.isConnected()) {
+					RefreshHandler.this.runRefresh(monitor);
 				}
 			}
+			finally {
+				scheduler.refreshCompleted(RefreshHandler.this);
+			}
 
 			return Status.OK_STATUS;
 
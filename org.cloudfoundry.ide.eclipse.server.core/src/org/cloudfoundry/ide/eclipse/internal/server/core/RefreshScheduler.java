@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudOperationsConstants;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Decides when the background refresh of each server runs, across all Cloud
+ * Foundry servers. Refresh handlers ask for their next refresh to be
+ * scheduled, and are told when to run it.
+ * <p/>
+ * Servers on the same Cloud Controller host are refreshed at most
+ * {@link CloudOperationsConstants#MAX_REFRESHES_PER_HOST} at a time, and
+ * refreshes of such servers are started at least
+ * {@link CloudOperationsConstants#REFRESH_STAGGER_INTERVAL} apart, so that
+ * servers defined for many orgs and spaces of the same Cloud Foundry do not
+ * all refresh at once. Boosted servers, typically those whose editor is
+ * visible, are refreshed before other servers that are due, and are not
+ * staggered.
+ */
+public class RefreshScheduler {
+
+	private static RefreshScheduler scheduler;
+
+	private final int maxPerHost;
+
+	private final long staggerInterval;
+
+	private final Map<RefreshHandler, Long> dueTimes = new LinkedHashMap<RefreshHandler, Long>();
+
+	private final Set<RefreshHandler> running = new HashSet<RefreshHandler>();
+
+	private final Map<String, Integer> runningPerHost = new HashMap<String, Integer>();
+
+	private final Map<String, Long> lastStartPerHost = new HashMap<String, Long>();
+
+	private Set<String> boostedServerIds = Collections.emptySet();
+
+	private long nextDispatchTime = -1;
+
+	private final Job dispatchJob;
+
+	public static synchronized RefreshScheduler getDefault() {
+		if (scheduler == null) {
+			scheduler = new RefreshScheduler(CloudOperationsConstants.MAX_REFRESHES_PER_HOST,
+					CloudOperationsConstants.REFRESH_STAGGER_INTERVAL);
+		}
+		return scheduler;
+	}
+
+	/**
+	 *
+	 * @param maxPerHost maximum number of servers on the same host refreshed
+	 * at the same time
+	 * @param staggerInterval in milliseconds, minimum time between starting
+	 * refreshes of servers on the same host
+	 */
+	public RefreshScheduler(int maxPerHost, long staggerInterval) {
+		this.maxPerHost = maxPerHost;
+		this.staggerInterval = staggerInterval;
+		this.dispatchJob = new Job("Scheduling server refresh") {
+
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				dispatch();
+				return Status.OK_STATUS;
+			}
+
+		};
+		dispatchJob.setSystem(true);
+	}
+
+	/**
+	 * Schedules the next refresh of the given handler, replacing any refresh
+	 * already scheduled for it. If the handler is refreshing, the next
+	 * refresh runs once the current one has completed.
+	 * @param handler
+	 * @param delay in milliseconds
+	 */
+	public synchronized void schedule(RefreshHandler handler, long delay) {
+		long time = getCurrentTime() + Math.max(0, delay);
+		dueTimes.put(handler, time);
+		scheduleDispatch(time);
+	}
+
+	/**
+	 * Removes any refresh scheduled for the given handler. A refresh that is
+	 * already running is not stopped.
+	 * @param handler
+	 */
+	public synchronized void cancel(RefreshHandler handler) {
+		dueTimes.remove(handler);
+	}
+
+	/**
+	 * Notifies that a refresh that was started by this scheduler has
+	 * completed, whether or not the handler scheduled another one.
+	 * @param handler
+	 */
+	public synchronized void refreshCompleted(RefreshHandler handler) {
+		if (running.remove(handler)) {
+			String host = handler.getRefreshHost();
+			Integer count = runningPerHost.get(host);
+			if (count != null && count > 1) {
+				runningPerHost.put(host, count - 1);
+			}
+			else {
+				runningPerHost.remove(host);
+			}
+		}
+		if (!dueTimes.isEmpty()) {
+			scheduleDispatch(getCurrentTime());
+		}
+	}
+
+	/**
+	 * Sets the servers whose refresh takes precedence over that of other
+	 * servers, replacing any previously boosted servers.
+	 * @param serverIds ids of the WST servers
+	 */
+	public synchronized void setBoostedServers(Collection<String> serverIds) {
+		boostedServerIds = new HashSet<String>(serverIds);
+		if (!dueTimes.isEmpty()) {
+			scheduleDispatch(getCurrentTime());
+		}
+	}
+
+	public synchronized boolean isBoosted(RefreshHandler handler) {
+		return boostedServerIds.contains(handler.getServerId());
+	}
+
+	protected void scheduleDispatch(long time) {
+		if (nextDispatchTime > 0 && nextDispatchTime <= time) {
+			return;
+		}
+		nextDispatchTime = time;
+		long delay = Math.max(0, time - getCurrentTime());
+		PlatformUtil.scheduleOrWakeUp(dispatchJob, delay);
+	}
+
+	/**
+	 * Starts the due refreshes allowed by the per host limits, boosted
+	 * servers first, and schedules the next dispatch.
+	 */
+	protected void dispatch() {
+		List<RefreshHandler> toStart = new ArrayList<RefreshHandler>();
+		synchronized (this) {
+			nextDispatchTime = -1;
+			final long now = getCurrentTime();
+
+			List<RefreshHandler> due = new ArrayList<RefreshHandler>();
+			long next = Long.MAX_VALUE;
+			for (Map.Entry<RefreshHandler, Long> entry : dueTimes.entrySet()) {
+				if (entry.getValue() <= now) {
+					if (!running.contains(entry.getKey())) {
+						due.add(entry.getKey());
+					}
+				}
+				else {
+					next = Math.min(next, entry.getValue());
+				}
+			}
+
+			Collections.sort(due, new Comparator<RefreshHandler>() {
+				public int compare(RefreshHandler handler1, RefreshHandler handler2) {
+					boolean boosted1 = isBoosted(handler1);
+					if (boosted1 != isBoosted(handler2)) {
+						return boosted1 ? -1 : 1;
+					}
+					return dueTimes.get(handler1).compareTo(dueTimes.get(handler2));
+				}
+			});
+
+			for (RefreshHandler handler : due) {
+				String host = handler.getRefreshHost();
+				Integer count = runningPerHost.get(host);
+				if (count != null && count >= maxPerHost) {
+					// Dispatched again when a refresh on the host completes
+					continue;
+				}
+				Long lastStart = lastStartPerHost.get(host);
+				if (!isBoosted(handler) && lastStart != null && now < lastStart + staggerInterval) {
+					next = Math.min(next, lastStart + staggerInterval);
+					continue;
+				}
+				dueTimes.remove(handler);
+				running.add(handler);
+				runningPerHost.put(host, count != null ? count + 1 : 1);
+				lastStartPerHost.put(host, now);
+				toStart.add(handler);
+			}
+
+			if (next < Long.MAX_VALUE) {
+				scheduleDispatch(next);
+			}
+		}
+
+		for (RefreshHandler handler : toStart) {
+			handler.runScheduledRefresh();
+		}
+	}
+
+	protected long getCurrentTime() {
+		return System.currentTimeMillis();
+	}
+
+}
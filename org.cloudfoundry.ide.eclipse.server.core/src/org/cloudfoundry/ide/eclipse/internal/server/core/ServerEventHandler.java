@@ -1,7 +1,11 @@
 package org.cloudfoundry.ide.eclipse.internal.server.core;
 
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudFoundryApplicationModule;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudOperationsConstants;
+import org.eclipse.wst.server.core.IModule;
 
 /*******************************************************************************
  * Copyright (c) 2013 GoPivotal, Inc.
@@ -17,6 +21,12 @@ import java.util.concurrent.CopyOnWriteArrayList;
 /**
  * Fires server refresh events. Only one handler is active per workbench runtime
  * session.
+ * <p/>
+ * Events are delivered asynchronously, in the order they were fired, by an
+ * {@link AsyncEventDispatcher}. Events of the same type for the same server
+ * that are fired in quick succession are delivered once, except for
+ * {@link ModulesChangedEvent}, which are always delivered as each lists
+ * different modules.
  * 
  */
 public class ServerEventHandler {
@@ -30,14 +40,29 @@ public class ServerEventHandler {
 		return handler;
 	}
 
-	private final List<CloudServerListener> applicationListeners = new CopyOnWriteArrayList<CloudServerListener>();
+	private final AsyncEventDispatcher<CloudServerListener, CloudServerEvent> dispatcher = new AsyncEventDispatcher<CloudServerListener, CloudServerEvent>(
+			"Notifying Cloud Foundry server listeners", CloudOperationsConstants.EVENT_COALESCE_DELAY) {
+
+		@Override
+		protected Object getCoalescingKey(CloudServerEvent event) {
+			if (event instanceof ModulesChangedEvent) {
+				return null;
+			}
+			return Arrays.asList(event.getServer(), event.getType());
+		}
+
+		@Override
+		protected void deliver(CloudServerListener listener, CloudServerEvent event) {
+			listener.serverChanged(event);
+		}
+	};
 
 	public void addServerListener(CloudServerListener listener) {
-		applicationListeners.add(listener);
+		dispatcher.addListener(listener);
 	}
 
 	public void removeServerListener(CloudServerListener listener) {
-		applicationListeners.remove(listener);
+		dispatcher.removeListener(listener);
 	}
 
 	public void fireInstancesUpdated(CloudFoundryServer server) {
@@ -56,10 +81,24 @@ public class ServerEventHandler {
 		fireServerEvent(new CloudServerEvent(server, CloudServerEvent.EVENT_SERVER_REFRESHED));
 	}
 
+	/**
+	 * Notifies that requests to the server have been suspended or resumed, as
+	 * the server was found to be unreachable or reachable again.
+	 */
+	public void fireConnectivityChanged(CloudFoundryServer server) {
+		fireServerEvent(new CloudServerEvent(server, CloudServerEvent.EVENT_CONNECTIVITY_CHANGED));
+	}
+
+	/**
+	 * Notifies that application modules were added, changed or removed when
+	 * the modules were updated from the deployed applications.
+	 */
+	public void fireModulesChanged(CloudFoundryServer server, List<CloudFoundryApplicationModule> addedModules,
+			List<CloudFoundryApplicationModule> changedModules, List<IModule> removedModules) {
+		fireServerEvent(new ModulesChangedEvent(server, addedModules, changedModules, removedModules));
+	}
+
 	private void fireServerEvent(CloudServerEvent event) {
-		CloudServerListener[] listeners = applicationListeners.toArray(new CloudServerListener[0]);
-		for (CloudServerListener listener : listeners) {
-			listener.serverChanged(event);
-		}
+		dispatcher.dispatch(event);
 	}
 }
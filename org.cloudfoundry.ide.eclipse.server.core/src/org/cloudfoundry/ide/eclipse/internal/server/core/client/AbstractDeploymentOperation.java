@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.core.client;
 
+import java.util.Collection;
+
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 
@@ -27,8 +29,9 @@ public abstract class AbstractDeploymentOperation implements ICloudFoundryOperat
 
 	public void run(IProgressMonitor monitor) throws CoreException {
 		// Deployment operations may be long running so stop refresh
-		// until operation completes
-		behaviour.getRefreshHandler().stop();
+		// until operation completes, and any other deployment operation
+		// running concurrently as well
+		behaviour.getRefreshHandler().suspendForOperation();
 		try {
 			performOperation(monitor);
 		}
@@ -37,11 +40,32 @@ public abstract class AbstractDeploymentOperation implements ICloudFoundryOperat
 			// even
 			// if an exception is thrown. It may, for example, allow listeners
 			// to update the UI in case an app failed to deploy
-			behaviour.refreshModules(monitor);
-			behaviour.getRefreshHandler().fireRefreshEvent(monitor);
+			Collection<String> affectedApplications = getAffectedApplications();
+			if (affectedApplications != null) {
+				behaviour.refreshApplicationModules(affectedApplications, monitor);
+			}
+			else {
+				behaviour.refreshModules(monitor);
+				behaviour.getRefreshHandler().fireRefreshEvent(monitor);
+			}
+
+			// Restart refresh if it was running, fast at first as the app may
+			// still be staging
+			behaviour.getRefreshHandler().resumeAfterOperation();
 		}
 	}
 
+	/**
+	 * 
+	 * @return deployed names of the applications affected by the operation,
+	 * whose modules are refreshed after the operation. Null if the operation
+	 * may have added or removed deployed applications, in which case all
+	 * modules are refreshed.
+	 */
+	protected Collection<String> getAffectedApplications() {
+		return null;
+	}
+
 	protected abstract void performOperation(IProgressMonitor monitor) throws CoreException;
 
 }
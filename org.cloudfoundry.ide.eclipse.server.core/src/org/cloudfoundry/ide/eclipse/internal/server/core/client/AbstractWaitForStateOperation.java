@@ -16,48 +16,68 @@ import org.cloudfoundry.ide.eclipse.internal.server.core.CloudErrorUtil;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServer;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.springframework.util.Assert;
 
 /**
- * Waits until a deployed application reaches an expected state.
+ * Waits until a deployed application reaches an expected state. The state is
+ * checked through the server's {@link ApplicationStateWatcher}, so that
+ * operations waiting at the same time share requests to the server.
  */
-public abstract class AbstractWaitForStateOperation extends WaitWithProgressJob {
+public abstract class AbstractWaitForStateOperation {
 	private final CloudFoundryServer cloudServer;
 
 	private final CloudFoundryApplicationModule appModule;
 
+	private final long timeout;
+
 	public AbstractWaitForStateOperation(CloudFoundryServer cloudServer, CloudFoundryApplicationModule appModule) {
 		this(cloudServer, appModule, 10, 3000);
 	}
 
+	/**
+	 * 
+	 * @param cloudServer
+	 * @param appModule
+	 * @param attempts together with sleep, determines how long to wait for
+	 * the state
+	 * @param sleep
+	 */
 	public AbstractWaitForStateOperation(CloudFoundryServer cloudServer, CloudFoundryApplicationModule appModule,
 			int attempts, long sleep) {
-		super(attempts, sleep);
 		Assert.notNull(appModule);
 		this.cloudServer = cloudServer;
 		this.appModule = appModule;
+		this.timeout = attempts * sleep;
 	}
 
-	protected boolean internalRunInWait(IProgressMonitor progress) throws CoreException {
-
-		CloudApplication updatedCloudApp = cloudServer.getBehaviour().getApplication(
-				appModule.getDeployedApplicationName(), progress);
-
-		if (updatedCloudApp == null) {
-			throw CloudErrorUtil
-					.toCoreException("No cloud application found while attempting to check application state.");
+	/**
+	 * 
+	 * @param monitor may be null
+	 * @return true if the application reached the state. False if it did not
+	 * within the wait time, or the monitor was cancelled.
+	 * @throws CoreException if the application state could not be checked
+	 */
+	public boolean run(IProgressMonitor monitor) throws CoreException {
+		ApplicationStateWatcher.StateCondition condition = new ApplicationStateWatcher.StateCondition() {
+			@Override
+			public boolean isSatisfied(CloudApplication application) throws CoreException {
+				if (application == null) {
+					throw CloudErrorUtil
+							.toCoreException("No cloud application found while attempting to check application state.");
+				}
+				return isInState(application.getState());
+			}
+		};
+		try {
+			return cloudServer.getBehaviour().getApplicationStateWatcher()
+					.waitFor(appModule.getDeployedApplicationName(), condition, 0, timeout, monitor) != null;
+		}
+		catch (OperationCanceledException e) {
+			return false;
 		}
-
-		return isInState(updatedCloudApp.getState());
-
-	}
-
-	protected boolean shouldRetryOnError(Throwable t) {
-		// If cloud application cannot be resolved due to any errors, stop any
-		// further attempts to check app state.
-		return false;
 	}
 
 	protected abstract boolean isInState(AppState state);
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,409 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudApplication.AppState;
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudErrorUtil;
+import org.cloudfoundry.ide.eclipse.internal.server.core.PlatformUtil;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * Waits for deployed applications of a server to reach a given state. Waiters
+ * register interest in an application through
+ * {@link #watch(String, StateCondition, long, long)} and get a {@link Future}
+ * that completes once the application is in the expected state, instead of
+ * each polling the server in their own thread.
+ * <p/>
+ * A single poll job checks all watched applications at once. A single watched
+ * application is fetched on its own, and several watched applications are
+ * fetched with one request for all applications. The poll interval starts at
+ * {@link CloudOperationsConstants#STATE_WATCH_MIN_INTERVAL}, and grows up to
+ * {@link CloudOperationsConstants#STATE_WATCH_MAX_INTERVAL} while the state
+ * of the watched applications does not change.
+ * <p/>
+ * If an application cannot be checked because its staging has not finished,
+ * or because of a transient connection or server error, it is checked again
+ * on the next poll until the watch times out. Other errors only fail the
+ * watches of the application concerned.
+ */
+public class ApplicationStateWatcher {
+
+	/**
+	 * Condition that a watched application has to meet.
+	 */
+	public static abstract class StateCondition {
+
+		/**
+		 *
+		 * @param application current application, or null if it does not
+		 * exist
+		 * @return true if the application meets the condition
+		 * @throws CoreException to fail the waiter, for example if the
+		 * application does not exist
+		 */
+		public abstract boolean isSatisfied(CloudApplication application) throws CoreException;
+
+	}
+
+	/**
+	 * Application exists and is started.
+	 */
+	public static final StateCondition STARTED = new InStateCondition(AppState.STARTED);
+
+	/**
+	 * Application exists and is stopped.
+	 */
+	public static final StateCondition STOPPED = new InStateCondition(AppState.STOPPED);
+
+	/**
+	 * Application exists, in any state.
+	 */
+	public static final StateCondition EXISTS = new StateCondition() {
+		@Override
+		public boolean isSatisfied(CloudApplication application) {
+			return application != null;
+		}
+	};
+
+	private final CloudFoundryServerBehaviour behaviour;
+
+	private final List<Watch> watches = new ArrayList<Watch>();
+
+	private final Job pollJob;
+
+	private long interval = CloudOperationsConstants.STATE_WATCH_MIN_INTERVAL;
+
+	private long nextPollTime = -1;
+
+	private boolean disposed = false;
+
+	public ApplicationStateWatcher(CloudFoundryServerBehaviour behaviour) {
+		this.behaviour = behaviour;
+		this.pollJob = new Job("Watching application state") {
+
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				poll(monitor);
+				return Status.OK_STATUS;
+			}
+
+		};
+		pollJob.setSystem(true);
+	}
+
+	/**
+	 * Starts watching the given application.
+	 * @param appName deployed application name
+	 * @param condition the application has to meet
+	 * @param initialDelay in milliseconds, before the application is checked
+	 * the first time
+	 * @param timeout in milliseconds, after which the watch completes with a
+	 * null result if the condition is not met
+	 * @return non-null future for the application once it meets the
+	 * condition, or null if the watch timed out. Cancelling the future stops
+	 * the watch.
+	 */
+	public synchronized Future<CloudApplication> watch(String appName, StateCondition condition, long initialDelay,
+			long timeout) {
+		long now = getCurrentTime();
+		Watch watch = new Watch(appName, condition, now + initialDelay, now + timeout);
+		if (disposed) {
+			watch.cancel(false);
+			return watch;
+		}
+		watches.add(watch);
+
+		// A new waiter expects a change soon
+		interval = CloudOperationsConstants.STATE_WATCH_MIN_INTERVAL;
+		schedulePoll(watch.notBefore);
+		return watch;
+	}
+
+	/**
+	 * Watches the given application and waits until it meets the condition.
+	 * @param appName
+	 * @param condition
+	 * @param initialDelay
+	 * @param timeout
+	 * @param monitor may be null
+	 * @return application once it meets the condition, or null if the wait
+	 * timed out
+	 * @throws CoreException if the application could not be checked, or the
+	 * condition failed
+	 * @throws OperationCanceledException if the monitor was cancelled, or the
+	 * watcher was disposed
+	 * @see #watch(String, StateCondition, long, long)
+	 */
+	public CloudApplication waitFor(String appName, StateCondition condition, long initialDelay, long timeout,
+			IProgressMonitor monitor) throws CoreException {
+		return RequestExecutor.get(watch(appName, condition, initialDelay, timeout), monitor);
+	}
+
+	/**
+	 * Stops polling, and cancels all watches.
+	 */
+	public void dispose() {
+		List<Watch> cancelled;
+		synchronized (this) {
+			disposed = true;
+			cancelled = new ArrayList<Watch>(watches);
+			watches.clear();
+		}
+		pollJob.cancel();
+		for (Watch watch : cancelled) {
+			watch.cancel(false);
+		}
+	}
+
+	protected void schedulePoll(long time) {
+		if (nextPollTime > 0 && nextPollTime <= time) {
+			return;
+		}
+		nextPollTime = time;
+		long delay = Math.max(0, time - getCurrentTime());
+		PlatformUtil.scheduleOrWakeUp(pollJob, delay);
+	}
+
+	/**
+	 * Checks all watches that are due with one request, completes the watches
+	 * whose application meets the condition or that timed out, and schedules
+	 * the next check.
+	 * @param monitor
+	 */
+	protected void poll(IProgressMonitor monitor) {
+		long now = getCurrentTime();
+		List<Watch> due = new ArrayList<Watch>();
+		Set<String> appNames = new LinkedHashSet<String>();
+		synchronized (this) {
+			nextPollTime = -1;
+			for (Watch watch : watches) {
+				if (!watch.isDone() && watch.notBefore <= now) {
+					due.add(watch);
+					appNames.add(watch.appName);
+				}
+			}
+		}
+
+		boolean changed = false;
+		if (!due.isEmpty()) {
+			try {
+				Map<String, CoreException> errors = new HashMap<String, CoreException>();
+				Map<String, CloudApplication> applications = getApplications(appNames, errors, monitor);
+				for (Watch watch : due) {
+					CoreException error = errors.get(watch.appName);
+					if (error != null) {
+						if (!isTransientError(error) || now >= watch.deadline) {
+							watch.fail(error);
+						}
+						continue;
+					}
+					CloudApplication application = applications.get(watch.appName);
+					changed |= watch.stateChanged(application);
+					try {
+						if (watch.condition.isSatisfied(application)) {
+							watch.complete(application);
+						}
+						else if (now >= watch.deadline) {
+							watch.complete(null);
+						}
+					}
+					catch (CoreException e) {
+						watch.fail(e);
+					}
+				}
+			}
+			catch (OperationCanceledException e) {
+				// Poll job cancelled. Watches are either cancelled too, or
+				// checked again on the next poll
+			}
+		}
+
+		synchronized (this) {
+			long earliest = Long.MAX_VALUE;
+			for (Iterator<Watch> it = watches.iterator(); it.hasNext();) {
+				Watch watch = it.next();
+				if (watch.isDone()) {
+					it.remove();
+				}
+				else {
+					earliest = Math.min(earliest, watch.notBefore);
+				}
+			}
+			if (disposed || watches.isEmpty()) {
+				return;
+			}
+			if (!due.isEmpty()) {
+				interval = changed ? CloudOperationsConstants.STATE_WATCH_MIN_INTERVAL : Math.min(interval * 2,
+						CloudOperationsConstants.STATE_WATCH_MAX_INTERVAL);
+			}
+			schedulePoll(Math.max(getCurrentTime() + interval, earliest));
+		}
+	}
+
+	/**
+	 *
+	 * @param appNames names of the applications to check. Not empty.
+	 * @param errors receives the error of each application that could not be
+	 * checked, by application name
+	 * @param monitor
+	 * @return current applications for the given names. Applications that do
+	 * not exist or could not be checked are not included.
+	 */
+	protected Map<String, CloudApplication> getApplications(Collection<String> appNames,
+			Map<String, CoreException> errors, IProgressMonitor monitor) {
+		Map<String, CloudApplication> applications = new HashMap<String, CloudApplication>();
+		if (appNames.size() > 1) {
+			try {
+				for (CloudApplication application : behaviour.getApplications(monitor)) {
+					if (appNames.contains(application.getName())) {
+						applications.put(application.getName(), application);
+					}
+				}
+				return applications;
+			}
+			catch (CoreException e) {
+				if (isTransientError(e)) {
+					for (String appName : appNames) {
+						errors.put(appName, e);
+					}
+					return applications;
+				}
+				// Otherwise each application is checked on its own, so that
+				// only the watches of an application that cannot be checked
+				// fail
+			}
+		}
+		for (String appName : appNames) {
+			try {
+				CloudApplication application = behaviour.getApplication(appName, monitor);
+				if (application != null) {
+					applications.put(appName, application);
+				}
+			}
+			catch (CoreException e) {
+				if (!CloudErrorUtil.isNotFoundException(e)) {
+					errors.put(appName, e);
+				}
+			}
+		}
+		return applications;
+	}
+
+	/**
+	 *
+	 * @param error
+	 * @return true if the application may be checked successfully on a later
+	 * poll
+	 */
+	protected static boolean isTransientError(CoreException error) {
+		String category = CloudErrorUtil.getErrorCategory(error);
+		return CloudErrorUtil.CATEGORY_STAGING_NOT_FINISHED.equals(category)
+				|| CloudErrorUtil.CATEGORY_CONNECTION.equals(category)
+				|| CloudErrorUtil.CATEGORY_SERVER_ERROR.equals(category);
+	}
+
+	protected long getCurrentTime() {
+		return System.currentTimeMillis();
+	}
+
+	static class InStateCondition extends StateCondition {
+
+		private final AppState state;
+
+		InStateCondition(AppState state) {
+			this.state = state;
+		}
+
+		@Override
+		public boolean isSatisfied(CloudApplication application) throws CoreException {
+			if (application == null) {
+				throw CloudErrorUtil
+						.toCoreException("No cloud application found while attempting to check application state.");
+			}
+			return state.equals(application.getState());
+		}
+
+	}
+
+	/**
+	 * Future for a watched application, completed by the poll job.
+	 */
+	static class Watch extends FutureTask<CloudApplication> {
+
+		private static final Callable<CloudApplication> NO_TASK = new Callable<CloudApplication>() {
+			public CloudApplication call() {
+				return null;
+			}
+		};
+
+		final String appName;
+
+		final StateCondition condition;
+
+		final long notBefore;
+
+		final long deadline;
+
+		private boolean checked = false;
+
+		private AppState lastState;
+
+		Watch(String appName, StateCondition condition, long notBefore, long deadline) {
+			super(NO_TASK);
+			this.appName = appName;
+			this.condition = condition;
+			this.notBefore = notBefore;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * Records the current state of the application, only accessed by the
+		 * poll job.
+		 * @param application
+		 * @return true if the state changed since the last check
+		 */
+		boolean stateChanged(CloudApplication application) {
+			AppState state = application != null ? application.getState() : null;
+			boolean changed = checked && state != lastState;
+			checked = true;
+			lastState = state;
+			return changed;
+		}
+
+		void complete(CloudApplication application) {
+			set(application);
+		}
+
+		void fail(Throwable error) {
+			setException(error);
+		}
+
+	}
+
+}
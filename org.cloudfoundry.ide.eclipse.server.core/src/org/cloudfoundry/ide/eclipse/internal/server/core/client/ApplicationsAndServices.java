@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.client;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudfoundry.client.lib.domain.ApplicationStats;
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudService;
+
+/**
+ * Applications, services and running application stats of a Cloud Foundry
+ * server, fetched together in one call to
+ * {@link CloudFoundryServerBehaviour#getApplicationsAndServices(boolean, org.eclipse.core.runtime.IProgressMonitor)}
+ */
+public class ApplicationsAndServices {
+
+	private final List<CloudApplication> applications;
+
+	private final List<CloudService> services;
+
+	private final Map<String, ApplicationStats> stats;
+
+	public ApplicationsAndServices(List<CloudApplication> applications, List<CloudService> services,
+			Map<String, ApplicationStats> stats) {
+		this.applications = applications != null ? applications : Collections.<CloudApplication> emptyList();
+		this.services = services != null ? services : Collections.<CloudService> emptyList();
+		this.stats = stats != null ? stats : Collections.<String, ApplicationStats> emptyMap();
+	}
+
+	/**
+	 *
+	 * @return non-null list of applications
+	 */
+	public List<CloudApplication> getApplications() {
+		return applications;
+	}
+
+	/**
+	 *
+	 * @return non-null list of services
+	 */
+	public List<CloudService> getServices() {
+		return services;
+	}
+
+	/**
+	 *
+	 * @param appName
+	 * @return stats for the given application, or null if the application is
+	 * not running, or its stats were not requested or could not be fetched.
+	 */
+	public ApplicationStats getApplicationStats(String appName) {
+		return stats.get(appName);
+	}
+
+}
@@ -10,24 +10,51 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.core.client;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.cloudfoundry.ide.eclipse.internal.server.core.AsyncEventDispatcher;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServer;
 
 /**
  * Listeners can be notified when certain types of behaviour events, like
  * starting or stopping an application, are completed.
+ * <p/>
+ * Events are delivered asynchronously, in the order they were fired, and
+ * never while the handler is locked. Events of the same type for the same
+ * application that are fired in quick succession are delivered once, with the
+ * latest result.
  * 
  */
 public class BehaviourEventHandler {
 
 	private static BehaviourEventHandler handler;
 
-	private Map<BehaviourEventType, List<BehaviourListener>> listenersPerEventType = new HashMap<BehaviourEventType, List<BehaviourListener>>();
+	private final Map<BehaviourListener, Set<BehaviourEventType>> typesPerListener = new ConcurrentHashMap<BehaviourListener, Set<BehaviourEventType>>();
+
+	private final AsyncEventDispatcher<BehaviourListener, BehaviourEvent<?>> dispatcher = new AsyncEventDispatcher<BehaviourListener, BehaviourEvent<?>>(
+			"Notifying Cloud Foundry behaviour listeners", CloudOperationsConstants.EVENT_COALESCE_DELAY) {
+
+		@Override
+		protected boolean accepts(BehaviourListener listener, BehaviourEvent<?> event) {
+			Set<BehaviourEventType> types = typesPerListener.get(listener);
+			return types != null && types.contains(event.getType());
+		}
+
+		@Override
+		protected Object getCoalescingKey(BehaviourEvent<?> event) {
+			return Arrays.asList(event.getServer(), event.getApplicationModule(), event.getType());
+		}
+
+		@Override
+		protected void deliver(BehaviourListener listener, BehaviourEvent<?> event) {
+			listener.handle(event);
+		}
+	};
 
 	public static BehaviourEventHandler getHandler() {
 		if (handler == null) {
@@ -36,20 +63,14 @@ public class BehaviourEventHandler {
 		return handler;
 	}
 
-	public synchronized <T> void notify(CloudFoundryApplicationModule appModule, CloudFoundryServer server, T result,
+	public <T> void notify(CloudFoundryApplicationModule appModule, CloudFoundryServer server, T result,
 			BehaviourEventType type) {
 
 		if (type == null) {
 			return;
 		}
 
-		List<BehaviourListener> listeners = listenersPerEventType.get(type);
-		if (listeners != null) {
-			BehaviourEvent<T> event = new BehaviourEvent<T>(appModule, server, result, type);
-			for (BehaviourListener listener : listeners) {
-				listener.handle(event);
-			}
-		}
+		dispatcher.dispatch(new BehaviourEvent<T>(appModule, server, result, type));
 	}
 
 	public synchronized void addListener(BehaviourListener listener, BehaviourEventType[] types) {
@@ -57,25 +78,23 @@ public class BehaviourEventHandler {
 			return;
 		}
 
-		for (BehaviourEventType type : types) {
-			List<BehaviourListener> listeners = listenersPerEventType.get(type);
-			if (listeners == null) {
-				listeners = new ArrayList<BehaviourListener>();
-				listenersPerEventType.put(type, listeners);
-			}
-			if (!listeners.contains(listener)) {
-				listeners.add(listener);
-			}
+		// Replaced rather than modified, as it is read while events are
+		// dispatched
+		Set<BehaviourEventType> listenerTypes = new HashSet<BehaviourEventType>(Arrays.asList(types));
+		Set<BehaviourEventType> existingTypes = typesPerListener.get(listener);
+		if (existingTypes != null) {
+			listenerTypes.addAll(existingTypes);
 		}
+		typesPerListener.put(listener, Collections.unmodifiableSet(listenerTypes));
+		dispatcher.addListener(listener);
 	}
 
 	public synchronized void removeListener(BehaviourListener listener) {
-		for (Entry<BehaviourEventType, List<BehaviourListener>> entry : listenersPerEventType.entrySet()) {
-			List<BehaviourListener> listeners = entry.getValue();
-			if (listeners != null) {
-				listeners.remove(listener);
-			}
+		if (listener == null) {
+			return;
 		}
+		dispatcher.removeListener(listener);
+		typesPerListener.remove(listener);
 	}
 
 }
@@ -42,6 +42,7 @@ public abstract class BehaviourOperation implements ICloudFoundryOperation {
 	 */
 	protected void refresh(IProgressMonitor monitor) throws CoreException {
 		behaviour.getRefreshHandler().fireRefreshEvent(monitor);
+		behaviour.getRefreshHandler().operationCompleted();
 	}
 
 	protected abstract void performOperation(IProgressMonitor monitor) throws CoreException;
@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.client;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudErrorUtil;
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.osgi.util.NLS;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Stops client requests to a server that cannot be reached, so that callers
+ * fail right away rather than each waiting for a connection timeout. There is
+ * one circuit breaker per server.
+ * <p/>
+ * The circuit is closed while requests succeed. After a number of consecutive
+ * connection failures it opens, and requests fail with a
+ * {@link #CIRCUIT_OPEN_CODE} error without contacting the server. Once the
+ * open interval has elapsed, the circuit is half-open: the next request is let
+ * through as a probe, while other requests still fail. If the probe succeeds,
+ * the circuit closes again. If it fails, the circuit opens again for twice as
+ * long, up to a maximum interval.
+ * <p/>
+ * Only connection failures, that is I/O errors including unknown hosts,
+ * count. Any response from the server, including 4xx and 5xx errors, shows
+ * that the server is reachable. Requests started by the probe itself, in the
+ * same thread, for example to log in, are let through, and their outcome is
+ * left to the probe.
+ */
+public class CircuitBreaker {
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	/**
+	 * Status code of errors thrown for requests that were not sent because the
+	 * circuit is open.
+	 */
+	public static final int CIRCUIT_OPEN_CODE = 4501;
+
+	private static final String CIRCUIT_OPEN_ERROR = "{0} is not reachable. Requests are suspended for {1} seconds before the connection is checked again.";
+
+	private static final String STATE_CHANGE_TRACE = "{0}: circuit changed from {1} to {2}";
+
+	private final String serverName;
+
+	private final int failureThreshold;
+
+	private final long initialOpenInterval;
+
+	private final long maxOpenInterval;
+
+	private State state = State.CLOSED;
+
+	private int failures = 0;
+
+	private long openInterval;
+
+	private long openUntil;
+
+	private boolean probeInProgress = false;
+
+	private Thread probeThread;
+
+	private int probeDepth = 0;
+
+	/**
+	 * Circuit breaker with the default failure threshold and open intervals.
+	 * @param serverName used in error messages
+	 */
+	public CircuitBreaker(String serverName) {
+		this(serverName, CloudOperationsConstants.CIRCUIT_FAILURE_THRESHOLD,
+				CloudOperationsConstants.CIRCUIT_OPEN_INTERVAL, CloudOperationsConstants.CIRCUIT_MAX_OPEN_INTERVAL);
+	}
+
+	/**
+	 *
+	 * @param serverName used in error messages
+	 * @param failureThreshold number of consecutive connection failures that
+	 * open the circuit
+	 * @param initialOpenInterval in milliseconds, how long the circuit stays
+	 * open the first time
+	 * @param maxOpenInterval in milliseconds, maximum time the circuit stays
+	 * open after failed probes
+	 */
+	public CircuitBreaker(String serverName, int failureThreshold, long initialOpenInterval, long maxOpenInterval) {
+		this.serverName = serverName;
+		this.failureThreshold = failureThreshold;
+		this.initialOpenInterval = initialOpenInterval;
+		this.maxOpenInterval = maxOpenInterval;
+		this.openInterval = initialOpenInterval;
+	}
+
+	/**
+	 * Checks whether a request may be sent to the server. Must be followed by
+	 * one of the record methods once the request completes.
+	 * @throws CoreException with a {@link #CIRCUIT_OPEN_CODE} status if the
+	 * circuit is open, or half-open with a probe already in progress.
+	 */
+	public void checkRequest() throws CoreException {
+		State oldState;
+		State newState;
+		synchronized (this) {
+			oldState = state;
+			if (state == State.OPEN && getCurrentTime() >= openUntil) {
+				state = State.HALF_OPEN;
+			}
+			if (state == State.HALF_OPEN && !probeInProgress) {
+				// This request is the probe
+				probeInProgress = true;
+				probeThread = Thread.currentThread();
+				probeDepth = 0;
+			}
+			else if (isNestedInProbe()) {
+				probeDepth++;
+			}
+			else if (state != State.CLOSED) {
+				long remaining = Math.max(0, openUntil - getCurrentTime());
+				throw new CoreException(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID, CIRCUIT_OPEN_CODE,
+						NLS.bind(CIRCUIT_OPEN_ERROR, serverName, (remaining + 999) / 1000), null));
+			}
+			newState = state;
+		}
+		notifyIfChanged(oldState, newState);
+	}
+
+	/**
+	 * Records the outcome of a request allowed by {@link #checkRequest()}.
+	 * @param error null if the request succeeded
+	 */
+	public void recordResult(Throwable error) {
+		if (error instanceof CoreException && isCircuitOpenError((CoreException) error)) {
+			// Says nothing about whether the server is reachable
+			recordCancelled();
+			return;
+		}
+		if (error != null && CloudErrorUtil.CATEGORY_CANCELLED.equals(CloudErrorUtil.getErrorCategory(error))) {
+			recordCancelled();
+			return;
+		}
+
+		boolean connectionFailure = error != null && isConnectionFailure(error);
+		State oldState;
+		State newState;
+		synchronized (this) {
+			if (isNestedInProbe() && probeDepth > 0) {
+				probeDepth--;
+				return;
+			}
+			oldState = state;
+			if (!connectionFailure) {
+				state = State.CLOSED;
+				failures = 0;
+				openInterval = initialOpenInterval;
+				probeInProgress = false;
+				probeThread = null;
+			}
+			else if (state == State.HALF_OPEN) {
+				openInterval = Math.min(openInterval * 2, maxOpenInterval);
+				open();
+			}
+			else if (state == State.CLOSED && ++failures >= failureThreshold) {
+				open();
+			}
+			newState = state;
+		}
+		notifyIfChanged(oldState, newState);
+	}
+
+	/**
+	 * Records that a request allowed by {@link #checkRequest()} was cancelled
+	 * before its outcome was known. A cancelled probe lets the next request
+	 * probe the server instead.
+	 */
+	public synchronized void recordCancelled() {
+		if (isNestedInProbe() && probeDepth > 0) {
+			probeDepth--;
+		}
+		else if (probeThread == Thread.currentThread()) {
+			probeInProgress = false;
+			probeThread = null;
+		}
+	}
+
+	/**
+	 * Closes the circuit, for example when the user explicitly connects to or
+	 * disconnects from the server.
+	 */
+	public void reset() {
+		State oldState;
+		synchronized (this) {
+			oldState = state;
+			state = State.CLOSED;
+			failures = 0;
+			openInterval = initialOpenInterval;
+			probeInProgress = false;
+			probeThread = null;
+		}
+		notifyIfChanged(oldState, State.CLOSED);
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 *
+	 * @return milliseconds until the next probe request is allowed, or 0 if
+	 * requests are allowed now
+	 */
+	public synchronized long getTimeUntilProbe() {
+		return state == State.OPEN ? Math.max(0, openUntil - getCurrentTime()) : 0;
+	}
+
+	/**
+	 *
+	 * @param e
+	 * @return true if the given error was thrown because the circuit is open,
+	 * without contacting the server.
+	 */
+	public static boolean isCircuitOpenError(CoreException e) {
+		return e != null && e.getStatus() != null && e.getStatus().getCode() == CIRCUIT_OPEN_CODE
+				&& CloudFoundryPlugin.PLUGIN_ID.equals(e.getStatus().getPlugin());
+	}
+
+	protected boolean isConnectionFailure(Throwable error) {
+		// The client wraps I/O errors, including unknown hosts, in a
+		// ResourceAccessException. Any other error is a response from the
+		// server.
+		Throwable cause = error instanceof CoreException ? ((CoreException) error).getStatus().getException() : error;
+		return cause instanceof ResourceAccessException;
+	}
+
+	/**
+	 * Invoked outside of any lock when the state of the circuit changes.
+	 * @param oldState
+	 * @param newState
+	 */
+	protected void stateChanged(State oldState, State newState) {
+		// Nothing by default
+	}
+
+	protected long getCurrentTime() {
+		return System.currentTimeMillis();
+	}
+
+	private boolean isNestedInProbe() {
+		return state == State.HALF_OPEN && probeInProgress && probeThread == Thread.currentThread();
+	}
+
+	private void open() {
+		state = State.OPEN;
+		probeInProgress = false;
+		probeThread = null;
+		openUntil = getCurrentTime() + openInterval;
+	}
+
+	private void notifyIfChanged(State oldState, State newState) {
+		if (oldState != newState) {
+			CloudFoundryPlugin.trace(NLS.bind(STATE_CHANGE_TRACE, new Object[] { serverName, oldState, newState }));
+			stateChanged(oldState, newState);
+		}
+	}
+
+}
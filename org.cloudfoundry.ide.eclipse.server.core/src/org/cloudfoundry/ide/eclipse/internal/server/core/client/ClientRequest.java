@@ -18,6 +18,7 @@ import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.osgi.util.NLS;
 
@@ -32,7 +33,9 @@ import org.eclipse.osgi.util.NLS;
  * will attempt a second time.
  * <p/>
  * Subtypes can modify this behaviour and add conditions that will result in
- * further retries aside from connection errors.
+ * further retries aside from connection errors. Waits between reattempts are
+ * determined by a {@link RetryPolicy}, and are terminated right away if the
+ * progress monitor is cancelled.
  * 
  * 
  * @param <T>
@@ -42,6 +45,8 @@ public abstract class ClientRequest<T> {
 
 	private static final String NO_CLIENT_ERROR = "No Cloud Foundry client available to process the following request: {0} ";
 
+	private static final String RETRY_TRACE = "{0}: reattempted {1} time(s) in {2} ms";
+
 	private static final String UNKNOWN_REQUEST_ERROR = "Unknown Cloud Foundry plugin error while trying to perform client call in {0}";
 
 	/**
@@ -49,6 +54,10 @@ public abstract class ClientRequest<T> {
 	 */
 	private final String label;
 
+	private int retryCount = 0;
+
+	private boolean loginFallback = false;
+
 	public ClientRequest(String label) {
 		Assert.isNotNull(label);
 		this.label = label;
@@ -64,15 +73,24 @@ public abstract class ClientRequest<T> {
 
 		SubMonitor subProgress = SubMonitor.convert(monitor, label, 100);
 
-		CloudFoundryOperations client = getClient(subProgress);
-		if (client == null) {
-			throw CloudErrorUtil.toCoreException(NLS.bind(NO_CLIENT_ERROR, label));
+		// Fail right away if the server is known to be unreachable
+		CircuitBreaker circuitBreaker = getCircuitBreaker();
+		if (circuitBreaker != null) {
+			circuitBreaker.checkRequest();
 		}
+
 		T result;
+		long start = System.currentTimeMillis();
+		Throwable error = null;
 		try {
+			CloudFoundryOperations client = getClient(subProgress);
+			if (client == null) {
+				throw CloudErrorUtil.toCoreException(NLS.bind(NO_CLIENT_ERROR, label));
+			}
 			result = runAsClientRequestCheckConnection(client, subProgress);
 		}
 		catch (CoreException ce) {
+			error = ce;
 			// Translate to a error message that the user can understand
 			String connectionError = CloudErrorUtil.getConnectionError(ce);
 			if (connectionError != null) {
@@ -80,7 +98,15 @@ public abstract class ClientRequest<T> {
 			}
 			throw ce;
 		}
+		catch (RuntimeException e) {
+			error = e;
+			throw e;
+		}
 		finally {
+			if (circuitBreaker != null) {
+				circuitBreaker.recordResult(error);
+			}
+			recordMetrics(System.currentTimeMillis() - start, error);
 			subProgress.done();
 		}
 
@@ -88,10 +114,12 @@ public abstract class ClientRequest<T> {
 	}
 
 	/**
-	 * Attempts to execute the client request by first checking proxy settings,
-	 * and if unauthorised/forbidden exceptions thrown the first time, will
-	 * attempt to log in. If that succeeds, it will attempt one more time.
-	 * Otherwise it will fail and not attempt the request any further.
+	 * Attempts to execute the client request by first checking proxy settings
+	 * and whether the client's access token has expired, in which case a login
+	 * is performed first. If unauthorised/forbidden exceptions thrown the first
+	 * time, will attempt to log in. If that succeeds, it will attempt one more
+	 * time. Otherwise it will fail and not attempt the request any further.
+	 * Concurrent logins for the same client share one login.
 	 * @param client
 	 * @param cloudServer
 	 * @param subProgress
@@ -105,7 +133,8 @@ public abstract class ClientRequest<T> {
 		String cloudURL = getCloudServerUrl();
 		CloudFoundryLoginHandler handler = new CloudFoundryLoginHandler(client, cloudURL);
 		try {
-			// Always check if proxy settings have changed.
+			// Proxy settings are cached per server, and only resolved again
+			// after they change
 			handler.updateProxyInClient(client);
 		}
 		catch (CoreException e) {
@@ -114,6 +143,11 @@ public abstract class ClientRequest<T> {
 			CloudFoundryPlugin.logError(e.getMessage());
 		}
 
+		// If the access token is known to have expired (e.g. the background
+		// token refresh did not get a chance to run), log in first rather than
+		// waiting for the request to fail with an authorisation error
+		handler.loginIfTokenExpiring(subProgress, 3, CloudOperationsConstants.LOGIN_INTERVAL);
+
 		try {
 			return runAndWait(client, subProgress);
 		}
@@ -121,6 +155,7 @@ public abstract class ClientRequest<T> {
 			CloudFoundryException cfe = ce.getCause() instanceof CloudFoundryException ? (CloudFoundryException) ce
 					.getCause() : null;
 			if (cfe != null && handler.shouldAttemptClientLogin(cfe)) {
+				loginFallback = true;
 				handler.login(subProgress, 3, CloudOperationsConstants.LOGIN_INTERVAL);
 				return runAndWait(client, subProgress);
 			}
@@ -131,35 +166,41 @@ public abstract class ClientRequest<T> {
 	protected T runAndWait(CloudFoundryOperations client, SubMonitor subProgress) throws CoreException {
 		Throwable error = null;
 
-		boolean reattempt = true;
-		long timeLeft = getTotalTimeWait();
-		while (reattempt) {
-
-			long interval = -1;
-
-			try {
-				return doRun(client, subProgress);
-			}
-			catch (Throwable e) {
-				error = e;
-			}
-
-			interval = getWaitInterval(error, subProgress);
-			timeLeft -= interval;
+		RetryPolicy policy = getRetryPolicy();
+		long start = System.currentTimeMillis();
+		int retries = 0;
 
-			if (interval > 0 && timeLeft >= 0) {
+		try {
+			while (true) {
 
 				try {
-					Thread.sleep(interval);
+					return doRun(client, subProgress);
+				}
+				catch (Throwable e) {
+					error = e;
 				}
-				catch (InterruptedException e) {
-					// Ignore, continue with the next iteration
+
+				long interval = getWaitInterval(error, subProgress);
+				if (interval <= 0) {
+					break;
 				}
 
-				reattempt = true;
+				interval = policy.getInterval(retries, interval);
+				if (!policy.canRetry(System.currentTimeMillis() - start, interval)) {
+					break;
+				}
+
+				if (!policy.sleep(interval, subProgress)) {
+					throw new OperationCanceledException();
+				}
+				retries++;
 			}
-			else {
-				break;
+		}
+		finally {
+			retryCount += retries;
+			if (retries > 0) {
+				CloudFoundryPlugin.trace(NLS.bind(RETRY_TRACE, new Object[] { label, retries,
+						System.currentTimeMillis() - start }));
 			}
 		}
 
@@ -229,6 +270,52 @@ public abstract class ClientRequest<T> {
 	 */
 	protected abstract String getCloudServerUrl() throws CoreException;
 
+	/**
+	 * 
+	 * @return circuit breaker of the server the request is sent to, or null if
+	 * requests should always be sent.
+	 */
+	protected CircuitBreaker getCircuitBreaker() {
+		return null;
+	}
+
+	/**
+	 * Records the latency and outcome of this request in the
+	 * {@link RequestMetrics}.
+	 * @param latency
+	 * @param error null if the request succeeded
+	 */
+	protected void recordMetrics(long latency, Throwable error) {
+		String serverUrl = null;
+		try {
+			serverUrl = getCloudServerUrl();
+		}
+		catch (CoreException e) {
+			// Record without a server
+		}
+		RequestMetrics.getDefault().record(serverUrl, label, latency, error, retryCount, loginFallback);
+	}
+
+	/**
+	 * Policy that determines how long to wait between reattempts, based on the
+	 * interval requested by {@link #getWaitInterval(Throwable, SubMonitor)}.
+	 * By default, waits grow exponentially with jitter, until
+	 * {@link #getTotalTimeWait()} is reached.
+	 * @return non-null retry policy
+	 */
+	protected RetryPolicy getRetryPolicy() {
+		return RetryPolicy.getDefault(getTotalTimeWait());
+	}
+
+	/**
+	 * 
+	 * @return number of reattempts made so far by this request, including
+	 * reattempts after a login.
+	 */
+	public int getRetryCount() {
+		return retryCount;
+	}
+
 	/**
 	 * Total amount of time to wait. If less than the wait interval length, only
 	 * one attempt will be made {@link #getWaitInterval(Throwable, SubMonitor)}
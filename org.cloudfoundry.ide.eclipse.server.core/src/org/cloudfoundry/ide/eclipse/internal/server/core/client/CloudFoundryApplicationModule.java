@@ -206,7 +206,7 @@ public class CloudFoundryApplicationModule extends ExternalModule {
 		return deployedAppName;
 	}
 
-	public ApplicationStats getApplicationStats() {
+	public synchronized ApplicationStats getApplicationStats() {
 		return applicationStats;
 	}
 
@@ -218,7 +218,7 @@ public class CloudFoundryApplicationModule extends ExternalModule {
 		this.startingInfo = startingInfo;
 	}
 
-	public InstancesInfo getInstancesInfo() {
+	public synchronized InstancesInfo getInstancesInfo() {
 		return instancesInfo;
 	}
 
@@ -352,6 +352,18 @@ public class CloudFoundryApplicationModule extends ExternalModule {
 		this.instancesInfo = instancesInfo;
 	}
 
+	/**
+	 * Sets the stats and instances together, so that they are consistent with
+	 * each other.
+	 * @param applicationStats
+	 * @param instancesInfo
+	 */
+	public synchronized void setApplicationStatsAndInstances(ApplicationStats applicationStats,
+			InstancesInfo instancesInfo) {
+		this.applicationStats = applicationStats;
+		this.instancesInfo = instancesInfo;
+	}
+
 	/**
 	 * Maps the application module to an actual deployed application in a CF
 	 * server. It replaces any existing deployment info with one generated from
@@ -95,7 +95,28 @@ public class CloudFoundryClientFactory {
 		return protocol.toUpperCase();
 	}
 
+	/**
+	 * 
+	 * @param url
+	 * @return proxy configuration for the given URL, or null if no proxy
+	 * applies. Cached per URL until the network proxy settings change.
+	 */
 	public static HttpProxyConfiguration getProxy(URL url) {
+		if (url == null) {
+			return null;
+		}
+		CloudFoundryPlugin plugin = CloudFoundryPlugin.getDefault();
+		return plugin != null ? plugin.getProxyConfigurationCache().getProxy(url.toString()) : null;
+	}
+
+	/**
+	 * Resolves the proxy configuration for the given URL from the current
+	 * network proxy settings, bypassing the cache.
+	 * @param url
+	 * @return proxy configuration for the given URL, or null if no proxy
+	 * applies.
+	 */
+	public static HttpProxyConfiguration resolveProxy(URL url) {
 
 		// URL must be set and have a valid protocol in order to determine
 		// which proxy to use
@@ -23,6 +23,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
 
 import org.cloudfoundry.client.lib.CloudCredentials;
 import org.cloudfoundry.client.lib.CloudFoundryException;
@@ -40,6 +41,7 @@ import org.cloudfoundry.client.lib.domain.CloudServiceOffering;
 import org.cloudfoundry.client.lib.domain.CloudSpace;
 import org.cloudfoundry.client.lib.domain.InstancesInfo;
 import org.cloudfoundry.client.lib.domain.Staging;
+import org.cloudfoundry.ide.eclipse.internal.server.core.AccessTokenHandler;
 import org.cloudfoundry.ide.eclipse.internal.server.core.ApplicationAction;
 import org.cloudfoundry.ide.eclipse.internal.server.core.ApplicationUrlLookupService;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CachingApplicationArchive;
@@ -48,6 +50,7 @@ import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryLoginHandle
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServer;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudUtil;
+import org.cloudfoundry.ide.eclipse.internal.server.core.LogArchive;
 import org.cloudfoundry.ide.eclipse.internal.server.core.Messages;
 import org.cloudfoundry.ide.eclipse.internal.server.core.ModuleResourceDeltaWrapper;
 import org.cloudfoundry.ide.eclipse.internal.server.core.RefreshHandler;
@@ -78,6 +81,7 @@ import org.eclipse.wst.server.core.model.IModuleFile;
 import org.eclipse.wst.server.core.model.IModuleResource;
 import org.eclipse.wst.server.core.model.IModuleResourceDelta;
 import org.eclipse.wst.server.core.model.ServerBehaviourDelegate;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.client.RestClientException;
 
 /**
@@ -126,6 +130,20 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 
 	private ApplicationUrlLookupService applicationUrlLookup;
 
+	private RequestExecutor requestExecutor;
+
+	private ApplicationStateWatcher stateWatcher;
+
+	/*
+	 * Identical read requests in progress at the same time share one client
+	 * call
+	 */
+	private final RequestCoalescer readRequests = new RequestCoalescer();
+
+	private final MetadataCache metadataCache = new MetadataCache(readRequests);
+
+	private volatile CircuitBreaker circuitBreaker;
+
 	/*
 	 * FIXNS: Until V2 MCF is released, disable debugging support for V2, as
 	 * public clouds also indicate they support debug.
@@ -163,10 +181,16 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 	public void connect(IProgressMonitor monitor) throws CoreException {
 		final CloudFoundryServer cloudServer = getCloudFoundryServer();
 
+		// An explicit connection always contacts the server, even if it was
+		// previously found to be unreachable
+		getCircuitBreaker().reset();
+
 		new BehaviourRequest<Void>(NLS.bind("Loggging in to {0}", cloudServer.getUrl())) {
 			@Override
 			protected Void doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
-				client.login();
+				// Login through the handler so that the access token expiry
+				// is tracked and the token refreshed in the background
+				new CloudFoundryLoginHandler(client, cloudServer.getUrl()).login(progress);
 				return null;
 			}
 		}.run(monitor);
@@ -178,6 +202,11 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		getApplicationUrlLookup().refreshDomains(monitor);
 
 		refreshModules(monitor);
+
+		// Only refresh periodically while the server is shown to the user
+		if (CloudFoundryPlugin.getCallback().isServerVisible(cloudServer)) {
+			getRefreshHandler().resume();
+		}
 	}
 
 	/**
@@ -218,27 +247,30 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 				return null;
 			}
 		}.run(monitor);
+		metadataCache.invalidate("getServiceOfferings");
 		ServerEventHandler.getDefault().fireServicesUpdated(getCloudFoundryServer());
 	}
 
 	public synchronized List<CloudDomain> getDomainsFromOrgs(IProgressMonitor monitor) throws CoreException {
-		return new BehaviourRequest<List<CloudDomain>>("Getting domains for orgs") {
+		return metadataCache.get("getDomainsFromOrgs", new BehaviourRequest<List<CloudDomain>>(
+				"Getting domains for orgs") {
 			@Override
 			protected List<CloudDomain> doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
 				return client.getDomainsForOrg();
 			}
-		}.run(monitor);
+		}, monitor);
 
 	}
 
 	public synchronized List<CloudDomain> getDomainsForSpace(IProgressMonitor monitor) throws CoreException {
 
-		return new BehaviourRequest<List<CloudDomain>>("Getting domains for current space") {
+		return metadataCache.get("getDomainsForSpace", new BehaviourRequest<List<CloudDomain>>(
+				"Getting domains for current space") {
 			@Override
 			protected List<CloudDomain> doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
 				return client.getDomains();
 			}
-		}.run(monitor);
+		}, monitor);
 	}
 
 	/**
@@ -290,6 +322,7 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 						return null;
 					}
 				}.run(monitor);
+				metadataCache.invalidate("getServiceOfferings");
 			}
 		};
 	}
@@ -370,13 +403,29 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		server.setServerState(IServer.STATE_STOPPED);
 		server.setServerPublishState(IServer.PUBLISH_STATE_NONE);
 		closeCaldecottTunnels(monitor);
+
+		// No need to keep the access token fresh for a disconnected server
+		AccessTokenHandler.dispose(client);
+		getCircuitBreaker().reset();
 	}
 
 	@Override
 	public void dispose() {
 		super.dispose();
 		getServer().removeServerListener(serverListener);
+		if (refreshHandler != null) {
+			refreshHandler.stop();
+		}
 		closeCaldecottTunnelsAsynch();
+		synchronized (this) {
+			// Kept once shut down, so that later requests are rejected
+			// rather than run on a new executor
+			getRequestExecutor().shutdown();
+			if (stateWatcher != null) {
+				stateWatcher.dispose();
+				stateWatcher = null;
+			}
+		}
 	}
 
 	/**
@@ -398,7 +447,7 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 			protected CloudApplication doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
 				return client.getApplication(applicationId);
 			}
-		}.run(monitor);
+		}.runCoalesced("getApplication:" + applicationId, monitor);
 	}
 
 	public List<CloudApplication> getApplications(IProgressMonitor monitor) throws CoreException {
@@ -408,7 +457,7 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 					throws CoreException {
 				return client.getApplications();
 			}
-		}.run(monitor);
+		}.runCoalesced("getApplications", monitor);
 	}
 
 	public ApplicationStats getApplicationStats(final String applicationId, IProgressMonitor monitor)
@@ -419,7 +468,7 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 			protected ApplicationStats doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
 				return client.getApplicationStats(applicationId);
 			}
-		}.run(monitor);
+		}.runCoalesced("getApplicationStats:" + applicationId, monitor);
 	}
 
 	public InstancesInfo getInstancesInfo(final String applicationId, IProgressMonitor monitor) throws CoreException {
@@ -428,7 +477,7 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 			protected InstancesInfo doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
 				return client.getApplicationInstances(applicationId);
 			}
-		}.run(monitor);
+		}.runCoalesced("getInstancesInfo:" + applicationId, monitor);
 	}
 
 	public String getFile(final String applicationId, final int instanceIndex, final String path,
@@ -451,14 +500,35 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		}.run(monitor);
 	}
 
+	/**
+	 * Fetches a range of a file of an application instance as raw bytes, so
+	 * that byte offsets in the file can be tracked exactly.
+	 * @param startPosition byte offset of the first byte to fetch
+	 * @param endPosition byte offset of the last byte to fetch
+	 * @return bytes of the range, which are fewer than requested if the file
+	 * ends within the range, and empty if it ends before the range.
+	 * @see FileRangeReader
+	 */
+	public byte[] getFileBytes(final String applicationId, final int instanceIndex, final String filePath,
+			final int startPosition, final int endPosition, IProgressMonitor monitor) throws CoreException {
+		return new FileRequest<byte[]>() {
+			@Override
+			protected byte[] doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
+				return new FileRangeReader(client).read(applicationId, instanceIndex, filePath, startPosition,
+						endPosition);
+			}
+		}.run(monitor);
+	}
+
 	public List<CloudServiceOffering> getServiceOfferings(IProgressMonitor monitor) throws CoreException {
-		return new BehaviourRequest<List<CloudServiceOffering>>("Getting available service options") {
+		return metadataCache.get("getServiceOfferings", new BehaviourRequest<List<CloudServiceOffering>>(
+				"Getting available service options") {
 			@Override
 			protected List<CloudServiceOffering> doRun(CloudFoundryOperations client, SubMonitor progress)
 					throws CoreException {
 				return client.getServiceOfferings();
 			}
-		}.run(monitor);
+		}, monitor);
 	}
 
 	/**
@@ -480,7 +550,176 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 			protected List<CloudService> doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
 				return client.getServices();
 			}
-		}.run(monitor);
+		}.runCoalesced("getServices", monitor);
+	}
+
+	/**
+	 * 
+	 * @return non-null executor used to run asynchronous requests for this
+	 * server. Once the behaviour is disposed, the executor rejects requests.
+	 */
+	protected synchronized RequestExecutor getRequestExecutor() {
+		if (requestExecutor == null) {
+			requestExecutor = new RequestExecutor(NLS.bind("Cloud Foundry requests - {0}", getServer().getName()),
+					RequestExecutor.DEFAULT_MAX_THREADS);
+		}
+		return requestExecutor;
+	}
+
+	/**
+	 * 
+	 * @return non-null watcher that operations use to wait for applications
+	 * of this server to reach a state.
+	 */
+	public synchronized ApplicationStateWatcher getApplicationStateWatcher() {
+		if (stateWatcher == null) {
+			stateWatcher = new ApplicationStateWatcher(this);
+		}
+		return stateWatcher;
+	}
+
+	/**
+	 * 
+	 * @return non-null circuit breaker that suspends requests to this server
+	 * while it cannot be reached.
+	 */
+	public CircuitBreaker getCircuitBreaker() {
+		if (circuitBreaker == null) {
+			synchronized (this) {
+				if (circuitBreaker == null) {
+					circuitBreaker = new CircuitBreaker(getServer().getName()) {
+						@Override
+						protected void stateChanged(State oldState, State newState) {
+							try {
+								ServerEventHandler.getDefault().fireConnectivityChanged(getCloudFoundryServer());
+							}
+							catch (CoreException e) {
+								CloudFoundryPlugin.logError(e);
+							}
+						}
+					};
+				}
+			}
+		}
+		return circuitBreaker;
+	}
+
+	/**
+	 * Asynchronous variant of {@link #getApplications(IProgressMonitor)}. The
+	 * request is performed on this server's request executor, with the same
+	 * login and reattempt handling as the synchronous variant.
+	 * @return non-null future for the list of applications.
+	 */
+	public Future<List<CloudApplication>> getApplicationsAsync() {
+		return getRequestExecutor().submit(new RequestExecutor.AsyncRequest<List<CloudApplication>>() {
+			@Override
+			protected List<CloudApplication> run(IProgressMonitor monitor) throws CoreException {
+				return getApplications(monitor);
+			}
+		});
+	}
+
+	/**
+	 * Asynchronous variant of {@link #getServices(IProgressMonitor)}.
+	 * @return non-null future for the list of services.
+	 */
+	public Future<List<CloudService>> getServicesAsync() {
+		return getRequestExecutor().submit(new RequestExecutor.AsyncRequest<List<CloudService>>() {
+			@Override
+			protected List<CloudService> run(IProgressMonitor monitor) throws CoreException {
+				return getServices(monitor);
+			}
+		});
+	}
+
+	/**
+	 * Asynchronous variant of {@link #getApplicationStats(String, IProgressMonitor)}.
+	 * @param applicationId
+	 * @return non-null future for the application stats
+	 */
+	public Future<ApplicationStats> getApplicationStatsAsync(final String applicationId) {
+		return getRequestExecutor().submit(new RequestExecutor.AsyncRequest<ApplicationStats>() {
+			@Override
+			protected ApplicationStats run(IProgressMonitor monitor) throws CoreException {
+				return getApplicationStats(applicationId, monitor);
+			}
+		});
+	}
+
+	/**
+	 * Asynchronous variant of {@link #getInstancesInfo(String, IProgressMonitor)}.
+	 * @param applicationId
+	 * @return non-null future for the application instances
+	 */
+	public Future<InstancesInfo> getInstancesInfoAsync(final String applicationId) {
+		return getRequestExecutor().submit(new RequestExecutor.AsyncRequest<InstancesInfo>() {
+			@Override
+			protected InstancesInfo run(IProgressMonitor monitor) throws CoreException {
+				return getInstancesInfo(applicationId, monitor);
+			}
+		});
+	}
+
+	/**
+	 * Fetches applications and services concurrently, and optionally the stats
+	 * of all running applications, also concurrently, as soon as the
+	 * applications are known. Therefore the call takes about as long as the
+	 * slowest of the requests, rather than the sum of all of them.
+	 * <p/>
+	 * Failure to fetch the stats of an application does not fail the call, and
+	 * the stats for that application are omitted.
+	 * @param includeStats true if stats for running applications should also
+	 * be fetched
+	 * @param monitor
+	 * @return non-null applications and services.
+	 * @throws CoreException if failed to fetch applications or services
+	 */
+	public ApplicationsAndServices getApplicationsAndServices(boolean includeStats, IProgressMonitor monitor)
+			throws CoreException {
+		SubMonitor progress = SubMonitor.convert(monitor, "Getting applications and services", 100);
+
+		Future<List<CloudApplication>> appsFuture = getApplicationsAsync();
+		Future<List<CloudService>> servicesFuture = getServicesAsync();
+		Map<String, Future<ApplicationStats>> statsFutures = new LinkedHashMap<String, Future<ApplicationStats>>();
+
+		try {
+			List<CloudApplication> applications = RequestExecutor.get(appsFuture, progress);
+			progress.worked(40);
+
+			if (includeStats && applications != null) {
+				for (CloudApplication application : applications) {
+					if (isApplicationReady(application)) {
+						statsFutures.put(application.getName(), getApplicationStatsAsync(application.getName()));
+					}
+				}
+			}
+
+			List<CloudService> services = RequestExecutor.get(servicesFuture, progress);
+			progress.worked(30);
+
+			Map<String, ApplicationStats> stats = new HashMap<String, ApplicationStats>();
+			for (Map.Entry<String, Future<ApplicationStats>> entry : statsFutures.entrySet()) {
+				try {
+					stats.put(entry.getKey(), RequestExecutor.get(entry.getValue(), progress));
+				}
+				catch (CoreException e) {
+					CloudFoundryPlugin.trace(NLS.bind("Failed to get application stats for {0}: {1}",
+							entry.getKey(), e.getMessage()));
+				}
+			}
+
+			return new ApplicationsAndServices(applications, services, stats);
+		}
+		finally {
+			// No-op for completed requests. Stops any outstanding request if
+			// the call failed
+			appsFuture.cancel(true);
+			servicesFuture.cancel(true);
+			for (Future<ApplicationStats> future : statsFutures.values()) {
+				future.cancel(true);
+			}
+			progress.done();
+		}
 	}
 
 	/**
@@ -489,28 +728,88 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 	 * application modules with the actual deployed applications. This may be a
 	 * long running operation.
 	 * @param monitor
+	 * @return true if any module was added, changed or removed, false if none
+	 * was or the refresh failed
 	 */
-	public void refreshModules(IProgressMonitor monitor) {
+	public boolean refreshModules(IProgressMonitor monitor) {
 		try {
-			final CloudFoundryServer cloudServer = getCloudFoundryServer();
-
 			// Get updated list of cloud applications from the server
-			List<CloudApplication> applications = getApplications(monitor);
+			return updateModules(getApplications(monitor));
+		}
+		catch (Throwable t) {
+			// refresh operations MUST not block any other operation.
+			// therefore catch all errors and log them
+			CloudFoundryPlugin.logError(NLS.bind(Messages.ERROR_FAILED_MODULE_REFRESH, t.getMessage()));
+		}
+		return false;
+	}
 
-			// update applications and deployments from server
-			Map<String, CloudApplication> deployedApplicationsByName = new LinkedHashMap<String, CloudApplication>();
+	/**
+	 * Refreshes the application modules as
+	 * {@link #refreshModules(IProgressMonitor)} does, while the services are
+	 * fetched concurrently with the applications, for example to refresh an
+	 * editor that shows both.
+	 * @param monitor
+	 * @return non-null list of services
+	 * @throws CoreException if failed to fetch applications or services
+	 */
+	public List<CloudService> refreshModulesAndServices(IProgressMonitor monitor) throws CoreException {
+		ApplicationsAndServices applicationsAndServices = getApplicationsAndServices(false, monitor);
+		updateModules(applicationsAndServices.getApplications());
+		return applicationsAndServices.getServices();
+	}
 
-			for (CloudApplication application : applications) {
-				deployedApplicationsByName.put(application.getName(), application);
+	protected boolean updateModules(List<CloudApplication> applications) throws CoreException {
+		// update applications and deployments from server
+		Map<String, CloudApplication> deployedApplicationsByName = new LinkedHashMap<String, CloudApplication>();
+
+		for (CloudApplication application : applications) {
+			deployedApplicationsByName.put(application.getName(), application);
+		}
+
+		return getCloudFoundryServer().updateModules(deployedApplicationsByName);
+	}
+
+	/**
+	 * Refreshes only the modules of the given deployed applications, for
+	 * example after an operation on these applications, by fetching each
+	 * application on its own rather than all applications. If the set of
+	 * deployed applications changed, all modules are refreshed instead, as in
+	 * {@link #refreshModules(IProgressMonitor)}, and a refresh event is fired.
+	 * @param appNames deployed names of the applications to refresh
+	 * @param monitor
+	 */
+	public void refreshApplicationModules(Collection<String> appNames, IProgressMonitor monitor) {
+		try {
+			final CloudFoundryServer cloudServer = getCloudFoundryServer();
+
+			Map<String, CloudApplication> deployedApplicationsByName = new LinkedHashMap<String, CloudApplication>();
+			for (String appName : appNames) {
+				CloudApplication application = null;
+				try {
+					application = getApplication(appName, monitor);
+				}
+				catch (CoreException e) {
+					// Application may have been deleted
+					if (!CloudErrorUtil.isNotFoundException(e)) {
+						throw e;
+					}
+				}
+				deployedApplicationsByName.put(appName, application);
 			}
 
-			cloudServer.updateModules(deployedApplicationsByName);
+			if (cloudServer.updateApplicationModules(deployedApplicationsByName)) {
+				return;
+			}
 		}
 		catch (Throwable t) {
 			// refresh operations MUST not block any other operation.
 			// therefore catch all errors and log them
 			CloudFoundryPlugin.logError(NLS.bind(Messages.ERROR_FAILED_MODULE_REFRESH, t.getMessage()));
 		}
+
+		refreshModules(monitor);
+		getRefreshHandler().fireRefreshEvent(monitor);
 	}
 
 	/**
@@ -543,6 +842,10 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 	}
 
 	protected void internalResetClient() {
+		// Credentials or space may have changed
+		metadataCache.invalidateAll();
+		getCircuitBreaker().reset();
+		AccessTokenHandler.dispose(client);
 		client = null;
 		applicationUrlLookup = null;
 	}
@@ -1130,41 +1433,6 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		return AppState.STARTED.equals(application.getState());
 	}
 
-	private boolean waitForStart(CloudFoundryOperations client, String deploymentId, IProgressMonitor monitor)
-			throws InterruptedException {
-		long initialInterval = CloudOperationsConstants.SHORT_INTERVAL;
-		Thread.sleep(initialInterval);
-		long timeLeft = CloudOperationsConstants.DEPLOYMENT_TIMEOUT - initialInterval;
-		while (timeLeft > 0) {
-			CloudApplication deploymentDetails = client.getApplication(deploymentId);
-			if (isApplicationReady(deploymentDetails)) {
-				return true;
-			}
-			Thread.sleep(CloudOperationsConstants.ONE_SECOND_INTERVAL);
-			timeLeft -= CloudOperationsConstants.ONE_SECOND_INTERVAL;
-		}
-		return false;
-	}
-
-	private CloudApplication getDeployedCloudApplication(CloudFoundryOperations client, String applicationId,
-			IProgressMonitor monitor) {
-		long timeLeft = CloudOperationsConstants.UPLOAD_TIMEOUT;
-		while (timeLeft > 0) {
-			CloudApplication application = client.getApplication(applicationId);
-			if (applicationId.equals(application.getName())) {
-				return application;
-			}
-			try {
-				Thread.sleep(CloudOperationsConstants.SHORT_INTERVAL);
-			}
-			catch (InterruptedException e) {
-				// Ignore. Try again until time runs out
-			}
-			timeLeft -= CloudOperationsConstants.SHORT_INTERVAL;
-		}
-		return null;
-	}
-
 	/**
 	 * Will fetch the latest list of cloud applications from the server, and
 	 * update the local module mappings accordingly.
@@ -1190,24 +1458,30 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		try {
 			if (kind == IServer.PUBLISH_CLEAN) {
 				List<IModule[]> allModules = getAllModules();
+				List<IModule[]> publishModules = new ArrayList<IModule[]>();
 				for (IModule[] module : allModules) {
 					if (!module[0].isExternal()) {
-						startModule(module, monitor);
+						publishModules.add(module);
 					}
 				}
-				return Status.OK_STATUS;
+				return publishModules(publishModules, monitor);
 			}
 			else if (kind == IServer.PUBLISH_INCREMENTAL) {
 				List<IModule[]> allModules = getAllModules();
+				List<IModule[]> publishModules = new ArrayList<IModule[]>();
 				for (IModule[] module : allModules) {
 					CloudApplication app = getCloudFoundryServer().getCloudModule(module[0]).getApplication();
 					if (app != null) {
 						int publishState = getServer().getModulePublishState(module);
 						if (publishState != IServer.PUBLISH_STATE_NONE) {
-							startModule(module, monitor);
+							publishModules.add(module);
 						}
 					}
 				}
+				IStatus status = publishModules(publishModules, monitor);
+				if (!status.isOK()) {
+					return status;
+				}
 				((Server) getServer()).setServerPublishState(IServer.PUBLISH_STATE_NONE);
 			}
 		}
@@ -1221,6 +1495,24 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		// return super.publish(kind, monitor);
 	}
 
+	/**
+	 * Publishes the given modules concurrently, up to the number of modules
+	 * set in the publish concurrency preference.
+	 * @param modules
+	 * @param monitor
+	 * @return status of the publish, with the errors of all modules that
+	 * failed to publish.
+	 * @see ModulePublishScheduler
+	 */
+	protected IStatus publishModules(List<IModule[]> modules, IProgressMonitor monitor) {
+		IStatus status = new ModulePublishScheduler(this, CloudFoundryPlugin.getDefault().getPublishConcurrency())
+				.publish(modules, monitor);
+		if (status.getSeverity() == IStatus.ERROR) {
+			CloudFoundryPlugin.log(status);
+		}
+		return status;
+	}
+
 	@Override
 	protected void publishModule(int kind, int deltaKind, IModule[] module, IProgressMonitor monitor)
 			throws CoreException {
@@ -1244,6 +1536,8 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 						return null;
 					}
 				}.run(monitor);
+				LogArchive.getDefault().deleteApplication(cloudServer.getServer().getId(),
+						cloudModule.getDeployedApplicationName());
 			}
 			// } else if (deltaKind == ADDED | deltaKind == CHANGED) {
 			// IModuleResourceDelta[] delta = getPublishedResourceDelta(module);
@@ -1317,6 +1611,48 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		}
 	}
 
+	/**
+	 * Updates the application instances stats of the given module. Unlike
+	 * {@link #updateApplicationInstanceStats(IModule, IProgressMonitor)}, the
+	 * cloud application is not refreshed, for example because it was just
+	 * refreshed with all other applications. The stats and instances are
+	 * fetched concurrently and set together, and are cleared if the
+	 * application is not started.
+	 * @param appModule cannot be null.
+	 * @param monitor
+	 * @throws CoreException error in retrieving application instances stats
+	 * from the server. The module is left unchanged in this case.
+	 */
+	public void refreshApplicationInstanceStats(CloudFoundryApplicationModule appModule, IProgressMonitor monitor)
+			throws CoreException {
+		CloudApplication application = appModule.getApplication();
+		if (application == null || !AppState.STARTED.equals(application.getState())) {
+			// Stats of an application that is no longer running are stale
+			appModule.setApplicationStatsAndInstances(null, null);
+		}
+		else {
+			String appName = appModule.getDeployedApplicationName();
+			Future<ApplicationStats> statsFuture = getApplicationStatsAsync(appName);
+			Future<InstancesInfo> infoFuture = getInstancesInfoAsync(appName);
+			try {
+				ApplicationStats stats = RequestExecutor.get(statsFuture, monitor, false);
+				InstancesInfo info = RequestExecutor.get(infoFuture, monitor, false);
+				appModule.setApplicationStatsAndInstances(stats, info);
+			}
+			finally {
+				// Not interrupted, as the requests may be coalesced with the
+				// same requests of other callers
+				if (!statsFuture.isDone()) {
+					statsFuture.cancel(false);
+				}
+				if (!infoFuture.isDone()) {
+					infoFuture.cancel(false);
+				}
+			}
+		}
+		ServerEventHandler.getDefault().fireInstancesUpdated(getCloudFoundryServer());
+	}
+
 	/**
 	 * True if the application is running. False otherwise. Note that an
 	 * application refresh is performed on the cloud module, therefore the
@@ -1347,14 +1683,15 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 	 * @throws CoreException if it failed to retrieve the orgs and spaces.
 	 */
 	public CloudOrgsAndSpaces getCloudSpaces(IProgressMonitor monitor) throws CoreException {
-		return new BehaviourRequest<CloudOrgsAndSpaces>("Getting orgs and spaces") {
+		return metadataCache.get("getCloudSpaces", new BehaviourRequest<CloudOrgsAndSpaces>(
+				"Getting orgs and spaces") {
 
 			@Override
 			protected CloudOrgsAndSpaces doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
 				return internalGetCloudSpaces(client);
 			}
 
-		}.run(monitor);
+		}, monitor);
 	}
 
 	/**
@@ -1437,9 +1774,21 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 			throw CloudErrorUtil.toCoreException(ERROR_NO_CLOUD_APPLICATION_FOUND);
 		}
 
-		InstancesInfo info = internalUpdateInstancesInfo(appModule, monitor);
-		ApplicationStats stats = internalUpdateStats(appModule, monitor);
-		return info != null && stats != null;
+		// Fetch instances and stats concurrently
+		Future<InstancesInfo> infoFuture = getInstancesInfoAsync(appModule.getDeployedApplicationName());
+		try {
+			ApplicationStats stats = internalUpdateStats(appModule, monitor);
+			InstancesInfo info = RequestExecutor.get(infoFuture, monitor, false);
+			appModule.setInstancesInfo(info);
+			return info != null && stats != null;
+		}
+		finally {
+			// Not interrupted, as the request may be coalesced with the
+			// same request of another caller
+			if (!infoFuture.isDone()) {
+				infoFuture.cancel(false);
+			}
+		}
 	}
 
 	protected ApplicationStats internalUpdateStats(CloudFoundryApplicationModule appModule, IProgressMonitor monitor)
@@ -1450,14 +1799,6 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 		return stats;
 	}
 
-	protected InstancesInfo internalUpdateInstancesInfo(CloudFoundryApplicationModule appModule,
-			IProgressMonitor monitor) throws CoreException {
-		InstancesInfo info = getInstancesInfo(appModule.getDeployedApplicationName(), monitor);
-		appModule.setInstancesInfo(info);
-
-		return info;
-	}
-
 	public static void validate(String location, String userName, String password, boolean selfSigned,
 			IProgressMonitor monitor) throws CoreException {
 		SubMonitor progress = SubMonitor.convert(monitor);
@@ -1740,6 +2081,12 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 			return appModule;
 		}
 
+		@Override
+		protected Collection<String> getAffectedApplications() {
+			// If the module could not be resolved, refresh all modules
+			return appModule != null ? Arrays.asList(appModule.getDeployedApplicationName()) : null;
+		}
+
 		abstract protected String getOperationName();
 
 		protected void performOperation(IProgressMonitor monitor) throws CoreException {
@@ -1852,108 +2199,165 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 			String appName = appModule.getDeploymentInfo().getDeploymentName();
 
 			try {
-				List<CloudApplication> existingApps = client.getApplications();
-				boolean found = false;
-				for (CloudApplication existingApp : existingApps) {
-					if (existingApp.getName().equals(appName)) {
-						found = true;
-						break;
-					}
+				// 1. Create the application if it doesn't already exist. The
+				// module cache already knows about deployed applications, so
+				// avoid asking the server in the common case
+				boolean known = isApplicationKnown(appModule, appName);
+				if (!known) {
+					createApplication(client, appModule, appName);
 				}
 
-				// 1. Create the application if it doesn't already exist
-				if (!found) {
-					Staging staging = appModule.getDeploymentInfo().getStaging();
-					List<String> uris = appModule.getDeploymentInfo().getUris() != null ? appModule.getDeploymentInfo()
-							.getUris() : new ArrayList<String>(0);
-					List<String> services = appModule.getDeploymentInfo().asServiceBindingList();
-
-					if (staging == null) {
-						// For v2, a non-null staging is required.
-						staging = new Staging();
+				// 2. Now push the application content.
+				try {
+					uploadApplication(client, appModule, appName, warFile, applicationArchive, monitor);
+				}
+				catch (CloudFoundryException e) {
+					// The cached application may have been deleted since the
+					// last refresh
+					if (!known || !HttpStatus.NOT_FOUND.equals(e.getStatusCode())) {
+						throw e;
 					}
-					client.createApplication(appName, staging, appModule.getDeploymentInfo().getMemory(), uris,
-							services);
+					createApplication(client, appModule, appName);
+					uploadApplication(client, appModule, appName, warFile, applicationArchive, monitor);
 				}
+			}
+			catch (IOException e) {
+				throw new CoreException(CloudFoundryPlugin.getErrorStatus(NLS.bind(
+						"Failed to deploy application {0} due to {1}", appModule.getDeploymentInfo()
+								.getDeploymentName(), e.getMessage()), e));
+			}
 
-				// 2. Now push the application content.
-				if (warFile != null) {
-					client.uploadApplication(appName, warFile);
-				}
-				else if (applicationArchive != null) {
-					// Handle the incremental publish case separately as it
-					// requires
-					// a partial war file generation of only the changed
-					// resources
-					// AFTER
-					// the server determines the list of missing file names.
-					if (applicationArchive instanceof CachingApplicationArchive) {
-						final CachingApplicationArchive cachingArchive = (CachingApplicationArchive) applicationArchive;
-						client.uploadApplication(appName, cachingArchive, new UploadStatusCallback() {
-
-							public void onProcessMatchedResources(int length) {
+		}
 
-							}
+		/**
+		 * Uploads the application archive, or war file if present, to an
+		 * existing application.
+		 */
+		protected void uploadApplication(CloudFoundryOperations client, final CloudFoundryApplicationModule appModule,
+				String appName, File warFile, ApplicationArchive applicationArchive, final IProgressMonitor monitor)
+				throws IOException, CoreException {
+			if (warFile != null) {
+				client.uploadApplication(appName, warFile);
+			}
+			else if (applicationArchive != null) {
+				// Handle the incremental publish case separately as it
+				// requires
+				// a partial war file generation of only the changed
+				// resources
+				// AFTER
+				// the server determines the list of missing file names.
+				if (applicationArchive instanceof CachingApplicationArchive) {
+					final CachingApplicationArchive cachingArchive = (CachingApplicationArchive) applicationArchive;
+					client.uploadApplication(appName, cachingArchive, new UploadStatusCallback() {
+
+						public void onProcessMatchedResources(int length) {
 
-							public void onMatchedFileNames(Set<String> matchedFileNames) {
-								cachingArchive.generatePartialWarFile(matchedFileNames);
-							}
+						}
 
-							public void onCheckResources() {
+						public void onMatchedFileNames(Set<String> matchedFileNames) {
+							cachingArchive.generatePartialWarFile(matchedFileNames);
+						}
 
-							}
+						public void onCheckResources() {
 
-							public boolean onProgress(String status) {
-								return false;
-							}
-						});
+						}
 
-						// Once the application has run, do a clean up of the
-						// sha1
-						// cache for deleted resources
+						public boolean onProgress(String status) {
+							return false;
+						}
+					});
 
-					}
-					else {
-						printlnToConsole(appModule, '\n' + Messages.CONSOLE_PROCESSING_PAYLOAD, false, false, monitor);
-						client.uploadApplication(appName, applicationArchive, new UploadStatusCallback() {
+					// Once the application has run, do a clean up of the
+					// sha1
+					// cache for deleted resources
+
+				}
+				else {
+					printlnToConsole(appModule, '\n' + Messages.CONSOLE_PROCESSING_PAYLOAD, false, false, monitor);
+					client.uploadApplication(appName, applicationArchive, new UploadStatusCallback() {
 
-							public void onProcessMatchedResources(int length) {
+						public void onProcessMatchedResources(int length) {
 
-							}
+						}
 
-							public void onMatchedFileNames(Set<String> matchedFileNames) {
-								try {
-									printlnToConsole(appModule, ".", false, false, monitor);
-								}
-								catch (CoreException e) {
-									CloudFoundryPlugin.logError(e);
-								}
+						public void onMatchedFileNames(Set<String> matchedFileNames) {
+							try {
+								printlnToConsole(appModule, ".", false, false, monitor);
 							}
+							catch (CoreException e) {
+								CloudFoundryPlugin.logError(e);
+							}
+						}
 
-							public void onCheckResources() {
+						public void onCheckResources() {
 
-							}
+						}
 
-							public boolean onProgress(String status) {
-								return false;
-							}
-						});
+						public boolean onProgress(String status) {
+							return false;
+						}
+					});
 
-					}
-				}
-				else {
-					throw CloudErrorUtil
-							.toCoreException(NLS
-									.bind("Failed to deploy application {0} since no deployable war or application archive file was generated.",
-											appModule.getDeploymentInfo().getDeploymentName()));
 				}
 			}
-			catch (IOException e) {
-				throw new CoreException(CloudFoundryPlugin.getErrorStatus(NLS.bind(
-						"Failed to deploy application {0} due to {1}", appModule.getDeploymentInfo()
-								.getDeploymentName(), e.getMessage()), e));
+			else {
+				throw CloudErrorUtil
+						.toCoreException(NLS
+								.bind("Failed to deploy application {0} since no deployable war or application archive file was generated.",
+										appModule.getDeploymentInfo().getDeploymentName()));
+			}
+		}
+
+		/**
+		 * 
+		 * @param appModule
+		 * @param appName
+		 * @return true if the module cache knows of a deployed application with
+		 * the given name, either through the given module or another module.
+		 * @throws CoreException if the server could not be resolved
+		 */
+		protected boolean isApplicationKnown(CloudFoundryApplicationModule appModule, String appName)
+				throws CoreException {
+			CloudApplication application = appModule.getApplication();
+			if (application != null && appName.equals(application.getName())) {
+				return true;
 			}
+			CloudFoundryApplicationModule existing = getCloudFoundryServer().getExistingCloudModule(appName);
+			return existing != null && existing.getApplication() != null;
+		}
+
+		/**
+		 * Creates the application without first checking whether it exists.
+		 * If creation fails because the name is taken, for example because
+		 * the application was created by another client or a previous
+		 * attempt, deployment continues with the existing application.
+		 * @param client
+		 * @param appModule
+		 * @param appName
+		 * @throws CoreException if the application could not be created for
+		 * any other reason.
+		 */
+		protected void createApplication(CloudFoundryOperations client, CloudFoundryApplicationModule appModule,
+				String appName) throws CoreException {
+			Staging staging = appModule.getDeploymentInfo().getStaging();
+			List<String> uris = appModule.getDeploymentInfo().getUris() != null ? appModule.getDeploymentInfo()
+					.getUris() : new ArrayList<String>(0);
+			List<String> services = appModule.getDeploymentInfo().asServiceBindingList();
 
+			if (staging == null) {
+				// For v2, a non-null staging is required.
+				staging = new Staging();
+			}
+			try {
+				client.createApplication(appName, staging, appModule.getDeploymentInfo().getMemory(), uris, services);
+			}
+			catch (CloudFoundryException e) {
+				if (!CloudErrorUtil.isAppNameTakenError(e)) {
+					throw e;
+				}
+				CloudFoundryPlugin.trace(NLS.bind("Application {0} already exists. Deploying to existing application.",
+						appName));
+			}
 		}
 
 		/**
@@ -2118,8 +2522,9 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 				}
 
 				// Verify the application exists in the server
-				CloudApplication application = getDeployedCloudApplication(client,
-						appModule.getDeployedApplicationName(), monitor);
+				CloudApplication application = getApplicationStateWatcher().waitFor(
+						appModule.getDeployedApplicationName(), ApplicationStateWatcher.EXISTS, 0,
+						CloudOperationsConstants.UPLOAD_TIMEOUT, monitor);
 
 				if (application == null) {
 					throw CloudErrorUtil
@@ -2354,38 +2759,30 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 						}
 					}.run(monitor);
 
-					// This should be staging aware, in order to reattempt on
-					// staging related issues when checking if an app has
-					// started or not
-					new StagingAwareRequest<Void>(NLS.bind("Waiting for application to start: {0}", deploymentName)) {
-						@Override
-						protected Void doRun(final CloudFoundryOperations client, SubMonitor progress)
-								throws CoreException {
-
-							// Now verify that the application did start
-							try {
-								if (!waitForStart(client, deploymentName, progress)) {
-									server.setModuleState(modules, IServer.STATE_STOPPED);
-
-									throw new CoreException(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID,
-											NLS.bind("Starting of {0} timed out",
-													cloudModule.getDeployedApplicationName())));
-								}
-							}
-							catch (InterruptedException e) {
-								server.setModuleState(modules, IServer.STATE_STOPPED);
-								throw new OperationCanceledException();
-							}
+					// Now verify that the application did start. Waiters share
+					// one poll of the server for all applications being started
+					CloudApplication started;
+					try {
+						started = getApplicationStateWatcher().waitFor(deploymentName,
+								ApplicationStateWatcher.STARTED, CloudOperationsConstants.SHORT_INTERVAL,
+								CloudOperationsConstants.DEPLOYMENT_TIMEOUT, monitor);
+					}
+					catch (OperationCanceledException e) {
+						server.setModuleState(modules, IServer.STATE_STOPPED);
+						throw e;
+					}
+					if (started == null) {
+						server.setModuleState(modules, IServer.STATE_STOPPED);
 
-							server.setModuleState(modules, IServer.STATE_STARTED);
+						throw new CoreException(new Status(IStatus.ERROR, CloudFoundryPlugin.PLUGIN_ID, NLS.bind(
+								"Starting of {0} timed out", cloudModule.getDeployedApplicationName())));
+					}
 
-							CloudFoundryPlugin.trace("Application " + deploymentName + " started");
+					server.setModuleState(modules, IServer.STATE_STARTED);
 
-							CloudFoundryPlugin.getCallback().applicationStarted(getCloudFoundryServer(), cloudModule);
+					CloudFoundryPlugin.trace("Application " + deploymentName + " started");
 
-							return null;
-						}
-					}.run(monitor);
+					CloudFoundryPlugin.getCallback().applicationStarted(getCloudFoundryServer(), cloudModule);
 				}
 				else {
 					// Missing a deployment mode is acceptable, as the
@@ -2481,6 +2878,20 @@ public class CloudFoundryServerBehaviour extends ServerBehaviourDelegate {
 			super(label);
 		}
 
+		/**
+		 * Performs the request, unless an identical request is already in
+		 * progress, in which case the result of that request is returned
+		 * instead. Should only be used for read requests.
+		 * @param key identifies the request, including its arguments
+		 * @param monitor
+		 * @return result of the request, which may be shared with other
+		 * callers and therefore should not be modified.
+		 * @throws CoreException if the request failed
+		 */
+		public T runCoalesced(String key, IProgressMonitor monitor) throws CoreException {
+			return readRequests.run(key, this, monitor);
+		}
+
 		@Override
 		protected CloudFoundryOperations getClient(IProgressMonitor monitor) throws CoreException {
 			return CloudFoundryServerBehaviour.this.getClient(monitor);
@@ -27,6 +27,66 @@ public class CloudOperationsConstants {
 
 	public static final long LOGIN_INTERVAL = 2000;
 
+	/*
+	 * Adaptive refresh of deployed applications. Refresh is fast for a window
+	 * after a user operation, and while applications are staging or starting,
+	 * up to a maximum time. Otherwise the refresh interval doubles every time
+	 * nothing changed, up to a maximum interval.
+	 */
+	public static final long FAST_REFRESH_INTERVAL = 3 * 1000;
+
+	public static final long FAST_REFRESH_WINDOW = 30 * 1000;
+
+	public static final long MAX_STAGING_REFRESH_WINDOW = 5 * 60 * 1000;
+
+	public static final long MAX_REFRESH_INTERVAL = 10 * 60 * 1000;
+
+	/*
+	 * Polling of applications that operations wait on to reach a state. The
+	 * interval doubles while the state does not change, up to a maximum.
+	 */
+	public static final long STATE_WATCH_MIN_INTERVAL = ONE_SECOND_INTERVAL;
+
+	public static final long STATE_WATCH_MAX_INTERVAL = SHORT_INTERVAL;
+
+	/*
+	 * Background refresh across servers. Servers on the same Cloud Controller
+	 * host refresh at most a number at a time, and start refreshing at least
+	 * an interval apart.
+	 */
+	public static final int MAX_REFRESHES_PER_HOST = 2;
+
+	public static final long REFRESH_STAGGER_INTERVAL = 2 * 1000;
+
+	/*
+	 * How long before an access token expires that it should be refreshed
+	 */
+	public static final long ACCESS_TOKEN_REFRESH_MARGIN = 60 * 1000;
+
+	/*
+	 * How long past its time to live cached metadata, like service offerings
+	 * and domains, can still be used while it is refreshed in the background
+	 */
+	public static final long METADATA_MAX_STALENESS = 24 * 60 * 60 * 1000;
+
+	/*
+	 * Number of consecutive connection failures after which requests to a
+	 * server are suspended, and how long they are suspended for before the
+	 * server is probed again. The interval doubles after each failed probe.
+	 */
+	public static final int CIRCUIT_FAILURE_THRESHOLD = 3;
+
+	public static final long CIRCUIT_OPEN_INTERVAL = 15 * 1000;
+
+	public static final long CIRCUIT_MAX_OPEN_INTERVAL = 5 * 60 * 1000;
+
+	/*
+	 * How long server and behaviour events are held before being delivered
+	 * to listeners, so that redundant events fired in the meantime are
+	 * delivered once
+	 */
+	public static final long EVENT_COALESCE_DELAY = 200;
+
 	public static final long DEPLOYMENT_TIMEOUT = 10 * 60 * 1000;
 
 	public static final long UPLOAD_TIMEOUT = 60 * 1000;
@@ -16,6 +16,7 @@ import java.util.List;
 import org.cloudfoundry.client.lib.domain.CloudApplication;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServer;
+import org.cloudfoundry.ide.eclipse.internal.server.core.LogArchive;
 import org.cloudfoundry.ide.eclipse.internal.server.core.ServerEventHandler;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -97,6 +98,12 @@ public class DeleteModulesOperation extends AbstractDeploymentOperation {
 
 			CloudFoundryPlugin.getCallback().stopApplicationConsole(appModule, cloudServer);
 
+			// Logs are no longer tailed, and are not kept for a deleted
+			// application
+			if (application != null) {
+				LogArchive.getDefault().deleteApplication(cloudServer.getServer().getId(), application.getName());
+			}
+
 			// Delete the module locally
 			cloudServer.removeApplication(appModule);
 
@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.client;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cloudfoundry.client.lib.CloudFoundryException;
+import org.cloudfoundry.client.lib.CloudFoundryOperations;
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudErrorUtil;
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Reads a byte range of a file of an application instance as raw bytes.
+ * <p/>
+ * The client only returns file content as a string decoded by its HTTP
+ * client, from which the bytes of the file cannot always be recovered. The
+ * range is therefore requested through the client's own {@link RestTemplate},
+ * so that the request is authenticated and errors are handled as for any other
+ * client request, and the response body is read as bytes. The client does not
+ * expose its template and the URL of files, which are obtained reflectively.
+ * <p/>
+ * Whether a type of client allows this is only checked once. If it does not,
+ * the range is read with the client's public API instead, and the decoded
+ * content encoded again with the charset the client decodes text with by
+ * default. The bytes are then exact unless the server declares another
+ * charset for the file.
+ */
+public class FileRangeReader {
+
+	/**
+	 * Charset of text responses that do not declare one, as decoded by the
+	 * client
+	 */
+	private static final Charset DEFAULT_RESPONSE_CHARSET = Charset.forName("ISO-8859-1");
+
+	/**
+	 * Reflective access to raw bytes by type of client. Null values are
+	 * cached for types that do not allow it.
+	 */
+	private static final Map<Class<?>, RawFileAccess> rawAccessByClientType = new HashMap<Class<?>, RawFileAccess>();
+
+	private final CloudFoundryOperations client;
+
+	public FileRangeReader(CloudFoundryOperations client) {
+		this.client = client;
+	}
+
+	/**
+	 *
+	 * @param appName
+	 * @param instanceIndex
+	 * @param path relative to the application
+	 * @param start byte offset of the first byte
+	 * @param end byte offset of the last byte
+	 * @return bytes of the range. Fewer bytes than requested are returned if
+	 * the file ends within the range, and none if it ends before the range.
+	 * @throws CloudFoundryException if the request failed
+	 */
+	public byte[] read(String appName, int instanceIndex, String path, int start, int end) {
+		try {
+			RawFileAccess rawAccess = getRawAccess();
+			if (rawAccess != null) {
+				return rawAccess.read(client, appName, instanceIndex, path, start, end);
+			}
+			// The client's end offset is exclusive
+			String content = client.getFile(appName, instanceIndex, path, start, end + 1);
+			return content != null ? content.getBytes(DEFAULT_RESPONSE_CHARSET) : new byte[0];
+		}
+		catch (CloudFoundryException e) {
+			// The file ends before the range
+			if (CloudErrorUtil.isRequestedFileRangeNotSatisfiable(e)) {
+				return new byte[0];
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 *
+	 * @return reflective access to raw bytes for the type of the client, or
+	 * null if the client does not allow it.
+	 */
+	protected RawFileAccess getRawAccess() {
+		synchronized (rawAccessByClientType) {
+			Class<?> clientType = client.getClass();
+			if (!rawAccessByClientType.containsKey(clientType)) {
+				RawFileAccess rawAccess = null;
+				try {
+					rawAccess = new RawFileAccess(client);
+				}
+				catch (Exception e) {
+					CloudFoundryPlugin.logWarning("Reading raw bytes of application files is not supported by "
+							+ clientType.getName() + ", reading decoded content instead: " + e);
+				}
+				rawAccessByClientType.put(clientType, rawAccess);
+			}
+			return rawAccessByClientType.get(clientType);
+		}
+	}
+
+	/**
+	 * Fields and methods of a type of client that give access to the raw
+	 * bytes of files.
+	 */
+	protected static class RawFileAccess {
+
+		private final Field controllerClientField;
+
+		private final Method getRestTemplate;
+
+		private final Method getUrl;
+
+		private final Method getFileUrlPath;
+
+		private final Method getFileAppId;
+
+		/**
+		 * @param client
+		 * @throws Exception if the client does not allow access to raw bytes
+		 */
+		RawFileAccess(CloudFoundryOperations client) throws Exception {
+			controllerClientField = getField(client.getClass(), "cc");
+			Object controllerClient = controllerClientField.get(client);
+			if (controllerClient == null) {
+				throw new IllegalStateException("No controller client");
+			}
+			Class<?> controllerType = controllerClient.getClass();
+			getRestTemplate = getMethod(controllerType, "getRestTemplate");
+			getUrl = getMethod(controllerType, "getUrl", String.class);
+			getFileUrlPath = getMethod(controllerType, "getFileUrlPath");
+			getFileAppId = getMethod(controllerType, "getFileAppId", String.class);
+		}
+
+		byte[] read(CloudFoundryOperations client, String appName, int instanceIndex, String path,
+				final int start, final int end) {
+			Object controllerClient = get(controllerClientField, client);
+			RestTemplate restTemplate = (RestTemplate) invoke(getRestTemplate, controllerClient);
+			String url = (String) invoke(getUrl, controllerClient, invoke(getFileUrlPath, controllerClient));
+			Object appId = invoke(getFileAppId, controllerClient, appName);
+
+			return restTemplate.execute(url, HttpMethod.GET, new RequestCallback() {
+				public void doWithRequest(ClientHttpRequest request) throws IOException {
+					request.getHeaders().set("Range", "bytes=" + start + '-' + end);
+				}
+			}, new ResponseExtractor<byte[]>() {
+				public byte[] extractData(ClientHttpResponse response) throws IOException {
+					byte[] body = FileCopyUtils.copyToByteArray(response.getBody());
+					if (HttpStatus.PARTIAL_CONTENT.equals(response.getStatusCode())) {
+						return body;
+					}
+					// The range was ignored and the whole file returned
+					if (start >= body.length) {
+						return new byte[0];
+					}
+					return Arrays.copyOfRange(body, start, Math.min(end + 1, body.length));
+				}
+			}, appId, String.valueOf(instanceIndex), path);
+		}
+
+		protected static Field getField(Class<?> type, String name) throws NoSuchFieldException {
+			for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+				try {
+					Field field = current.getDeclaredField(name);
+					field.setAccessible(true);
+					return field;
+				}
+				catch (NoSuchFieldException e) {
+					// Look in the superclass
+				}
+			}
+			throw new NoSuchFieldException(name);
+		}
+
+		protected static Method getMethod(Class<?> type, String name, Class<?>... parameterTypes)
+				throws NoSuchMethodException {
+			for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+				try {
+					Method method = current.getDeclaredMethod(name, parameterTypes);
+					method.setAccessible(true);
+					return method;
+				}
+				catch (NoSuchMethodException e) {
+					// Look in the superclass
+				}
+			}
+			throw new NoSuchMethodException(name);
+		}
+
+		protected static Object get(Field field, Object target) {
+			try {
+				return field.get(target);
+			}
+			catch (IllegalAccessException e) {
+				// Made accessible when resolved
+				throw new IllegalStateException(e);
+			}
+		}
+
+		protected static Object invoke(Method method, Object target, Object... args) {
+			try {
+				return method.invoke(target, args);
+			}
+			catch (InvocationTargetException e) {
+				// Errors of the client, for example an application not found
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+			catch (IllegalAccessException e) {
+				// Made accessible when resolved
+				throw new IllegalStateException(e);
+			}
+		}
+
+	}
+
+}
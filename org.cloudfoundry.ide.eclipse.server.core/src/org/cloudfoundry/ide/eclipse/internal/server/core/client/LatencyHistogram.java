@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.client;
+
+/**
+ * Histogram of request latencies in milliseconds, with fixed, roughly
+ * logarithmic buckets. Keeps a constant amount of memory regardless of the
+ * number of recorded requests. Percentiles are estimated as the upper bound of
+ * the bucket they fall in.
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Upper bounds, inclusive, of each bucket in milliseconds. The last bucket
+	 * holds all latencies above the last bound.
+	 */
+	public static final long[] BUCKET_BOUNDS = { 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000 };
+
+	private final long[] counts = new long[BUCKET_BOUNDS.length + 1];
+
+	private long count;
+
+	private long total;
+
+	private long max;
+
+	public synchronized void record(long latency) {
+		int bucket = 0;
+		while (bucket < BUCKET_BOUNDS.length && latency > BUCKET_BOUNDS[bucket]) {
+			bucket++;
+		}
+		counts[bucket]++;
+		count++;
+		total += latency;
+		if (latency > max) {
+			max = latency;
+		}
+	}
+
+	public synchronized long getCount() {
+		return count;
+	}
+
+	public synchronized long getMax() {
+		return max;
+	}
+
+	public synchronized long getMean() {
+		return count > 0 ? total / count : 0;
+	}
+
+	/**
+	 *
+	 * @param percentile between 0 and 100
+	 * @return estimated latency below which the given percentage of requests
+	 * fall. For latencies above the last bucket bound, the maximum recorded
+	 * latency is returned.
+	 */
+	public synchronized long getPercentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(count * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank && counts[i] > 0) {
+				return i < BUCKET_BOUNDS.length ? Math.min(BUCKET_BOUNDS[i], max) : max;
+			}
+		}
+		return max;
+	}
+
+	/**
+	 *
+	 * @return copy of the number of latencies recorded in each bucket
+	 */
+	public synchronized long[] getBucketCounts() {
+		long[] copy = new long[counts.length];
+		System.arraycopy(counts, 0, copy, 0, counts.length);
+		return copy;
+	}
+
+}
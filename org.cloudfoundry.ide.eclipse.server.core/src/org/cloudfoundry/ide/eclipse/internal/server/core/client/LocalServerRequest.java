@@ -82,6 +82,17 @@ public abstract class LocalServerRequest<T> extends ClientRequest<T> {
 		return getCloudServer().getBehaviour().getClient(monitor);
 	}
 
+	@Override
+	protected CircuitBreaker getCircuitBreaker() {
+		try {
+			return getCloudServer().getBehaviour().getCircuitBreaker();
+		}
+		catch (CoreException e) {
+			// The error is reported when the request resolves the server
+			return null;
+		}
+	}
+
 	/**
 	 * 
 	 * @return non-null Cloud Foundry server instance. If it cannot be resolved,
@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.client;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Follows the content of a file of an application instance, one byte range
+ * at a time.
+ * <p/>
+ * Ranges are fetched as raw bytes, so the offset in the file is tracked
+ * exactly, and each range is at most a maximum chunk size, so that a large or
+ * fast growing file is fetched in several requests rather than in one. Content
+ * is decoded as UTF-8, and a character whose bytes are split across two ranges
+ * is decoded once the rest of its bytes are fetched.
+ * <p/>
+ * The last bytes fetched before the offset are kept, so that tailing resumes
+ * from an offset reached earlier only if the file still holds the same bytes
+ * before that offset. A file that restarted and already grew past the offset
+ * is then not mistaken for the file tailed earlier.
+ */
+public class LogFileTail {
+
+	public static final int DEFAULT_MAX_CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * Number of bytes before the offset checked when resuming.
+	 */
+	public static final int END_BYTES_SIZE = 64;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final CloudFoundryServerBehaviour behaviour;
+
+	private final String appName;
+
+	private final int instanceIndex;
+
+	private final String path;
+
+	private final int maxChunkSize;
+
+	private final CharsetDecoder decoder = UTF8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	private byte[] undecoded = new byte[0];
+
+	private byte[] endBytes = new byte[0];
+
+	private int offset = 0;
+
+	private boolean chunkFull = false;
+
+	/**
+	 *
+	 * @param behaviour of the server where the application is deployed
+	 * @param appName
+	 * @param instanceIndex
+	 * @param path relative to the application
+	 * @param maxChunkSize maximum number of bytes fetched per request
+	 */
+	public LogFileTail(CloudFoundryServerBehaviour behaviour, String appName, int instanceIndex, String path,
+			int maxChunkSize) {
+		this.behaviour = behaviour;
+		this.appName = appName;
+		this.instanceIndex = instanceIndex;
+		this.path = path;
+		this.maxChunkSize = Math.max(1, maxChunkSize);
+	}
+
+	/**
+	 * Fetches the next range of the file, from the current offset.
+	 * @param monitor
+	 * @return decoded content of the range, or null if no new content was
+	 * available. The content may be empty if the range only contains part of
+	 * a character.
+	 * @throws CoreException if the range could not be fetched. The offset is
+	 * unchanged.
+	 */
+	public synchronized String tail(IProgressMonitor monitor) throws CoreException {
+		byte[] bytes = fetch(offset, offset + maxChunkSize - 1, monitor);
+		if (bytes == null || bytes.length == 0) {
+			chunkFull = false;
+			return null;
+		}
+
+		offset += bytes.length;
+		chunkFull = bytes.length >= maxChunkSize;
+		setEndBytes(bytes);
+		return decode(bytes);
+	}
+
+	/**
+	 * Resumes tailing from an offset reached earlier, for example before the
+	 * console was closed, if the file still holds the same bytes before that
+	 * offset.
+	 * @param resumeOffset
+	 * @param resumeEndBytes bytes fetched before the offset, as returned by
+	 * {@link #getEndBytes()} when the offset was reached
+	 * @param monitor
+	 * @return true if tailing resumes from the offset, false if the file
+	 * changed, for example because the application was restarted, or could not
+	 * be checked. Tailing then starts from the beginning of the file.
+	 */
+	public synchronized boolean resume(int resumeOffset, byte[] resumeEndBytes, IProgressMonitor monitor) {
+		if (resumeOffset <= 0 || resumeEndBytes == null || resumeEndBytes.length == 0
+				|| resumeEndBytes.length > resumeOffset) {
+			return false;
+		}
+		try {
+			byte[] bytes = fetch(resumeOffset - resumeEndBytes.length, resumeOffset - 1, monitor);
+
+			// A shorter file returns fewer bytes, a restarted file that is
+			// already longer returns other bytes
+			if (Arrays.equals(resumeEndBytes, bytes)) {
+				offset = resumeOffset;
+				endBytes = bytes;
+
+				// Restores the bytes of a character split at the offset, which
+				// were fetched but not decoded yet. Characters before them were
+				// already decoded and are discarded.
+				undecoded = new byte[0];
+				decoder.reset();
+				decode(bytes);
+				return true;
+			}
+		}
+		catch (CoreException e) {
+			// Tailing starts from the beginning of the file
+		}
+		return false;
+	}
+
+	/**
+	 *
+	 * @return offset in bytes in the file from which content is fetched next
+	 */
+	public synchronized int getOffset() {
+		return offset;
+	}
+
+	/**
+	 *
+	 * @return last bytes fetched before the offset, at most
+	 * {@link #END_BYTES_SIZE}, from which tailing can be resumed later
+	 */
+	public synchronized byte[] getEndBytes() {
+		return endBytes.clone();
+	}
+
+	/**
+	 *
+	 * @return true if the last range fetched was a full chunk, meaning more
+	 * content is likely already available.
+	 */
+	public synchronized boolean isChunkFull() {
+		return chunkFull;
+	}
+
+	/**
+	 * Fetches a range of the file.
+	 * @param start byte offset of the first byte
+	 * @param end byte offset of the last byte
+	 * @param monitor
+	 * @return bytes of the range, which may be fewer than requested, or empty
+	 * if the file ends before the range
+	 * @throws CoreException
+	 */
+	protected byte[] fetch(int start, int end, IProgressMonitor monitor) throws CoreException {
+		return behaviour.getFileBytes(appName, instanceIndex, path, start, end, monitor);
+	}
+
+	protected void setEndBytes(byte[] bytes) {
+		int fromBytes = Math.min(bytes.length, END_BYTES_SIZE);
+		int fromEndBytes = Math.min(endBytes.length, END_BYTES_SIZE - fromBytes);
+		byte[] last = new byte[fromEndBytes + fromBytes];
+		System.arraycopy(endBytes, endBytes.length - fromEndBytes, last, 0, fromEndBytes);
+		System.arraycopy(bytes, bytes.length - fromBytes, last, fromEndBytes, fromBytes);
+		endBytes = last;
+	}
+
+	/**
+	 * Decodes the bytes, following any bytes of an incomplete character left
+	 * from the previous range.
+	 */
+	protected String decode(byte[] bytes) {
+		ByteBuffer in = ByteBuffer.allocate(undecoded.length + bytes.length);
+		in.put(undecoded).put(bytes).flip();
+		CharBuffer out = CharBuffer.allocate((int) (in.remaining() * decoder.maxCharsPerByte()) + 1);
+
+		// Not the end of input, so that a trailing incomplete character is
+		// left in the buffer rather than replaced
+		decoder.decode(in, out, false);
+
+		undecoded = new byte[in.remaining()];
+		in.get(undecoded);
+		out.flip();
+		return out.toString();
+	}
+
+}
@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.client;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Read-through cache for Cloud Foundry metadata that rarely changes, like
+ * service offerings, domains and orgs and spaces. There is one cache per
+ * server.
+ * <p/>
+ * A cached value is returned as is while it is younger than its time to live.
+ * Once it is older, but not older than the time to live plus the maximum
+ * staleness, the stale value is still returned right away, and the value is
+ * fetched again in the background. Older values, or values not yet cached, are
+ * fetched in the calling thread.
+ * <p/>
+ * Values must be invalidated when the plugin itself changes the corresponding
+ * data on the server. While requests to the server are suspended by its
+ * {@link CircuitBreaker}, the last cached value is returned regardless of age.
+ */
+public class MetadataCache {
+
+	private static class Entry {
+
+		final Object value;
+
+		final long fetchedAt;
+
+		boolean revalidating;
+
+		Entry(Object value, long fetchedAt) {
+			this.value = value;
+			this.fetchedAt = fetchedAt;
+		}
+	}
+
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+	private final Map<String, Long> timesToLive = new HashMap<String, Long>();
+
+	private final RequestCoalescer requests;
+
+	private long maxStaleness = CloudOperationsConstants.METADATA_MAX_STALENESS;
+
+	/*
+	 * Incremented when all values are invalidated, and per key when the value
+	 * of the key is invalidated, so that values fetched before an
+	 * invalidation are not cached after it.
+	 */
+	private long generation = 0;
+
+	private final Map<String, Long> keyGenerations = new HashMap<String, Long>();
+
+	/**
+	 *
+	 * @param requests used to fetch values, so that cache misses for the same
+	 * value share one client call.
+	 */
+	public MetadataCache(RequestCoalescer requests) {
+		this.requests = requests;
+	}
+
+	/**
+	 * Returns the cached value for the given key, or fetches it with the given
+	 * request if not cached or too old.
+	 * @param key identifies the value, including any request arguments
+	 * @param request fetches the value
+	 * @param monitor
+	 * @return value for the given key
+	 * @throws CoreException if the value is not cached and fetching it failed
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(String key, ClientRequest<T> request, IProgressMonitor monitor) throws CoreException {
+		long now = getCurrentTime();
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				long age = now - entry.fetchedAt;
+				long timeToLive = getTimeToLive(key);
+				if (age < timeToLive) {
+					return (T) entry.value;
+				}
+				else if (age < timeToLive + maxStaleness) {
+					if (!entry.revalidating) {
+						entry.revalidating = true;
+						new RevalidateJob<T>(key, request).schedule();
+					}
+					return (T) entry.value;
+				}
+			}
+		}
+
+		try {
+			return fetch(key, request, monitor);
+		}
+		catch (CoreException e) {
+			// While the server is unreachable, serve whatever was cached last,
+			// regardless of its age
+			if (CircuitBreaker.isCircuitOpenError(e)) {
+				synchronized (this) {
+					Entry entry = entries.get(key);
+					if (entry != null) {
+						return (T) entry.value;
+					}
+				}
+			}
+			throw e;
+		}
+	}
+
+	protected <T> T fetch(String key, ClientRequest<T> request, IProgressMonitor monitor) throws CoreException {
+		long fetchGeneration;
+		long fetchKeyGeneration;
+		synchronized (this) {
+			fetchGeneration = generation;
+			fetchKeyGeneration = getKeyGeneration(key);
+		}
+
+		T value = requests.run(key, request, monitor);
+
+		synchronized (this) {
+			if (fetchGeneration == generation && fetchKeyGeneration == getKeyGeneration(key)) {
+				entries.put(key, new Entry(value, getCurrentTime()));
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * Removes the value for the given key, so that it is fetched again on next
+	 * access. Values of other keys are kept.
+	 * @param key
+	 */
+	public synchronized void invalidate(String key) {
+		keyGenerations.put(key, getKeyGeneration(key) + 1);
+		entries.remove(key);
+	}
+
+	/**
+	 * Removes all cached values, for example when the server's space changes.
+	 */
+	public synchronized void invalidateAll() {
+		generation++;
+		entries.clear();
+	}
+
+	/**
+	 * Sets the time to live for the given key, overriding the default time to
+	 * live.
+	 * @param key
+	 * @param timeToLive in milliseconds. 0 or less to not cache the value.
+	 */
+	public synchronized void setTimeToLive(String key, long timeToLive) {
+		timesToLive.put(key, timeToLive);
+	}
+
+	/**
+	 * @param maxStaleness in milliseconds, how long past its time to live a
+	 * value is still returned while it is fetched again in the background.
+	 */
+	public synchronized void setMaxStaleness(long maxStaleness) {
+		this.maxStaleness = maxStaleness;
+	}
+
+	protected synchronized long getTimeToLive(String key) {
+		Long timeToLive = timesToLive.get(key);
+		if (timeToLive != null) {
+			return timeToLive;
+		}
+		CloudFoundryPlugin plugin = CloudFoundryPlugin.getDefault();
+		return plugin != null ? plugin.getMetadataCacheTimeToLive()
+				: CloudFoundryPlugin.DEFAULT_METADATA_CACHE_TTL_PREFERENCE_VAL;
+	}
+
+	private long getKeyGeneration(String key) {
+		Long keyGeneration = keyGenerations.get(key);
+		return keyGeneration != null ? keyGeneration : 0;
+	}
+
+	protected long getCurrentTime() {
+		return System.currentTimeMillis();
+	}
+
+	private synchronized void revalidationDone(String key) {
+		Entry entry = entries.get(key);
+		if (entry != null) {
+			entry.revalidating = false;
+		}
+	}
+
+	/**
+	 * Fetches a stale value again in the background. Failures are only
+	 * traced, as the stale value remains available until it is too old, at
+	 * which point it is fetched in the calling thread and any error reported
+	 * there.
+	 */
+	class RevalidateJob<T> extends Job {
+
+		private final String key;
+
+		private final ClientRequest<T> request;
+
+		RevalidateJob(String key, ClientRequest<T> request) {
+			super(NLS.bind("Refreshing Cloud Foundry metadata: {0}", key));
+			this.key = key;
+			this.request = request;
+			setSystem(true);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			try {
+				fetch(key, request, monitor);
+			}
+			catch (CoreException e) {
+				CloudFoundryPlugin.trace(NLS.bind("Failed to refresh cached {0}: {1}", key, e.getMessage()));
+			}
+			catch (OperationCanceledException e) {
+				return Status.CANCEL_STATUS;
+			}
+			finally {
+				revalidationDone(key);
+			}
+			return Status.OK_STATUS;
+		}
+	}
+
+}
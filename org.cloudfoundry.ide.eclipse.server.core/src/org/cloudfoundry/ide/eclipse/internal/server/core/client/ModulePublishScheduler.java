@@ -0,0 +1,418 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudErrorUtil;
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudUtil;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jst.server.core.IWebModule;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.wst.server.core.IModule;
+import org.eclipse.wst.server.core.internal.Server;
+import org.eclipse.wst.server.core.model.IModuleFile;
+import org.eclipse.wst.server.core.model.IModuleFolder;
+import org.eclipse.wst.server.core.model.IModuleResource;
+
+/**
+ * Publishes several modules of a server concurrently, up to a maximum number
+ * of modules at a time. Modules of the same application are published one
+ * after the other.
+ * <p/>
+ * Applications that share library jars with an application published before
+ * them wait until that application has been published, so that the shared
+ * jars are already known to the server when they are uploaded, and only the
+ * jars that are not shared have to be sent. Applications with the most jars
+ * are published first.
+ * <p/>
+ * Errors do not stop the publishing of other modules, and are collected into
+ * one {@link MultiStatus}.
+ * <p/>
+ * Each application is published with its own progress monitor, as progress
+ * monitors must only be used by one thread. The thread that waits for the
+ * applications reports their progress to the caller's monitor, and forwards
+ * its cancellation to them.
+ */
+public class ModulePublishScheduler {
+
+	private static final long WAIT_INTERVAL = 200;
+
+	private static final int TICKS_PER_MODULE = 100;
+
+	private final CloudFoundryServerBehaviour behaviour;
+
+	private final int maxConcurrent;
+
+	/**
+	 *
+	 * @param behaviour of the server to publish to
+	 * @param maxConcurrent maximum number of modules published at the same
+	 * time
+	 */
+	public ModulePublishScheduler(CloudFoundryServerBehaviour behaviour, int maxConcurrent) {
+		this.behaviour = behaviour;
+		this.maxConcurrent = Math.max(1, maxConcurrent);
+	}
+
+	/**
+	 * Publishes the given modules, and waits until all are published.
+	 * @param modules
+	 * @param monitor
+	 * @return OK status if all modules were published, cancel status if
+	 * publishing was cancelled before any error, or a {@link MultiStatus} with
+	 * the errors of each module that failed to publish.
+	 */
+	public IStatus publish(List<IModule[]> modules, IProgressMonitor monitor) {
+		MultiStatus status = new MultiStatus(CloudFoundryPlugin.PLUGIN_ID, 0,
+				"Failed to publish one or more applications", null);
+		List<PublishTask> tasks = createTasks(modules);
+		if (tasks.isEmpty()) {
+			return Status.OK_STATUS;
+		}
+
+		SubMonitor progress = SubMonitor.convert(monitor, "Publishing applications", modules.size()
+				* TICKS_PER_MODULE);
+
+		boolean cancelled = false;
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxConcurrent, tasks.size()),
+				new ThreadFactory() {
+
+					private final AtomicInteger count = new AtomicInteger(1);
+
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, NLS.bind("Cloud Foundry publish - {0}",
+								count.getAndIncrement()));
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		try {
+			// Tasks only wait on tasks submitted before them, which are
+			// started first
+			CompletionService<PublishTask> completion = new ExecutorCompletionService<PublishTask>(executor);
+			for (PublishTask task : tasks) {
+				completion.submit(task, task);
+			}
+
+			int completed = 0;
+			while (completed < tasks.size()) {
+				if (!cancelled && progress.isCanceled()) {
+					cancelled = true;
+					cancel(tasks);
+				}
+				Future<PublishTask> future = completion.poll(WAIT_INTERVAL, TimeUnit.MILLISECONDS);
+				if (future != null) {
+					completed++;
+					try {
+						for (IStatus error : future.get().errors) {
+							status.add(error);
+						}
+					}
+					catch (ExecutionException e) {
+						// Tasks handle their own errors, other than errors
+						// such as linkage errors. The remaining tasks are
+						// still waited for.
+						status.add(CloudErrorUtil.toCoreException(e.getCause()).getStatus());
+					}
+				}
+				reportProgress(tasks, progress);
+			}
+		}
+		catch (InterruptedException e) {
+			cancelled = true;
+			cancel(tasks);
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			executor.shutdown();
+			progress.done();
+		}
+
+		if (status.isOK() && cancelled) {
+			return Status.CANCEL_STATUS;
+		}
+		return status;
+	}
+
+	private void cancel(List<PublishTask> tasks) {
+		for (PublishTask task : tasks) {
+			task.monitor.setCanceled(true);
+		}
+	}
+
+	/**
+	 * Reports the progress of the tasks since the last report to the given
+	 * monitor. Invoked by the thread that waits for the tasks.
+	 */
+	private void reportProgress(List<PublishTask> tasks, SubMonitor progress) {
+		for (PublishTask task : tasks) {
+			int ticks = task.monitor.getTicks();
+			if (ticks > task.reportedTicks) {
+				progress.subTask(NLS.bind("Publishing {0}", task.name));
+				progress.worked(ticks - task.reportedTicks);
+				task.reportedTicks = ticks;
+			}
+		}
+	}
+
+	/**
+	 * Groups modules by application, and determines the order in which
+	 * applications are published, and which applications have to wait for
+	 * others because they share jars.
+	 * @param modules
+	 * @return tasks in the order they should be started
+	 */
+	protected List<PublishTask> createTasks(List<IModule[]> modules) {
+		Map<String, PublishTask> tasksByName = new LinkedHashMap<String, PublishTask>();
+		for (IModule[] module : modules) {
+			String name = getApplicationName(module);
+			PublishTask task = tasksByName.get(name);
+			if (task == null) {
+				task = new PublishTask(name);
+				tasksByName.put(name, task);
+			}
+			task.modules.add(module);
+			task.jars.addAll(getJarNames(module));
+		}
+
+		List<PublishTask> tasks = new ArrayList<PublishTask>(tasksByName.values());
+		Collections.sort(tasks, new Comparator<PublishTask>() {
+			public int compare(PublishTask task1, PublishTask task2) {
+				return task2.jars.size() - task1.jars.size();
+			}
+		});
+
+		// The first application with a jar seeds it for all others
+		Map<String, PublishTask> seeds = new HashMap<String, PublishTask>();
+		for (PublishTask task : tasks) {
+			for (String jar : task.jars) {
+				PublishTask seed = seeds.get(jar);
+				if (seed == null) {
+					seeds.put(jar, task);
+				}
+				else if (seed != task) {
+					task.waitFor.add(seed);
+				}
+			}
+		}
+		return tasks;
+	}
+
+	/**
+	 *
+	 * @param module
+	 * @return deployed application name of the module, if known, or the
+	 * module id otherwise
+	 */
+	protected String getApplicationName(IModule[] module) {
+		try {
+			CloudFoundryApplicationModule appModule = behaviour.getCloudFoundryServer().getExistingCloudModule(
+					module[0]);
+			if (appModule != null && appModule.getDeployedApplicationName() != null) {
+				return appModule.getDeployedApplicationName();
+			}
+		}
+		catch (CoreException e) {
+			CloudFoundryPlugin.logError(e);
+		}
+		return module[0].getId();
+	}
+
+	/**
+	 *
+	 * @param module
+	 * @return names of the jars the module contains, either as files or as
+	 * child modules of a web module. Jars are identified by name only, as
+	 * library jar names normally include a version.
+	 */
+	protected Set<String> getJarNames(IModule[] module) {
+		Set<String> jars = new LinkedHashSet<String>();
+		IWebModule webModule = CloudUtil.getWebModule(module);
+		if (webModule != null && webModule.getModules() != null) {
+			for (IModule child : webModule.getModules()) {
+				String uri = webModule.getURI(child);
+				jars.add(uri != null ? uri.substring(uri.lastIndexOf('/') + 1) : child.getName());
+			}
+		}
+		IModuleResource[] resources = ((Server) behaviour.getServer()).getResources(module);
+		if (resources != null) {
+			addJarNames(resources, jars);
+		}
+		return jars;
+	}
+
+	private void addJarNames(IModuleResource[] resources, Set<String> jars) {
+		for (IModuleResource resource : resources) {
+			if (resource instanceof IModuleFolder) {
+				addJarNames(((IModuleFolder) resource).members(), jars);
+			}
+			else if (resource instanceof IModuleFile && resource.getName().endsWith(".jar")) {
+				jars.add(resource.getName());
+			}
+		}
+	}
+
+	/**
+	 * Publishes a single module. Invoked concurrently for modules of
+	 * different applications.
+	 * @param module
+	 * @param monitor
+	 * @throws CoreException
+	 */
+	protected void publishModule(IModule[] module, IProgressMonitor monitor) throws CoreException {
+		behaviour.startModule(module, monitor);
+	}
+
+	/**
+	 * Publishes the modules of one application.
+	 */
+	protected class PublishTask implements Runnable {
+
+		final String name;
+
+		final List<IModule[]> modules = new ArrayList<IModule[]>();
+
+		final Set<String> jars = new LinkedHashSet<String>();
+
+		final Set<PublishTask> waitFor = new LinkedHashSet<PublishTask>();
+
+		final List<IStatus> errors = new ArrayList<IStatus>();
+
+		private final CountDownLatch published = new CountDownLatch(1);
+
+		final TaskMonitor monitor = new TaskMonitor();
+
+		/**
+		 * Progress already reported to the caller's monitor. Only accessed by
+		 * the thread that waits for the tasks.
+		 */
+		int reportedTicks = 0;
+
+		PublishTask(String name) {
+			this.name = name;
+		}
+
+		public void run() {
+			try {
+				for (PublishTask task : waitFor) {
+					// Publish regardless of whether the other application was
+					// published successfully
+					task.published.await();
+				}
+				for (IModule[] module : modules) {
+					if (monitor.isCanceled()) {
+						return;
+					}
+					try {
+						publishModule(module, monitor);
+					}
+					catch (CoreException e) {
+						errors.add(e.getStatus());
+					}
+					catch (OperationCanceledException e) {
+						return;
+					}
+					catch (RuntimeException e) {
+						errors.add(CloudErrorUtil.toCoreException(e).getStatus());
+					}
+					finally {
+						monitor.moduleDone();
+					}
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			finally {
+				published.countDown();
+			}
+		}
+
+	}
+
+	/**
+	 * Progress monitor of a task, used by the thread that publishes the
+	 * task's modules. The progress of each module is tracked so that it can
+	 * be read by the thread that waits for the tasks.
+	 */
+	static class TaskMonitor extends NullProgressMonitor {
+
+		private int modulesDone = 0;
+
+		private double totalWork = 0;
+
+		private double worked = 0;
+
+		@Override
+		public synchronized void beginTask(String name, int totalWork) {
+			this.totalWork = totalWork > 0 ? totalWork : 0;
+			this.worked = 0;
+		}
+
+		@Override
+		public synchronized void internalWorked(double work) {
+			worked += work;
+		}
+
+		@Override
+		public void worked(int work) {
+			internalWorked(work);
+		}
+
+		/**
+		 * Notifies that the current module has been published, or failed to
+		 * publish.
+		 */
+		synchronized void moduleDone() {
+			modulesDone++;
+			totalWork = 0;
+			worked = 0;
+		}
+
+		/**
+		 *
+		 * @return progress of the task, in ticks
+		 */
+		synchronized int getTicks() {
+			double moduleDone = totalWork > 0 ? Math.min(1, worked / totalWork) : 0;
+			return (int) ((modulesDone + moduleDone) * TICKS_PER_MODULE);
+		}
+
+	}
+
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.client;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cloudfoundry.client.lib.HttpProxyConfiguration;
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
+import org.eclipse.core.net.proxy.IProxyChangeEvent;
+import org.eclipse.core.net.proxy.IProxyChangeListener;
+
+/**
+ * Caches the proxy configuration resolved for each server URL, so that the
+ * network proxy settings are not looked up again on every client request. The
+ * cache is registered as a listener with the proxy service, and is cleared
+ * whenever the proxy settings change.
+ */
+public class ProxyConfigurationCache implements IProxyChangeListener {
+
+	/*
+	 * Servers without a proxy are cached with a null configuration, so lookups
+	 * use containsKey
+	 */
+	private final Map<String, HttpProxyConfiguration> proxies = new HashMap<String, HttpProxyConfiguration>();
+
+	/*
+	 * Incremented on each proxy change, so that a configuration resolved before
+	 * a change is not cached after it.
+	 */
+	private long generation = 0;
+
+	/**
+	 *
+	 * @param serverUrl
+	 * @return proxy configuration for the given server URL, or null if no proxy
+	 * applies or the URL is not valid.
+	 */
+	public HttpProxyConfiguration getProxy(String serverUrl) {
+		if (serverUrl == null) {
+			return null;
+		}
+		long resolveGeneration;
+		synchronized (this) {
+			if (proxies.containsKey(serverUrl)) {
+				return proxies.get(serverUrl);
+			}
+			resolveGeneration = generation;
+		}
+
+		HttpProxyConfiguration proxy = resolveProxy(serverUrl);
+
+		synchronized (this) {
+			if (resolveGeneration == generation) {
+				proxies.put(serverUrl, proxy);
+			}
+		}
+		return proxy;
+	}
+
+	/**
+	 * Resolves the proxy configuration of the given server URL from the
+	 * current network proxy settings.
+	 * @param serverUrl
+	 * @return proxy configuration, or null if no proxy applies or the URL is
+	 * not valid.
+	 */
+	protected HttpProxyConfiguration resolveProxy(String serverUrl) {
+		try {
+			return CloudFoundryClientFactory.resolveProxy(new URL(serverUrl));
+		}
+		catch (MalformedURLException e) {
+			CloudFoundryPlugin.logError("Failed to resolve proxy settings due to " + e.getMessage(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Clears all cached proxy configurations, so that they are resolved again
+	 * from the current network proxy settings on next access.
+	 */
+	public synchronized void clear() {
+		generation++;
+		proxies.clear();
+	}
+
+	public void proxyInfoChanged(IProxyChangeEvent event) {
+		CloudFoundryPlugin.trace("Proxy settings changed. Clearing cached Cloud Foundry proxy configurations.");
+		clear();
+	}
+
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.client;
+
+/**
+ * Decides how long to wait before the next background refresh of a server's
+ * deployed applications.
+ * <p/>
+ * Refresh is fast for a short window after a user operation, when changes are
+ * expected, and while applications are staging or starting, up to a maximum
+ * time. Otherwise the interval starts at the fast interval and doubles every
+ * time a refresh found no changes, up to a maximum interval. Any change starts
+ * the back off again.
+ */
+public class RefreshSchedule {
+
+	private final long fastInterval;
+
+	private final long fastWindow;
+
+	private final long maxStagingWindow;
+
+	private final long maxInterval;
+
+	private long fastUntil;
+
+	private long stagingSince = -1;
+
+	private long backOffInterval;
+
+	/**
+	 * Schedule with the default intervals.
+	 */
+	public RefreshSchedule() {
+		this(CloudOperationsConstants.FAST_REFRESH_INTERVAL, CloudOperationsConstants.FAST_REFRESH_WINDOW,
+				CloudOperationsConstants.MAX_STAGING_REFRESH_WINDOW, CloudOperationsConstants.MAX_REFRESH_INTERVAL);
+	}
+
+	/**
+	 *
+	 * @param fastInterval in milliseconds, interval right after user
+	 * operations and while applications are staging
+	 * @param fastWindow in milliseconds, how long refresh stays fast after a
+	 * user operation
+	 * @param maxStagingWindow in milliseconds, how long refresh stays fast
+	 * while applications are staging
+	 * @param maxInterval in milliseconds, maximum interval when nothing changes
+	 */
+	public RefreshSchedule(long fastInterval, long fastWindow, long maxStagingWindow, long maxInterval) {
+		this.fastInterval = fastInterval;
+		this.fastWindow = fastWindow;
+		this.maxStagingWindow = maxStagingWindow;
+		this.maxInterval = maxInterval;
+		this.backOffInterval = fastInterval;
+	}
+
+	/**
+	 * Records a user operation, after which refresh is fast for the fast
+	 * window.
+	 */
+	public synchronized void operationCompleted() {
+		fastUntil = getCurrentTime() + fastWindow;
+		backOffInterval = fastInterval;
+	}
+
+	/**
+	 * Records the outcome of a refresh and returns how long to wait before the
+	 * next one.
+	 * @param changed true if the refresh found changes in the deployed
+	 * applications
+	 * @param staging true if any application is staging or starting
+	 * @return interval in milliseconds
+	 */
+	public synchronized long getNextInterval(boolean changed, boolean staging) {
+		long now = getCurrentTime();
+		if (!staging) {
+			stagingSince = -1;
+		}
+		else if (stagingSince < 0) {
+			stagingSince = now;
+		}
+
+		if (changed) {
+			backOffInterval = fastInterval;
+		}
+
+		if (now < fastUntil || (staging && now - stagingSince < maxStagingWindow)) {
+			return fastInterval;
+		}
+
+		long interval = backOffInterval;
+		backOffInterval = Math.min(backOffInterval * 2, maxInterval);
+		return interval;
+	}
+
+	public long getFastInterval() {
+		return fastInterval;
+	}
+
+	protected long getCurrentTime() {
+		return System.currentTimeMillis();
+	}
+
+}
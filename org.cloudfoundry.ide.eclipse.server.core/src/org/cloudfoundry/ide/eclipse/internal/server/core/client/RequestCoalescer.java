@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.client;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Coalesces identical read requests that are in progress at the same time, so
+ * that they share one client call and one result. Requests are identified by a
+ * key that should include the operation and all its arguments. The first
+ * caller for a given key performs the request, and any caller asking for the
+ * same key while the request is in progress waits for its result instead of
+ * issuing its own call. Once the request completes, the next call for that
+ * key performs a new request.
+ * <p/>
+ * Results are shared between callers, and therefore should not be modified.
+ * <p/>
+ * Only read requests without side effects should be coalesced.
+ */
+public class RequestCoalescer {
+
+	private final Map<String, FutureTask<?>> inProgress = new HashMap<String, FutureTask<?>>();
+
+	/**
+	 * Performs the given request, or waits for the result of an identical
+	 * request already in progress.
+	 * @param key identifies the request, including any request arguments.
+	 * @param request performed if no identical request is in progress
+	 * @param monitor may be null. If cancelled while waiting for another
+	 * caller's request, only the wait is terminated.
+	 * @return result of the request
+	 * @throws CoreException if the request failed
+	 * @throws OperationCanceledException if the monitor was cancelled
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T run(String key, final ClientRequest<T> request, final IProgressMonitor monitor)
+			throws CoreException {
+		while (true) {
+			FutureTask<T> task = null;
+			boolean performRequest = false;
+			synchronized (inProgress) {
+				task = (FutureTask<T>) inProgress.get(key);
+				if (task == null) {
+					task = new FutureTask<T>(new Callable<T>() {
+						public T call() throws Exception {
+							return request.run(monitor);
+						}
+					});
+					inProgress.put(key, task);
+					performRequest = true;
+				}
+			}
+
+			if (performRequest) {
+				try {
+					task.run();
+				}
+				finally {
+					synchronized (inProgress) {
+						inProgress.remove(key);
+					}
+				}
+			}
+
+			try {
+				return RequestExecutor.get(task, monitor, false);
+			}
+			catch (OperationCanceledException e) {
+				// If another caller's request was cancelled by that caller,
+				// perform the request again rather than failing
+				if (performRequest || (monitor != null && monitor.isCanceled())) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @return number of distinct requests currently in progress
+	 */
+	public int getInProgressCount() {
+		synchronized (inProgress) {
+			return inProgress.size();
+		}
+	}
+
+}
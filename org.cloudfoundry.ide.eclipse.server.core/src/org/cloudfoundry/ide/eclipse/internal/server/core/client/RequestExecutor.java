@@ -0,0 +1,232 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.client;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudErrorUtil;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Runs client requests asynchronously on a bounded pool of threads, and
+ * returns a {@link Future} for each request. Each server behaviour has its own
+ * executor, so that a slow or unresponsive server cannot hold up requests to
+ * other servers.
+ * <p/>
+ * If all threads are busy and the queue of pending requests is full, the
+ * request is run in the calling thread instead. Once the executor has been
+ * shut down, requests are rejected, and their future fails.
+ * <p/>
+ * Cancelling a returned future also cancels the progress monitor passed to
+ * the request, so that any wait between reattempts is terminated.
+ */
+public class RequestExecutor {
+
+	public static final int DEFAULT_MAX_THREADS = 4;
+
+	private static final int MAX_QUEUED_REQUESTS = 100;
+
+	private static final long KEEP_ALIVE = 30;
+
+	private static final long WAIT_INTERVAL = 200;
+
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 *
+	 * @param name used to name the executor threads
+	 * @param maxThreads maximum number of requests to run concurrently
+	 */
+	public RequestExecutor(final String name, int maxThreads) {
+		executor = new ThreadPoolExecutor(maxThreads, maxThreads, KEEP_ALIVE, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(MAX_QUEUED_REQUESTS), new ThreadFactory() {
+
+					private final AtomicInteger count = new AtomicInteger(1);
+
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, name + " - " + count.getAndIncrement());
+						thread.setDaemon(true);
+						return thread;
+					}
+				}, new RejectedExecutionHandler() {
+
+					public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+						if (executor.isShutdown() && runnable instanceof RequestTask<?>) {
+							((RequestTask<?>) runnable).reject();
+						}
+						else {
+							runnable.run();
+						}
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * A request that is run asynchronously.
+	 */
+	public static abstract class AsyncRequest<T> {
+
+		/**
+		 *
+		 * @param monitor non-null monitor that is cancelled when the future
+		 * for this request is cancelled.
+		 * @return result of the request
+		 * @throws CoreException if the request failed
+		 */
+		protected abstract T run(IProgressMonitor monitor) throws CoreException;
+
+	}
+
+	/**
+	 * Schedules the given request to run asynchronously.
+	 * @param request
+	 * @return non-null future for the result of the request. If the request
+	 * fails, {@link Future#get()} throws an {@link ExecutionException} whose
+	 * cause is the request's {@link CoreException}.
+	 */
+	public <T> Future<T> submit(AsyncRequest<T> request) {
+		RequestTask<T> task = new RequestTask<T>(request, new NullProgressMonitor());
+		executor.execute(task);
+		return task;
+	}
+
+	/**
+	 *
+	 * @return true if the executor was shut down and rejects new requests.
+	 */
+	public boolean isShutdown() {
+		return executor.isShutdown();
+	}
+
+	/**
+	 * Waits for the result of the given future. If the monitor is cancelled
+	 * while waiting, the future is cancelled as well.
+	 * @param future
+	 * @param monitor may be null
+	 * @return result of the future
+	 * @throws CoreException if the request that computes the result failed
+	 * @throws OperationCanceledException if the monitor was cancelled, or the
+	 * future was cancelled.
+	 */
+	public static <T> T get(Future<T> future, IProgressMonitor monitor) throws CoreException {
+		return get(future, monitor, true);
+	}
+
+	/**
+	 * Waits for the result of the given future.
+	 * @param future
+	 * @param monitor may be null
+	 * @param cancelFuture true if the future should be cancelled when the
+	 * monitor is cancelled while waiting. False if only the wait should be
+	 * terminated, for example because other callers are also waiting for the
+	 * same future.
+	 * @return result of the future
+	 * @throws CoreException if the request that computes the result failed
+	 * @throws OperationCanceledException if the monitor was cancelled, or the
+	 * future was cancelled.
+	 */
+	public static <T> T get(Future<T> future, IProgressMonitor monitor, boolean cancelFuture) throws CoreException {
+		while (true) {
+			if (monitor != null && monitor.isCanceled()) {
+				if (cancelFuture) {
+					future.cancel(true);
+				}
+				throw new OperationCanceledException();
+			}
+			try {
+				return future.get(WAIT_INTERVAL, TimeUnit.MILLISECONDS);
+			}
+			catch (TimeoutException e) {
+				// Check for cancellation and continue waiting
+			}
+			catch (InterruptedException e) {
+				if (cancelFuture) {
+					future.cancel(true);
+				}
+				throw new OperationCanceledException();
+			}
+			catch (CancellationException e) {
+				throw new OperationCanceledException();
+			}
+			catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof CoreException) {
+					throw (CoreException) cause;
+				}
+				else if (cause instanceof OperationCanceledException) {
+					throw (OperationCanceledException) cause;
+				}
+				throw CloudErrorUtil.toCoreException(cause);
+			}
+		}
+	}
+
+	/**
+	 * Stops accepting new requests and cancels any pending requests. Requests
+	 * submitted afterward are rejected.
+	 */
+	public void shutdown() {
+		List<Runnable> pending = executor.shutdownNow();
+		for (Runnable runnable : pending) {
+			if (runnable instanceof Future<?>) {
+				((Future<?>) runnable).cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Future of a request, whose progress monitor is cancelled when the
+	 * future is cancelled.
+	 */
+	private static class RequestTask<T> extends FutureTask<T> {
+
+		private final IProgressMonitor monitor;
+
+		RequestTask(final AsyncRequest<T> request, final IProgressMonitor monitor) {
+			super(new Callable<T>() {
+
+				public T call() throws Exception {
+					return request.run(monitor);
+				}
+
+			});
+			this.monitor = monitor;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			monitor.setCanceled(true);
+			return super.cancel(mayInterruptIfRunning);
+		}
+
+		void reject() {
+			setException(CloudErrorUtil.toCoreException("Request rejected as the request executor was shut down"));
+		}
+
+	}
+
+}
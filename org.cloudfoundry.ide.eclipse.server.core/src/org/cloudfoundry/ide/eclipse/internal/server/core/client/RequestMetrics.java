@@ -0,0 +1,322 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.client;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudErrorUtil;
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Records metrics of all client requests, per server: latency histograms per
+ * request label, error counts per {@link CloudErrorUtil} error category, and
+ * the number of reattempts and login fallbacks. Metrics are kept in memory
+ * only, and are available through this API, through JMX under
+ * {@link #OBJECT_NAME}, and can be written to the error log.
+ */
+public class RequestMetrics implements RequestMetricsMBean {
+
+	public static final String OBJECT_NAME = "org.cloudfoundry.ide.eclipse:type=RequestMetrics";
+
+	private static final String NO_SERVER = "<no server>";
+
+	private static final RequestMetrics DEFAULT = new RequestMetrics();
+
+	private final Map<String, ServerMetrics> servers = new TreeMap<String, ServerMetrics>();
+
+	public static RequestMetrics getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Records the outcome of a client request.
+	 * @param serverUrl may be null if not known
+	 * @param label of the request
+	 * @param latency in milliseconds, including reattempts
+	 * @param error null if the request succeeded
+	 * @param retries number of reattempts made
+	 * @param loginFallback true if the request had to log in again after
+	 * failing with an authorisation error
+	 */
+	public void record(String serverUrl, String label, long latency, Throwable error, int retries,
+			boolean loginFallback) {
+		getServerMetrics(serverUrl).record(label, latency, error, retries, loginFallback);
+	}
+
+	/**
+	 *
+	 * @param serverUrl may be null
+	 * @return non-null metrics for the given server. Created if none exist yet.
+	 */
+	public ServerMetrics getServerMetrics(String serverUrl) {
+		if (serverUrl == null) {
+			serverUrl = NO_SERVER;
+		}
+		synchronized (servers) {
+			ServerMetrics metrics = servers.get(serverUrl);
+			if (metrics == null) {
+				metrics = new ServerMetrics(serverUrl);
+				servers.put(serverUrl, metrics);
+			}
+			return metrics;
+		}
+	}
+
+	public List<ServerMetrics> getAllServerMetrics() {
+		synchronized (servers) {
+			return new ArrayList<ServerMetrics>(servers.values());
+		}
+	}
+
+	public String[] getServerUrls() {
+		synchronized (servers) {
+			return servers.keySet().toArray(new String[0]);
+		}
+	}
+
+	public long getRequestCount() {
+		long count = 0;
+		for (ServerMetrics metrics : getAllServerMetrics()) {
+			count += metrics.getRequestCount();
+		}
+		return count;
+	}
+
+	public long getErrorCount() {
+		long count = 0;
+		for (ServerMetrics metrics : getAllServerMetrics()) {
+			count += metrics.getErrorCount();
+		}
+		return count;
+	}
+
+	public long getRetryCount() {
+		long count = 0;
+		for (ServerMetrics metrics : getAllServerMetrics()) {
+			count += metrics.getRetryCount();
+		}
+		return count;
+	}
+
+	public long getLoginFallbackCount() {
+		long count = 0;
+		for (ServerMetrics metrics : getAllServerMetrics()) {
+			count += metrics.getLoginFallbackCount();
+		}
+		return count;
+	}
+
+	public String getSummary() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("Cloud Foundry request metrics\n");
+		for (ServerMetrics metrics : getAllServerMetrics()) {
+			metrics.append(builder);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 *
+	 * @param serverUrl
+	 * @return summary of the metrics of the given server only
+	 */
+	public String getSummary(String serverUrl) {
+		StringBuilder builder = new StringBuilder();
+		builder.append("Cloud Foundry request metrics\n");
+		ServerMetrics metrics;
+		synchronized (servers) {
+			metrics = servers.get(serverUrl);
+		}
+		if (metrics != null) {
+			metrics.append(builder);
+		}
+		else {
+			builder.append(NLS.bind("\nServer: {0}\n  no requests\n", serverUrl));
+		}
+		return builder.toString();
+	}
+
+	public void reset() {
+		synchronized (servers) {
+			servers.clear();
+		}
+	}
+
+	public void dumpToLog() {
+		CloudFoundryPlugin.log(CloudFoundryPlugin.getStatus(getSummary(), IStatus.INFO));
+	}
+
+	/**
+	 * Writes the metrics of the given server only to the log.
+	 * @param serverUrl
+	 */
+	public void dumpToLog(String serverUrl) {
+		CloudFoundryPlugin.log(CloudFoundryPlugin.getStatus(getSummary(serverUrl), IStatus.INFO));
+	}
+
+	/**
+	 * Registers the default metrics with the platform MBean server. Failures
+	 * are logged, as metrics are not essential.
+	 */
+	public static void registerMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(DEFAULT, name);
+			}
+		}
+		catch (Exception e) {
+			CloudFoundryPlugin.logError("Failed to register Cloud Foundry request metrics MBean", e);
+		}
+	}
+
+	public static void unregisterMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+		}
+		catch (Exception e) {
+			CloudFoundryPlugin.logError("Failed to unregister Cloud Foundry request metrics MBean", e);
+		}
+	}
+
+	/**
+	 * Metrics of all requests to one server.
+	 */
+	public static class ServerMetrics {
+
+		private final String serverUrl;
+
+		private final Map<String, LatencyHistogram> latencies = new TreeMap<String, LatencyHistogram>();
+
+		private final Map<String, AtomicLong> errors = new TreeMap<String, AtomicLong>();
+
+		private final AtomicLong requestCount = new AtomicLong();
+
+		private final AtomicLong errorCount = new AtomicLong();
+
+		private final AtomicLong retryCount = new AtomicLong();
+
+		private final AtomicLong loginFallbackCount = new AtomicLong();
+
+		ServerMetrics(String serverUrl) {
+			this.serverUrl = serverUrl;
+		}
+
+		void record(String label, long latency, Throwable error, int retries, boolean loginFallback) {
+			requestCount.incrementAndGet();
+			retryCount.addAndGet(retries);
+			if (loginFallback) {
+				loginFallbackCount.incrementAndGet();
+			}
+
+			LatencyHistogram histogram;
+			synchronized (latencies) {
+				histogram = latencies.get(label);
+				if (histogram == null) {
+					histogram = new LatencyHistogram();
+					latencies.put(label, histogram);
+				}
+			}
+			histogram.record(latency);
+
+			if (error != null) {
+				errorCount.incrementAndGet();
+				String category = CloudErrorUtil.getErrorCategory(error);
+				AtomicLong count;
+				synchronized (errors) {
+					count = errors.get(category);
+					if (count == null) {
+						count = new AtomicLong();
+						errors.put(category, count);
+					}
+				}
+				count.incrementAndGet();
+			}
+		}
+
+		public String getServerUrl() {
+			return serverUrl;
+		}
+
+		/**
+		 *
+		 * @return non-null latency histograms, by request label.
+		 */
+		public Map<String, LatencyHistogram> getLatencies() {
+			synchronized (latencies) {
+				return Collections.unmodifiableMap(new TreeMap<String, LatencyHistogram>(latencies));
+			}
+		}
+
+		/**
+		 *
+		 * @return non-null number of errors, by error category
+		 */
+		public Map<String, Long> getErrorCounts() {
+			Map<String, Long> counts = new TreeMap<String, Long>();
+			synchronized (errors) {
+				for (Map.Entry<String, AtomicLong> entry : errors.entrySet()) {
+					counts.put(entry.getKey(), entry.getValue().get());
+				}
+			}
+			return counts;
+		}
+
+		public long getRequestCount() {
+			return requestCount.get();
+		}
+
+		public long getErrorCount() {
+			return errorCount.get();
+		}
+
+		public long getRetryCount() {
+			return retryCount.get();
+		}
+
+		public long getLoginFallbackCount() {
+			return loginFallbackCount.get();
+		}
+
+		void append(StringBuilder builder) {
+			builder.append(NLS.bind("\nServer: {0}\n", serverUrl));
+			builder.append(NLS.bind("  requests: {0}, errors: {1}, retries: {2}, login fallbacks: {3}\n",
+					new Object[] { getRequestCount(), getErrorCount(), getRetryCount(), getLoginFallbackCount() }));
+			for (Map.Entry<String, Long> entry : getErrorCounts().entrySet()) {
+				builder.append(NLS.bind("  errors - {0}: {1}\n", entry.getKey(), entry.getValue()));
+			}
+			for (Map.Entry<String, LatencyHistogram> entry : getLatencies().entrySet()) {
+				LatencyHistogram histogram = entry.getValue();
+				builder.append(NLS.bind("  {0}: count={1} mean={2}ms p50={3}ms p90={4}ms p99={5}ms max={6}ms\n",
+						new Object[] { entry.getKey(), histogram.getCount(), histogram.getMean(),
+								histogram.getPercentile(50), histogram.getPercentile(90),
+								histogram.getPercentile(99), histogram.getMax() }));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.client;
+
+/**
+ * JMX management interface for {@link RequestMetrics}.
+ */
+public interface RequestMetricsMBean {
+
+	public String[] getServerUrls();
+
+	public long getRequestCount();
+
+	public long getErrorCount();
+
+	public long getRetryCount();
+
+	public long getLoginFallbackCount();
+
+	/**
+	 *
+	 * @return human-readable summary of the metrics of all servers
+	 */
+	public String getSummary();
+
+	public void reset();
+
+	public void dumpToLog();
+
+}
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core.client;
+
+import java.util.Random;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Determines how long a {@link ClientRequest} should wait between reattempts.
+ * The wait grows exponentially from a base interval with each reattempt, up
+ * to a maximum interval, and a random jitter is applied so that several
+ * clients retrying at the same time do not all hit the Cloud Controller at
+ * once. Reattempts stop once the maximum elapsed time is reached.
+ * <p/>
+ * Waiting is performed in short slices so that a cancelled progress monitor
+ * terminates the wait right away, rather than after the full interval.
+ */
+public class RetryPolicy {
+
+	/**
+	 * How often a waiting thread checks whether the progress monitor has been
+	 * cancelled.
+	 */
+	private static final long CANCEL_CHECK_INTERVAL = 100;
+
+	private static final Random random = new Random();
+
+	private final long initialInterval;
+
+	private final long maxInterval;
+
+	private final double multiplier;
+
+	private final double jitter;
+
+	private final long maxElapsedTime;
+
+	/**
+	 *
+	 * @param initialInterval wait before the first reattempt, used when the
+	 * request does not specify one of its own.
+	 * @param maxInterval upper bound of a single wait, before jitter is applied
+	 * @param multiplier factor by which the wait grows with each reattempt.
+	 * Must be 1 or greater.
+	 * @param jitter fraction, between 0 and 1, by which a wait is randomly
+	 * shortened or lengthened.
+	 * @param maxElapsedTime total time after which no further reattempts are
+	 * made
+	 */
+	public RetryPolicy(long initialInterval, long maxInterval, double multiplier, double jitter, long maxElapsedTime) {
+		this.initialInterval = initialInterval;
+		this.maxInterval = maxInterval;
+		this.multiplier = multiplier < 1 ? 1 : multiplier;
+		this.jitter = jitter < 0 ? 0 : (jitter > 1 ? 1 : jitter);
+		this.maxElapsedTime = maxElapsedTime;
+	}
+
+	/**
+	 * Default policy for client requests: starts at one second, doubles on
+	 * each reattempt up to ten seconds, with 20% jitter.
+	 * @param maxElapsedTime total time after which no further reattempts are
+	 * made
+	 */
+	public static RetryPolicy getDefault(long maxElapsedTime) {
+		return new RetryPolicy(CloudOperationsConstants.ONE_SECOND_INTERVAL,
+				CloudOperationsConstants.MEDIUM_INTERVAL, 2, 0.2, maxElapsedTime);
+	}
+
+	public long getMaxElapsedTime() {
+		return maxElapsedTime;
+	}
+
+	/**
+	 *
+	 * @param retry number of reattempts that have already been made, starting
+	 * at 0 for the first reattempt.
+	 * @param baseInterval base wait requested for the error that occurred, or
+	 * 0 or less to use the policy's initial interval.
+	 * @return wait in milliseconds before the next reattempt. Always positive.
+	 */
+	public long getInterval(int retry, long baseInterval) {
+		double interval = baseInterval > 0 ? baseInterval : initialInterval;
+		// Do not let the base interval exceed the maximum, but if the request
+		// asks for a longer wait than the maximum, respect it
+		double max = Math.max(maxInterval, interval);
+		for (int i = 0; i < retry && interval < max; i++) {
+			interval *= multiplier;
+		}
+		interval = Math.min(interval, max);
+
+		if (jitter > 0) {
+			double delta = interval * jitter;
+			interval = interval - delta + (2 * delta * nextRandom());
+		}
+		long result = Math.round(interval);
+		return result > 0 ? result : 1;
+	}
+
+	/**
+	 *
+	 * @param elapsed time already spent on the request, including previous
+	 * attempts and waits.
+	 * @param interval next wait
+	 * @return true if another attempt can be made after waiting the given
+	 * interval without exceeding the maximum elapsed time.
+	 */
+	public boolean canRetry(long elapsed, long interval) {
+		return interval > 0 && elapsed + interval <= maxElapsedTime;
+	}
+
+	/**
+	 * Waits for the given interval, returning early if the monitor is
+	 * cancelled or the thread is interrupted.
+	 * @param interval
+	 * @param monitor may be null
+	 * @return true if the full interval was waited, false if the wait was
+	 * terminated by cancellation or interruption.
+	 */
+	public boolean sleep(long interval, IProgressMonitor monitor) {
+		long end = System.currentTimeMillis() + interval;
+		long remaining = interval;
+		while (remaining > 0) {
+			if (monitor != null && monitor.isCanceled()) {
+				return false;
+			}
+			try {
+				Thread.sleep(Math.min(remaining, CANCEL_CHECK_INTERVAL));
+			}
+			catch (InterruptedException e) {
+				// Restore the interrupt status so that callers can also react
+				Thread.currentThread().interrupt();
+				return false;
+			}
+			remaining = end - System.currentTimeMillis();
+		}
+		return monitor == null || !monitor.isCanceled();
+	}
+
+	protected double nextRandom() {
+		return random.nextDouble();
+	}
+
+}
@@ -68,6 +68,7 @@ public abstract class AbstractCloudFoundryTest extends TestCase {
 		// the harness
 		// they must all reference this instance variable.
 		getTestFixture().baseConfiguration();
+		getTestFixture().beginHttpFixture(getClass(), getName());
 		harness = getTestFixture().createHarness();
 		server = harness.createServer();
 		cloudServer = (CloudFoundryServer) server.loadAdapter(CloudFoundryServer.class, null);
@@ -115,8 +116,13 @@ public abstract class AbstractCloudFoundryTest extends TestCase {
 
 	@Override
 	protected void tearDown() throws Exception {
-		serverBehavior.deleteAllApplications(new NullProgressMonitor());
-		harness.dispose();
+		try {
+			serverBehavior.deleteAllApplications(new NullProgressMonitor());
+			harness.dispose();
+		}
+		finally {
+			getTestFixture().endHttpFixture();
+		}
 	}
 
 	protected void assertApplicationIsRunning(IModule module, String prefix) throws Exception {
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.client.lib.CloudFoundryOperations;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudOperationsConstants;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+
+/**
+ * Tests that logins of a client are shared and that valid tokens are reused,
+ * with a client that only counts logins.
+ */
+public class AccessTokenHandlerTest extends TestCase {
+
+	private final AtomicInteger logins = new AtomicInteger();
+
+	private long tokenLifetime = 60 * 60 * 1000;
+
+	private long loginTime = 0;
+
+	private CloudFoundryOperations client;
+
+	@Override
+	protected void setUp() throws Exception {
+		client = (CloudFoundryOperations) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] { CloudFoundryOperations.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("login".equals(method.getName())) {
+							logins.incrementAndGet();
+							Thread.sleep(loginTime);
+							DefaultOAuth2AccessToken token = new DefaultOAuth2AccessToken("token" + logins.get());
+							token.setExpiration(new Date(System.currentTimeMillis() + tokenLifetime));
+							return token;
+						}
+						if ("hashCode".equals(method.getName())) {
+							return System.identityHashCode(proxy);
+						}
+						if ("equals".equals(method.getName())) {
+							return proxy == args[0];
+						}
+						return null;
+					}
+				});
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		AccessTokenHandler.dispose(client);
+	}
+
+	public void testConcurrentUnauthorisedRequestsLoginOnce() throws Exception {
+		// Each thread logs in again as after a 401, while the first login is
+		// still in progress
+		loginTime = 500;
+		final CloudFoundryLoginHandler loginHandler = new CloudFoundryLoginHandler(client, null);
+		int threads = 8;
+		final CountDownLatch started = new CountDownLatch(threads);
+		final CountDownLatch done = new CountDownLatch(threads);
+		final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+		for (int i = 0; i < threads; i++) {
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						started.countDown();
+						started.await();
+						loginHandler.login(new NullProgressMonitor());
+					}
+					catch (Throwable e) {
+						errors.add(e);
+					}
+					finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertTrue(errors.isEmpty());
+		assertEquals(1, logins.get());
+		assertFalse(AccessTokenHandler.getHandler(client).isExpiring());
+	}
+
+	public void testValidTokenReused() throws Exception {
+		CloudFoundryLoginHandler loginHandler = new CloudFoundryLoginHandler(client, null);
+
+		// Expiry is not known before the first login
+		assertFalse(loginHandler.loginIfTokenExpiring(new NullProgressMonitor(), 1, 0));
+		loginHandler.login(new NullProgressMonitor());
+		assertEquals(1, logins.get());
+
+		for (int i = 0; i < 5; i++) {
+			assertFalse(loginHandler.loginIfTokenExpiring(new NullProgressMonitor(), 1, 0));
+		}
+		assertEquals(1, logins.get());
+	}
+
+	public void testExpiringTokenRefreshed() throws Exception {
+		CloudFoundryLoginHandler loginHandler = new CloudFoundryLoginHandler(client, null);
+
+		// Within the refresh margin
+		tokenLifetime = CloudOperationsConstants.ACCESS_TOKEN_REFRESH_MARGIN / 2;
+		loginHandler.login(new NullProgressMonitor());
+		assertTrue(AccessTokenHandler.getHandler(client).isExpiring());
+
+		tokenLifetime = 60 * 60 * 1000;
+		assertTrue(loginHandler.loginIfTokenExpiring(new NullProgressMonitor(), 1, 0));
+		assertFalse(AccessTokenHandler.getHandler(client).isExpiring());
+		assertEquals(2, logins.get());
+	}
+
+}
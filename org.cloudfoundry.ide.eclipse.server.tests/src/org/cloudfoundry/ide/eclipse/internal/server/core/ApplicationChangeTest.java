@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.Date;
+import java.util.UUID;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudApplication.AppState;
+import org.cloudfoundry.client.lib.domain.CloudEntity.Meta;
+
+/**
+ * Tests how module updates determine whether a deployed application changed.
+ */
+public class ApplicationChangeTest extends TestCase {
+
+	private final UUID guid = UUID.randomUUID();
+
+	public void testUnchanged() {
+		CloudApplication previous = createApplication(guid, new Date(1000));
+		CloudApplication current = createApplication(guid, new Date(1000));
+		assertFalse(CloudFoundryServer.isApplicationChanged(previous, current));
+	}
+
+	public void testAddedAndRemoved() {
+		CloudApplication application = createApplication(guid, new Date(1000));
+		assertTrue(CloudFoundryServer.isApplicationChanged(null, application));
+		assertTrue(CloudFoundryServer.isApplicationChanged(application, null));
+		assertFalse(CloudFoundryServer.isApplicationChanged(null, null));
+	}
+
+	public void testUpdatedOrRecreated() {
+		CloudApplication previous = createApplication(guid, new Date(1000));
+		assertTrue(CloudFoundryServer.isApplicationChanged(previous, createApplication(guid, new Date(2000))));
+		assertTrue(CloudFoundryServer.isApplicationChanged(previous,
+				createApplication(UUID.randomUUID(), new Date(1000))));
+		assertTrue(CloudFoundryServer.isApplicationChanged(previous, createApplication(guid, null)));
+	}
+
+	public void testInstancesChangedWithoutUpdate() {
+		CloudApplication previous = createApplication(guid, new Date(1000));
+		CloudApplication current = createApplication(guid, new Date(1000));
+		current.setRunningInstances(0);
+		assertTrue(CloudFoundryServer.isApplicationChanged(previous, current));
+
+		current = createApplication(guid, new Date(1000));
+		current.setState(AppState.STOPPED);
+		assertTrue(CloudFoundryServer.isApplicationChanged(previous, current));
+	}
+
+	protected CloudApplication createApplication(UUID guid, Date updated) {
+		CloudApplication application = new CloudApplication(new Meta(guid, new Date(0), updated), "app");
+		application.setState(AppState.STARTED);
+		application.setRunningInstances(1);
+		return application;
+	}
+
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.client.lib.NotFinishedStagingException;
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudApplication.AppState;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.ApplicationStateWatcher;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Tests that applications being waited on are checked together, without a
+ * server.
+ */
+public class ApplicationStateWatcherTest extends TestCase {
+
+	private final Map<String, AppState> states = Collections.synchronizedMap(new HashMap<String, AppState>());
+
+	private final Map<String, CoreException> failures = Collections.synchronizedMap(new HashMap<String, CoreException>());
+
+	private final List<Integer> requests = Collections.synchronizedList(new ArrayList<Integer>());
+
+	private ApplicationStateWatcher watcher;
+
+	@Override
+	protected void setUp() throws Exception {
+		watcher = new ApplicationStateWatcher(null) {
+			@Override
+			protected Map<String, CloudApplication> getApplications(Collection<String> appNames,
+					Map<String, CoreException> errors, IProgressMonitor monitor) {
+				requests.add(appNames.size());
+				Map<String, CloudApplication> applications = new HashMap<String, CloudApplication>();
+				for (String appName : appNames) {
+					// Each failure is reported once
+					CoreException failure = failures.remove(appName);
+					if (failure != null) {
+						errors.put(appName, failure);
+						continue;
+					}
+					AppState state = states.get(appName);
+					if (state != null) {
+						CloudApplication application = new CloudApplication(null, appName);
+						application.setState(state);
+						applications.put(appName, application);
+						// Started on the next check
+						states.put(appName, AppState.STARTED);
+					}
+				}
+				return applications;
+			}
+		};
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		watcher.dispose();
+	}
+
+	public void testWatchesCheckedTogether() throws Exception {
+		List<Future<CloudApplication>> futures = new ArrayList<Future<CloudApplication>>();
+		for (int i = 0; i < 10; i++) {
+			states.put("app" + i, AppState.STOPPED);
+		}
+		for (int i = 0; i < 10; i++) {
+			futures.add(watcher.watch("app" + i, ApplicationStateWatcher.STARTED, 100, 10000));
+		}
+		for (int i = 0; i < 10; i++) {
+			CloudApplication application = futures.get(i).get(10, TimeUnit.SECONDS);
+			assertEquals("app" + i, application.getName());
+			assertEquals(AppState.STARTED, application.getState());
+		}
+		assertEquals(requests.toString(), 2, requests.size());
+		assertEquals(10, requests.get(0).intValue());
+	}
+
+	public void testMissingApplication() throws Exception {
+		Future<CloudApplication> started = watcher.watch("missing", ApplicationStateWatcher.STARTED, 0, 10000);
+		try {
+			started.get(10, TimeUnit.SECONDS);
+			fail("Expected missing application to fail the watch");
+		}
+		catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof CoreException);
+		}
+	}
+
+	public void testStagingNotFinishedCheckedAgain() throws Exception {
+		states.put("app", AppState.STOPPED);
+		failures.put("app", CloudErrorUtil.toCoreException(new NotFinishedStagingException(HttpStatus.BAD_REQUEST,
+				"Staging not finished")));
+		CloudApplication application = watcher.watch("app", ApplicationStateWatcher.STARTED, 0, 10000).get(10,
+				TimeUnit.SECONDS);
+		assertEquals(AppState.STARTED, application.getState());
+	}
+
+	public void testErrorFailsOnlyWatchOfApplication() throws Exception {
+		states.put("app", AppState.STOPPED);
+		states.put("failing", AppState.STOPPED);
+		failures.put("failing", CloudErrorUtil.toCoreException("Failed"));
+		Future<CloudApplication> started = watcher.watch("app", ApplicationStateWatcher.STARTED, 0, 10000);
+		Future<CloudApplication> failing = watcher.watch("failing", ApplicationStateWatcher.STARTED, 0, 10000);
+		try {
+			failing.get(10, TimeUnit.SECONDS);
+			fail("Expected error to fail the watch");
+		}
+		catch (ExecutionException e) {
+			assertEquals("Failed", ((CoreException) e.getCause()).getMessage());
+		}
+		assertEquals(AppState.STARTED, started.get(10, TimeUnit.SECONDS).getState());
+	}
+
+	public void testTimeout() throws Exception {
+		states.put("app", AppState.STOPPED);
+		assertNull(watcher.watch("app", ApplicationStateWatcher.STARTED, 0, 0).get(10, TimeUnit.SECONDS));
+	}
+
+}
@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the order and coalescing of events delivered asynchronously, without
+ * a server.
+ */
+public class AsyncEventDispatcherTest extends TestCase {
+
+	private final List<String> delivered = Collections.synchronizedList(new ArrayList<String>());
+
+	private CountDownLatch last;
+
+	private final AsyncEventDispatcher<String, String> dispatcher = new AsyncEventDispatcher<String, String>(
+			"Test events", 100) {
+
+		@Override
+		protected Object getCoalescingKey(String event) {
+			// Events starting with "refresh" are redundant with each other
+			return event.startsWith("refresh") ? "refresh" : null;
+		}
+
+		@Override
+		protected void deliver(String listener, String event) {
+			delivered.add(listener + ":" + event);
+			if (event.equals("last")) {
+				last.countDown();
+			}
+		}
+	};
+
+	public void testOrderedAndCoalesced() throws Exception {
+		last = new CountDownLatch(2);
+		dispatcher.addListener("a");
+		dispatcher.addListener("b");
+
+		dispatcher.dispatch("changed1");
+		for (int i = 0; i < 10; i++) {
+			dispatcher.dispatch("refresh" + i);
+		}
+		dispatcher.dispatch("changed2");
+		dispatcher.dispatch("last");
+
+		// Delivered without waiting on the firing thread
+		assertTrue(delivered.isEmpty());
+		assertTrue(last.await(10, TimeUnit.SECONDS));
+
+		List<String> expected = Arrays.asList("changed1", "refresh9", "changed2", "last");
+		for (String listener : new String[] { "a", "b" }) {
+			List<String> events = new ArrayList<String>();
+			synchronized (delivered) {
+				for (String event : delivered) {
+					if (event.startsWith(listener + ":")) {
+						events.add(event.substring(2));
+					}
+				}
+			}
+			assertEquals(expected, events);
+		}
+	}
+
+	public void testRemovedListener() throws Exception {
+		last = new CountDownLatch(1);
+		dispatcher.addListener("a");
+		dispatcher.addListener("b");
+		dispatcher.dispatch("changed");
+		dispatcher.removeListener("b");
+		dispatcher.dispatch("last");
+
+		assertTrue(last.await(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("a:changed", "a:last"), delivered);
+	}
+
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.ui.console.BoundedMessageConsole;
+
+/**
+ * Tests how a bounded console counts the lines it drops, and when it renames
+ * itself, with name updates run when the test asks rather than in the UI
+ * thread.
+ */
+public class BoundedMessageConsoleTest extends TestCase {
+
+	private static final String LINE = "123456789\n";
+
+	public void testDroppedLinesCountedAcrossTrims() throws Exception {
+		TestConsole console = new TestConsole(100);
+		write(console, LINE, 10);
+		assertEquals(0, console.getDroppedLines());
+
+		// Trimmed down to 80 characters
+		write(console, LINE, 1);
+		assertEquals(3, console.getDroppedLines());
+		write(console, LINE, 3);
+		assertEquals(6, console.getDroppedLines());
+
+		// Only the whole lines of a partly dropped chunk are counted, and its
+		// remaining line once the rest of it is dropped
+		write(console, "12345678901234567890123\n\n", 1);
+		assertEquals(8, console.getDroppedLines());
+		write(console, LINE, 3);
+		assertEquals(11, console.getDroppedLines());
+	}
+
+	public void testDroppedLinesCountedAfterRingWraps() throws Exception {
+		TestConsole console = new TestConsole(3000);
+		int chunks = 1500;
+		assertTrue(chunks > BoundedMessageConsole.MAX_TRACKED_CHUNKS);
+		write(console, "a\n", chunks);
+		assertEquals(0, console.getDroppedLines());
+
+		// The oldest chunks were merged, and still hold one line every two
+		// characters. Each trim drops 602 characters.
+		write(console, "b\n", 1);
+		assertEquals(301, console.getDroppedLines());
+		write(console, "c\n", 301);
+		assertEquals(602, console.getDroppedLines());
+		write(console, "d\n", 301);
+		assertEquals(903, console.getDroppedLines());
+	}
+
+	public void testRenamedOnlyWhenDroppedLinesChange() throws Exception {
+		TestConsole console = new TestConsole(100);
+		write(console, LINE, 10);
+		assertEquals(0, console.pending.size());
+
+		// Several trims before the UI thread runs rename the console once
+		write(console, LINE, 1);
+		write(console, LINE, 3);
+		assertEquals(1, console.pending.size());
+		console.runPending();
+		assertEquals("test [6 lines dropped]", console.getName());
+
+		// Written content that is not trimmed does not rename the console
+		write(console, "1\n", 1);
+		assertEquals(0, console.pending.size());
+
+		console.clearConsole();
+		assertEquals(1, console.pending.size());
+		console.runPending();
+		assertEquals("test", console.getName());
+
+		// Cleared again without dropped lines
+		console.clearConsole();
+		assertEquals(0, console.pending.size());
+	}
+
+	protected void write(BoundedMessageConsole console, String content, int times) {
+		for (int i = 0; i < times; i++) {
+			console.written(content);
+		}
+	}
+
+	static class TestConsole extends BoundedMessageConsole {
+
+		final List<Runnable> pending = new ArrayList<Runnable>();
+
+		TestConsole(int maxChars) {
+			super("test", "test", null, maxChars);
+		}
+
+		@Override
+		protected synchronized void asyncExec(Runnable runnable) {
+			pending.add(runnable);
+		}
+
+		synchronized void runPending() {
+			for (Runnable runnable : pending) {
+				runnable.run();
+			}
+			pending.clear();
+		}
+
+	}
+
+}
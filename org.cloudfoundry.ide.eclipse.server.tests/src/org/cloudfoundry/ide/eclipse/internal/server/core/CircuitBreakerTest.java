@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.net.ConnectException;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.CircuitBreaker;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.CircuitBreaker.State;
+import org.eclipse.core.runtime.CoreException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+public class CircuitBreakerTest extends TestCase {
+
+	private long currentTime;
+
+	private CircuitBreaker breaker;
+
+	private int stateChanges;
+
+	@Override
+	protected void setUp() throws Exception {
+		currentTime = 1000;
+		stateChanges = 0;
+		breaker = new CircuitBreaker("test server", 2, 100, 300) {
+			@Override
+			protected long getCurrentTime() {
+				return currentTime;
+			}
+
+			@Override
+			protected void stateChanged(State oldState, State newState) {
+				stateChanges++;
+			}
+		};
+	}
+
+	public void testOpensAfterConsecutiveConnectionFailures() throws Exception {
+		recordConnectionFailures(1);
+		assertEquals(State.CLOSED, breaker.getState());
+		recordConnectionFailures(1);
+		assertEquals(State.OPEN, breaker.getState());
+		assertEquals(1, stateChanges);
+		assertRejected();
+	}
+
+	public void testOtherErrorsDoNotOpen() throws Exception {
+		// Including an idle log tail (416) and a conflict (409)
+		HttpStatus[] statuses = { HttpStatus.NOT_FOUND, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE,
+				HttpStatus.CONFLICT };
+		for (HttpStatus status : statuses) {
+			for (int i = 0; i < 5; i++) {
+				breaker.checkRequest();
+				breaker.recordResult(new HttpClientErrorException(status));
+			}
+			assertEquals(State.CLOSED, breaker.getState());
+		}
+	}
+
+	public void testProbeClosesCircuit() throws Exception {
+		recordConnectionFailures(2);
+		currentTime += 100;
+
+		// First request is the probe, others are rejected while it runs
+		breaker.checkRequest();
+		assertEquals(State.HALF_OPEN, breaker.getState());
+		assertRejectedInOtherThread();
+
+		breaker.recordResult(null);
+		assertEquals(State.CLOSED, breaker.getState());
+		breaker.checkRequest();
+	}
+
+	public void testNestedRequestsOfProbe() throws Exception {
+		recordConnectionFailures(2);
+		currentTime += 100;
+		breaker.checkRequest();
+
+		// A request started by the probe, for example a login, is let through
+		// and does not decide the state
+		breaker.checkRequest();
+		breaker.recordResult(new HttpClientErrorException(HttpStatus.UNAUTHORIZED));
+		assertEquals(State.HALF_OPEN, breaker.getState());
+
+		breaker.recordResult(new ResourceAccessException("I/O error", new ConnectException()));
+		assertEquals(State.OPEN, breaker.getState());
+	}
+
+	public void testFailedProbeReopensForLonger() throws Exception {
+		recordConnectionFailures(2);
+		currentTime += 100;
+		recordConnectionFailures(1);
+		assertEquals(State.OPEN, breaker.getState());
+		assertEquals(200, breaker.getTimeUntilProbe());
+
+		currentTime += 200;
+		recordConnectionFailures(1);
+		assertEquals(300, breaker.getTimeUntilProbe());
+	}
+
+	public void testCancelledProbe() throws Exception {
+		recordConnectionFailures(2);
+		currentTime += 100;
+		breaker.checkRequest();
+		breaker.recordCancelled();
+
+		// Next request probes instead
+		breaker.checkRequest();
+		assertEquals(State.HALF_OPEN, breaker.getState());
+	}
+
+	public void testReset() throws Exception {
+		recordConnectionFailures(2);
+		breaker.reset();
+		assertEquals(State.CLOSED, breaker.getState());
+		breaker.checkRequest();
+	}
+
+	protected void recordConnectionFailures(int count) throws CoreException {
+		for (int i = 0; i < count; i++) {
+			breaker.checkRequest();
+			breaker.recordResult(new ResourceAccessException("I/O error", new ConnectException()));
+		}
+	}
+
+	protected void assertRejectedInOtherThread() throws Exception {
+		final CoreException[] rejection = new CoreException[1];
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				try {
+					breaker.checkRequest();
+				}
+				catch (CoreException e) {
+					rejection[0] = e;
+				}
+			}
+		};
+		thread.start();
+		thread.join();
+		assertTrue(CircuitBreaker.isCircuitOpenError(rejection[0]));
+	}
+
+	protected void assertRejected() {
+		try {
+			breaker.checkRequest();
+			fail("Expected request to be rejected");
+		}
+		catch (CoreException e) {
+			assertTrue(CircuitBreaker.isCircuitOpenError(e));
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.File;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.client.lib.CloudCredentials;
+import org.cloudfoundry.client.lib.CloudFoundryClient;
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.ide.eclipse.server.tests.server.HttpFixtureServer;
+import org.cloudfoundry.ide.eclipse.server.tests.server.HttpFixtureServer.Mode;
+import org.cloudfoundry.ide.eclipse.server.tests.server.HttpFixtureServer.RecordedExchange;
+import org.cloudfoundry.ide.eclipse.server.tests.server.MockCloudController;
+
+/**
+ * Records a conversation with the {@link MockCloudController} and replays it
+ * with the controller stopped.
+ */
+public class HttpFixtureServerTest extends TestCase {
+
+	private File fixtureFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		fixtureFile = File.createTempFile("conversation", HttpFixtureServer.FIXTURE_FILE_EXTENSION);
+		fixtureFile.deleteOnExit();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		fixtureFile.delete();
+	}
+
+	public void testRecordAndReplay() throws Exception {
+		MockCloudController controller = new MockCloudController();
+		controller.start();
+		controller.addApplication("app1", true);
+		controller.appendFile("app1", "logs/stdout.log", "recorded output");
+		controller.setLatency("/v2/spaces", 500);
+		try {
+			HttpFixtureServer recorder = new HttpFixtureServer(Mode.RECORD, controller.getUrl(), 0);
+			recorder.start();
+			try {
+				recorder.beginFixture(fixtureFile);
+				assertConversation(recorder);
+				recorder.endFixture();
+			}
+			finally {
+				recorder.stop();
+			}
+		}
+		finally {
+			controller.stop();
+		}
+
+		List<RecordedExchange> exchanges = HttpFixtureServer.read(fixtureFile);
+		assertFalse(exchanges.isEmpty());
+		for (RecordedExchange exchange : exchanges) {
+			if (exchange.getKey().contains("/v2/spaces")) {
+				assertTrue(exchange.getDuration() >= 500);
+			}
+		}
+
+		// Full speed
+		HttpFixtureServer replayer = new HttpFixtureServer(Mode.REPLAY, null, 0);
+		replayer.start();
+		try {
+			replayer.beginFixture(fixtureFile);
+			long start = System.currentTimeMillis();
+			assertConversation(replayer);
+			assertTrue(System.currentTimeMillis() - start < 500);
+			assertTrue(replayer.getUnmatchedRequests().toString(), replayer.getUnmatchedRequests().isEmpty());
+			replayer.endFixture();
+		}
+		finally {
+			replayer.stop();
+		}
+
+		// Original timings
+		replayer = new HttpFixtureServer(Mode.REPLAY, null, 1);
+		replayer.start();
+		try {
+			replayer.beginFixture(fixtureFile);
+			long start = System.currentTimeMillis();
+			assertConversation(replayer);
+			assertTrue(System.currentTimeMillis() - start >= 500);
+			replayer.endFixture();
+		}
+		finally {
+			replayer.stop();
+		}
+	}
+
+	public void testUnmatchedRequest() throws Exception {
+		HttpFixtureServer.write(fixtureFile, Collections.<RecordedExchange> emptyList());
+		HttpFixtureServer replayer = new HttpFixtureServer(Mode.REPLAY, null, 0);
+		replayer.start();
+		try {
+			replayer.beginFixture(fixtureFile);
+			URL url = new URL(replayer.getUrl() + "/v2/info");
+			assertEquals(404, ((HttpURLConnection) url.openConnection()).getResponseCode());
+			assertEquals(1, replayer.getUnmatchedRequests().size());
+			assertEquals("GET /v2/info", replayer.getUnmatchedRequests().get(0));
+		}
+		finally {
+			replayer.stop();
+		}
+	}
+
+	protected void assertConversation(HttpFixtureServer server) throws Exception {
+		CloudFoundryClient client = new CloudFoundryClient(new CloudCredentials(MockCloudController.USERNAME,
+				MockCloudController.PASSWORD), new URL(server.getUrl()), MockCloudController.ORG,
+				MockCloudController.SPACE);
+		client.login();
+		List<CloudApplication> applications = client.getApplications();
+		assertEquals(1, applications.size());
+		assertEquals("app1", applications.get(0).getName());
+		assertEquals(1, client.getApplicationStats("app1").getRecords().size());
+		assertEquals("recorded output", client.getFile("app1", 0, "logs/stdout.log"));
+	}
+
+}
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.LogArchive.LogMatch;
+
+/**
+ * Tests archiving, reading back, searching and deleting log content, without a
+ * server.
+ */
+public class LogArchiveTest extends TestCase {
+
+	private File root;
+
+	private final String logId = LogArchive.getLogId("server", "app", 0, "logs/stdout.log");
+
+	@Override
+	protected void setUp() throws Exception {
+		root = File.createTempFile("logarchive", "");
+		root.delete();
+		root.mkdirs();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		delete(root);
+	}
+
+	public void testRollResumeAndSearch() throws Exception {
+		LogArchive archive = new LogArchive(root);
+		String line = createLine(1000);
+		int offset = 0;
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			String content = i == 150 ? "Error: staging failed\n" : line;
+			archive.append(logId, offset, offset + content.length(), content.getBytes("UTF-8"), content);
+			offset += content.length();
+			expected.append(content);
+		}
+		assertEquals(offset, archive.getOffset(logId));
+
+		// Older segments are compressed
+		File[] files = new File(root, logId).listFiles();
+		boolean compressed = false;
+		for (File file : files) {
+			compressed |= file.getName().endsWith(".gz");
+		}
+		assertTrue(compressed);
+
+		// Read back from disk by a new archive, as after a restart
+		archive.close(logId);
+		archive = new LogArchive(root);
+		assertEquals(offset, archive.getOffset(logId));
+		assertTrue(Arrays.equals(line.getBytes("UTF-8"), archive.getEndBytes(logId)));
+		assertEquals(expected.toString(), archive.read(logId, 0));
+		assertEquals(expected.substring(expected.length() - 5000), archive.read(logId, 5000));
+
+		// The remote file restarted
+		archive.restart(logId);
+		assertEquals(0, archive.getOffset(logId));
+		assertEquals(0, archive.getEndBytes(logId).length);
+		assertEquals("", archive.read(logId, 0));
+		archive.append(logId, 0, 21, "Error: out of memory\n".getBytes("UTF-8"), "Error: out of memory\n");
+		assertEquals("Error: out of memory\n", archive.read(logId, 0));
+
+		List<LogMatch> matches = archive.search(logId, "error", 10);
+		assertEquals(2, matches.size());
+		assertEquals("Error: staging failed", matches.get(0).getLine());
+		assertEquals(0, matches.get(0).getGeneration());
+		assertEquals("Error: out of memory", matches.get(1).getLine());
+		assertEquals(1, matches.get(1).getGeneration());
+	}
+
+	public void testIndexSavedOnIntervalAndClose() throws Exception {
+		TestArchive archive = new TestArchive(root);
+		append(archive, logId, 0, "first\n");
+
+		// Not saved again within the interval
+		archive.now += LogArchive.SAVE_INTERVAL - 1;
+		append(archive, logId, 6, "second\n");
+		assertEquals(6, new LogArchive(root).getOffset(logId));
+
+		archive.now += 1;
+		append(archive, logId, 13, "third\n");
+		assertEquals(19, new LogArchive(root).getOffset(logId));
+
+		append(archive, logId, 19, "fourth\n");
+		assertEquals(19, new LogArchive(root).getOffset(logId));
+		archive.close(logId);
+		assertEquals(26, new LogArchive(root).getOffset(logId));
+		assertEquals("first\nsecond\nthird\nfourth\n", archive.read(logId, 0));
+	}
+
+	public void testFileNamesDistinct() throws Exception {
+		String[] names = { "a b", "a_b", "a_20b", "A b", "a.b", ".", "..", "", null };
+		for (int i = 0; i < names.length; i++) {
+			String fileName = LogArchive.toFileName(names[i]);
+			assertTrue(fileName, fileName.matches("[a-z0-9_-][a-z0-9._-]*"));
+			for (int j = i + 1; j < names.length; j++) {
+				// Null and empty names are not valid names of servers or
+				// applications
+				if (names[j] != null && names[j].length() > 0) {
+					assertFalse(names[i] + ", " + names[j], fileName.equals(LogArchive.toFileName(names[j])));
+				}
+			}
+		}
+
+		LogArchive archive = new LogArchive(root);
+		String otherLogId = LogArchive.getLogId("server", "a_b", 0, "logs/stdout.log");
+		String spaceLogId = LogArchive.getLogId("server", "a b", 0, "logs/stdout.log");
+		append(archive, otherLogId, 0, "underscore\n");
+		append(archive, spaceLogId, 0, "space\n");
+		assertEquals("underscore\n", new LogArchive(root).read(otherLogId, 0));
+		assertEquals("space\n", new LogArchive(root).read(spaceLogId, 0));
+	}
+
+	public void testDeleteApplicationAndServer() throws Exception {
+		LogArchive archive = new LogArchive(root);
+		String otherAppLogId = LogArchive.getLogId("server", "app2", 0, "logs/stdout.log");
+		String otherServerLogId = LogArchive.getLogId("server2", "app", 0, "logs/stdout.log");
+		append(archive, logId, 0, "app\n");
+		append(archive, otherAppLogId, 0, "app2\n");
+		append(archive, otherServerLogId, 0, "server2\n");
+
+		archive.deleteApplication("server", "app");
+		assertEquals(0, archive.getOffset(logId));
+		assertEquals("", archive.read(logId, 0));
+		assertEquals("app2\n", archive.read(otherAppLogId, 0));
+		assertFalse(new File(root, LogArchive.getLogId("server", "app", 0, "")).getParentFile().exists());
+
+		archive.deleteServer("server");
+		assertEquals("", archive.read(otherAppLogId, 0));
+		assertFalse(new File(root, LogArchive.toFileName("server")).exists());
+
+		// Archives of servers that no longer exist
+		archive.deleteServersExcept(Collections.singleton("server3"));
+		assertEquals("", archive.read(otherServerLogId, 0));
+		assertEquals(0, root.listFiles().length);
+	}
+
+	protected void append(LogArchive archive, String id, int offset, String content) throws Exception {
+		byte[] bytes = content.getBytes("UTF-8");
+		archive.append(id, offset, offset + bytes.length, bytes, content);
+	}
+
+	protected String createLine(int length) {
+		StringBuilder builder = new StringBuilder(length);
+		for (int i = 0; i < length - 1; i++) {
+			builder.append((char) ('a' + i % 26));
+		}
+		return builder.append('\n').toString();
+	}
+
+	protected void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	/**
+	 * Archive with a clock that is set by the test.
+	 */
+	static class TestArchive extends LogArchive {
+
+		long now = LogArchive.SAVE_INTERVAL;
+
+		TestArchive(File root) {
+			super(root);
+		}
+
+		@Override
+		protected long getCurrentTime() {
+			return now;
+		}
+
+	}
+
+}
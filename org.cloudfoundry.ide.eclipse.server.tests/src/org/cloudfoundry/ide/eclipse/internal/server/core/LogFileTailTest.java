@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.LogFileTail;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+/**
+ * Tests that file content is followed by byte offset and decoded across
+ * ranges, without a server.
+ */
+public class LogFileTailTest extends TestCase {
+
+	private final ByteArrayOutputStream file = new ByteArrayOutputStream();
+
+	public void testMultiByteCharactersSplitAcrossRanges() throws Exception {
+		String text = "d\u00e9j\u00e0 vu \u2013 \u65e5\u672c";
+		byte[] bytes = text.getBytes("UTF-8");
+		file.write(bytes);
+
+		// Ranges of 4 bytes split the 2 and 3 byte characters
+		LogFileTail tail = createTail(4);
+		StringBuilder received = new StringBuilder();
+		String content;
+		while ((content = tail.tail(new NullProgressMonitor())) != null) {
+			received.append(content);
+		}
+		assertEquals(text, received.toString());
+		assertEquals(bytes.length, tail.getOffset());
+		assertFalse(tail.isChunkFull());
+
+		// Only new content is fetched once the file grows
+		file.write("\u00e9t\u00e9".getBytes("UTF-8"));
+		assertEquals("\u00e9t", tail.tail(new NullProgressMonitor()));
+		assertTrue(tail.isChunkFull());
+		assertEquals("\u00e9", tail.tail(new NullProgressMonitor()));
+		assertNull(tail.tail(new NullProgressMonitor()));
+	}
+
+	public void testResumeDecodesCharacterSplitAtOffset() throws Exception {
+		file.write("caf\u00e9".getBytes("UTF-8"));
+
+		// The offset falls between the two bytes of the last character
+		LogFileTail tail = createTail(4);
+		assertEquals("caf", tail.tail(new NullProgressMonitor()));
+		int offset = tail.getOffset();
+		byte[] endBytes = tail.getEndBytes();
+		assertEquals(4, offset);
+
+		LogFileTail resumed = createTail(4);
+		assertTrue(resumed.resume(offset, endBytes, new NullProgressMonitor()));
+		assertEquals("\u00e9", resumed.tail(new NullProgressMonitor()));
+		assertNull(resumed.tail(new NullProgressMonitor()));
+	}
+
+	public void testResumeRejectsRestartedFile() throws Exception {
+		file.write("started 1\n".getBytes("UTF-8"));
+		LogFileTail tail = createTail(1024);
+		assertEquals("started 1\n", tail.tail(new NullProgressMonitor()));
+		int offset = tail.getOffset();
+		byte[] endBytes = tail.getEndBytes();
+
+		// The application restarted and its new log is already longer
+		file.reset();
+		file.write("restarted\nstarted 2\n".getBytes("UTF-8"));
+		LogFileTail resumed = createTail(1024);
+		assertFalse(resumed.resume(offset, endBytes, new NullProgressMonitor()));
+		assertEquals(0, resumed.getOffset());
+		assertEquals("restarted\nstarted 2\n", resumed.tail(new NullProgressMonitor()));
+
+		// The log is now shorter
+		file.reset();
+		file.write("start".getBytes("UTF-8"));
+		assertFalse(createTail(1024).resume(offset, endBytes, new NullProgressMonitor()));
+	}
+
+	public void testEndBytesKeptAcrossRanges() throws Exception {
+		byte[] bytes = new byte[LogFileTail.END_BYTES_SIZE * 3];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) ('a' + i % 26);
+		}
+		file.write(bytes);
+
+		LogFileTail tail = createTail(LogFileTail.END_BYTES_SIZE / 2 + 1);
+		while (tail.tail(new NullProgressMonitor()) != null) {
+			assertTrue(Arrays.equals(Arrays.copyOfRange(bytes,
+					Math.max(0, tail.getOffset() - LogFileTail.END_BYTES_SIZE), tail.getOffset()), tail
+					.getEndBytes()));
+		}
+		assertEquals(bytes.length, tail.getOffset());
+	}
+
+	protected LogFileTail createTail(int maxChunkSize) {
+		return new LogFileTail(null, "app", 0, "logs/stdout.log", maxChunkSize) {
+
+			@Override
+			protected byte[] fetch(int start, int end, IProgressMonitor monitor) throws CoreException {
+				byte[] bytes = file.toByteArray();
+				if (start >= bytes.length) {
+					return new byte[0];
+				}
+				return Arrays.copyOfRange(bytes, start, Math.min(end + 1, bytes.length));
+			}
+		};
+	}
+
+}
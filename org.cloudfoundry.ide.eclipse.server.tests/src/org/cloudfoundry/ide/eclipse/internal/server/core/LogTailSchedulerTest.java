@@ -0,0 +1,197 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.ui.console.LogTailScheduler;
+import org.cloudfoundry.ide.eclipse.internal.server.ui.console.LogTailScheduler.TailedFile;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+/**
+ * Tests the request budget, fairness and backoff of log file tailing, with
+ * files that are not fetched from a server and a clock that is set by the
+ * test.
+ */
+public class LogTailSchedulerTest extends TestCase {
+
+	private TestScheduler scheduler;
+
+	private final List<TestFile> files = new ArrayList<TestFile>();
+
+	@Override
+	protected void setUp() throws Exception {
+		scheduler = new TestScheduler();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (TestFile file : files) {
+			scheduler.remove(file);
+		}
+	}
+
+	public void testRequestBudgetPerRun() throws Exception {
+		addFiles(12);
+		scheduler.run();
+		assertEquals(LogTailScheduler.MAX_REQUESTS_PER_POLL, getTailCount());
+
+		// The files left over are fetched on the next run, which is no
+		// earlier than the minimum interval
+		assertEquals(LogTailScheduler.MIN_TAIL_INTERVAL, scheduler.scheduledTime);
+	}
+
+	public void testFilesFetchedRoundRobin() throws Exception {
+		addFiles(12);
+		for (TestFile file : files) {
+			file.received = true;
+		}
+
+		// Files that were fetched go to the back of the line, so all files
+		// are fetched once before any file is fetched again
+		scheduler.run();
+		scheduler.runAt(scheduler.scheduledTime);
+		scheduler.runAt(scheduler.scheduledTime);
+		assertEquals(15, getTailCount());
+		for (int i = 0; i < files.size(); i++) {
+			assertEquals("File " + i, i < 3 ? 2 : 1, files.get(i).tails);
+		}
+	}
+
+	public void testIdleFileBacksOff() throws Exception {
+		TestFile file = addFiles(1).get(0);
+		scheduler.run();
+		long[] expectedIntervals = { 2000, 4000, 8000, 15000, 15000 };
+		for (long interval : expectedIntervals) {
+			assertEquals(scheduler.now + interval, scheduler.scheduledTime);
+			scheduler.runAt(scheduler.scheduledTime);
+		}
+		assertEquals(expectedIntervals.length + 1, file.tails);
+
+		// Not fetched before it is due
+		scheduler.runAt(scheduler.now + 1000);
+		assertEquals(expectedIntervals.length + 1, file.tails);
+
+		// New content resets the interval
+		file.received = true;
+		scheduler.runAt(scheduler.scheduledTime);
+		assertEquals(expectedIntervals.length + 2, file.tails);
+		assertEquals(scheduler.now + LogTailScheduler.MIN_TAIL_INTERVAL, scheduler.scheduledTime);
+	}
+
+	public void testFileWithMoreContentDueOnNextRun() throws Exception {
+		TestFile file = addFiles(1).get(0);
+		file.received = true;
+		file.more = true;
+		scheduler.run();
+
+		// Due again at once, but still within the request budget
+		assertEquals(LogTailScheduler.MIN_TAIL_INTERVAL, scheduler.scheduledTime);
+		scheduler.runAt(scheduler.now + 1);
+		assertEquals(2, file.tails);
+	}
+
+	public void testFailedFileKeepsBeingTailed() throws Exception {
+		TestFile failing = new TestFile() {
+			@Override
+			public boolean tail(IProgressMonitor monitor) {
+				super.tail(monitor);
+				throw new IllegalStateException("failed");
+			}
+		};
+		files.add(failing);
+		scheduler.add(failing);
+		TestFile other = addFiles(1).get(0);
+
+		scheduler.run();
+		assertEquals(1, failing.tails);
+		assertEquals(1, other.tails);
+		scheduler.runAt(scheduler.now + 2000);
+		assertEquals(2, failing.tails);
+	}
+
+	protected List<TestFile> addFiles(int count) {
+		List<TestFile> added = new ArrayList<TestFile>();
+		for (int i = 0; i < count; i++) {
+			TestFile file = new TestFile();
+			added.add(file);
+			files.add(file);
+			scheduler.add(file);
+		}
+		return added;
+	}
+
+	protected int getTailCount() {
+		int count = 0;
+		for (TestFile file : files) {
+			count += file.tails;
+		}
+		return count;
+	}
+
+	static class TestFile implements TailedFile {
+
+		boolean received;
+
+		boolean more;
+
+		int tails;
+
+		public boolean tail(IProgressMonitor monitor) {
+			tails++;
+			return received;
+		}
+
+		public boolean hasMoreContent() {
+			return more;
+		}
+
+	}
+
+	/**
+	 * Runs when the test asks, rather than in a job.
+	 */
+	static class TestScheduler extends LogTailScheduler {
+
+		long now = 0;
+
+		long scheduledTime = -1;
+
+		TestScheduler() {
+			super("test", "test");
+		}
+
+		void run() {
+			tail(new NullProgressMonitor());
+		}
+
+		void runAt(long time) {
+			now = time;
+			run();
+		}
+
+		@Override
+		protected void scheduleRun(long time) {
+			scheduledTime = time;
+		}
+
+		@Override
+		protected long getCurrentTime() {
+			return now;
+		}
+
+	}
+
+}
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.client.lib.CloudFoundryOperations;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.ClientRequest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.MetadataCache;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.RequestCoalescer;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+
+public class MetadataCacheTest extends TestCase {
+
+	private static final String KEY = "getServiceOfferings";
+
+	private long currentTime;
+
+	private MetadataCache cache;
+
+	@Override
+	protected void setUp() throws Exception {
+		currentTime = 1000;
+		cache = new MetadataCache(new RequestCoalescer()) {
+			@Override
+			protected long getCurrentTime() {
+				return currentTime;
+			}
+		};
+		cache.setTimeToLive(KEY, 100);
+		cache.setMaxStaleness(0);
+	}
+
+	public void testCachedWithinTimeToLive() throws Exception {
+		CountingRequest request = new CountingRequest();
+		assertEquals("value1", cache.get(KEY, request, null));
+		currentTime += 99;
+		assertEquals("value1", cache.get(KEY, request, null));
+		assertEquals(1, request.count);
+	}
+
+	public void testFetchedAfterTimeToLive() throws Exception {
+		CountingRequest request = new CountingRequest();
+		assertEquals("value1", cache.get(KEY, request, null));
+		currentTime += 100;
+		assertEquals("value2", cache.get(KEY, request, null));
+		assertEquals(2, request.count);
+	}
+
+	public void testInvalidate() throws Exception {
+		CountingRequest request = new CountingRequest();
+		assertEquals("value1", cache.get(KEY, request, null));
+		cache.invalidate(KEY);
+		assertEquals("value2", cache.get(KEY, request, null));
+
+		cache.invalidateAll();
+		assertEquals("value3", cache.get(KEY, request, null));
+	}
+
+	public void testInvalidateKeepsOtherKeys() throws Exception {
+		cache.setTimeToLive("getDomains", 100);
+		CountingRequest offerings = new CountingRequest();
+		CountingRequest domains = new CountingRequest() {
+			@Override
+			public String run(IProgressMonitor monitor) throws CoreException {
+				// Invalidated while the domains are fetched
+				cache.invalidate(KEY);
+				return super.run(monitor);
+			}
+		};
+		assertEquals("value1", cache.get(KEY, offerings, null));
+		assertEquals("value1", cache.get("getDomains", domains, null));
+
+		// Domains are still cached, offerings fetched again
+		assertEquals("value1", cache.get("getDomains", domains, null));
+		assertEquals(1, domains.count);
+		assertEquals("value2", cache.get(KEY, offerings, null));
+	}
+
+	public void testInvalidatedWhileFetchedNotCached() throws Exception {
+		CountingRequest request = new CountingRequest() {
+			@Override
+			public String run(IProgressMonitor monitor) throws CoreException {
+				String value = super.run(monitor);
+				if (count == 1) {
+					cache.invalidate(KEY);
+				}
+				return value;
+			}
+		};
+		assertEquals("value1", cache.get(KEY, request, null));
+		assertEquals("value2", cache.get(KEY, request, null));
+		assertEquals("value2", cache.get(KEY, request, null));
+	}
+
+	public void testStaleWhileRevalidate() throws Exception {
+		cache.setMaxStaleness(1000);
+		CountingRequest request = new CountingRequest();
+		assertEquals("value1", cache.get(KEY, request, null));
+
+		// Stale value returned right away, and fetched in the background
+		currentTime += 500;
+		assertEquals("value1", cache.get(KEY, request, null));
+
+		long end = System.currentTimeMillis() + 5000;
+		while (request.count < 2 && System.currentTimeMillis() < end) {
+			Thread.sleep(50);
+		}
+		assertEquals(2, request.count);
+		Thread.sleep(100);
+		assertEquals("value2", cache.get(KEY, request, null));
+
+		// Too old to serve stale
+		currentTime += 5000;
+		assertEquals("value3", cache.get(KEY, request, null));
+	}
+
+	static class CountingRequest extends ClientRequest<String> {
+
+		volatile int count = 0;
+
+		CountingRequest() {
+			super("Test request");
+		}
+
+		@Override
+		public String run(IProgressMonitor monitor) throws CoreException {
+			return "value" + (++count);
+		}
+
+		@Override
+		protected String doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
+			return null;
+		}
+
+		@Override
+		protected CloudFoundryOperations getClient(IProgressMonitor monitor) throws CoreException {
+			return null;
+		}
+
+		@Override
+		protected String getCloudServerUrl() throws CoreException {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.client.lib.CloudCredentials;
+import org.cloudfoundry.client.lib.CloudFoundryClient;
+import org.cloudfoundry.client.lib.CloudFoundryException;
+import org.cloudfoundry.client.lib.UploadStatusCallback;
+import org.cloudfoundry.client.lib.domain.ApplicationStats;
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudDomain;
+import org.cloudfoundry.client.lib.domain.CloudService;
+import org.cloudfoundry.client.lib.domain.CloudServiceOffering;
+import org.cloudfoundry.client.lib.domain.CloudSpace;
+import org.cloudfoundry.client.lib.domain.InstancesInfo;
+import org.cloudfoundry.client.lib.domain.Staging;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.FileRangeReader;
+import org.cloudfoundry.ide.eclipse.server.tests.server.MockCloudController;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+/**
+ * Exercises the {@link MockCloudController} through the Cloud Foundry Java
+ * client, to check that it speaks the v2 protocol the client expects.
+ */
+public class MockCloudControllerTest extends TestCase {
+
+	private MockCloudController controller;
+
+	private CloudFoundryClient client;
+
+	@Override
+	protected void setUp() throws Exception {
+		controller = new MockCloudController();
+		controller.start();
+		client = new CloudFoundryClient(new CloudCredentials(MockCloudController.USERNAME,
+				MockCloudController.PASSWORD), new URL(controller.getUrl()), MockCloudController.ORG,
+				MockCloudController.SPACE);
+		client.login();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		controller.stop();
+	}
+
+	public void testSpacesAndDomains() throws Exception {
+		List<CloudSpace> spaces = client.getSpaces();
+		assertEquals(1, spaces.size());
+		assertEquals(MockCloudController.SPACE, spaces.get(0).getName());
+		assertEquals(MockCloudController.ORG, spaces.get(0).getOrganization().getName());
+
+		List<CloudDomain> domains = client.getDomains();
+		assertEquals(MockCloudController.DOMAIN, domains.get(0).getName());
+	}
+
+	public void testApplicationLifecycle() throws Exception {
+		String uri = "app1." + MockCloudController.DOMAIN;
+		client.createApplication("app1", new Staging(), 256, Collections.singletonList(uri), null);
+		CloudApplication app = client.getApplication("app1");
+		assertEquals(256, app.getMemory());
+		assertEquals(CloudApplication.AppState.STOPPED, app.getState());
+		assertEquals(Collections.singletonList(uri), app.getUris());
+
+		// Stop on the finished job rather than waiting for the client to poll
+		client.uploadApplication("app1", createArchive(), new UploadStatusCallback() {
+			public boolean onProgress(String status) {
+				return "finished".equals(status);
+			}
+
+			public void onProcessMatchedResources(int length) {
+			}
+
+			public void onMatchedFileNames(Set<String> matchedFileNames) {
+			}
+
+			public void onCheckResources() {
+			}
+		});
+		client.startApplication("app1");
+		assertEquals(CloudApplication.AppState.STARTED, client.getApplication("app1").getState());
+
+		ApplicationStats stats = client.getApplicationStats("app1");
+		assertEquals(1, stats.getRecords().size());
+		InstancesInfo instances = client.getApplicationInstances("app1");
+		assertEquals(1, instances.getInstances().size());
+
+		client.updateApplicationInstances("app1", 3);
+		assertEquals(3, client.getApplicationStats("app1").getRecords().size());
+
+		client.stopApplication("app1");
+		client.deleteApplication("app1");
+		assertTrue(client.getApplications().isEmpty());
+	}
+
+	public void testFiles() throws Exception {
+		controller.addApplication("app1", true);
+		controller.appendFile("app1", "logs/stdout.log", "0123456789");
+
+		assertEquals("0123456789", client.getFile("app1", 0, "logs/stdout.log"));
+		assertEquals("234", client.getFile("app1", 0, "logs/stdout.log", 2, 5));
+		assertEquals("789", client.getFileTail("app1", 0, "logs/stdout.log", 3));
+	}
+
+	public void testFileBytes() throws Exception {
+		controller.addApplication("app1", true);
+		controller.appendFile("app1", "logs/stdout.log", "d\u00e9j\u00e0");
+		byte[] bytes = "d\u00e9j\u00e0".getBytes("UTF-8");
+
+		// Ranges that split characters are returned as raw bytes
+		FileRangeReader reader = new FileRangeReader(client);
+		assertTrue(Arrays.equals(Arrays.copyOfRange(bytes, 1, 2), reader.read("app1", 0, "logs/stdout.log", 1, 1)));
+		assertTrue(Arrays.equals(Arrays.copyOfRange(bytes, 2, 6), reader.read("app1", 0, "logs/stdout.log", 2, 100)));
+		assertEquals(0, reader.read("app1", 0, "logs/stdout.log", 6, 10).length);
+	}
+
+	public void testFileBytesWithoutRawAccess() throws Exception {
+		controller.addApplication("app1", true);
+		controller.appendFile("app1", "logs/stdout.log", "d\u00e9j\u00e0");
+		byte[] bytes = "d\u00e9j\u00e0".getBytes("UTF-8");
+
+		// Read through the public API of the client, which decodes text that
+		// declares no charset as ISO-8859-1, so the bytes are still exact
+		FileRangeReader reader = new FileRangeReader(client) {
+			@Override
+			protected RawFileAccess getRawAccess() {
+				return null;
+			}
+		};
+		assertTrue(Arrays.equals(Arrays.copyOfRange(bytes, 1, 2), reader.read("app1", 0, "logs/stdout.log", 1, 1)));
+		assertTrue(Arrays.equals(Arrays.copyOfRange(bytes, 2, 6), reader.read("app1", 0, "logs/stdout.log", 2, 100)));
+		assertEquals(0, reader.read("app1", 0, "logs/stdout.log", 6, 10).length);
+	}
+
+	public void testServices() throws Exception {
+		List<CloudServiceOffering> offerings = client.getServiceOfferings();
+		assertEquals(2, offerings.size());
+
+		CloudService service = new CloudService();
+		service.setName("db");
+		service.setLabel("mysql");
+		service.setVersion("5.5");
+		service.setProvider("core");
+		service.setPlan("100mb");
+		client.createService(service);
+
+		controller.addApplication("app1", false);
+		client.bindService("app1", "db");
+		assertEquals(Collections.singletonList("db"), client.getApplication("app1").getServices());
+
+		client.unbindService("app1", "db");
+		client.deleteService("db");
+		assertTrue(client.getServices().isEmpty());
+	}
+
+	public void testManyApplicationsArePaged() throws Exception {
+		controller.setPageSize(10);
+		controller.addApplications("app", 100, false);
+		assertEquals(100, client.getApplications().size());
+		assertTrue(controller.getRequestCount("/v2/spaces") >= 10);
+	}
+
+	public void testInjectedFailures() throws Exception {
+		controller.addApplication("app1", true);
+		controller.failRequests("/v2/apps", 503, 1);
+		try {
+			client.getApplicationStats("app1");
+			fail("Expected injected failure");
+		}
+		catch (HttpServerErrorException e) {
+			assertEquals(HttpStatus.SERVICE_UNAVAILABLE, e.getStatusCode());
+		}
+		client.getApplicationStats("app1");
+
+		// Dropped GET requests are retried by the connection, so drop them all
+		controller.setFailureRate("/", MockCloudController.DROP_CONNECTION, 1);
+		try {
+			client.getApplications();
+			fail("Expected dropped connection");
+		}
+		catch (ResourceAccessException e) {
+			// Expected
+		}
+		controller.clearFailures();
+		client.getApplications();
+	}
+
+	public void testExpiredToken() throws Exception {
+		controller.expireAccessTokens();
+		try {
+			client.getApplications();
+			fail("Expected authorisation error");
+		}
+		catch (CloudFoundryException e) {
+			assertEquals(HttpStatus.UNAUTHORIZED, e.getStatusCode());
+		}
+
+		// The client keeps using its cached token, so log in again with a new
+		// client
+		client = new CloudFoundryClient(new CloudCredentials(MockCloudController.USERNAME,
+				MockCloudController.PASSWORD), new URL(controller.getUrl()), MockCloudController.ORG,
+				MockCloudController.SPACE);
+		client.login();
+		client.getApplications();
+	}
+
+	public void testLatency() throws Exception {
+		controller.setLatency("/v2/spaces", 200);
+		long start = System.currentTimeMillis();
+		client.getApplications();
+		assertTrue(System.currentTimeMillis() - start >= 200);
+	}
+
+	protected File createArchive() throws Exception {
+		File file = File.createTempFile("mockapp", ".war");
+		file.deleteOnExit();
+		ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+		try {
+			List<String> names = new ArrayList<String>();
+			names.add("index.html");
+			names.add("WEB-INF/web.xml");
+			for (String name : names) {
+				zip.putNextEntry(new ZipEntry(name));
+				zip.write(("content of " + name).getBytes("UTF-8"));
+				zip.closeEntry();
+			}
+		}
+		finally {
+			zip.close();
+		}
+		return file;
+	}
+
+}
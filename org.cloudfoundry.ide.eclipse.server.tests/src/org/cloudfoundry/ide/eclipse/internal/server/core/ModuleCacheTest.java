@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.client.lib.domain.CloudApplication;
+import org.cloudfoundry.client.lib.domain.CloudApplication.AppState;
+import org.cloudfoundry.client.lib.domain.CloudEntity.Meta;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ModuleCache.ServerData;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudFoundryApplicationModule;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.wst.server.core.IServer;
+
+/**
+ * Tests the module lookups of {@link ServerData}.
+ */
+public class ModuleCacheTest extends TestCase {
+
+	private ModuleCache cache;
+
+	private ServerData data;
+
+	private String serverId;
+
+	@Override
+	protected void setUp() throws Exception {
+		serverId = "moduleCacheTest" + UUID.randomUUID();
+		cache = new ModuleCache();
+		data = cache.getData(createServer());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		cache.dispose();
+		getPreferences().remove(ModuleCache.KEY_MODULE_MAPPINGS + ":" + serverId);
+	}
+
+	public void testLookups() {
+		CloudFoundryApplicationModule module1 = data.createModule(createApplication("app1"));
+		CloudFoundryApplicationModule module2 = data.createModule(createApplication("app2"));
+
+		assertSame(module1, data.getExistingCloudModule("app1"));
+		assertSame(module2, data.getExistingCloudModule(module2));
+		assertNull(data.getExistingCloudModule("app3"));
+
+		data.remove(module1);
+		assertNull(data.getExistingCloudModule("app1"));
+		assertNull(data.getExistingCloudModule(module1));
+		assertSame(module2, data.getExistingCloudModule("app2"));
+
+		data.clear();
+		assertNull(data.getExistingCloudModule("app2"));
+	}
+
+	public void testRename() {
+		CloudFoundryApplicationModule module = data.createModule(createApplication("app1"));
+		module.setCloudApplication(createApplication("renamed"));
+		assertEquals("renamed", module.getDeployedApplicationName());
+		data.updateCloudApplicationModule(module);
+
+		assertSame(module, data.getExistingCloudModule("renamed"));
+		assertNull(data.getExistingCloudModule("app1"));
+		// The local name does not change
+		assertSame(module, data.getExistingCloudModule(module));
+	}
+
+	@SuppressWarnings("unchecked")
+	public void testMappingWrittenBehind() throws Exception {
+		CloudFoundryApplicationModule module = data.createModule(createApplication("app,with,commas"));
+		data.updateCloudApplicationModule(module);
+		assertNull(getPreferences().get(ModuleCache.KEY_MODULE_MAPPINGS + ":" + serverId, null));
+
+		// Pending changes are written on dispose
+		cache.dispose();
+		String json = getPreferences().get(ModuleCache.KEY_MODULE_MAPPINGS + ":" + serverId, null);
+		assertNotNull(json);
+		Map<String, String> mapping = new ObjectMapper().readValue(json, Map.class);
+		assertEquals("app,with,commas", mapping.get(module.getLocalModule().getId()));
+	}
+
+	public void testRemoveIndexesModuleWithSameName() {
+		CloudFoundryApplicationModule module1 = data.createModule(createApplication("app1"));
+		CloudFoundryApplicationModule module2 = data.createModule(createApplication("app1"));
+		assertSame(module1, data.getExistingCloudModule("app1"));
+
+		data.remove(module1);
+		assertSame(module2, data.getExistingCloudModule("app1"));
+		assertSame(module2, data.getExistingCloudModule(module2));
+	}
+
+	public void testRemoveKeepsIndexOfOtherModules() {
+		CloudFoundryApplicationModule module1 = data.createModule(createApplication("app1"));
+		CloudFoundryApplicationModule module2 = data.createModule(createApplication("app2"));
+
+		// Renamed, but the cache is not updated yet
+		module2.setCloudApplication(createApplication("renamed"));
+		data.remove(module1);
+		assertSame(module2, data.getExistingCloudModule("app2"));
+
+		// The rename is still detected when the cache is updated
+		data.updateCloudApplicationModule(module2);
+		assertNull(data.getExistingCloudModule("app2"));
+		assertSame(module2, data.getExistingCloudModule("renamed"));
+	}
+
+	public void testLookupsWithManyModules() {
+		int count = 5000;
+		List<CloudFoundryApplicationModule> modules = new ArrayList<CloudFoundryApplicationModule>();
+		for (int i = 0; i < count; i++) {
+			modules.add(data.createModule(createApplication("app" + i)));
+		}
+		for (int i = 0; i < count; i += 2) {
+			data.remove(modules.get(i));
+		}
+		for (int i = 0; i < count; i++) {
+			CloudFoundryApplicationModule expected = i % 2 == 0 ? null : modules.get(i);
+			assertSame(expected, data.getExistingCloudModule(modules.get(i)));
+			assertSame(expected, data.getExistingCloudModule("app" + i));
+		}
+	}
+
+	protected CloudApplication createApplication(String name) {
+		CloudApplication application = new CloudApplication(new Meta(UUID.randomUUID(), new Date(0), new Date(0)),
+				name);
+		application.setState(AppState.STOPPED);
+		application.setInstances(1);
+		return application;
+	}
+
+	protected IEclipsePreferences getPreferences() {
+		return new InstanceScope().getNode(CloudFoundryPlugin.PLUGIN_ID);
+	}
+
+	/**
+	 * 
+	 * @return server that is not backed by a Cloud Foundry server instance, so
+	 * that the module cache is exercised on its own
+	 */
+	protected IServer createServer() {
+		final CloudFoundryServer cloudServer = new CloudFoundryServer();
+		return (IServer) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { IServer.class },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						String name = method.getName();
+						if (name.equals("loadAdapter") || name.equals("getAdapter")) {
+							return cloudServer;
+						}
+						else if (name.equals("getAttribute")) {
+							return CloudFoundryServer.PROP_SERVER_ID.equals(args[0]) ? serverId : args[1];
+						}
+						else if (name.equals("hashCode")) {
+							return System.identityHashCode(proxy);
+						}
+						else if (name.equals("equals")) {
+							return proxy == args[0];
+						}
+						else if (name.equals("toString")) {
+							return serverId;
+						}
+						return null;
+					}
+				});
+	}
+
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.ModulePublishScheduler;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.wst.server.core.IModule;
+
+/**
+ * Tests the order and concurrency in which modules are published, without a
+ * server.
+ */
+public class ModulePublishSchedulerTest extends TestCase {
+
+	private final Map<String, Set<String>> jars = new HashMap<String, Set<String>>();
+
+	private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+	private final Set<String> failing = new LinkedHashSet<String>();
+
+	private final Set<String> crashing = new LinkedHashSet<String>();
+
+	private final RecordingMonitor monitor = new RecordingMonitor();
+
+	private final List<Double> workedBeforeEnd = Collections.synchronizedList(new ArrayList<Double>());
+
+	private long publishTime = 200;
+
+	private int running;
+
+	private int maxRunning;
+
+	public void testSharedJarsPublishedFirst() throws Exception {
+		jars.put("a", new LinkedHashSet<String>(Arrays.asList("spring.jar", "log.jar", "json.jar")));
+		jars.put("b", new LinkedHashSet<String>(Arrays.asList("spring.jar")));
+		jars.put("c", new LinkedHashSet<String>(Arrays.asList("other.jar")));
+
+		IStatus status = createScheduler(3).publish(createModules("b", "c", "a"), new NullProgressMonitor());
+		assertTrue(status.isOK());
+		assertTrue(events.toString(), events.indexOf("end a") < events.indexOf("start b"));
+		// Applications that do not share jars are published concurrently
+		assertEquals(2, maxRunning);
+	}
+
+	public void testConcurrencyLimitAndErrors() throws Exception {
+		failing.add("m2");
+		failing.add("m4");
+
+		IStatus status = createScheduler(2).publish(createModules("m1", "m2", "m3", "m4", "m5"),
+				new NullProgressMonitor());
+		assertEquals(IStatus.ERROR, status.getSeverity());
+		assertEquals(2, status.getChildren().length);
+		assertEquals(10, events.size());
+		assertEquals(2, maxRunning);
+	}
+
+	public void testErrorDoesNotStopWaitingForOtherModules() throws Exception {
+		crashing.add("m1");
+
+		IStatus status = createScheduler(3).publish(createModules("m1", "m2", "m3"), new NullProgressMonitor());
+		assertEquals(IStatus.ERROR, status.getSeverity());
+		assertEquals(1, status.getChildren().length);
+		// The other modules were published before publish returned
+		assertTrue(events.toString(), events.contains("end m2"));
+		assertTrue(events.toString(), events.contains("end m3"));
+	}
+
+	public void testModuleProgressReported() throws Exception {
+		publishTime = 1000;
+
+		IStatus status = createScheduler(1).publish(createModules("m1"), monitor);
+		assertTrue(status.isOK());
+		// Half of the module was reported while it was being published
+		assertTrue(workedBeforeEnd.toString(), workedBeforeEnd.get(0) > 0);
+		assertTrue(workedBeforeEnd.toString(), workedBeforeEnd.get(0) < monitor.total);
+	}
+
+	protected ModulePublishScheduler createScheduler(int maxConcurrent) {
+		return new ModulePublishScheduler(null, maxConcurrent) {
+
+			@Override
+			protected String getApplicationName(IModule[] module) {
+				return module[0].getId();
+			}
+
+			@Override
+			protected Set<String> getJarNames(IModule[] module) {
+				Set<String> names = jars.get(module[0].getId());
+				return names != null ? names : Collections.<String> emptySet();
+			}
+
+			@Override
+			protected void publishModule(IModule[] module, IProgressMonitor taskMonitor) throws CoreException {
+				String name = module[0].getId();
+				synchronized (ModulePublishSchedulerTest.this) {
+					events.add("start " + name);
+					maxRunning = Math.max(maxRunning, ++running);
+				}
+				if (crashing.contains(name)) {
+					synchronized (ModulePublishSchedulerTest.this) {
+						running--;
+					}
+					throw new NoClassDefFoundError(name);
+				}
+				taskMonitor.beginTask(name, 2);
+				taskMonitor.worked(1);
+				try {
+					Thread.sleep(publishTime);
+				}
+				catch (InterruptedException e) {
+					// Ignore
+				}
+				workedBeforeEnd.add(monitor.worked);
+				taskMonitor.worked(1);
+				synchronized (ModulePublishSchedulerTest.this) {
+					running--;
+					events.add("end " + name);
+				}
+				if (failing.contains(name)) {
+					throw CloudErrorUtil.toCoreException("Failed to publish " + name);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Records the total work reported by the scheduler.
+	 */
+	static class RecordingMonitor extends NullProgressMonitor {
+
+		volatile int total;
+
+		volatile double worked;
+
+		@Override
+		public void beginTask(String name, int totalWork) {
+			total = totalWork;
+		}
+
+		@Override
+		public synchronized void internalWorked(double work) {
+			worked += work;
+		}
+
+		@Override
+		public void worked(int work) {
+			internalWorked(work);
+		}
+
+	}
+
+	protected List<IModule[]> createModules(String... ids) {
+		List<IModule[]> modules = new ArrayList<IModule[]>();
+		for (final String id : ids) {
+			IModule module = (IModule) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[] { IModule.class }, new InvocationHandler() {
+						public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+							String name = method.getName();
+							if (name.equals("getId") || name.equals("getName") || name.equals("toString")) {
+								return id;
+							}
+							else if (name.equals("hashCode")) {
+								return System.identityHashCode(proxy);
+							}
+							else if (name.equals("equals")) {
+								return proxy == args[0];
+							}
+							return null;
+						}
+					});
+			modules.add(new IModule[] { module });
+		}
+		return modules;
+	}
+
+}
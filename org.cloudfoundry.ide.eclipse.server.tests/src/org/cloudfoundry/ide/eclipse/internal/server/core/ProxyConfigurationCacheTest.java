@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.client.lib.HttpProxyConfiguration;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.ProxyConfigurationCache;
+
+/**
+ * Tests that resolved proxy configurations are cached until the proxy settings
+ * change, without a proxy service.
+ */
+public class ProxyConfigurationCacheTest extends TestCase {
+
+	private static final String URL = "https://api.run.pivotal.io";
+
+	private int resolutions;
+
+	private String proxyHost;
+
+	private Runnable duringResolution;
+
+	private final ProxyConfigurationCache cache = new ProxyConfigurationCache() {
+		@Override
+		protected HttpProxyConfiguration resolveProxy(String serverUrl) {
+			resolutions++;
+			HttpProxyConfiguration proxy = proxyHost != null ? new HttpProxyConfiguration(proxyHost, 8080) : null;
+			if (duringResolution != null) {
+				duringResolution.run();
+			}
+			return proxy;
+		}
+	};
+
+	public void testCachedUntilProxySettingsChange() throws Exception {
+		proxyHost = "proxy1";
+		assertEquals("proxy1", cache.getProxy(URL).getProxyHost());
+		assertEquals("proxy1", cache.getProxy(URL).getProxyHost());
+		assertEquals(1, resolutions);
+
+		proxyHost = "proxy2";
+		cache.proxyInfoChanged(null);
+		assertEquals("proxy2", cache.getProxy(URL).getProxyHost());
+		assertEquals(2, resolutions);
+
+		// No proxy is cached as well
+		proxyHost = null;
+		cache.proxyInfoChanged(null);
+		assertNull(cache.getProxy(URL));
+		assertNull(cache.getProxy(URL));
+		assertEquals(3, resolutions);
+	}
+
+	public void testChangeDuringResolutionNotCached() throws Exception {
+		proxyHost = "proxy1";
+		duringResolution = new Runnable() {
+			public void run() {
+				proxyHost = "proxy2";
+				cache.proxyInfoChanged(null);
+			}
+		};
+		assertEquals("proxy1", cache.getProxy(URL).getProxyHost());
+
+		duringResolution = null;
+		assertEquals("proxy2", cache.getProxy(URL).getProxyHost());
+		assertEquals(2, resolutions);
+	}
+
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.RefreshSchedule;
+
+public class RefreshScheduleTest extends TestCase {
+
+	private long currentTime;
+
+	private RefreshSchedule schedule;
+
+	@Override
+	protected void setUp() throws Exception {
+		currentTime = 1000;
+		schedule = new RefreshSchedule(10, 100, 500, 80) {
+			@Override
+			protected long getCurrentTime() {
+				return currentTime;
+			}
+		};
+	}
+
+	public void testFastAfterOperation() {
+		schedule.operationCompleted();
+		assertEquals(10, schedule.getNextInterval(false, false));
+		currentTime += 99;
+		assertEquals(10, schedule.getNextInterval(false, false));
+		currentTime += 1;
+		assertEquals(10, schedule.getNextInterval(false, false));
+		assertEquals(20, schedule.getNextInterval(false, false));
+	}
+
+	public void testBacksOffWhenUnchanged() {
+		assertEquals(10, schedule.getNextInterval(false, false));
+		assertEquals(20, schedule.getNextInterval(false, false));
+		assertEquals(40, schedule.getNextInterval(false, false));
+		assertEquals(80, schedule.getNextInterval(false, false));
+		assertEquals(80, schedule.getNextInterval(false, false));
+
+		assertEquals(10, schedule.getNextInterval(true, false));
+		assertEquals(20, schedule.getNextInterval(false, false));
+	}
+
+	public void testFastWhileStagingUpToMaximum() {
+		assertEquals(10, schedule.getNextInterval(false, false));
+		assertEquals(20, schedule.getNextInterval(false, false));
+		assertEquals(10, schedule.getNextInterval(false, true));
+		currentTime += 499;
+		assertEquals(10, schedule.getNextInterval(false, true));
+		currentTime += 1;
+		assertEquals(40, schedule.getNextInterval(false, true));
+
+		// Staging again later is fast again
+		assertEquals(80, schedule.getNextInterval(false, false));
+		assertEquals(10, schedule.getNextInterval(false, true));
+	}
+
+}
@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.RefreshSchedule;
+
+/**
+ * Tests how refreshes of many servers are spread out, without servers.
+ */
+public class RefreshSchedulerTest extends TestCase {
+
+	private final List<String> started = Collections.synchronizedList(new ArrayList<String>());
+
+	private final List<Long> startTimes = Collections.synchronizedList(new ArrayList<Long>());
+
+	private int running;
+
+	private int maxRunning;
+
+	public void testLimitAndStaggerPerHost() throws Exception {
+		RefreshScheduler scheduler = new RefreshScheduler(2, 100);
+		CountDownLatch done = new CountDownLatch(5);
+		List<RefreshHandler> handlers = new ArrayList<RefreshHandler>();
+		for (int i = 0; i < 4; i++) {
+			handlers.add(createHandler(scheduler, "server" + i, "api.host1.com", done));
+		}
+		handlers.add(createHandler(scheduler, "other", "api.host2.com", done));
+		for (RefreshHandler handler : handlers) {
+			scheduler.schedule(handler, 0);
+		}
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+
+		assertEquals(5, started.size());
+		assertTrue(maxRunning <= 3);
+		long previous = -1;
+		for (int i = 0; i < started.size(); i++) {
+			if (started.get(i).startsWith("server")) {
+				if (previous >= 0) {
+					assertTrue(startTimes.get(i) - previous >= 100);
+				}
+				previous = startTimes.get(i);
+			}
+		}
+	}
+
+	public void testBoostedServerFirst() throws Exception {
+		RefreshScheduler scheduler = new RefreshScheduler(1, 0);
+		scheduler.setBoostedServers(Arrays.asList("shown"));
+		CountDownLatch done = new CountDownLatch(3);
+		List<RefreshHandler> handlers = new ArrayList<RefreshHandler>();
+		handlers.add(createHandler(scheduler, "hidden1", "api.host.com", done));
+		handlers.add(createHandler(scheduler, "hidden2", "api.host.com", done));
+		handlers.add(createHandler(scheduler, "shown", "api.host.com", done));
+		synchronized (scheduler) {
+			// Due at the same time
+			for (RefreshHandler handler : handlers) {
+				scheduler.schedule(handler, 50);
+			}
+		}
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals("shown", started.get(0));
+		assertEquals(1, maxRunning);
+	}
+
+	public void testRefreshSuspendedUntilAllOperationsEnd() throws Exception {
+		final List<String> calls = new ArrayList<String>();
+		RefreshScheduler scheduler = new RefreshScheduler(1, 0) {
+			@Override
+			public synchronized void schedule(RefreshHandler handler, long delay) {
+				calls.add("schedule");
+			}
+
+			@Override
+			public synchronized void cancel(RefreshHandler handler) {
+				calls.add("cancel");
+			}
+		};
+		RefreshHandler handler = new RefreshHandler(new CloudFoundryServer(), new RefreshSchedule(), scheduler);
+		handler.start();
+		calls.clear();
+
+		handler.suspendForOperation();
+		handler.suspendForOperation();
+		assertEquals(Arrays.asList("cancel"), calls);
+
+		// Still suspended by the other operation
+		handler.resumeAfterOperation();
+		assertEquals(Arrays.asList("cancel"), calls);
+
+		handler.resumeAfterOperation();
+		assertEquals(Arrays.asList("cancel", "schedule"), calls);
+	}
+
+	public void testRefreshOnlyRestartedIfRunningOrVisible() throws Exception {
+		final List<String> calls = new ArrayList<String>();
+		RefreshScheduler scheduler = new RefreshScheduler(1, 0) {
+			@Override
+			public synchronized void schedule(RefreshHandler handler, long delay) {
+				calls.add("schedule");
+			}
+
+			@Override
+			public synchronized void cancel(RefreshHandler handler) {
+				calls.add("cancel");
+			}
+		};
+		RefreshHandler handler = new RefreshHandler(new CloudFoundryServer(), new RefreshSchedule(), scheduler);
+
+		// Refresh is off by default, so it is not started after an operation
+		handler.suspendForOperation();
+		handler.resumeAfterOperation();
+		assertEquals(Arrays.asList("cancel"), calls);
+
+		// The server became visible during the operation
+		calls.clear();
+		handler.suspendForOperation();
+		handler.resume();
+		assertEquals(Arrays.asList("cancel"), calls);
+		handler.resumeAfterOperation();
+		assertEquals(Arrays.asList("cancel", "schedule"), calls);
+	}
+
+	protected RefreshHandler createHandler(final RefreshScheduler scheduler, final String serverId,
+			final String host, final CountDownLatch done) {
+		return new RefreshHandler(new CloudFoundryServer(), new RefreshSchedule(), scheduler) {
+
+			@Override
+			protected String getRefreshHost() {
+				return host;
+			}
+
+			@Override
+			protected String getServerId() {
+				return serverId;
+			}
+
+			@Override
+			protected void runScheduledRefresh() {
+				synchronized (RefreshSchedulerTest.this) {
+					started.add(serverId);
+					startTimes.add(System.currentTimeMillis());
+					maxRunning = Math.max(maxRunning, ++running);
+				}
+				final RefreshHandler handler = this;
+				new Thread() {
+					@Override
+					public void run() {
+						try {
+							Thread.sleep(150);
+						}
+						catch (InterruptedException e) {
+							// Ignore
+						}
+						synchronized (RefreshSchedulerTest.this) {
+							running--;
+						}
+						scheduler.refreshCompleted(handler);
+						done.countDown();
+					}
+				}.start();
+			}
+		};
+	}
+
+}
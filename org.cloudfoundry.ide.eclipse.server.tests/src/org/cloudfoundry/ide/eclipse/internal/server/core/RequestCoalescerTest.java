@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.client.lib.CloudFoundryOperations;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.ClientRequest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.RequestCoalescer;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.SubMonitor;
+
+/**
+ * Tests that identical requests in progress at the same time share one call,
+ * without a server.
+ */
+public class RequestCoalescerTest extends TestCase {
+
+	private final RequestCoalescer coalescer = new RequestCoalescer();
+
+	private final AtomicInteger calls = new AtomicInteger();
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private final List<Object> results = Collections.synchronizedList(new ArrayList<Object>());
+
+	public void testConcurrentCallersShareOneCall() throws Exception {
+		CountDownLatch done = runCallers("apps", 5, null);
+		waitForCall();
+		release.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+
+		assertEquals(1, calls.get());
+		assertEquals(5, results.size());
+		for (Object result : results) {
+			assertEquals("result1", result);
+		}
+		assertEquals(0, coalescer.getInProgressCount());
+
+		// A completed request is not reused
+		assertEquals("result2", coalescer.run("apps", createRequest(null), null));
+		assertEquals(2, calls.get());
+	}
+
+	public void testDifferentKeysNotShared() throws Exception {
+		release.countDown();
+		coalescer.run("app1", createRequest(null), null);
+		coalescer.run("app2", createRequest(null), null);
+		assertEquals(2, calls.get());
+	}
+
+	public void testErrorPropagatedToAllCallers() throws Exception {
+		CountDownLatch done = runCallers("apps", 5, CloudErrorUtil.toCoreException("failed"));
+		waitForCall();
+		release.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+
+		assertEquals(1, calls.get());
+		assertEquals(5, results.size());
+		for (Object result : results) {
+			assertTrue(result instanceof CoreException);
+			assertEquals("failed", ((CoreException) result).getMessage());
+		}
+
+		// The failed request is not kept
+		assertEquals(0, coalescer.getInProgressCount());
+		assertEquals("result2", coalescer.run("apps", createRequest(null), null));
+	}
+
+	public void testCancelledWaiterDoesNotCancelOthers() throws Exception {
+		CountDownLatch done = runCallers("apps", 2, null);
+		waitForCall();
+
+		IProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		try {
+			coalescer.run("apps", createRequest(null), monitor);
+			fail();
+		}
+		catch (OperationCanceledException e) {
+			// Expected
+		}
+
+		release.countDown();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertEquals(1, calls.get());
+		assertEquals(2, results.size());
+		for (Object result : results) {
+			assertEquals("result1", result);
+		}
+	}
+
+	/**
+	 * Runs callers in their own threads, and records their results or errors.
+	 */
+	protected CountDownLatch runCallers(final String key, int count, final CoreException error) {
+		final CountDownLatch done = new CountDownLatch(count);
+		for (int i = 0; i < count; i++) {
+			new Thread() {
+				@Override
+				public void run() {
+					try {
+						results.add(coalescer.run(key, createRequest(error), new NullProgressMonitor()));
+					}
+					catch (CoreException e) {
+						results.add(e);
+					}
+					finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		return done;
+	}
+
+	protected void waitForCall() throws InterruptedException {
+		for (int i = 0; i < 100 && calls.get() == 0; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, calls.get());
+
+		// Let other callers join the request in progress
+		Thread.sleep(200);
+	}
+
+	/**
+	 * @return request that completes once released
+	 */
+	protected ClientRequest<String> createRequest(final CoreException error) {
+		return new ClientRequest<String>("test") {
+
+			@Override
+			public String run(IProgressMonitor monitor) throws CoreException {
+				int call = calls.incrementAndGet();
+				try {
+					release.await();
+				}
+				catch (InterruptedException e) {
+					throw new OperationCanceledException();
+				}
+				if (error != null) {
+					throw error;
+				}
+				return "result" + call;
+			}
+
+			@Override
+			protected String doRun(CloudFoundryOperations client, SubMonitor progress) throws CoreException {
+				return null;
+			}
+
+			@Override
+			protected CloudFoundryOperations getClient(IProgressMonitor monitor) throws CoreException {
+				return null;
+			}
+
+			@Override
+			protected String getCloudServerUrl() throws CoreException {
+				return null;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.RequestExecutor;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.RequestExecutor.AsyncRequest;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+
+/**
+ * Tests running requests asynchronously, waiting for them, cancelling them
+ * and shutting the executor down, without a server.
+ */
+public class RequestExecutorTest extends TestCase {
+
+	private RequestExecutor executor;
+
+	@Override
+	protected void setUp() throws Exception {
+		executor = new RequestExecutor("test", 2);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		executor.shutdown();
+	}
+
+	public void testResultAndError() throws Exception {
+		assertEquals("result", RequestExecutor.get(executor.submit(new AsyncRequest<String>() {
+			@Override
+			protected String run(IProgressMonitor monitor) throws CoreException {
+				return "result";
+			}
+		}), null));
+
+		try {
+			RequestExecutor.get(executor.submit(new AsyncRequest<String>() {
+				@Override
+				protected String run(IProgressMonitor monitor) throws CoreException {
+					throw CloudErrorUtil.toCoreException("failed");
+				}
+			}), null);
+			fail();
+		}
+		catch (CoreException e) {
+			assertEquals("failed", e.getMessage());
+		}
+	}
+
+	public void testWaitsLongerThanWaitInterval() throws Exception {
+		// The wait interval only checks for cancellation, it is not a timeout
+		assertEquals("slow", RequestExecutor.get(executor.submit(new AsyncRequest<String>() {
+			@Override
+			protected String run(IProgressMonitor monitor) throws CoreException {
+				sleep(700);
+				return "slow";
+			}
+		}), new NullProgressMonitor()));
+	}
+
+	public void testCancelledMonitorCancelsRequest() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch stopped = new CountDownLatch(1);
+		Future<String> future = executor.submit(createBlockingRequest(started, stopped));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		IProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		try {
+			RequestExecutor.get(future, monitor);
+			fail();
+		}
+		catch (OperationCanceledException e) {
+			// Expected
+		}
+		assertTrue(future.isCancelled());
+
+		// The monitor of the request is cancelled as well
+		assertTrue(stopped.await(5, TimeUnit.SECONDS));
+	}
+
+	public void testCancelledWaitLeavesSharedRequestRunning() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch stopped = new CountDownLatch(1);
+		Future<String> future = executor.submit(createBlockingRequest(started, stopped));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		IProgressMonitor monitor = new NullProgressMonitor();
+		monitor.setCanceled(true);
+		try {
+			RequestExecutor.get(future, monitor, false);
+			fail();
+		}
+		catch (OperationCanceledException e) {
+			// Expected
+		}
+		assertFalse(future.isDone());
+		assertFalse(stopped.await(300, TimeUnit.MILLISECONDS));
+		future.cancel(true);
+	}
+
+	public void testRejectedAfterShutdown() throws Exception {
+		CountDownLatch started = new CountDownLatch(2);
+		CountDownLatch stopped = new CountDownLatch(2);
+		Future<String> running1 = executor.submit(createBlockingRequest(started, stopped));
+		Future<String> running2 = executor.submit(createBlockingRequest(started, stopped));
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		Future<String> queued = executor.submit(createBlockingRequest(new CountDownLatch(1), new CountDownLatch(1)));
+
+		executor.shutdown();
+		assertTrue(executor.isShutdown());
+
+		// Running requests are interrupted and queued ones cancelled
+		assertTrue(stopped.await(5, TimeUnit.SECONDS));
+		assertTrue(queued.isCancelled());
+		assertCancelled(running1);
+		assertCancelled(running2);
+
+		// New requests fail rather than run in the calling thread
+		final Thread[] ranIn = new Thread[1];
+		Future<String> rejected = executor.submit(new AsyncRequest<String>() {
+			@Override
+			protected String run(IProgressMonitor monitor) throws CoreException {
+				ranIn[0] = Thread.currentThread();
+				return "ran";
+			}
+		});
+		assertTrue(rejected.isDone());
+		try {
+			RequestExecutor.get(rejected, null);
+			fail();
+		}
+		catch (CoreException e) {
+			assertTrue(e.getMessage().contains("shut down"));
+		}
+		assertNull(ranIn[0]);
+	}
+
+	protected void assertCancelled(Future<String> future) throws Exception {
+		try {
+			RequestExecutor.get(future, null);
+			fail();
+		}
+		catch (OperationCanceledException e) {
+			// Expected
+		}
+	}
+
+	/**
+	 * @return request that runs until its monitor is cancelled or its thread
+	 * interrupted
+	 */
+	protected AsyncRequest<String> createBlockingRequest(final CountDownLatch started, final CountDownLatch stopped) {
+		return new AsyncRequest<String>() {
+			@Override
+			protected String run(IProgressMonitor monitor) throws CoreException {
+				started.countDown();
+				while (!monitor.isCanceled() && !Thread.currentThread().isInterrupted()) {
+					sleep(20);
+				}
+				stopped.countDown();
+				throw new OperationCanceledException();
+			}
+		};
+	}
+
+	protected static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
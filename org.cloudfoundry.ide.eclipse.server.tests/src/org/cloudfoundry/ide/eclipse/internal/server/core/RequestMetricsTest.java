@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.LatencyHistogram;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.RequestMetrics;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.RequestMetrics.ServerMetrics;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+public class RequestMetricsTest extends TestCase {
+
+	public void testHistogramPercentiles() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(50));
+
+		for (int i = 0; i < 90; i++) {
+			histogram.record(20);
+		}
+		for (int i = 0; i < 9; i++) {
+			histogram.record(700);
+		}
+		histogram.record(45000);
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(45000, histogram.getMax());
+		assertEquals(25, histogram.getPercentile(50));
+		assertEquals(25, histogram.getPercentile(90));
+		assertEquals(1000, histogram.getPercentile(99));
+		assertEquals(45000, histogram.getPercentile(100));
+	}
+
+	public void testHistogramAboveLastBucket() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(120000);
+		assertEquals(120000, histogram.getPercentile(50));
+		long[] counts = histogram.getBucketCounts();
+		assertEquals(1, counts[counts.length - 1]);
+	}
+
+	public void testRecordPerServer() throws Exception {
+		RequestMetrics metrics = new RequestMetrics();
+		metrics.record("https://api.one", "Getting applications", 100, null, 0, false);
+		metrics.record("https://api.one", "Getting applications", 300, null, 2, true);
+		metrics.record("https://api.one", "Getting services", 50, new OperationCanceledException(), 0, false);
+		metrics.record("https://api.two", "Getting services", 50, null, 1, false);
+
+		ServerMetrics one = metrics.getServerMetrics("https://api.one");
+		assertEquals(3, one.getRequestCount());
+		assertEquals(1, one.getErrorCount());
+		assertEquals(2, one.getRetryCount());
+		assertEquals(1, one.getLoginFallbackCount());
+		assertEquals(2, one.getLatencies().get("Getting applications").getCount());
+
+		Map<String, Long> errors = one.getErrorCounts();
+		assertEquals(Long.valueOf(1), errors.get(CloudErrorUtil.CATEGORY_CANCELLED));
+
+		assertEquals(4, metrics.getRequestCount());
+		assertEquals(3, metrics.getRetryCount());
+		assertEquals(2, metrics.getServerUrls().length);
+		assertTrue(metrics.getSummary().contains("https://api.two"));
+		assertTrue(metrics.getSummary("https://api.one").contains("https://api.one"));
+		assertFalse(metrics.getSummary("https://api.one").contains("https://api.two"));
+		assertTrue(metrics.getSummary("https://api.three").contains("no requests"));
+		assertEquals(2, metrics.getServerUrls().length);
+
+		metrics.reset();
+		assertEquals(0, metrics.getRequestCount());
+	}
+
+	public void testErrorCategories() throws Exception {
+		assertEquals(CloudErrorUtil.CATEGORY_CONNECTION, CloudErrorUtil.getErrorCategory(new ResourceAccessException(
+				"I/O error", new ConnectException())));
+		assertEquals(CloudErrorUtil.CATEGORY_UNKNOWN_HOST, CloudErrorUtil
+				.getErrorCategory(new ResourceAccessException("I/O error", new UnknownHostException())));
+		assertEquals(CloudErrorUtil.CATEGORY_NOT_FOUND,
+				CloudErrorUtil.getErrorCategory(new HttpClientErrorException(HttpStatus.NOT_FOUND)));
+		assertEquals(CloudErrorUtil.CATEGORY_CLIENT_ERROR,
+				CloudErrorUtil.getErrorCategory(new HttpClientErrorException(HttpStatus.CONFLICT)));
+		assertEquals(CloudErrorUtil.CATEGORY_CLIENT_ERROR, CloudErrorUtil.getErrorCategory(new HttpClientErrorException(
+				HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)));
+		assertEquals(CloudErrorUtil.CATEGORY_CLIENT_ERROR,
+				CloudErrorUtil.getErrorCategory(new HttpClientErrorException(HttpStatus.UNPROCESSABLE_ENTITY)));
+	}
+
+}
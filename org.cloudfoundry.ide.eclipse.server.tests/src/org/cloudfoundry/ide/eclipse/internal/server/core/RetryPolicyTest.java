@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.core;
+
+import junit.framework.TestCase;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.RetryPolicy;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+public class RetryPolicyTest extends TestCase {
+
+	public void testExponentialBackoff() throws Exception {
+		RetryPolicy policy = new RetryPolicy(100, 1000, 2, 0, 10000);
+		assertEquals(100, policy.getInterval(0, -1));
+		assertEquals(200, policy.getInterval(1, -1));
+		assertEquals(400, policy.getInterval(2, -1));
+		assertEquals(800, policy.getInterval(3, -1));
+		assertEquals(1000, policy.getInterval(4, -1));
+		assertEquals(1000, policy.getInterval(20, -1));
+
+		// Request specific base interval
+		assertEquals(300, policy.getInterval(0, 300));
+		assertEquals(600, policy.getInterval(1, 300));
+
+		// Base interval longer than the maximum is respected
+		assertEquals(2000, policy.getInterval(3, 2000));
+	}
+
+	public void testJitter() throws Exception {
+		RetryPolicy policy = new RetryPolicy(1000, 1000, 2, 0.2, 10000);
+		for (int i = 0; i < 100; i++) {
+			long interval = policy.getInterval(0, -1);
+			assertTrue(interval >= 800 && interval <= 1200);
+		}
+	}
+
+	public void testMaxElapsedTime() throws Exception {
+		RetryPolicy policy = new RetryPolicy(100, 1000, 2, 0, 1000);
+		assertTrue(policy.canRetry(0, 1000));
+		assertTrue(policy.canRetry(500, 500));
+		assertFalse(policy.canRetry(500, 501));
+		assertFalse(policy.canRetry(0, -1));
+	}
+
+	public void testSleepCancelled() throws Exception {
+		RetryPolicy policy = new RetryPolicy(100, 1000, 2, 0, 100000);
+		final NullProgressMonitor monitor = new NullProgressMonitor();
+
+		new Thread() {
+			public void run() {
+				try {
+					Thread.sleep(200);
+				}
+				catch (InterruptedException e) {
+					// Ignore
+				}
+				monitor.setCanceled(true);
+			}
+		}.start();
+
+		long start = System.currentTimeMillis();
+		assertFalse(policy.sleep(60000, monitor));
+		assertTrue(System.currentTimeMillis() - start < 5000);
+	}
+
+	public void testSleep() throws Exception {
+		RetryPolicy policy = new RetryPolicy(100, 1000, 2, 0, 100000);
+		long start = System.currentTimeMillis();
+		assertTrue(policy.sleep(250, new NullProgressMonitor()));
+		assertTrue(System.currentTimeMillis() - start >= 250);
+	}
+
+}
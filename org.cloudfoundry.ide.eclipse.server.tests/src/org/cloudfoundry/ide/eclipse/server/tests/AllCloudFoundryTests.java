@@ -13,6 +13,14 @@ package org.cloudfoundry.ide.eclipse.server.tests;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import org.cloudfoundry.ide.eclipse.internal.server.core.AccessTokenHandlerTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ApplicationChangeTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ApplicationStateWatcherTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.AsyncEventDispatcherTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.BoundedMessageConsoleTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.LogArchiveTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.LogFileTailTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.CircuitBreakerTest;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryClientConnectionTest;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryProxyTest;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServerBehaviourTest;
@@ -20,6 +28,19 @@ import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServerTest;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServicesTest;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudUtilTest;
 import org.cloudfoundry.ide.eclipse.internal.server.core.DeploymentURLTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.HttpFixtureServerTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.LogTailSchedulerTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.MetadataCacheTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.MockCloudControllerTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ModuleCacheTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ModulePublishSchedulerTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ProxyConfigurationCacheTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.RefreshScheduleTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.RefreshSchedulerTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.RequestCoalescerTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.RequestExecutorTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.RequestMetricsTest;
+import org.cloudfoundry.ide.eclipse.internal.server.core.RetryPolicyTest;
 import org.cloudfoundry.ide.eclipse.internal.server.core.ServerCredentialsStoreTest;
 import org.cloudfoundry.ide.eclipse.server.tests.sts.util.ManagedTestSuite;
 import org.cloudfoundry.ide.eclipse.server.tests.sts.util.StsTestUtil;
@@ -61,7 +82,28 @@ public class AllCloudFoundryTests {
 		suite.addTestSuite(DeploymentURLTest.class);
 		suite.addTestSuite(CloudFoundryServicesTest.class);
 		suite.addTestSuite(CloudFoundryClientConnectionTest.class);
+		suite.addTestSuite(RetryPolicyTest.class);
+		suite.addTestSuite(MetadataCacheTest.class);
+		suite.addTestSuite(RequestMetricsTest.class);
+		suite.addTestSuite(CircuitBreakerTest.class);
+		suite.addTestSuite(MockCloudControllerTest.class);
+		suite.addTestSuite(HttpFixtureServerTest.class);
+		suite.addTestSuite(ApplicationChangeTest.class);
+		suite.addTestSuite(RefreshScheduleTest.class);
+		suite.addTestSuite(ModuleCacheTest.class);
+		suite.addTestSuite(ApplicationStateWatcherTest.class);
+		suite.addTestSuite(ModulePublishSchedulerTest.class);
+		suite.addTestSuite(RefreshSchedulerTest.class);
+		suite.addTestSuite(AsyncEventDispatcherTest.class);
+		suite.addTestSuite(LogFileTailTest.class);
+		suite.addTestSuite(LogArchiveTest.class);
 
+		suite.addTestSuite(AccessTokenHandlerTest.class);
+		suite.addTestSuite(RequestExecutorTest.class);
+		suite.addTestSuite(RequestCoalescerTest.class);
+		suite.addTestSuite(ProxyConfigurationCacheTest.class);
+		suite.addTestSuite(LogTailSchedulerTest.class);
+		suite.addTestSuite(BoundedMessageConsoleTest.class);
 		return suite;
 	}
 
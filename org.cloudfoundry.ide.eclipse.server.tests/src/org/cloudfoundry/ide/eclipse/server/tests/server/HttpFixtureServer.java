@@ -0,0 +1,602 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.tests.server;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.cloudfoundry.client.lib.util.JsonUtil;
+import org.cloudfoundry.ide.eclipse.server.tests.server.LocalHttpServer.Exchange;
+
+/**
+ * Local HTTP server that either records the conversation between the client
+ * and a real Cloud Foundry controller, or replays a recorded conversation
+ * without network access.
+ * <p/>
+ * When recording, requests are forwarded to the target controller and each
+ * response is recorded together with how long the controller took to send it.
+ * Absolute URLs that the controller hands out, like the login server endpoint
+ * in the info response or redirect locations, are rewritten to go through
+ * this server as well, so that the whole conversation is captured. Access and
+ * refresh tokens are replaced by placeholders in the recorded responses.
+ * <p/>
+ * When replaying, responses are looked up by request method, path and query.
+ * Responses recorded for the same request are returned in recorded order, and
+ * the last one is repeated once they are used up, so that background refresh
+ * requests, whose number depends on timing, do not break replay. Recorded
+ * durations are replayed scaled by a time scale: 1 for original timings, 0 for
+ * full speed, or anything in between to compress them.
+ * <p/>
+ * Each conversation is kept in a fixture file: gzip compressed JSON, one
+ * exchange per line. Bodies are stored as ISO-8859-1 strings so that any
+ * content is preserved byte for byte.
+ */
+public class HttpFixtureServer {
+
+	public enum Mode {
+		RECORD, REPLAY
+	}
+
+	/**
+	 * Stands for the URL of this server in recorded responses, as the port
+	 * differs between recording and replay.
+	 */
+	public static final String FIXTURE_URL = "{fixture.url}";
+
+	public static final String FIXTURE_FILE_EXTENSION = ".fixture.gz";
+
+	/**
+	 * Path under which requests to hosts other than the target controller are
+	 * forwarded, followed by the index of the host.
+	 */
+	private static final String HOST_PATH = "/_host/";
+
+	private static final String[] INFO_ENDPOINTS = { "authorization_endpoint", "token_endpoint", "logging_endpoint" };
+
+	private static final String[] TOKENS = { "access_token", "refresh_token" };
+
+	private static final String[] RECORDED_HEADERS = { "Content-Type", "Location", "Content-Range" };
+
+	private static final String[] SKIPPED_REQUEST_HEADERS = { "Host", "Content-Length", "Connection",
+			"Accept-Encoding", "Transfer-Encoding" };
+
+	private static final String CHARSET = "ISO-8859-1";
+
+	private final Mode mode;
+
+	private final String targetUrl;
+
+	private final double timeScale;
+
+	/*
+	 * Origins, other than the target controller, to which requests were
+	 * forwarded, indexed as they appear in rewritten URLs. Kept for the
+	 * lifetime of the server so that URLs cached by the client remain valid
+	 * across fixtures.
+	 */
+	private final List<String> hosts = new ArrayList<String>();
+
+	private final List<RecordedExchange> recorded = new ArrayList<RecordedExchange>();
+
+	private final Map<String, LinkedList<RecordedExchange>> replayed = new HashMap<String, LinkedList<RecordedExchange>>();
+
+	private final List<String> unmatchedRequests = new ArrayList<String>();
+
+	private final List<Throwable> errors = new ArrayList<Throwable>();
+
+	private File fixtureFile;
+
+	private LocalHttpServer server;
+
+	/**
+	 *
+	 * @param mode whether to record or replay conversations
+	 * @param targetUrl URL of the controller to record. Not used when
+	 * replaying
+	 * @param timeScale factor applied to recorded durations when replaying
+	 */
+	public HttpFixtureServer(Mode mode, String targetUrl, double timeScale) {
+		this.mode = mode;
+		this.targetUrl = targetUrl != null && targetUrl.endsWith("/") ? targetUrl.substring(0,
+				targetUrl.length() - 1) : targetUrl;
+		this.timeScale = timeScale;
+		if (mode == Mode.RECORD && targetUrl == null) {
+			throw new IllegalArgumentException("A target URL is required to record");
+		}
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	public synchronized void start() throws IOException {
+		if (server != null) {
+			return;
+		}
+		server = new LocalHttpServer("HTTP Fixture Server", new LocalHttpServer.Handler() {
+			public void handle(Exchange exchange) throws IOException {
+				HttpFixtureServer.this.handle(exchange);
+			}
+		});
+		server.start();
+	}
+
+	public synchronized void stop() {
+		if (server != null) {
+			server.stop();
+			server = null;
+		}
+	}
+
+	/**
+	 *
+	 * @return URL of this server, without a trailing slash.
+	 */
+	public synchronized String getUrl() {
+		if (server == null) {
+			throw new IllegalStateException("HTTP fixture server not started");
+		}
+		return "http://127.0.0.1:" + server.getPort();
+	}
+
+	/**
+	 * Starts recording into, or replaying from, the given fixture file.
+	 * @param file fixture file. When replaying, it must exist.
+	 * @throws IOException if the fixture could not be read
+	 */
+	public synchronized void beginFixture(File file) throws IOException {
+		fixtureFile = file;
+		recorded.clear();
+		replayed.clear();
+		unmatchedRequests.clear();
+		errors.clear();
+		if (mode == Mode.REPLAY) {
+			for (RecordedExchange exchange : read(file)) {
+				LinkedList<RecordedExchange> responses = replayed.get(exchange.getKey());
+				if (responses == null) {
+					responses = new LinkedList<RecordedExchange>();
+					replayed.put(exchange.getKey(), responses);
+				}
+				responses.add(exchange);
+			}
+		}
+	}
+
+	/**
+	 * Ends the current fixture. When recording, the conversation is written to
+	 * the fixture file.
+	 * @throws IOException if the fixture could not be written, or if the
+	 * server failed to handle a request during the fixture, in which case the
+	 * client received an error response that the recorded conversation does
+	 * not reflect.
+	 */
+	public synchronized void endFixture() throws IOException {
+		if (!errors.isEmpty()) {
+			IOException error = new IOException("HTTP fixture server failed to handle " + errors.size()
+					+ " request(s): " + errors.get(0));
+			error.initCause(errors.get(0));
+			errors.clear();
+			fixtureFile = null;
+			recorded.clear();
+			replayed.clear();
+			throw error;
+		}
+		if (fixtureFile != null && mode == Mode.RECORD) {
+			write(fixtureFile, recorded);
+		}
+		fixtureFile = null;
+		recorded.clear();
+		replayed.clear();
+	}
+
+	/**
+	 *
+	 * @return requests, as method, path and query, for which no response was
+	 * recorded in the current fixture.
+	 */
+	public synchronized List<String> getUnmatchedRequests() {
+		return new ArrayList<String>(unmatchedRequests);
+	}
+
+	/**
+	 *
+	 * @return errors that occurred while handling requests in the current
+	 * fixture.
+	 */
+	public synchronized List<Throwable> getErrors() {
+		return new ArrayList<Throwable>(errors);
+	}
+
+	protected void handle(Exchange exchange) throws IOException {
+		try {
+			if (mode == Mode.RECORD) {
+				record(exchange);
+			}
+			else {
+				replay(exchange);
+			}
+		}
+		catch (IOException e) {
+			// For example the target controller could not be reached while
+			// recording. Reported when the fixture ends
+			synchronized (this) {
+				errors.add(e);
+			}
+			exchange.close();
+			throw e;
+		}
+		catch (RuntimeException e) {
+			synchronized (this) {
+				errors.add(e);
+			}
+			sendResponse(exchange, 500, Collections.singletonMap("Content-Type", "text/plain"),
+					("HTTP fixture server error: " + e).getBytes(CHARSET));
+		}
+	}
+
+	protected void record(Exchange exchange) throws IOException {
+		String method = exchange.getRequestMethod().toUpperCase();
+		String pathAndQuery = getPathAndQuery(exchange);
+
+		HttpURLConnection connection = (HttpURLConnection) new URL(getTargetUrl(pathAndQuery)).openConnection();
+		connection.setInstanceFollowRedirects(false);
+		connection.setRequestMethod(method);
+		for (Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+			if (!isSkippedRequestHeader(header.getKey())) {
+				for (String value : header.getValue()) {
+					connection.addRequestProperty(header.getKey(), value);
+				}
+			}
+		}
+		byte[] requestBody = readFully(exchange.getRequestBody());
+		long start = System.currentTimeMillis();
+		if (requestBody.length > 0) {
+			connection.setDoOutput(true);
+			OutputStream out = connection.getOutputStream();
+			out.write(requestBody);
+			out.close();
+		}
+
+		int status = connection.getResponseCode();
+		InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+		byte[] body = in != null ? readFully(in) : new byte[0];
+		long duration = System.currentTimeMillis() - start;
+
+		Map<String, String> headers = new LinkedHashMap<String, String>();
+		for (String name : RECORDED_HEADERS) {
+			String value = connection.getHeaderField(name);
+			if (value != null) {
+				headers.put(name, "Location".equals(name) ? toFixtureUrl(value) : value);
+			}
+		}
+		if (isInfoRequest(pathAndQuery)) {
+			body = rewriteInfo(body);
+		}
+		byte[] recordedBody = pathAndQuery.contains("/oauth/token") ? scrubTokens(body) : body;
+
+		synchronized (this) {
+			recorded.add(new RecordedExchange(method, pathAndQuery, status, headers, new String(recordedBody,
+					CHARSET), duration));
+		}
+		sendResponse(exchange, status, resolveFixtureUrl(headers), resolveFixtureUrl(body));
+	}
+
+	protected void replay(Exchange exchange) throws IOException {
+		String key = exchange.getRequestMethod().toUpperCase() + ' ' + getPathAndQuery(exchange);
+		readFully(exchange.getRequestBody());
+
+		RecordedExchange response = null;
+		synchronized (this) {
+			LinkedList<RecordedExchange> responses = replayed.get(key);
+			if (responses != null && !responses.isEmpty()) {
+				response = responses.size() > 1 ? responses.removeFirst() : responses.getFirst();
+			}
+			else {
+				unmatchedRequests.add(key);
+			}
+		}
+
+		if (response == null) {
+			byte[] body = ("{\"code\":10000,\"description\":\"No recorded response for " + key + "\"}")
+					.getBytes(CHARSET);
+			sendResponse(exchange, 404, Collections.singletonMap("Content-Type", "application/json"), body);
+			return;
+		}
+
+		long delay = (long) (response.duration * timeScale);
+		if (delay > 0) {
+			try {
+				Thread.sleep(delay);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		sendResponse(exchange, response.status, resolveFixtureUrl(response.headers),
+				resolveFixtureUrl(response.body.getBytes(CHARSET)));
+	}
+
+	protected void sendResponse(Exchange exchange, int status, Map<String, String> headers, byte[] body)
+			throws IOException {
+		for (Entry<String, String> header : headers.entrySet()) {
+			exchange.getResponseHeaders().set(header.getKey(), header.getValue());
+		}
+		boolean head = "HEAD".equalsIgnoreCase(exchange.getRequestMethod());
+		exchange.sendResponseHeaders(status, body.length > 0 && !head ? body.length : -1);
+		if (body.length > 0 && !head) {
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}
+		else {
+			exchange.close();
+		}
+	}
+
+	/**
+	 *
+	 * @param pathAndQuery request path on this server
+	 * @return URL the request is forwarded to when recording
+	 */
+	protected synchronized String getTargetUrl(String pathAndQuery) {
+		if (pathAndQuery.startsWith(HOST_PATH)) {
+			int end = pathAndQuery.indexOf('/', HOST_PATH.length());
+			int index = Integer.parseInt(pathAndQuery.substring(HOST_PATH.length(), end));
+			return hosts.get(index) + pathAndQuery.substring(end);
+		}
+		return targetUrl + pathAndQuery;
+	}
+
+	/**
+	 * Rewrites an absolute URL handed out by the controller so that requests
+	 * to it go through this server.
+	 * @param url
+	 * @return URL starting with {@link #FIXTURE_URL}
+	 */
+	protected synchronized String toFixtureUrl(String url) {
+		URL parsed;
+		try {
+			parsed = new URL(url);
+		}
+		catch (MalformedURLException e) {
+			// Relative URL, already resolved against this server
+			return url;
+		}
+		String origin = parsed.getProtocol() + "://" + parsed.getAuthority();
+		String rest = url.substring(origin.length());
+		if (origin.equals(targetUrl)) {
+			return FIXTURE_URL + rest;
+		}
+		int index = hosts.indexOf(origin);
+		if (index < 0) {
+			index = hosts.size();
+			hosts.add(origin);
+		}
+		return FIXTURE_URL + HOST_PATH + index + rest;
+	}
+
+	protected byte[] rewriteInfo(byte[] body) throws IOException {
+		Map<String, Object> info = JsonUtil.convertJsonToMap(new String(body, "UTF-8"));
+		if (info == null || info.isEmpty()) {
+			return body;
+		}
+		for (String endpoint : INFO_ENDPOINTS) {
+			Object value = info.get(endpoint);
+			if (value instanceof String && ((String) value).startsWith("http")) {
+				info.put(endpoint, toFixtureUrl((String) value));
+			}
+		}
+		return JsonUtil.convertToJson(info).getBytes("UTF-8");
+	}
+
+	protected byte[] scrubTokens(byte[] body) throws IOException {
+		Map<String, Object> response = JsonUtil.convertJsonToMap(new String(body, "UTF-8"));
+		if (response == null || response.isEmpty()) {
+			return body;
+		}
+		for (String token : TOKENS) {
+			if (response.containsKey(token)) {
+				response.put(token, "recorded-" + token.replace('_', '-'));
+			}
+		}
+		return JsonUtil.convertToJson(response).getBytes("UTF-8");
+	}
+
+	protected Map<String, String> resolveFixtureUrl(Map<String, String> headers) throws IOException {
+		Map<String, String> resolved = new LinkedHashMap<String, String>();
+		for (Entry<String, String> header : headers.entrySet()) {
+			resolved.put(header.getKey(), header.getValue().replace(FIXTURE_URL, getUrl()));
+		}
+		return resolved;
+	}
+
+	protected byte[] resolveFixtureUrl(byte[] body) throws IOException {
+		String content = new String(body, CHARSET);
+		return content.contains(FIXTURE_URL) ? content.replace(FIXTURE_URL, getUrl()).getBytes(CHARSET) : body;
+	}
+
+	protected static boolean isInfoRequest(String pathAndQuery) {
+		return pathAndQuery.equals("/info") || pathAndQuery.equals("/v2/info");
+	}
+
+	protected static boolean isSkippedRequestHeader(String name) {
+		for (String skipped : SKIPPED_REQUEST_HEADERS) {
+			if (skipped.equalsIgnoreCase(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	protected static String getPathAndQuery(Exchange exchange) {
+		String query = exchange.getRequestURI().getRawQuery();
+		return exchange.getRequestURI().getRawPath() + (query != null ? '?' + query : "");
+	}
+
+	protected static byte[] readFully(InputStream in) throws IOException {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads the exchanges recorded in the given fixture file.
+	 * @param file
+	 * @return recorded exchanges, in recorded order
+	 * @throws IOException if the file could not be read
+	 */
+	public static List<RecordedExchange> read(File file) throws IOException {
+		List<RecordedExchange> exchanges = new ArrayList<RecordedExchange>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(
+				file)), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.length() > 0) {
+					exchanges.add(RecordedExchange.fromMap(JsonUtil.convertJsonToMap(line)));
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return exchanges;
+	}
+
+	/**
+	 * Writes the given exchanges to a fixture file, creating parent folders
+	 * as needed.
+	 * @param file
+	 * @param exchanges
+	 * @throws IOException if the file could not be written
+	 */
+	public static void write(File file, List<RecordedExchange> exchanges) throws IOException {
+		File parent = file.getParentFile();
+		if (parent != null && !parent.exists() && !parent.mkdirs()) {
+			throw new IOException("Failed to create fixture folder " + parent);
+		}
+		Writer writer = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(file)), "UTF-8");
+		try {
+			for (RecordedExchange exchange : exchanges) {
+				writer.write(JsonUtil.convertToJson(exchange.toMap()));
+				writer.write('\n');
+			}
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * A recorded request and the response to it.
+	 */
+	public static class RecordedExchange {
+
+		private final String method;
+
+		private final String path;
+
+		private final int status;
+
+		private final Map<String, String> headers;
+
+		private final String body;
+
+		private final long duration;
+
+		/**
+		 *
+		 * @param method request method
+		 * @param path request path and query
+		 * @param status response status
+		 * @param headers recorded response headers
+		 * @param body response body, as an ISO-8859-1 string
+		 * @param duration in milliseconds, time taken by the server to respond
+		 */
+		public RecordedExchange(String method, String path, int status, Map<String, String> headers, String body,
+				long duration) {
+			this.method = method;
+			this.path = path;
+			this.status = status;
+			this.headers = headers;
+			this.body = body;
+			this.duration = duration;
+		}
+
+		public String getKey() {
+			return method + ' ' + path;
+		}
+
+		public int getStatus() {
+			return status;
+		}
+
+		public long getDuration() {
+			return duration;
+		}
+
+		protected Map<String, Object> toMap() {
+			Map<String, Object> map = new LinkedHashMap<String, Object>();
+			map.put("method", method);
+			map.put("path", path);
+			map.put("status", status);
+			map.put("duration", duration);
+			map.put("headers", headers);
+			map.put("body", body);
+			return map;
+		}
+
+		@SuppressWarnings("unchecked")
+		protected static RecordedExchange fromMap(Map<String, Object> map) {
+			Map<String, String> headers = new LinkedHashMap<String, String>();
+			Object recordedHeaders = map.get("headers");
+			if (recordedHeaders instanceof Map) {
+				headers.putAll((Map<String, String>) recordedHeaders);
+			}
+			return new RecordedExchange((String) map.get("method"), (String) map.get("path"),
+					((Number) map.get("status")).intValue(), headers, (String) map.get("body"),
+					((Number) map.get("duration")).longValue());
+		}
+
+	}
+
+}
@@ -0,0 +1,589 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.tests.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal HTTP/1.1 server on a local port, used by test fixtures that stand
+ * in for a Cloud Foundry controller. It only relies on java.net sockets, so
+ * that it runs in the tests bundle under OSGi without access to internal JDK
+ * packages.
+ * <p/>
+ * Each connection is served by its own thread, and is kept alive between
+ * requests unless the client asks to close it. Request bodies may be sent
+ * with a content length or chunked. Responses are always sent with a content
+ * length.
+ */
+public class LocalHttpServer {
+
+	/**
+	 * Handles one request. The handler must send the response headers, or
+	 * close the exchange without a response to drop the connection.
+	 */
+	public interface Handler {
+
+		public void handle(Exchange exchange) throws IOException;
+
+	}
+
+	private static final String CHARSET = "ISO-8859-1";
+
+	private final String name;
+
+	private final Handler handler;
+
+	private final Set<Socket> sockets = Collections.synchronizedSet(new HashSet<Socket>());
+
+	private ServerSocket serverSocket;
+
+	private ExecutorService executor;
+
+	/**
+	 *
+	 * @param name used to name the server threads
+	 * @param handler
+	 */
+	public LocalHttpServer(String name, Handler handler) {
+		this.name = name;
+		this.handler = handler;
+	}
+
+	/**
+	 * Starts the server on a free local port.
+	 * @throws IOException if the server could not be started
+	 */
+	public synchronized void start() throws IOException {
+		if (serverSocket != null) {
+			return;
+		}
+		serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		executor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, name + " - " + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		final ServerSocket acceptingSocket = serverSocket;
+		final ExecutorService connectionExecutor = executor;
+		executor.execute(new Runnable() {
+
+			public void run() {
+				while (!acceptingSocket.isClosed()) {
+					try {
+						final Socket socket = acceptingSocket.accept();
+						sockets.add(socket);
+						connectionExecutor.execute(new Runnable() {
+
+							public void run() {
+								serve(socket);
+							}
+						});
+					}
+					catch (IOException e) {
+						// Server socket closed
+					}
+				}
+			}
+		});
+	}
+
+	public synchronized void stop() {
+		if (serverSocket != null) {
+			closeQuietly(serverSocket);
+			synchronized (sockets) {
+				for (Socket socket : sockets) {
+					closeQuietly(socket);
+				}
+				sockets.clear();
+			}
+			executor.shutdownNow();
+			serverSocket = null;
+			executor = null;
+		}
+	}
+
+	/**
+	 *
+	 * @return port the server listens on
+	 * @throws IllegalStateException if the server is not started
+	 */
+	public synchronized int getPort() {
+		if (serverSocket == null) {
+			throw new IllegalStateException("Server not started");
+		}
+		return serverSocket.getLocalPort();
+	}
+
+	protected void serve(Socket socket) {
+		try {
+			// Otherwise small responses are delayed, as headers and body are
+			// written separately
+			socket.setTcpNoDelay(true);
+			InputStream in = new BufferedInputStream(socket.getInputStream());
+			OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+			while (true) {
+				Exchange exchange = Exchange.read(socket, in, out);
+				if (exchange == null) {
+					break;
+				}
+				try {
+					handler.handle(exchange);
+				}
+				finally {
+					exchange.close();
+				}
+				if (!exchange.isReusable()) {
+					break;
+				}
+			}
+		}
+		catch (IOException e) {
+			// Connection closed by the client, or dropped by the handler
+		}
+		finally {
+			sockets.remove(socket);
+			closeQuietly(socket);
+		}
+	}
+
+	protected static void closeQuietly(Socket socket) {
+		try {
+			socket.close();
+		}
+		catch (IOException e) {
+			// Ignore
+		}
+	}
+
+	protected static void closeQuietly(ServerSocket socket) {
+		try {
+			socket.close();
+		}
+		catch (IOException e) {
+			// Ignore
+		}
+	}
+
+	/**
+	 * HTTP headers, whose names are case insensitive. Names are normalized with
+	 * an upper case first letter and the rest in lower case.
+	 */
+	public static class Headers extends LinkedHashMap<String, List<String>> {
+
+		private static final long serialVersionUID = 1L;
+
+		public String getFirst(String name) {
+			List<String> values = get(normalize(name));
+			return values != null && !values.isEmpty() ? values.get(0) : null;
+		}
+
+		public void add(String name, String value) {
+			String key = normalize(name);
+			List<String> values = get(key);
+			if (values == null) {
+				values = new ArrayList<String>();
+				put(key, values);
+			}
+			values.add(value);
+		}
+
+		public void set(String name, String value) {
+			List<String> values = new ArrayList<String>();
+			values.add(value);
+			put(normalize(name), values);
+		}
+
+		protected static String normalize(String name) {
+			if (name.length() == 0) {
+				return name;
+			}
+			return Character.toUpperCase(name.charAt(0)) + name.substring(1).toLowerCase();
+		}
+
+	}
+
+	/**
+	 * A request and its response.
+	 */
+	public static class Exchange {
+
+		private final Socket socket;
+
+		private final OutputStream out;
+
+		private final String method;
+
+		private final URI uri;
+
+		private final boolean keepAlive;
+
+		private final Headers requestHeaders;
+
+		private final InputStream requestBody;
+
+		private final Headers responseHeaders = new Headers();
+
+		private boolean responseSent = false;
+
+		private boolean closed = false;
+
+		private boolean reusable = false;
+
+		private Exchange(Socket socket, OutputStream out, String method, URI uri, boolean keepAlive,
+				Headers requestHeaders, InputStream requestBody) {
+			this.socket = socket;
+			this.out = out;
+			this.method = method;
+			this.uri = uri;
+			this.keepAlive = keepAlive;
+			this.requestHeaders = requestHeaders;
+			this.requestBody = requestBody;
+		}
+
+		/**
+		 * Reads the next request of a connection.
+		 * @return the exchange for the request, or null if the client closed
+		 * the connection.
+		 */
+		static Exchange read(Socket socket, InputStream in, OutputStream out) throws IOException {
+			String requestLine = readLine(in);
+			while (requestLine != null && requestLine.length() == 0) {
+				requestLine = readLine(in);
+			}
+			if (requestLine == null) {
+				return null;
+			}
+			String[] parts = requestLine.split(" ");
+			if (parts.length < 3) {
+				throw new IOException("Malformed request line: " + requestLine);
+			}
+
+			Headers headers = new Headers();
+			String line;
+			while ((line = readLine(in)) != null && line.length() > 0) {
+				int colon = line.indexOf(':');
+				if (colon > 0) {
+					headers.add(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+				}
+			}
+
+			URI uri;
+			try {
+				uri = new URI(parts[1]);
+			}
+			catch (URISyntaxException e) {
+				throw new IOException("Malformed request URI: " + parts[1]);
+			}
+
+			String connection = headers.getFirst("Connection");
+			boolean keepAlive = "HTTP/1.1".equals(parts[2]) ? !"close".equalsIgnoreCase(connection)
+					: "keep-alive".equalsIgnoreCase(connection);
+
+			if ("100-continue".equalsIgnoreCase(headers.getFirst("Expect"))) {
+				out.write("HTTP/1.1 100 Continue\r\n\r\n".getBytes(CHARSET));
+				out.flush();
+			}
+
+			InputStream body;
+			String length = headers.getFirst("Content-Length");
+			if ("chunked".equalsIgnoreCase(headers.getFirst("Transfer-Encoding"))) {
+				body = new ChunkedInputStream(in);
+			}
+			else if (length != null) {
+				body = new FixedLengthInputStream(in, Long.parseLong(length));
+			}
+			else {
+				body = new FixedLengthInputStream(in, 0);
+			}
+			return new Exchange(socket, out, parts[0], uri, keepAlive, headers, body);
+		}
+
+		public String getRequestMethod() {
+			return method;
+		}
+
+		public URI getRequestURI() {
+			return uri;
+		}
+
+		public Headers getRequestHeaders() {
+			return requestHeaders;
+		}
+
+		public InputStream getRequestBody() {
+			return requestBody;
+		}
+
+		public Headers getResponseHeaders() {
+			return responseHeaders;
+		}
+
+		public InetSocketAddress getLocalAddress() {
+			return (InetSocketAddress) socket.getLocalSocketAddress();
+		}
+
+		/**
+		 * Sends the status and response headers.
+		 * @param status
+		 * @param length length of the body, or -1 if there is no body
+		 * @throws IOException
+		 */
+		public void sendResponseHeaders(int status, long length) throws IOException {
+			if (responseSent) {
+				throw new IOException("Response headers already sent");
+			}
+			responseSent = true;
+			if (length >= 0 || responseHeaders.getFirst("Content-Length") == null) {
+				responseHeaders.set("Content-Length", String.valueOf(Math.max(0, length)));
+			}
+			if (!keepAlive) {
+				responseHeaders.set("Connection", "close");
+			}
+
+			StringBuilder head = new StringBuilder();
+			head.append("HTTP/1.1 ").append(status).append(' ').append(getReason(status)).append("\r\n");
+			for (Entry<String, List<String>> header : responseHeaders.entrySet()) {
+				for (String value : header.getValue()) {
+					head.append(header.getKey()).append(": ").append(value).append("\r\n");
+				}
+			}
+			head.append("\r\n");
+			out.write(head.toString().getBytes(CHARSET));
+			if (length < 0) {
+				out.flush();
+			}
+		}
+
+		/**
+		 *
+		 * @return stream for the response body. Closing it completes the
+		 * response without closing the connection.
+		 */
+		public OutputStream getResponseBody() {
+			return new FilterOutputStream(out) {
+
+				@Override
+				public void write(byte[] bytes, int offset, int length) throws IOException {
+					out.write(bytes, offset, length);
+				}
+
+				@Override
+				public void close() throws IOException {
+					flush();
+				}
+			};
+		}
+
+		/**
+		 * Completes the exchange. If no response was sent, the connection is
+		 * dropped.
+		 */
+		public void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (!responseSent) {
+				closeQuietly(socket);
+				return;
+			}
+			try {
+				out.flush();
+				// Skip any part of the body the handler did not read, so that
+				// the next request can be read
+				byte[] buffer = new byte[8192];
+				while (requestBody.read(buffer) >= 0) {
+					// Skip
+				}
+				reusable = keepAlive;
+			}
+			catch (IOException e) {
+				closeQuietly(socket);
+			}
+		}
+
+		boolean isReusable() {
+			return reusable;
+		}
+
+		protected static String readLine(InputStream in) throws IOException {
+			ByteArrayOutputStream line = new ByteArrayOutputStream();
+			int b;
+			while ((b = in.read()) >= 0) {
+				if (b == '\n') {
+					break;
+				}
+				if (b != '\r') {
+					line.write(b);
+				}
+			}
+			if (b < 0 && line.size() == 0) {
+				return null;
+			}
+			return line.toString(CHARSET);
+		}
+
+		protected static String getReason(int status) {
+			switch (status) {
+			case 200:
+				return "OK";
+			case 201:
+				return "Created";
+			case 204:
+				return "No Content";
+			case 206:
+				return "Partial Content";
+			case 302:
+				return "Found";
+			case 400:
+				return "Bad Request";
+			case 401:
+				return "Unauthorized";
+			case 403:
+				return "Forbidden";
+			case 404:
+				return "Not Found";
+			case 416:
+				return "Requested Range Not Satisfiable";
+			case 500:
+				return "Internal Server Error";
+			case 503:
+				return "Service Unavailable";
+			default:
+				return status < 400 ? "OK" : "Error";
+			}
+		}
+
+	}
+
+	/**
+	 * Request body sent with a content length.
+	 */
+	private static class FixedLengthInputStream extends InputStream {
+
+		private final InputStream in;
+
+		private long remaining;
+
+		FixedLengthInputStream(InputStream in, long length) {
+			this.in = in;
+			this.remaining = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int read = in.read(bytes, offset, (int) Math.min(length, remaining));
+			if (read < 0) {
+				throw new SocketException("Connection closed before end of request body");
+			}
+			remaining -= read;
+			return read;
+		}
+
+	}
+
+	/**
+	 * Request body sent with chunked transfer encoding.
+	 */
+	private static class ChunkedInputStream extends InputStream {
+
+		private final InputStream in;
+
+		private long remaining = 0;
+
+		private boolean done = false;
+
+		ChunkedInputStream(InputStream in) {
+			this.in = in;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (done) {
+				return -1;
+			}
+			if (remaining == 0) {
+				String size = Exchange.readLine(in);
+				if (size == null) {
+					throw new SocketException("Connection closed before end of request body");
+				}
+				int extension = size.indexOf(';');
+				remaining = Long.parseLong((extension >= 0 ? size.substring(0, extension) : size).trim(), 16);
+				if (remaining == 0) {
+					// Skip trailers
+					String trailer;
+					while ((trailer = Exchange.readLine(in)) != null && trailer.length() > 0) {
+						// Skip
+					}
+					done = true;
+					return -1;
+				}
+			}
+			int read = in.read(bytes, offset, (int) Math.min(length, remaining));
+			if (read < 0) {
+				throw new SocketException("Connection closed before end of request body");
+			}
+			remaining -= read;
+			if (remaining == 0) {
+				// Line break following the chunk
+				Exchange.readLine(in);
+			}
+			return read;
+		}
+
+	}
+
+}
@@ -0,0 +1,1656 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.server.tests.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.cloudfoundry.client.lib.domain.CloudResource;
+import org.cloudfoundry.client.lib.util.JsonUtil;
+import org.cloudfoundry.ide.eclipse.server.tests.server.LocalHttpServer.Exchange;
+
+/**
+ * In-process stand-in for a Cloud Foundry v2 cloud controller and its login
+ * server, so that tests and benchmarks can run offline and reproducibly. It
+ * implements the subset of the v2 API used by the plugin through the Java
+ * client: info and login, orgs and spaces, applications, stats, instances and
+ * files, services and offerings, domains and routes, resource matching and
+ * bits upload. All state is kept in memory.
+ * <p/>
+ * Behaviour can be scripted: latency can be added to all requests or to
+ * requests for a given path, requests can be made to fail with a given HTTP
+ * status or a dropped connection, either a fixed number of times or at a given
+ * rate, and thousands of applications can be added at once to measure
+ * behaviour at scale.
+ * <p/>
+ * The server runs on a {@link LocalHttpServer}, so that it does not depend on
+ * internal JDK packages that the tests bundle cannot import.
+ */
+public class MockCloudController {
+
+	public static final String USERNAME = "user@mock.local";
+
+	public static final String PASSWORD = "password";
+
+	public static final String ORG = "mock-org";
+
+	public static final String SPACE = "mock-space";
+
+	public static final String DOMAIN = "mock.local";
+
+	public static final String STACK = "lucid64";
+
+	/**
+	 * Status used with failure injection to close the connection without
+	 * sending a response, as happens when the server cannot be reached.
+	 */
+	public static final int DROP_CONNECTION = -1;
+
+	public static final int DEFAULT_PAGE_SIZE = 50;
+
+	private static final String UAA_PATH = "/uaa";
+
+	private static final String API_PATH = "/v2";
+
+	private static final long TOKEN_VALIDITY = 60 * 60 * 1000;
+
+	private static final String[] DEFAULT_LOG_FILES = { "logs/staging_task.log", "logs/stdout.log", "logs/stderr.log" };
+
+	private final String orgGuid = newGuid();
+
+	private final String spaceGuid = newGuid();
+
+	private final String domainGuid = newGuid();
+
+	private final String stackGuid = newGuid();
+
+	private final Map<String, MockApplication> applications = new LinkedHashMap<String, MockApplication>();
+
+	private final Map<String, MockServiceInstance> serviceInstances = new LinkedHashMap<String, MockServiceInstance>();
+
+	private final Map<String, MockServiceOffering> serviceOfferings = new LinkedHashMap<String, MockServiceOffering>();
+
+	private final Map<String, MockRoute> routes = new LinkedHashMap<String, MockRoute>();
+
+	private final Map<String, String> bindings = new LinkedHashMap<String, String>();
+
+	private final Set<String> knownResources = new HashSet<String>();
+
+	private final Map<String, Long> accessTokens = new ConcurrentHashMap<String, Long>();
+
+	private final Set<String> refreshTokens = Collections.synchronizedSet(new HashSet<String>());
+
+	private final Map<String, Long> latencies = new ConcurrentHashMap<String, Long>();
+
+	private final List<FailureRule> failures = new CopyOnWriteArrayList<FailureRule>();
+
+	private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<String, AtomicInteger>();
+
+	private final Random random = new Random(0);
+
+	private volatile long defaultLatency = 0;
+
+	private volatile long startupTime = 0;
+
+	private volatile int pageSize = DEFAULT_PAGE_SIZE;
+
+	private LocalHttpServer server;
+
+	public MockCloudController() {
+		addServiceOffering("mysql", "5.5", "100mb", "1gb");
+		addServiceOffering("rediscloud", "2.6", "25mb");
+	}
+
+	/**
+	 * Starts the server on a free local port.
+	 * @throws IOException if the server could not be started
+	 */
+	public synchronized void start() throws IOException {
+		if (server != null) {
+			return;
+		}
+		server = new LocalHttpServer("Mock Cloud Controller", new LocalHttpServer.Handler() {
+			public void handle(Exchange exchange) throws IOException {
+				MockCloudController.this.handle(exchange);
+			}
+		});
+		server.start();
+	}
+
+	public synchronized void stop() {
+		if (server != null) {
+			server.stop();
+			server = null;
+		}
+	}
+
+	/**
+	 *
+	 * @return URL of the controller, without a trailing slash.
+	 */
+	public synchronized String getUrl() {
+		if (server == null) {
+			throw new IllegalStateException("Mock cloud controller not started");
+		}
+		return "http://127.0.0.1:" + server.getPort();
+	}
+
+	/*
+	 * Scripting
+	 */
+
+	/**
+	 * Adds latency to every request.
+	 * @param latency in milliseconds
+	 */
+	public void setLatency(long latency) {
+		this.defaultLatency = latency;
+	}
+
+	/**
+	 * Adds latency to requests whose path starts with the given prefix,
+	 * instead of the default latency.
+	 * @param pathPrefix e.g. "/v2/apps"
+	 * @param latency in milliseconds
+	 */
+	public void setLatency(String pathPrefix, long latency) {
+		latencies.put(pathPrefix, latency);
+	}
+
+	/**
+	 * Makes the next requests whose path starts with the given prefix fail.
+	 * @param pathPrefix e.g. "/v2/apps". Use "/" for all requests.
+	 * @param status HTTP status to respond with, or {@link #DROP_CONNECTION}
+	 * @param count number of requests to fail
+	 */
+	public void failRequests(String pathPrefix, int status, int count) {
+		failures.add(new FailureRule(pathPrefix, status, count, 1));
+	}
+
+	/**
+	 * Makes a proportion of the requests whose path starts with the given
+	 * prefix fail, until failures are cleared.
+	 * @param pathPrefix e.g. "/v2/apps". Use "/" for all requests.
+	 * @param status HTTP status to respond with, or {@link #DROP_CONNECTION}
+	 * @param rate between 0 and 1
+	 */
+	public void setFailureRate(String pathPrefix, int status, double rate) {
+		failures.add(new FailureRule(pathPrefix, status, -1, rate));
+	}
+
+	public void clearFailures() {
+		failures.clear();
+	}
+
+	/**
+	 * @param startupTime in milliseconds, how long instances of a started
+	 * application report STARTING before RUNNING.
+	 */
+	public void setStartupTime(long startupTime) {
+		this.startupTime = startupTime;
+	}
+
+	/**
+	 * @param pageSize default number of resources per page in list responses
+	 */
+	public void setPageSize(int pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Invalidates all issued access tokens, so that the next requests fail
+	 * with an authorisation error until the client logs in again.
+	 */
+	public void expireAccessTokens() {
+		accessTokens.clear();
+	}
+
+	/**
+	 *
+	 * @param pathPrefix
+	 * @return number of requests received so far whose path starts with the
+	 * given prefix
+	 */
+	public int getRequestCount(String pathPrefix) {
+		int count = 0;
+		for (Map.Entry<String, AtomicInteger> entry : requestCounts.entrySet()) {
+			if (entry.getKey().startsWith(pathPrefix)) {
+				count += entry.getValue().get();
+			}
+		}
+		return count;
+	}
+
+	public void resetRequestCounts() {
+		requestCounts.clear();
+	}
+
+	/**
+	 * Removes all applications, services and routes, and any scripted latency
+	 * and failures.
+	 */
+	public synchronized void reset() {
+		applications.clear();
+		serviceInstances.clear();
+		routes.clear();
+		bindings.clear();
+		knownResources.clear();
+		latencies.clear();
+		failures.clear();
+		requestCounts.clear();
+		defaultLatency = 0;
+		startupTime = 0;
+		pageSize = DEFAULT_PAGE_SIZE;
+	}
+
+	/**
+	 * Adds an application, with a route of the same name in the default
+	 * domain.
+	 * @param name
+	 * @param started true if the application should be started
+	 * @return the added application
+	 */
+	public synchronized MockApplication addApplication(String name, boolean started) {
+		MockApplication app = new MockApplication(name);
+		app.packageState = "STAGED";
+		if (started) {
+			app.start();
+		}
+		applications.put(app.guid, app);
+		MockRoute route = addRoute(name, domainGuid);
+		route.apps.add(app.guid);
+		return app;
+	}
+
+	/**
+	 * Adds the given number of applications, named with the given prefix
+	 * followed by a number.
+	 * @param namePrefix
+	 * @param count
+	 * @param started
+	 */
+	public synchronized void addApplications(String namePrefix, int count, boolean started) {
+		for (int i = 0; i < count; i++) {
+			addApplication(namePrefix + i, started);
+		}
+	}
+
+	public synchronized MockApplication getApplication(String name) {
+		for (MockApplication app : applications.values()) {
+			if (app.name.equals(name)) {
+				return app;
+			}
+		}
+		return null;
+	}
+
+	public synchronized Collection<MockApplication> getApplications() {
+		return new ArrayList<MockApplication>(applications.values());
+	}
+
+	/**
+	 * Appends content to a file of all instances of the given application,
+	 * for example to simulate log output.
+	 * @param appName
+	 * @param path e.g. "logs/stdout.log"
+	 * @param content
+	 */
+	public synchronized void appendFile(String appName, String path, String content) {
+		MockApplication app = getApplication(appName);
+		if (app == null) {
+			throw new IllegalArgumentException("No application " + appName);
+		}
+		StringBuilder file = app.files.get(path);
+		if (file == null) {
+			file = new StringBuilder();
+			app.files.put(path, file);
+		}
+		file.append(content);
+	}
+
+	public synchronized void addServiceOffering(String label, String version, String... plans) {
+		MockServiceOffering offering = new MockServiceOffering(label, version);
+		for (String plan : plans) {
+			offering.plans.put(newGuid(), plan);
+		}
+		serviceOfferings.put(offering.guid, offering);
+	}
+
+	/*
+	 * Request handling
+	 */
+
+	protected void handle(Exchange exchange) throws IOException {
+		String path = exchange.getRequestURI().getRawPath();
+		try {
+			countRequest(path);
+
+			long latency = getLatency(path);
+			if (latency > 0) {
+				Thread.sleep(latency);
+			}
+
+			FailureRule failure = getFailure(path);
+			if (failure != null) {
+				if (failure.status == DROP_CONNECTION) {
+					exchange.close();
+				}
+				else {
+					sendError(exchange, failure.status, 10001, "Injected failure", "CF-InjectedFailure");
+				}
+				return;
+			}
+
+			Request request = new Request(exchange);
+			if (path.startsWith(UAA_PATH)) {
+				handleLogin(request);
+			}
+			else if (path.equals("/info") || path.equals(API_PATH + "/info")) {
+				handleInfo(request);
+			}
+			else if (path.startsWith(API_PATH + "/")) {
+				if (!isAuthorised(exchange)) {
+					sendError(exchange, 401, 1000, "Invalid Auth Token", "CF-InvalidAuthToken");
+					return;
+				}
+				synchronized (this) {
+					handleApi(request);
+				}
+			}
+			else {
+				sendNotFound(exchange);
+			}
+		}
+		catch (InterruptedException e) {
+			exchange.close();
+		}
+		catch (RuntimeException e) {
+			sendError(exchange, 500, 10001, "Mock cloud controller error: " + e, "CF-ServerError");
+		}
+		finally {
+			exchange.close();
+		}
+	}
+
+	protected void handleInfo(Request request) throws IOException {
+		Map<String, Object> info = new LinkedHashMap<String, Object>();
+		info.put("name", "mock");
+		info.put("build", "1");
+		info.put("support", "http://support.mock.local");
+		info.put("version", 2);
+		info.put("description", "Mock Cloud Foundry");
+		info.put("authorization_endpoint", getBaseUrl(request.exchange) + UAA_PATH);
+		info.put("allow_debug", false);
+		sendJson(request.exchange, 200, info);
+	}
+
+	protected void handleLogin(Request request) throws IOException {
+		Exchange exchange = request.exchange;
+		if (request.path.equals(UAA_PATH + "/oauth/token")) {
+			Map<String, String> form = parseQuery(request.body());
+			String grantType = form.get("grant_type");
+			boolean valid = "password".equals(grantType) ? USERNAME.equals(form.get("username"))
+					&& PASSWORD.equals(form.get("password")) : "refresh_token".equals(grantType)
+					&& refreshTokens.contains(form.get("refresh_token"));
+			if (!valid) {
+				Map<String, Object> error = new LinkedHashMap<String, Object>();
+				error.put("error", "unauthorized");
+				error.put("error_description", "Bad credentials");
+				sendJson(exchange, 401, error);
+				return;
+			}
+			String accessToken = newGuid();
+			String refreshToken = newGuid();
+			accessTokens.put(accessToken, System.currentTimeMillis() + TOKEN_VALIDITY);
+			refreshTokens.add(refreshToken);
+
+			Map<String, Object> token = new LinkedHashMap<String, Object>();
+			token.put("access_token", accessToken);
+			token.put("token_type", "bearer");
+			token.put("refresh_token", refreshToken);
+			token.put("expires_in", TOKEN_VALIDITY / 1000);
+			token.put("scope", "cloud_controller.read cloud_controller.write openid password.write");
+			token.put("jti", newGuid());
+			sendJson(exchange, 200, token);
+		}
+		else if (request.path.equals(UAA_PATH + "/userinfo")) {
+			Map<String, Object> user = new LinkedHashMap<String, Object>();
+			user.put("user_id", orgGuid);
+			user.put("user_name", USERNAME);
+			user.put("email", USERNAME);
+			sendJson(exchange, 200, user);
+		}
+		else {
+			sendNotFound(exchange);
+		}
+	}
+
+	protected void handleApi(Request request) throws IOException {
+		Exchange exchange = request.exchange;
+		String method = request.method;
+		String[] segments = request.segments;
+		String collection = segments.length > 0 ? segments[0] : "";
+		String guid = segments.length > 1 ? segments[1] : null;
+		String sub = segments.length > 2 ? segments[2] : null;
+
+		if (collection.equals("organizations")) {
+			if (sub != null && sub.endsWith("domains")) {
+				sendList(request, Collections.singletonList(domainResource()));
+			}
+			else if (guid == null) {
+				sendList(request, Collections.singletonList(orgResource()));
+			}
+			else {
+				sendJson(exchange, 200, orgResource());
+			}
+		}
+		else if (collection.equals("spaces")) {
+			if (sub == null) {
+				sendList(request, Collections.singletonList(spaceResource()));
+			}
+			else if (sub.equals("apps")) {
+				List<Map<String, Object>> resources = new ArrayList<Map<String, Object>>();
+				String name = request.getFilter("name");
+				for (MockApplication app : applications.values()) {
+					if (name == null || name.equals(app.name)) {
+						resources.add(appResource(app));
+					}
+				}
+				sendList(request, resources);
+			}
+			else if (sub.equals("service_instances")) {
+				List<Map<String, Object>> resources = new ArrayList<Map<String, Object>>();
+				String name = request.getFilter("name");
+				for (MockServiceInstance service : serviceInstances.values()) {
+					if (name == null || name.equals(service.name)) {
+						resources.add(serviceInstanceResource(service));
+					}
+				}
+				sendList(request, resources);
+			}
+			else if (sub.endsWith("domains")) {
+				sendList(request, Collections.singletonList(domainResource()));
+			}
+			else {
+				sendNotFound(exchange);
+			}
+		}
+		else if (collection.equals("apps")) {
+			handleApps(request, guid, sub);
+		}
+		else if (collection.equals("jobs")) {
+			sendJson(exchange, 200, jobResource(guid));
+		}
+		else if (collection.equals("resource_match")) {
+			List<CloudResource> requested = JsonUtil.convertJsonToCloudResourceList(request.body());
+			List<Map<String, Object>> matched = new ArrayList<Map<String, Object>>();
+			for (CloudResource resource : requested) {
+				if (knownResources.contains(resource.getSha1())) {
+					Map<String, Object> match = new LinkedHashMap<String, Object>();
+					match.put("fn", resource.getFilename());
+					match.put("size", resource.getSize());
+					match.put("sha1", resource.getSha1());
+					matched.add(match);
+				}
+			}
+			sendJson(exchange, 200, matched);
+		}
+		else if (collection.endsWith("domains")) {
+			if (sub != null && sub.equals("routes")) {
+				sendList(request, routeResources(guid));
+			}
+			else {
+				sendList(request, Collections.singletonList(domainResource()));
+			}
+		}
+		else if (collection.equals("routes")) {
+			handleRoutes(request, guid);
+		}
+		else if (collection.equals("services")) {
+			List<Map<String, Object>> resources = new ArrayList<Map<String, Object>>();
+			for (MockServiceOffering offering : serviceOfferings.values()) {
+				resources.add(serviceOfferingResource(offering, true));
+			}
+			sendList(request, resources);
+		}
+		else if (collection.equals("service_instances")) {
+			handleServiceInstances(request, guid);
+		}
+		else if (collection.equals("service_bindings")) {
+			if (method.equals("POST")) {
+				Map<String, Object> body = JsonUtil.convertJsonToMap(request.body());
+				String bindingGuid = newGuid();
+				String appGuid = (String) body.get("app_guid");
+				String serviceGuid = (String) body.get("service_instance_guid");
+				MockApplication app = applications.get(appGuid);
+				if (app == null || !serviceInstances.containsKey(serviceGuid)) {
+					sendNotFound(exchange);
+					return;
+				}
+				bindings.put(bindingGuid, appGuid + ':' + serviceGuid);
+				app.touch();
+				sendJson(exchange, 201, bindingResource(bindingGuid));
+			}
+			else if (method.equals("DELETE") && guid != null) {
+				String binding = bindings.remove(guid);
+				if (binding != null) {
+					MockApplication app = applications.get(binding.substring(0, binding.indexOf(':')));
+					if (app != null) {
+						app.touch();
+					}
+				}
+				sendEmpty(exchange, 204);
+			}
+			else {
+				sendNotFound(exchange);
+			}
+		}
+		else if (collection.equals("stacks")) {
+			sendList(request, Collections.singletonList(stackResource()));
+		}
+		else {
+			sendNotFound(exchange);
+		}
+	}
+
+	protected void handleApps(Request request, String guid, String sub) throws IOException {
+		Exchange exchange = request.exchange;
+		String method = request.method;
+		if (guid == null) {
+			if (method.equals("POST")) {
+				Map<String, Object> body = JsonUtil.convertJsonToMap(request.body());
+				String name = (String) body.get("name");
+				if (getApplication(name) != null) {
+					sendError(exchange, 400, 100002, "The app name is taken: " + name, "CF-AppNameTaken");
+					return;
+				}
+				MockApplication app = new MockApplication(name);
+				app.update(body);
+				applications.put(app.guid, app);
+				sendJson(exchange, 201, appResource(app));
+			}
+			else {
+				sendList(request, appResources());
+			}
+			return;
+		}
+
+		MockApplication app = applications.get(guid);
+		if (app == null) {
+			sendError(exchange, 404, 100004, "The app name could not be found: " + guid, "CF-AppNotFound");
+			return;
+		}
+
+		if (sub == null) {
+			if (method.equals("PUT")) {
+				app.update(JsonUtil.convertJsonToMap(request.body()));
+				sendJson(exchange, 201, appResource(app));
+			}
+			else if (method.equals("DELETE")) {
+				applications.remove(guid);
+				for (MockRoute route : routes.values()) {
+					route.apps.remove(guid);
+				}
+				sendEmpty(exchange, 204);
+			}
+			else {
+				sendJson(exchange, 200, appResource(app));
+			}
+		}
+		else if (request.segments.length > 4 && request.segments[4].equals("files")) {
+			sendFile(request, app);
+		}
+		else if (sub.equals("stats") || sub.equals("instances")) {
+			if (!app.isStarted()) {
+				sendError(exchange, 400, 220001, "Instances error: Request failed for app: " + app.name
+						+ " as the app is in stopped state.", "CF-InstancesError");
+				return;
+			}
+			Map<String, Object> instances = new LinkedHashMap<String, Object>();
+			for (int i = 0; i < app.instances; i++) {
+				instances.put(String.valueOf(i), sub.equals("stats") ? statsEntry(app, i) : instanceEntry(app));
+			}
+			sendJson(exchange, 200, instances);
+		}
+		else if (sub.equals("crashes")) {
+			sendJson(exchange, 200, new ArrayList<Object>());
+		}
+		else if (sub.equals("routes")) {
+			if (request.segments.length > 3) {
+				MockRoute route = routes.get(request.segments[3]);
+				if (route == null) {
+					sendNotFound(exchange);
+					return;
+				}
+				if (method.equals("PUT")) {
+					route.apps.add(guid);
+				}
+				else if (method.equals("DELETE")) {
+					route.apps.remove(guid);
+				}
+				app.touch();
+				sendJson(exchange, 201, appResource(app));
+			}
+			else {
+				List<Map<String, Object>> resources = new ArrayList<Map<String, Object>>();
+				for (MockRoute route : routes.values()) {
+					if (route.apps.contains(guid)) {
+						resources.add(routeResource(route));
+					}
+				}
+				sendList(request, resources);
+			}
+		}
+		else if (sub.equals("service_bindings")) {
+			List<Map<String, Object>> resources = new ArrayList<Map<String, Object>>();
+			for (String bindingGuid : getBindings(guid, null)) {
+				resources.add(bindingResource(bindingGuid));
+			}
+			sendList(request, resources);
+		}
+		else if (sub.equals("bits")) {
+			receiveBits(request, app);
+			sendJson(exchange, 201, jobResource(newGuid()));
+		}
+		else {
+			sendNotFound(exchange);
+		}
+	}
+
+	protected void handleRoutes(Request request, String guid) throws IOException {
+		Exchange exchange = request.exchange;
+		if (request.method.equals("POST")) {
+			Map<String, Object> body = JsonUtil.convertJsonToMap(request.body());
+			String host = (String) body.get("host");
+			String routeDomain = (String) body.get("domain_guid");
+			for (MockRoute route : routes.values()) {
+				if (route.host.equals(host) && route.domainGuid.equals(routeDomain)) {
+					sendError(exchange, 400, 210003, "The host is taken: " + host, "CF-RouteHostTaken");
+					return;
+				}
+			}
+			sendJson(exchange, 201, routeResource(addRoute(host, routeDomain)));
+		}
+		else if (request.method.equals("DELETE")) {
+			routes.remove(guid);
+			sendEmpty(exchange, 204);
+		}
+		else if (guid != null) {
+			MockRoute route = routes.get(guid);
+			if (route == null) {
+				sendNotFound(exchange);
+			}
+			else {
+				sendJson(exchange, 200, routeResource(route));
+			}
+		}
+		else {
+			String host = request.getFilter("host");
+			List<Map<String, Object>> resources = new ArrayList<Map<String, Object>>();
+			for (MockRoute route : routes.values()) {
+				if (host == null || host.equals(route.host)) {
+					resources.add(routeResource(route));
+				}
+			}
+			sendList(request, resources);
+		}
+	}
+
+	protected void handleServiceInstances(Request request, String guid) throws IOException {
+		Exchange exchange = request.exchange;
+		if (request.method.equals("POST")) {
+			Map<String, Object> body = JsonUtil.convertJsonToMap(request.body());
+			String name = (String) body.get("name");
+			for (MockServiceInstance service : serviceInstances.values()) {
+				if (service.name.equals(name)) {
+					sendError(exchange, 400, 60002, "The service instance name is taken: " + name,
+							"CF-ServiceInstanceNameTaken");
+					return;
+				}
+			}
+			String planGuid = (String) body.get("service_plan_guid");
+			MockServiceOffering offering = getOfferingForPlan(planGuid);
+			if (offering == null) {
+				sendError(exchange, 400, 60003, "Invalid service plan: " + planGuid, "CF-InvalidServicePlan");
+				return;
+			}
+			MockServiceInstance service = new MockServiceInstance(name, offering, planGuid);
+			serviceInstances.put(service.guid, service);
+			sendJson(exchange, 201, serviceInstanceResource(service));
+		}
+		else if (request.method.equals("DELETE")) {
+			if (serviceInstances.remove(guid) == null) {
+				sendNotFound(exchange);
+				return;
+			}
+			for (String bindingGuid : getBindings(null, guid)) {
+				bindings.remove(bindingGuid);
+			}
+			sendEmpty(exchange, 204);
+		}
+		else if (guid != null) {
+			MockServiceInstance service = serviceInstances.get(guid);
+			if (service == null) {
+				sendNotFound(exchange);
+			}
+			else {
+				sendJson(exchange, 200, serviceInstanceResource(service));
+			}
+		}
+		else {
+			List<Map<String, Object>> resources = new ArrayList<Map<String, Object>>();
+			for (MockServiceInstance service : serviceInstances.values()) {
+				resources.add(serviceInstanceResource(service));
+			}
+			sendList(request, resources);
+		}
+	}
+
+	/**
+	 * Reads an application upload. The resources contained in the archive
+	 * become known, so that later uploads of the same content only send
+	 * changed files.
+	 */
+	protected void receiveBits(Request request, MockApplication app) throws IOException {
+		byte[] body = request.bodyBytes();
+		String contentType = request.exchange.getRequestHeaders().getFirst("Content-Type");
+		byte[] archive = getMultipartContent(body, contentType, "application");
+		if (archive != null) {
+			ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive));
+			try {
+				ZipEntry entry;
+				while ((entry = zip.getNextEntry()) != null) {
+					if (!entry.isDirectory()) {
+						knownResources.add(sha1(readFully(zip)));
+					}
+				}
+			}
+			finally {
+				zip.close();
+			}
+		}
+		app.uploadedBytes += body.length;
+		app.packageState = "STAGED";
+		app.touch();
+	}
+
+	protected void sendFile(Request request, MockApplication app) throws IOException {
+		Exchange exchange = request.exchange;
+		StringBuilder path = new StringBuilder();
+		for (int i = 5; i < request.segments.length; i++) {
+			if (path.length() > 0) {
+				path.append('/');
+			}
+			path.append(request.segments[i]);
+		}
+		if (!app.isStarted()) {
+			sendError(exchange, 400, 190001, "File error: Request failed for app: " + app.name
+					+ " as the instance is not found.", "CF-FileError");
+			return;
+		}
+
+		String filePath = path.toString();
+		StringBuilder file = app.files.get(filePath);
+		if (file == null) {
+			// Directory listing
+			String prefix = filePath.length() == 0 || filePath.endsWith("/") ? filePath : filePath + '/';
+			StringBuilder listing = new StringBuilder();
+			for (Map.Entry<String, StringBuilder> entry : app.files.entrySet()) {
+				if (entry.getKey().startsWith(prefix)) {
+					String name = entry.getKey().substring(prefix.length());
+					if (name.indexOf('/') >= 0) {
+						name = name.substring(0, name.indexOf('/') + 1);
+					}
+					listing.append(name).append("                    ").append(entry.getValue().length())
+							.append("B\n");
+				}
+			}
+			if (listing.length() == 0) {
+				sendError(exchange, 404, 190001, "File error: not found " + filePath, "CF-FileError");
+				return;
+			}
+			sendText(exchange, 200, listing.toString(), null);
+			return;
+		}
+
+		byte[] content = file.toString().getBytes("UTF-8");
+		String range = exchange.getRequestHeaders().getFirst("Range");
+		if (range == null || !range.startsWith("bytes=")) {
+			sendBytes(exchange, 200, content, "text/plain");
+			return;
+		}
+
+		String[] bounds = range.substring("bytes=".length()).split("-", -1);
+		int start;
+		int end;
+		if (bounds[0].length() == 0) {
+			// Suffix range: last n bytes
+			start = Math.max(0, content.length - Integer.parseInt(bounds[1]));
+			end = content.length - 1;
+		}
+		else {
+			start = Integer.parseInt(bounds[0]);
+			end = bounds[1].length() > 0 ? Math.min(Integer.parseInt(bounds[1]), content.length - 1)
+					: content.length - 1;
+		}
+		if (start >= content.length || start > end) {
+			exchange.getResponseHeaders().set("Content-Range", "bytes */" + content.length);
+			sendError(exchange, 416, 190001, "File error: range not satisfiable", "CF-FileError");
+			return;
+		}
+		exchange.getResponseHeaders().set("Content-Range", "bytes " + start + '-' + end + '/' + content.length);
+		sendBytes(exchange, 206, Arrays.copyOfRange(content, start, end + 1), "text/plain");
+	}
+
+	/*
+	 * Resources
+	 */
+
+	protected Map<String, Object> resource(String guid, String url, Date created, Date updated,
+			Map<String, Object> entity) {
+		Map<String, Object> metadata = new LinkedHashMap<String, Object>();
+		metadata.put("guid", guid);
+		metadata.put("url", url);
+		metadata.put("created_at", formatDate(created));
+		metadata.put("updated_at", updated != null ? formatDate(updated) : null);
+
+		Map<String, Object> resource = new LinkedHashMap<String, Object>();
+		resource.put("metadata", metadata);
+		resource.put("entity", entity);
+		return resource;
+	}
+
+	protected Map<String, Object> orgResource() {
+		Map<String, Object> entity = new LinkedHashMap<String, Object>();
+		entity.put("name", ORG);
+		entity.put("billing_enabled", false);
+		entity.put("status", "active");
+		return resource(orgGuid, "/v2/organizations/" + orgGuid, new Date(0), null, entity);
+	}
+
+	protected Map<String, Object> spaceResource() {
+		Map<String, Object> entity = new LinkedHashMap<String, Object>();
+		entity.put("name", SPACE);
+		entity.put("organization_guid", orgGuid);
+		entity.put("organization", orgResource());
+		return resource(spaceGuid, "/v2/spaces/" + spaceGuid, new Date(0), null, entity);
+	}
+
+	protected Map<String, Object> domainResource() {
+		Map<String, Object> entity = new LinkedHashMap<String, Object>();
+		entity.put("name", DOMAIN);
+		entity.put("owning_organization_guid", null);
+		entity.put("wildcard", true);
+		return resource(domainGuid, "/v2/domains/" + domainGuid, new Date(0), null, entity);
+	}
+
+	protected Map<String, Object> stackResource() {
+		Map<String, Object> entity = new LinkedHashMap<String, Object>();
+		entity.put("name", STACK);
+		entity.put("description", "Ubuntu 10.04");
+		return resource(stackGuid, "/v2/stacks/" + stackGuid, new Date(0), null, entity);
+	}
+
+	protected List<Map<String, Object>> appResources() {
+		List<Map<String, Object>> resources = new ArrayList<Map<String, Object>>();
+		for (MockApplication app : applications.values()) {
+			resources.add(appResource(app));
+		}
+		return resources;
+	}
+
+	protected Map<String, Object> appResource(MockApplication app) {
+		Map<String, Object> entity = new LinkedHashMap<String, Object>();
+		entity.put("name", app.name);
+		entity.put("production", false);
+		entity.put("space_guid", spaceGuid);
+		entity.put("stack_guid", stackGuid);
+		entity.put("buildpack", app.buildpack);
+		entity.put("detected_buildpack", null);
+		entity.put("environment_json", app.environment);
+		entity.put("memory", app.memory);
+		entity.put("instances", app.instances);
+		entity.put("disk_quota", app.diskQuota);
+		entity.put("state", app.state);
+		entity.put("version", app.version);
+		entity.put("command", app.command);
+		entity.put("console", false);
+		entity.put("debug", null);
+		entity.put("staging_task_id", null);
+		entity.put("package_state", app.packageState);
+		entity.put("health_check_timeout", null);
+		entity.put("space", spaceResource());
+		entity.put("stack", stackResource());
+		List<Map<String, Object>> appBindings = new ArrayList<Map<String, Object>>();
+		for (String bindingGuid : getBindings(app.guid, null)) {
+			appBindings.add(bindingResource(bindingGuid));
+		}
+		entity.put("service_bindings", appBindings);
+		return resource(app.guid, "/v2/apps/" + app.guid, app.created, app.updated, entity);
+	}
+
+	protected Map<String, Object> routeResource(MockRoute route) {
+		Map<String, Object> entity = new LinkedHashMap<String, Object>();
+		entity.put("host", route.host);
+		entity.put("domain_guid", route.domainGuid);
+		entity.put("space_guid", spaceGuid);
+		entity.put("domain", domainResource());
+		entity.put("space", spaceResource());
+		List<Map<String, Object>> apps = new ArrayList<Map<String, Object>>();
+		for (String appGuid : route.apps) {
+			MockApplication app = applications.get(appGuid);
+			if (app != null) {
+				Map<String, Object> appEntity = new LinkedHashMap<String, Object>();
+				appEntity.put("name", app.name);
+				apps.add(resource(app.guid, "/v2/apps/" + app.guid, app.created, app.updated, appEntity));
+			}
+		}
+		entity.put("apps", apps);
+		return resource(route.guid, "/v2/routes/" + route.guid, route.created, null, entity);
+	}
+
+	protected List<Map<String, Object>> routeResources(String forDomainGuid) {
+		List<Map<String, Object>> resources = new ArrayList<Map<String, Object>>();
+		for (MockRoute route : routes.values()) {
+			if (forDomainGuid == null || forDomainGuid.equals(route.domainGuid)) {
+				resources.add(routeResource(route));
+			}
+		}
+		return resources;
+	}
+
+	protected Map<String, Object> serviceOfferingResource(MockServiceOffering offering, boolean includePlans) {
+		Map<String, Object> entity = new LinkedHashMap<String, Object>();
+		entity.put("label", offering.label);
+		entity.put("provider", "core");
+		entity.put("url", "http://mock.local/" + offering.label);
+		entity.put("description", "Mock " + offering.label + " service");
+		entity.put("version", offering.version);
+		entity.put("info_url", null);
+		entity.put("active", true);
+		entity.put("bindable", true);
+		entity.put("unique_id", offering.guid);
+		entity.put("extra", null);
+		entity.put("documentation_url", null);
+		if (includePlans) {
+			List<Map<String, Object>> plans = new ArrayList<Map<String, Object>>();
+			for (String planGuid : offering.plans.keySet()) {
+				plans.add(servicePlanResource(offering, planGuid, false));
+			}
+			entity.put("service_plans", plans);
+		}
+		return resource(offering.guid, "/v2/services/" + offering.guid, new Date(0), null, entity);
+	}
+
+	protected Map<String, Object> servicePlanResource(MockServiceOffering offering, String planGuid,
+			boolean includeService) {
+		Map<String, Object> entity = new LinkedHashMap<String, Object>();
+		entity.put("name", offering.plans.get(planGuid));
+		entity.put("free", true);
+		entity.put("description", offering.plans.get(planGuid));
+		entity.put("service_guid", offering.guid);
+		entity.put("extra", null);
+		entity.put("unique_id", planGuid);
+		entity.put("public", true);
+		if (includeService) {
+			entity.put("service", serviceOfferingResource(offering, false));
+		}
+		return resource(planGuid, "/v2/service_plans/" + planGuid, new Date(0), null, entity);
+	}
+
+	protected Map<String, Object> serviceInstanceResource(MockServiceInstance service) {
+		Map<String, Object> entity = new LinkedHashMap<String, Object>();
+		entity.put("name", service.name);
+		entity.put("credentials", new LinkedHashMap<String, Object>());
+		entity.put("service_plan_guid", service.planGuid);
+		entity.put("space_guid", spaceGuid);
+		entity.put("gateway_data", null);
+		entity.put("dashboard_url", null);
+		entity.put("type", "managed_service_instance");
+		entity.put("space", spaceResource());
+		entity.put("service_plan", servicePlanResource(service.offering, service.planGuid, true));
+		List<Map<String, Object>> serviceBindings = new ArrayList<Map<String, Object>>();
+		for (String bindingGuid : getBindings(null, service.guid)) {
+			serviceBindings.add(bindingResource(bindingGuid));
+		}
+		entity.put("service_bindings", serviceBindings);
+		return resource(service.guid, "/v2/service_instances/" + service.guid, service.created, null, entity);
+	}
+
+	protected Map<String, Object> bindingResource(String bindingGuid) {
+		String binding = bindings.get(bindingGuid);
+		String appGuid = binding.substring(0, binding.indexOf(':'));
+		String serviceGuid = binding.substring(binding.indexOf(':') + 1);
+		MockServiceInstance service = serviceInstances.get(serviceGuid);
+
+		Map<String, Object> entity = new LinkedHashMap<String, Object>();
+		entity.put("app_guid", appGuid);
+		entity.put("service_instance_guid", serviceGuid);
+		entity.put("credentials", new LinkedHashMap<String, Object>());
+		entity.put("binding_options", new LinkedHashMap<String, Object>());
+		if (service != null) {
+			Map<String, Object> serviceEntity = new LinkedHashMap<String, Object>();
+			serviceEntity.put("name", service.name);
+			serviceEntity.put("service_plan_guid", service.planGuid);
+			serviceEntity.put("space_guid", spaceGuid);
+			entity.put("service_instance", resource(service.guid, "/v2/service_instances/" + service.guid,
+					service.created, null, serviceEntity));
+		}
+		return resource(bindingGuid, "/v2/service_bindings/" + bindingGuid, new Date(0), null, entity);
+	}
+
+	protected Map<String, Object> jobResource(String guid) {
+		Map<String, Object> entity = new LinkedHashMap<String, Object>();
+		entity.put("guid", guid);
+		entity.put("status", "finished");
+		Map<String, Object> metadata = new LinkedHashMap<String, Object>();
+		metadata.put("guid", guid);
+		metadata.put("created_at", formatDate(new Date()));
+		metadata.put("url", "/v2/jobs/" + guid);
+		Map<String, Object> resource = new LinkedHashMap<String, Object>();
+		resource.put("metadata", metadata);
+		resource.put("entity", entity);
+		return resource;
+	}
+
+	protected Map<String, Object> statsEntry(MockApplication app, int index) {
+		Map<String, Object> usage = new LinkedHashMap<String, Object>();
+		usage.put("time", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z").format(new Date()));
+		usage.put("cpu", 0.01 * (index + 1));
+		usage.put("mem", 64 * 1024 * 1024);
+		usage.put("disk", 128 * 1024 * 1024);
+
+		Map<String, Object> stats = new LinkedHashMap<String, Object>();
+		stats.put("name", app.name);
+		List<String> uris = new ArrayList<String>();
+		for (MockRoute route : routes.values()) {
+			if (route.apps.contains(app.guid)) {
+				uris.add(route.host + '.' + DOMAIN);
+			}
+		}
+		stats.put("uris", uris);
+		stats.put("host", "10.0.0." + (index + 1));
+		stats.put("port", 61000 + index);
+		stats.put("uptime", (System.currentTimeMillis() - app.startedAt) / 1000);
+		stats.put("mem_quota", app.memory * 1024L * 1024L);
+		stats.put("disk_quota", app.diskQuota * 1024L * 1024L);
+		stats.put("fds_quota", 16384);
+		stats.put("usage", usage);
+
+		Map<String, Object> entry = new LinkedHashMap<String, Object>();
+		entry.put("state", getInstanceState(app));
+		entry.put("stats", stats);
+		return entry;
+	}
+
+	protected Map<String, Object> instanceEntry(MockApplication app) {
+		Map<String, Object> entry = new LinkedHashMap<String, Object>();
+		entry.put("state", getInstanceState(app));
+		entry.put("since", app.startedAt / 1000.0);
+		entry.put("debug_ip", null);
+		entry.put("debug_port", null);
+		entry.put("console_ip", null);
+		entry.put("console_port", null);
+		return entry;
+	}
+
+	protected String getInstanceState(MockApplication app) {
+		return System.currentTimeMillis() - app.startedAt < startupTime ? "STARTING" : "RUNNING";
+	}
+
+	/*
+	 * Helpers
+	 */
+
+	protected MockRoute addRoute(String host, String routeDomainGuid) {
+		MockRoute route = new MockRoute(host, routeDomainGuid);
+		routes.put(route.guid, route);
+		return route;
+	}
+
+	protected List<String> getBindings(String appGuid, String serviceGuid) {
+		List<String> found = new ArrayList<String>();
+		for (Map.Entry<String, String> entry : bindings.entrySet()) {
+			String binding = entry.getValue();
+			if ((appGuid == null || binding.startsWith(appGuid + ':'))
+					&& (serviceGuid == null || binding.endsWith(':' + serviceGuid))) {
+				found.add(entry.getKey());
+			}
+		}
+		return found;
+	}
+
+	protected MockServiceOffering getOfferingForPlan(String planGuid) {
+		for (MockServiceOffering offering : serviceOfferings.values()) {
+			if (offering.plans.containsKey(planGuid)) {
+				return offering;
+			}
+		}
+		return null;
+	}
+
+	protected boolean isAuthorised(Exchange exchange) {
+		String authorisation = exchange.getRequestHeaders().getFirst("Authorization");
+		if (authorisation == null || !authorisation.toLowerCase().startsWith("bearer ")) {
+			return false;
+		}
+		Long expiry = accessTokens.get(authorisation.substring("bearer ".length()).trim());
+		return expiry != null && expiry > System.currentTimeMillis();
+	}
+
+	protected void countRequest(String path) {
+		AtomicInteger count = requestCounts.get(path);
+		if (count == null) {
+			synchronized (requestCounts) {
+				count = requestCounts.get(path);
+				if (count == null) {
+					count = new AtomicInteger();
+					requestCounts.put(path, count);
+				}
+			}
+		}
+		count.incrementAndGet();
+	}
+
+	protected long getLatency(String path) {
+		String longestPrefix = null;
+		for (String prefix : latencies.keySet()) {
+			if (path.startsWith(prefix) && (longestPrefix == null || prefix.length() > longestPrefix.length())) {
+				longestPrefix = prefix;
+			}
+		}
+		return longestPrefix != null ? latencies.get(longestPrefix) : defaultLatency;
+	}
+
+	protected FailureRule getFailure(String path) {
+		for (FailureRule rule : failures) {
+			if (path.startsWith(rule.pathPrefix) && rule.shouldFail()) {
+				if (rule.isExhausted()) {
+					failures.remove(rule);
+				}
+				return rule;
+			}
+		}
+		return null;
+	}
+
+	protected void sendList(Request request, List<Map<String, Object>> resources) throws IOException {
+		int size = request.getIntParameter("results-per-page", pageSize);
+		int page = request.getIntParameter("page", 1);
+		int totalPages = Math.max(1, (resources.size() + size - 1) / size);
+		int from = Math.min(resources.size(), (page - 1) * size);
+		int to = Math.min(resources.size(), from + size);
+
+		Map<String, Object> list = new LinkedHashMap<String, Object>();
+		list.put("total_results", resources.size());
+		list.put("total_pages", totalPages);
+		list.put("prev_url", page > 1 ? request.getPageUrl(page - 1, size) : null);
+		list.put("next_url", page < totalPages ? request.getPageUrl(page + 1, size) : null);
+		list.put("resources", resources.subList(from, to));
+		sendJson(request.exchange, 200, list);
+	}
+
+	protected void sendNotFound(Exchange exchange) throws IOException {
+		sendError(exchange, 404, 10000, "Unknown request: " + exchange.getRequestMethod() + ' '
+				+ exchange.getRequestURI(), "CF-NotFound");
+	}
+
+	protected void sendError(Exchange exchange, int status, int code, String description, String errorCode)
+			throws IOException {
+		Map<String, Object> error = new LinkedHashMap<String, Object>();
+		error.put("code", code);
+		error.put("description", description);
+		error.put("error_code", errorCode);
+		sendJson(exchange, status, error);
+	}
+
+	protected void sendJson(Exchange exchange, int status, Object body) throws IOException {
+		sendText(exchange, status, JsonUtil.convertToJson(body), "application/json;charset=utf-8");
+	}
+
+	protected void sendText(Exchange exchange, int status, String body, String contentType) throws IOException {
+		sendBytes(exchange, status, body.getBytes("UTF-8"), contentType != null ? contentType
+				: "text/plain;charset=utf-8");
+	}
+
+	protected void sendBytes(Exchange exchange, int status, byte[] body, String contentType) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		boolean head = "HEAD".equalsIgnoreCase(exchange.getRequestMethod());
+		exchange.getResponseHeaders().set("Content-Length", String.valueOf(body.length));
+		exchange.sendResponseHeaders(status, body.length > 0 && !head ? body.length : -1);
+		if (body.length > 0 && !head) {
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}
+	}
+
+	protected void sendEmpty(Exchange exchange, int status) throws IOException {
+		exchange.sendResponseHeaders(status, -1);
+	}
+
+	protected String getBaseUrl(Exchange exchange) {
+		String host = exchange.getRequestHeaders().getFirst("Host");
+		return "http://" + (host != null ? host : "127.0.0.1:" + exchange.getLocalAddress().getPort());
+	}
+
+	protected static String newGuid() {
+		return UUID.randomUUID().toString();
+	}
+
+	protected static String formatDate(Date date) {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		// v2 dates have a colon in the time zone offset
+		String formatted = format.format(date);
+		return formatted.substring(0, formatted.length() - 2) + ':' + formatted.substring(formatted.length() - 2);
+	}
+
+	protected static Map<String, String> parseQuery(String query) {
+		Map<String, String> parameters = new LinkedHashMap<String, String>();
+		if (query == null || query.length() == 0) {
+			return parameters;
+		}
+		for (String pair : query.split("&")) {
+			int index = pair.indexOf('=');
+			String name = index >= 0 ? pair.substring(0, index) : pair;
+			String value = index >= 0 ? pair.substring(index + 1) : "";
+			parameters.put(decode(name), decode(value));
+		}
+		return parameters;
+	}
+
+	protected static String decode(String value) {
+		try {
+			return URLDecoder.decode(value, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	protected static String encode(String value) {
+		try {
+			return URLEncoder.encode(value, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	protected static byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	protected static String sha1(byte[] content) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(content);
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest) {
+				hex.append(String.format("%02x", b & 0xff));
+			}
+			return hex.toString();
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Extracts the content of the named part of a multipart request body.
+	 * @return content of the part, or null if not found
+	 */
+	protected static byte[] getMultipartContent(byte[] body, String contentType, String partName)
+			throws UnsupportedEncodingException {
+		if (contentType == null || contentType.indexOf("boundary=") < 0) {
+			return null;
+		}
+		String boundaryValue = contentType.substring(contentType.indexOf("boundary=") + "boundary=".length());
+		if (boundaryValue.indexOf(';') >= 0) {
+			boundaryValue = boundaryValue.substring(0, boundaryValue.indexOf(';'));
+		}
+		byte[] boundary = ("--" + boundaryValue.replace("\"", "")).getBytes("ISO-8859-1");
+		byte[] headerEnd = "\r\n\r\n".getBytes("ISO-8859-1");
+
+		int partStart = indexOf(body, boundary, 0);
+		while (partStart >= 0) {
+			int headersStart = partStart + boundary.length;
+			int contentStart = indexOf(body, headerEnd, headersStart);
+			if (contentStart < 0) {
+				return null;
+			}
+			String headers = new String(body, headersStart, contentStart - headersStart, "ISO-8859-1");
+			contentStart += headerEnd.length;
+			int next = indexOf(body, boundary, contentStart);
+			if (next < 0) {
+				return null;
+			}
+			if (headers.contains("name=\"" + partName + "\"")) {
+				// Part content ends with CRLF before the next boundary
+				return Arrays.copyOfRange(body, contentStart, Math.max(contentStart, next - 2));
+			}
+			partStart = next;
+		}
+		return null;
+	}
+
+	protected static int indexOf(byte[] data, byte[] pattern, int from) {
+		outer: for (int i = from; i <= data.length - pattern.length; i++) {
+			for (int j = 0; j < pattern.length; j++) {
+				if (data[i + j] != pattern[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * A request to the API, with its path split into segments after the API
+	 * version, and parsed query parameters.
+	 */
+	protected static class Request {
+
+		final Exchange exchange;
+
+		final String method;
+
+		final String path;
+
+		final String[] segments;
+
+		final Map<String, String> parameters;
+
+		private byte[] body;
+
+		Request(Exchange exchange) {
+			this.exchange = exchange;
+			this.method = exchange.getRequestMethod().toUpperCase();
+			this.path = exchange.getRequestURI().getRawPath();
+			String apiPath = path.startsWith(API_PATH + "/") ? path.substring(API_PATH.length() + 1) : "";
+			String[] rawSegments = apiPath.length() > 0 ? apiPath.split("/") : new String[0];
+			this.segments = new String[rawSegments.length];
+			for (int i = 0; i < rawSegments.length; i++) {
+				segments[i] = decode(rawSegments[i]);
+			}
+			this.parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+		}
+
+		byte[] bodyBytes() throws IOException {
+			if (body == null) {
+				body = readFully(exchange.getRequestBody());
+			}
+			return body;
+		}
+
+		String body() throws IOException {
+			return new String(bodyBytes(), "UTF-8");
+		}
+
+		/**
+		 *
+		 * @param name
+		 * @return value of a "q=name:value" filter, or null if not filtered
+		 */
+		String getFilter(String name) {
+			String query = parameters.get("q");
+			return query != null && query.startsWith(name + ':') ? query.substring(name.length() + 1) : null;
+		}
+
+		int getIntParameter(String name, int defaultValue) {
+			String value = parameters.get(name);
+			try {
+				return value != null ? Integer.parseInt(value) : defaultValue;
+			}
+			catch (NumberFormatException e) {
+				return defaultValue;
+			}
+		}
+
+		String getPageUrl(int page, int size) {
+			StringBuilder url = new StringBuilder(path).append('?');
+			for (Map.Entry<String, String> entry : parameters.entrySet()) {
+				if (!entry.getKey().equals("page") && !entry.getKey().equals("results-per-page")) {
+					url.append(encode(entry.getKey())).append('=').append(encode(entry.getValue())).append('&');
+				}
+			}
+			return url.append("page=").append(page).append("&results-per-page=").append(size).toString();
+		}
+	}
+
+	protected class FailureRule {
+
+		final String pathPrefix;
+
+		final int status;
+
+		final double rate;
+
+		private int remaining;
+
+		FailureRule(String pathPrefix, int status, int count, double rate) {
+			this.pathPrefix = pathPrefix;
+			this.status = status;
+			this.remaining = count;
+			this.rate = rate;
+		}
+
+		synchronized boolean shouldFail() {
+			if (remaining == 0) {
+				return false;
+			}
+			boolean fail;
+			synchronized (random) {
+				fail = rate >= 1 || random.nextDouble() < rate;
+			}
+			if (fail && remaining > 0) {
+				remaining--;
+			}
+			return fail;
+		}
+
+		synchronized boolean isExhausted() {
+			return remaining == 0;
+		}
+	}
+
+	/**
+	 * Application held by the mock controller.
+	 */
+	public static class MockApplication {
+
+		public final String guid = newGuid();
+
+		public final String name;
+
+		final Date created = new Date();
+
+		Date updated;
+
+		String state = "STOPPED";
+
+		String packageState = "PENDING";
+
+		String version = newGuid();
+
+		String buildpack;
+
+		String command;
+
+		int memory = 512;
+
+		int instances = 1;
+
+		int diskQuota = 1024;
+
+		Map<String, Object> environment = new LinkedHashMap<String, Object>();
+
+		long startedAt;
+
+		long uploadedBytes;
+
+		final Map<String, StringBuilder> files = new LinkedHashMap<String, StringBuilder>();
+
+		MockApplication(String name) {
+			this.name = name;
+			for (String file : DEFAULT_LOG_FILES) {
+				files.put(file, new StringBuilder());
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		void update(Map<String, Object> values) {
+			if (values.containsKey("memory")) {
+				memory = ((Number) values.get("memory")).intValue();
+			}
+			if (values.containsKey("instances")) {
+				instances = ((Number) values.get("instances")).intValue();
+			}
+			if (values.containsKey("disk_quota") && values.get("disk_quota") != null) {
+				diskQuota = ((Number) values.get("disk_quota")).intValue();
+			}
+			if (values.containsKey("buildpack")) {
+				buildpack = (String) values.get("buildpack");
+			}
+			if (values.containsKey("command")) {
+				command = (String) values.get("command");
+			}
+			if (values.get("environment_json") instanceof Map) {
+				environment = new LinkedHashMap<String, Object>((Map<String, Object>) values.get("environment_json"));
+			}
+			if (values.containsKey("state")) {
+				if ("STARTED".equals(values.get("state"))) {
+					start();
+				}
+				else {
+					state = "STOPPED";
+				}
+			}
+			touch();
+		}
+
+		void start() {
+			if (!isStarted()) {
+				state = "STARTED";
+				startedAt = System.currentTimeMillis();
+			}
+		}
+
+		void touch() {
+			updated = new Date();
+			version = newGuid();
+		}
+
+		public boolean isStarted() {
+			return "STARTED".equals(state);
+		}
+
+		public String getState() {
+			return state;
+		}
+
+		public int getInstances() {
+			return instances;
+		}
+
+		public long getUploadedBytes() {
+			return uploadedBytes;
+		}
+	}
+
+	static class MockRoute {
+
+		final String guid = newGuid();
+
+		final String host;
+
+		final String domainGuid;
+
+		final Date created = new Date();
+
+		final Set<String> apps = new HashSet<String>();
+
+		MockRoute(String host, String domainGuid) {
+			this.host = host;
+			this.domainGuid = domainGuid;
+		}
+	}
+
+	static class MockServiceOffering {
+
+		final String guid = newGuid();
+
+		final String label;
+
+		final String version;
+
+		final Map<String, String> plans = new LinkedHashMap<String, String>();
+
+		MockServiceOffering(String label, String version) {
+			this.label = label;
+			this.version = version;
+		}
+	}
+
+	static class MockServiceInstance {
+
+		final String guid = newGuid();
+
+		final String name;
+
+		final MockServiceOffering offering;
+
+		final String planGuid;
+
+		final Date created = new Date();
+
+		MockServiceInstance(String name, MockServiceOffering offering, String planGuid) {
+			this.name = name;
+			this.offering = offering;
+			this.planGuid = planGuid;
+		}
+	}
+
+}
@@ -13,8 +13,10 @@ package org.cloudfoundry.ide.eclipse.server.tests.util;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -38,6 +40,8 @@ import org.cloudfoundry.ide.eclipse.internal.server.ui.CloudUiUtil;
 import org.cloudfoundry.ide.eclipse.internal.server.ui.ServerDescriptor;
 import org.cloudfoundry.ide.eclipse.internal.server.ui.ServerHandler;
 import org.cloudfoundry.ide.eclipse.server.tests.AllCloudFoundryTests;
+import org.cloudfoundry.ide.eclipse.server.tests.server.HttpFixtureServer;
+import org.cloudfoundry.ide.eclipse.server.tests.server.MockCloudController;
 import org.cloudfoundry.ide.eclipse.server.tests.server.TestServlet;
 import org.cloudfoundry.ide.eclipse.server.tests.server.WebApplicationContainerBean;
 import org.cloudfoundry.ide.eclipse.server.tests.sts.util.StsTestUtil;
@@ -86,6 +90,39 @@ public class CloudFoundryTestFixture {
 
 	public static final String CLOUDFOUNDRY_TEST_CREDENTIALS_PROPERTY = "test.credentials";
 
+	/**
+	 * If set to "true", tests run against an embedded
+	 * {@link MockCloudController} instead of a real Cloud Foundry server, and
+	 * no credentials file is needed.
+	 */
+	public static final String CLOUDFOUNDRY_TEST_MOCK_CONTROLLER_PROPERTY = "test.mock.controller";
+
+	/**
+	 * Set to "record" to record the conversation of each test with the Cloud
+	 * Foundry server into a fixture file, or to "replay" to replay recorded
+	 * fixtures without network access. See {@link HttpFixtureServer}.
+	 */
+	public static final String CLOUDFOUNDRY_TEST_FIXTURE_MODE_PROPERTY = "test.fixture.mode";
+
+	/**
+	 * Folder holding fixture files. Required to record. When replaying, it
+	 * defaults to the "fixtures" folder of the tests bundle.
+	 */
+	public static final String CLOUDFOUNDRY_TEST_FIXTURE_DIR_PROPERTY = "test.fixture.dir";
+
+	/**
+	 * Factor applied to recorded response times when replaying: 1 for
+	 * original timings, 0 (the default) for full speed.
+	 */
+	public static final String CLOUDFOUNDRY_TEST_FIXTURE_TIME_SCALE_PROPERTY = "test.fixture.timescale";
+
+	/**
+	 * Properties file in the fixture folder with the user, org and space used
+	 * when recording, which replay needs to select the same space. The
+	 * password is not recorded.
+	 */
+	private static final String FIXTURE_CREDENTIALS_FILE = "fixture.properties";
+
 	public static final String CF_PIVOTAL_SERVER_URL_HTTP = "http://api.run.pivotal.io";
 
 	public static final String CF_PIVOTAL_SERVER_URL_HTTPS = "https://api.run.pivotal.io";
@@ -406,13 +443,178 @@ public class CloudFoundryTestFixture {
 
 	private static CloudFoundryTestFixture current;
 
+	private static MockCloudController mockController;
+
+	private static HttpFixtureServer fixtureServer;
+
+	private static File fixtureDir;
+
 	public static CloudFoundryTestFixture getTestFixture() throws CoreException {
 		if (current == null) {
-			current = new CloudFoundryTestFixture("run.pivotal.io");
+			String fixtureMode = System.getProperty(CLOUDFOUNDRY_TEST_FIXTURE_MODE_PROPERTY);
+			if (fixtureMode != null) {
+				current = createHttpFixtureTestFixture(fixtureMode);
+			}
+			else if (Boolean.getBoolean(CLOUDFOUNDRY_TEST_MOCK_CONTROLLER_PROPERTY)) {
+				MockCloudController controller = getMockController();
+				credentials = new CredentialProperties(MockCloudController.USERNAME, MockCloudController.PASSWORD,
+						MockCloudController.ORG, MockCloudController.SPACE);
+				try {
+					current = new CloudFoundryTestFixture(new URL(controller.getUrl()));
+				}
+				catch (MalformedURLException e) {
+					throw CloudErrorUtil.toCoreException(e);
+				}
+			}
+			else {
+				current = new CloudFoundryTestFixture("run.pivotal.io");
+			}
 		}
 		return current;
 	}
 
+	/**
+	 * Returns the embedded mock controller used when tests run with
+	 * {@link #CLOUDFOUNDRY_TEST_MOCK_CONTROLLER_PROPERTY}, starting it if
+	 * necessary. Tests can use it to script latency and failures.
+	 * @return started mock controller. Never null
+	 * @throws CoreException if the controller failed to start
+	 */
+	public static synchronized MockCloudController getMockController() throws CoreException {
+		if (mockController == null) {
+			MockCloudController controller = new MockCloudController();
+			try {
+				controller.start();
+			}
+			catch (IOException e) {
+				throw CloudErrorUtil.toCoreException(e);
+			}
+			mockController = controller;
+		}
+		return mockController;
+	}
+
+	/**
+	 * Creates a test fixture whose server URL points to a local
+	 * {@link HttpFixtureServer}, which records the conversation with the
+	 * actual server, or replays recorded conversations.
+	 */
+	private static CloudFoundryTestFixture createHttpFixtureTestFixture(String fixtureMode) throws CoreException {
+		String dir = System.getProperty(CLOUDFOUNDRY_TEST_FIXTURE_DIR_PROPERTY);
+		String timeScale = System.getProperty(CLOUDFOUNDRY_TEST_FIXTURE_TIME_SCALE_PROPERTY, "0");
+		try {
+			CloudFoundryTestFixture actual = new CloudFoundryTestFixture("run.pivotal.io");
+			if ("record".equalsIgnoreCase(fixtureMode)) {
+				if (dir == null) {
+					throw CloudErrorUtil.toCoreException("Set -D" + CLOUDFOUNDRY_TEST_FIXTURE_DIR_PROPERTY
+							+ "=[folder] to record test fixtures");
+				}
+				fixtureDir = new File(dir);
+				fixtureServer = new HttpFixtureServer(HttpFixtureServer.Mode.RECORD, actual.getUrl(), 0);
+				writeFixtureCredentials(actual.getCredentials());
+			}
+			else if ("replay".equalsIgnoreCase(fixtureMode)) {
+				if (dir != null) {
+					fixtureDir = new File(dir);
+				}
+				else {
+					Bundle bundle = Platform.getBundle(AllCloudFoundryTests.PLUGIN_ID);
+					URL fixturesUrl = bundle.getResource("fixtures");
+					if (fixturesUrl == null) {
+						throw CloudErrorUtil.toCoreException("No recorded test fixtures in "
+								+ AllCloudFoundryTests.PLUGIN_ID);
+					}
+					fixtureDir = new File(FileLocator.toFileURL(fixturesUrl).getFile());
+				}
+				fixtureServer = new HttpFixtureServer(HttpFixtureServer.Mode.REPLAY, null,
+						Double.parseDouble(timeScale));
+				credentials = readFixtureCredentials();
+			}
+			else {
+				throw CloudErrorUtil.toCoreException("Unknown test fixture mode: " + fixtureMode);
+			}
+			fixtureServer.start();
+			return new CloudFoundryTestFixture(new URL(fixtureServer.getUrl()));
+		}
+		catch (IOException e) {
+			throw CloudErrorUtil.toCoreException(e);
+		}
+		catch (NumberFormatException e) {
+			throw CloudErrorUtil.toCoreException(e);
+		}
+	}
+
+	private static void writeFixtureCredentials(CredentialProperties credentials) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty(USEREMAIL_PROPERTY, credentials.userEmail);
+		properties.setProperty(ORG_PROPERTY, credentials.organization);
+		properties.setProperty(SPACE_PROPERTY, credentials.space);
+		if (!fixtureDir.exists() && !fixtureDir.mkdirs()) {
+			throw new IOException("Failed to create test fixture folder " + fixtureDir);
+		}
+		OutputStream out = new FileOutputStream(new File(fixtureDir, FIXTURE_CREDENTIALS_FILE));
+		try {
+			properties.store(out, "Recorded test fixture account");
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private static CredentialProperties readFixtureCredentials() throws IOException {
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(new File(fixtureDir, FIXTURE_CREDENTIALS_FILE));
+		try {
+			properties.load(in);
+		}
+		finally {
+			in.close();
+		}
+		return new CredentialProperties(properties.getProperty(USEREMAIL_PROPERTY), "recorded",
+				properties.getProperty(ORG_PROPERTY), properties.getProperty(SPACE_PROPERTY));
+	}
+
+	/**
+	 * Starts recording or replaying the conversation of the given test with
+	 * the server, if tests run with
+	 * {@link #CLOUDFOUNDRY_TEST_FIXTURE_MODE_PROPERTY}. Does nothing otherwise.
+	 * Must be followed by {@link #endHttpFixture()} once the test completes.
+	 * @param testClass
+	 * @param testName
+	 * @throws CoreException if the fixture could not be read
+	 */
+	public void beginHttpFixture(Class<?> testClass, String testName) throws CoreException {
+		if (fixtureServer != null) {
+			File file = new File(new File(fixtureDir, testClass.getSimpleName()), testName
+					+ HttpFixtureServer.FIXTURE_FILE_EXTENSION);
+			if (fixtureServer.getMode() == HttpFixtureServer.Mode.REPLAY && !file.exists()) {
+				throw CloudErrorUtil.toCoreException("No recorded test fixture: " + file);
+			}
+			try {
+				fixtureServer.beginFixture(file);
+			}
+			catch (IOException e) {
+				throw CloudErrorUtil.toCoreException(e);
+			}
+		}
+	}
+
+	/**
+	 * Ends recording or replaying the conversation of the current test. When
+	 * recording, the fixture file is written.
+	 * @throws CoreException if the fixture could not be written
+	 */
+	public void endHttpFixture() throws CoreException {
+		if (fixtureServer != null) {
+			try {
+				fixtureServer.endFixture();
+			}
+			catch (IOException e) {
+				throw CloudErrorUtil.toCoreException(e);
+			}
+		}
+	}
+
 	/**
 	 * This test fixture hould not be used to configure to application
 	 * deployment.
@@ -445,9 +647,21 @@ public class CloudFoundryTestFixture {
 	private final String url;
 
 	public CloudFoundryTestFixture(String serverDomain) {
-
 		this.url = "http://api." + serverDomain;
+		this.handler = createServerHandler();
+	}
+
+	/**
+	 * Test fixture for a server at the given API URL, for example an embedded
+	 * mock controller.
+	 * @param serverUrl
+	 */
+	public CloudFoundryTestFixture(URL serverUrl) {
+		this.url = serverUrl.toString();
+		this.handler = createServerHandler();
+	}
 
+	private static ServerHandler createServerHandler() {
 		ServerDescriptor descriptor = new ServerDescriptor("server") {
 			{
 				setRuntimeTypeId("org.cloudfoundry.cloudfoundryserver.test.runtime.10");
@@ -457,7 +671,7 @@ public class CloudFoundryTestFixture {
 				setForceCreateRuntime(true);
 			}
 		};
-		handler = new ServerHandler(descriptor);
+		return new ServerHandler(descriptor);
 	}
 
 	public CredentialProperties getCredentials() throws CoreException {
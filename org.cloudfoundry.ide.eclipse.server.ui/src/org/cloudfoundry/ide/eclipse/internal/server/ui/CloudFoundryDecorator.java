@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.ui;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.cloudfoundry.client.lib.domain.CloudApplication;
@@ -17,6 +18,7 @@ import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryBrandingExt
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServer;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudServerEvent;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudServerListener;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ModulesChangedEvent;
 import org.cloudfoundry.ide.eclipse.internal.server.core.ServerEventHandler;
 import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudFoundryApplicationModule;
 import org.cloudfoundry.ide.eclipse.internal.server.core.spaces.CloudFoundrySpace;
@@ -45,9 +47,14 @@ public class CloudFoundryDecorator extends LabelProvider implements ILightweight
 	public CloudFoundryDecorator() {
 		this.listener = new CloudServerListener() {
 			public void serverChanged(final CloudServerEvent event) {
+				// Only the modules that changed need to be decorated again
+				final Object[] elements = event instanceof ModulesChangedEvent ? getModuleServers((ModulesChangedEvent) event)
+						: null;
 				Display.getDefault().asyncExec(new Runnable() {
 					public void run() {
-						LabelProviderChangedEvent labelEvent = new LabelProviderChangedEvent(CloudFoundryDecorator.this);
+						LabelProviderChangedEvent labelEvent = elements != null ? new LabelProviderChangedEvent(
+								CloudFoundryDecorator.this, elements) : new LabelProviderChangedEvent(
+								CloudFoundryDecorator.this);
 						fireLabelProviderChanged(labelEvent);
 					}
 				});
@@ -56,6 +63,23 @@ public class CloudFoundryDecorator extends LabelProvider implements ILightweight
 		ServerEventHandler.getDefault().addServerListener(listener);
 	}
 
+	protected static Object[] getModuleServers(ModulesChangedEvent event) {
+		IServer server = event.getServer().getServerOriginal();
+		List<Object> moduleServers = new ArrayList<Object>();
+		List<CloudFoundryApplicationModule> modules = new ArrayList<CloudFoundryApplicationModule>(
+				event.getAddedModules());
+		modules.addAll(event.getChangedModules());
+		for (CloudFoundryApplicationModule module : modules) {
+			if (module.getLocalModule() != null) {
+				moduleServers.add(new ModuleServer(server, new IModule[] { module.getLocalModule() }));
+			}
+		}
+		for (IModule module : event.getRemovedModules()) {
+			moduleServers.add(new ModuleServer(server, new IModule[] { module }));
+		}
+		return moduleServers.toArray();
+	}
+
 	public void decorate(Object element, IDecoration decoration) {
 		if (element instanceof ModuleServer) {
 			ModuleServer moduleServer = (ModuleServer) element;
@@ -199,4 +199,9 @@ public class CloudFoundryUiCallback extends CloudFoundryCallback {
 		}
 	}
 
+	@Override
+	public boolean isServerVisible(CloudFoundryServer server) {
+		return ServerVisibilityTracker.getDefault().isVisible(server);
+	}
+
 }
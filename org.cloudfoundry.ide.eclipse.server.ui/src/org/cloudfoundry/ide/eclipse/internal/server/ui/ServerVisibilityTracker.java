@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.ui;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServer;
+import org.cloudfoundry.ide.eclipse.internal.server.core.RefreshScheduler;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudFoundryServerBehaviour;
+import org.cloudfoundry.ide.eclipse.internal.server.ui.console.ConsoleManager;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.IEditorInput;
+import org.eclipse.ui.IEditorReference;
+import org.eclipse.ui.IPartListener2;
+import org.eclipse.ui.IPropertyListener;
+import org.eclipse.ui.IViewReference;
+import org.eclipse.ui.IWindowListener;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchPart;
+import org.eclipse.ui.IWorkbenchPartConstants;
+import org.eclipse.ui.IWorkbenchPartReference;
+import org.eclipse.ui.IWorkbenchWindow;
+import org.eclipse.ui.PartInitException;
+import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.console.IConsole;
+import org.eclipse.ui.console.IConsoleConstants;
+import org.eclipse.ui.console.IConsoleView;
+import org.eclipse.wst.server.core.IServer;
+import org.eclipse.wst.server.core.ServerCore;
+import org.eclipse.wst.server.ui.editor.IServerEditorInput;
+
+/**
+ * Tracks which Cloud Foundry servers are visible in the workbench, so that
+ * servers are only refreshed in the background while the user is looking at
+ * them. A server is visible if its server editor is visible, or if the
+ * Console view is visible and shows a console of one of its applications.
+ * Views that list all servers, like the Servers view, do not make servers
+ * visible. Servers whose editor is visible are also refreshed before other
+ * servers.
+ * <p/>
+ * Workbench parts are only inspected in the UI thread, when parts are shown or
+ * hidden, or the Console view shows another console. Background refresh jobs
+ * only read the result.
+ */
+public class ServerVisibilityTracker implements IPartListener2, IWindowListener, IPropertyListener {
+
+	private static ServerVisibilityTracker tracker;
+
+	private volatile boolean installed = false;
+
+	private volatile Set<String> visibleServerIds = Collections.emptySet();
+
+	public static synchronized ServerVisibilityTracker getDefault() {
+		if (tracker == null) {
+			tracker = new ServerVisibilityTracker();
+			tracker.install();
+		}
+		return tracker;
+	}
+
+	/**
+	 *
+	 * @param server
+	 * @return true if the server is visible. Servers are not visible until
+	 * the tracker has been installed in the workbench.
+	 */
+	public boolean isVisible(CloudFoundryServer server) {
+		return installed && visibleServerIds.contains(server.getServer().getId());
+	}
+
+	protected void install() {
+		if (!PlatformUI.isWorkbenchRunning()) {
+			return;
+		}
+		final IWorkbench workbench = PlatformUI.getWorkbench();
+		Display display = workbench.getDisplay();
+		if (display == null || display.isDisposed()) {
+			return;
+		}
+		display.asyncExec(new Runnable() {
+			public void run() {
+				if (workbench.isClosing()) {
+					return;
+				}
+				workbench.addWindowListener(ServerVisibilityTracker.this);
+				for (IWorkbenchWindow window : workbench.getWorkbenchWindows()) {
+					window.getPartService().addPartListener(ServerVisibilityTracker.this);
+				}
+				update();
+				installed = true;
+			}
+		});
+	}
+
+	/**
+	 * Recomputes the visible servers, and resumes refresh of servers that
+	 * became visible. Must be invoked in the UI thread.
+	 */
+	protected void update() {
+		Set<String> serverIds = new HashSet<String>();
+		Set<String> editorServerIds = new HashSet<String>();
+
+		for (IWorkbenchWindow window : PlatformUI.getWorkbench().getWorkbenchWindows()) {
+			for (IWorkbenchPage page : window.getPages()) {
+				for (IViewReference reference : page.getViewReferences()) {
+					if (IConsoleConstants.ID_CONSOLE_VIEW.equals(reference.getId())) {
+						// Notified when the view shows another console. Adding
+						// the listener again has no effect.
+						reference.addPropertyListener(this);
+						IWorkbenchPart part = reference.getPart(false);
+						if (part instanceof IConsoleView && page.isPartVisible(part)) {
+							IConsole console = ((IConsoleView) part).getConsole();
+							CloudFoundryServer cloudServer = console != null ? ConsoleManager.getServer(console)
+									: null;
+							if (cloudServer != null && cloudServer.getServer() != null) {
+								serverIds.add(cloudServer.getServer().getId());
+							}
+						}
+					}
+				}
+				for (IEditorReference reference : page.getEditorReferences()) {
+					if (isPartVisible(page, reference)) {
+						try {
+							IEditorInput input = reference.getEditorInput();
+							if (input instanceof IServerEditorInput) {
+								editorServerIds.add(((IServerEditorInput) input).getServerId());
+							}
+						}
+						catch (PartInitException e) {
+							// Editor could not be restored, so it is not
+							// showing a server
+						}
+					}
+				}
+			}
+		}
+
+		serverIds.addAll(editorServerIds);
+		Set<String> wasVisible = visibleServerIds;
+		visibleServerIds = serverIds;
+		RefreshScheduler.getDefault().setBoostedServers(editorServerIds);
+
+		for (IServer server : ServerCore.getServers()) {
+			String id = server.getId();
+			boolean previouslyVisible = installed && wasVisible.contains(id);
+			if (serverIds.contains(id) && !previouslyVisible) {
+				resume(server);
+			}
+		}
+	}
+
+	protected boolean isPartVisible(IWorkbenchPage page, IWorkbenchPartReference reference) {
+		IWorkbenchPart part = reference.getPart(false);
+		return part != null && page.isPartVisible(part);
+	}
+
+	/**
+	 * Starts or resumes the refresh of a server that became visible.
+	 */
+	protected void resume(IServer server) {
+		CloudFoundryServer cloudServer = (CloudFoundryServer) server.loadAdapter(CloudFoundryServer.class, null);
+		if (cloudServer != null) {
+			CloudFoundryServerBehaviour behaviour = cloudServer.getBehaviour();
+			if (behaviour != null && behaviour.getRefreshHandler() != null) {
+				behaviour.getRefreshHandler().resume();
+			}
+		}
+	}
+
+	public void propertyChanged(Object source, int propId) {
+		// The Console view shows the name of its console as description
+		if (propId == IWorkbenchPartConstants.PROP_CONTENT_DESCRIPTION) {
+			update();
+		}
+	}
+
+	public void partVisible(IWorkbenchPartReference partRef) {
+		update();
+	}
+
+	public void partHidden(IWorkbenchPartReference partRef) {
+		update();
+	}
+
+	public void partClosed(IWorkbenchPartReference partRef) {
+		update();
+	}
+
+	public void partInputChanged(IWorkbenchPartReference partRef) {
+		update();
+	}
+
+	public void partActivated(IWorkbenchPartReference partRef) {
+		// Nothing to do
+	}
+
+	public void partBroughtToTop(IWorkbenchPartReference partRef) {
+		// Nothing to do
+	}
+
+	public void partDeactivated(IWorkbenchPartReference partRef) {
+		// Nothing to do
+	}
+
+	public void partOpened(IWorkbenchPartReference partRef) {
+		// Nothing to do
+	}
+
+	public void windowOpened(IWorkbenchWindow window) {
+		window.getPartService().addPartListener(this);
+		update();
+	}
+
+	public void windowClosed(IWorkbenchWindow window) {
+		window.getPartService().removePartListener(this);
+		update();
+	}
+
+	public void windowActivated(IWorkbenchWindow window) {
+		// Nothing to do
+	}
+
+	public void windowDeactivated(IWorkbenchWindow window) {
+		// Nothing to do
+	}
+
+}
@@ -279,11 +279,21 @@ public abstract class CloudFoundryEditorAction extends Action {
 			
 			// Many operations affect app instances therefore updated the
 			// instances after the operation
-			editorPage.getCloudServer().getBehaviour().updateApplicationInstanceStats(getModule(), monitor);
+			refreshInstances(monitor);
 			
 			super.refresh(monitor);
 		}
 
+		/**
+		 * Updates the instances of the selected module, which are the only
+		 * instances shown in the editor, after the operation completes.
+		 * @param monitor
+		 * @throws CoreException
+		 */
+		protected void refreshInstances(IProgressMonitor monitor) throws CoreException {
+			editorPage.getCloudServer().getBehaviour().updateApplicationInstanceStats(getModule(), monitor);
+		}
+
 		abstract protected void performEditorOperation(IProgressMonitor monitor) throws CoreException;
 
 	}
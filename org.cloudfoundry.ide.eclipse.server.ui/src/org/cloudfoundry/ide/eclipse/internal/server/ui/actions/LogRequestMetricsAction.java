@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.ui.actions;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServer;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudFoundryApplicationModule;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.RequestMetrics;
+import org.eclipse.jface.action.IAction;
+import org.eclipse.ui.IWorkbenchPart;
+
+/**
+ * Writes the request metrics of the selected Cloud Foundry server to the error
+ * log.
+ */
+public class LogRequestMetricsAction extends AbstractCloudFoundryServerAction {
+
+	public void doRun(CloudFoundryServer cloudServer, CloudFoundryApplicationModule appModule, IAction action) {
+		RequestMetrics.getDefault().dumpToLog(cloudServer.getUrl());
+	}
+
+	public void setActivePart(IAction action, IWorkbenchPart targetPart) {
+	}
+
+}
@@ -10,6 +10,10 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.ui.actions;
 
+import java.util.List;
+
+import org.cloudfoundry.client.lib.domain.CloudService;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudFoundryApplicationModule;
 import org.cloudfoundry.ide.eclipse.internal.server.core.client.ICloudFoundryOperation;
 import org.cloudfoundry.ide.eclipse.internal.server.ui.editor.CloudFoundryApplicationsEditorPage;
 import org.eclipse.core.runtime.CoreException;
@@ -31,7 +35,22 @@ public abstract class RefreshInstancesEditorAction extends CloudFoundryEditorAct
 
 			@Override
 			protected void performEditorOperation(IProgressMonitor monitor) throws CoreException {
-				getBehavior().refreshModules(monitor);
+				// Services are shown in the editor as well, and are fetched
+				// concurrently with the applications
+				List<CloudService> services = getBehavior().refreshModulesAndServices(monitor);
+				getEditorPage().setServices(services);
+			}
+
+			@Override
+			protected void refreshInstances(IProgressMonitor monitor) throws CoreException {
+				// Only the instances of the selected application are shown.
+				// Its application was already refreshed with the other
+				// applications, so only its stats and instances are fetched.
+				CloudFoundryApplicationModule appModule = getBehavior().getCloudFoundryServer()
+						.getExistingCloudModule(getModule());
+				if (appModule != null) {
+					getBehavior().refreshApplicationInstanceStats(appModule, monitor);
+				}
 			}
 		};
 	}
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.ui.console;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudUtil;
+import org.eclipse.jface.resource.ImageDescriptor;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.console.MessageConsole;
+
+/**
+ * Console of an application instance that keeps at most a maximum number of
+ * characters, so that tailing a chatty application for a long time does not
+ * grow the console without limit.
+ * <p/>
+ * Once the content exceeds the maximum, the console drops its oldest content
+ * down to {@link #LOW_WATER_MARK_RATIO} of the maximum. Trimming is done by
+ * the console itself. The console keeps track of what it holds in a
+ * fixed-size ring buffer of written chunks, updated by the jobs that write to
+ * the console, to count how many lines were dropped, which is shown in the
+ * console name. The name is updated in the UI thread, only when the number of
+ * dropped lines changes, and once for any number of changes made before the
+ * UI thread gets to it.
+ */
+public class BoundedMessageConsole extends MessageConsole {
+
+	public static final double LOW_WATER_MARK_RATIO = 0.8;
+
+	/**
+	 * Number of chunks tracked. When full, the two oldest chunks are merged.
+	 */
+	public static final int MAX_TRACKED_CHUNKS = 1024;
+
+	private final String baseName;
+
+	private final int highWaterMark;
+
+	private final int lowWaterMark;
+
+	private final int[] chunkChars = new int[MAX_TRACKED_CHUNKS];
+
+	private final int[] chunkLines = new int[MAX_TRACKED_CHUNKS];
+
+	private int head = 0;
+
+	private int size = 0;
+
+	private long chars = 0;
+
+	private long droppedLines = 0;
+
+	private long shownDroppedLines = 0;
+
+	private boolean nameUpdatePending = false;
+
+	/**
+	 *
+	 * @param name
+	 * @param consoleType
+	 * @param imageDescriptor
+	 * @param maxChars maximum number of characters kept. Must be greater than
+	 * zero.
+	 */
+	public BoundedMessageConsole(String name, String consoleType, ImageDescriptor imageDescriptor, int maxChars) {
+		super(name, consoleType, imageDescriptor, true);
+		this.baseName = name;
+		this.highWaterMark = Math.max(2, maxChars);
+		this.lowWaterMark = Math.max(1, (int) (highWaterMark * LOW_WATER_MARK_RATIO));
+		setWaterMarks(lowWaterMark, highWaterMark);
+	}
+
+	/**
+	 * Records content written to the console, and updates the number of
+	 * dropped lines if the console is trimmed as a result.
+	 * @param content
+	 */
+	public void written(String content) {
+		if (content == null || content.length() == 0) {
+			return;
+		}
+		synchronized (this) {
+			if (size == MAX_TRACKED_CHUNKS) {
+				int next = (head + 1) % MAX_TRACKED_CHUNKS;
+				chunkChars[next] += chunkChars[head];
+				chunkLines[next] += chunkLines[head];
+				head = next;
+				size--;
+			}
+			int tail = (head + size) % MAX_TRACKED_CHUNKS;
+			chunkChars[tail] = content.length();
+			chunkLines[tail] = CloudUtil.countLines(content);
+			size++;
+			chars += content.length();
+
+			if (chars <= highWaterMark) {
+				return;
+			}
+
+			// Mirrors the trimming of the console down to the low water mark
+			long toDrop = chars - lowWaterMark;
+			while (toDrop > 0 && size > 0) {
+				if (chunkChars[head] <= toDrop) {
+					toDrop -= chunkChars[head];
+					chars -= chunkChars[head];
+					droppedLines += chunkLines[head];
+					head = (head + 1) % MAX_TRACKED_CHUNKS;
+					size--;
+				}
+				else {
+					int lines = (int) ((long) chunkLines[head] * toDrop / chunkChars[head]);
+					chunkChars[head] -= toDrop;
+					chunkLines[head] -= lines;
+					chars -= toDrop;
+					droppedLines += lines;
+					toDrop = 0;
+				}
+			}
+		}
+		updateName();
+	}
+
+	@Override
+	public void clearConsole() {
+		synchronized (this) {
+			head = 0;
+			size = 0;
+			chars = 0;
+			droppedLines = 0;
+		}
+		super.clearConsole();
+		updateName();
+	}
+
+	/**
+	 * 
+	 * @return number of lines dropped since the console was created or last
+	 * cleared
+	 */
+	public synchronized long getDroppedLines() {
+		return droppedLines;
+	}
+
+	/**
+	 * Schedules an update of the name in the UI thread if the number of
+	 * dropped lines changed since the name was last updated, unless an update
+	 * is already pending.
+	 */
+	protected void updateName() {
+		synchronized (this) {
+			if (droppedLines == shownDroppedLines || nameUpdatePending) {
+				return;
+			}
+			nameUpdatePending = true;
+		}
+		asyncExec(new Runnable() {
+			public void run() {
+				long dropped;
+				synchronized (BoundedMessageConsole.this) {
+					nameUpdatePending = false;
+					dropped = droppedLines;
+					shownDroppedLines = dropped;
+				}
+				setName(dropped > 0 ? NLS.bind("{0} [{1} lines dropped]", baseName, dropped) : baseName);
+			}
+		});
+	}
+
+	protected void asyncExec(Runnable runnable) {
+		Display.getDefault().asyncExec(runnable);
+	}
+
+}
@@ -37,9 +37,10 @@ import org.eclipse.ui.console.MessageConsole;
  * Eclipse component that wishes to write something to the console related to
  * the deployed application instance).
  * <p/>
- * The tailing console jobs for remote log files work on the principle of a
- * self-scheduling,which continues to schedule itself to check for new content
- * in remote files whose content are streamed to the console.
+ * Remote log files are not tailed by a job of their own. They are tailed by
+ * the {@link LogTailScheduler} of the server, together with the log files of
+ * all other consoles of the server, which checks each file for new content at
+ * an interval that adapts to how often the file changes.
  * <p/>
  * The console job is passed a console content , which contains a list of files,
  * each wrapped around a streaming abstraction, that need to be polled during
@@ -86,9 +87,6 @@ class CloudFoundryConsole extends JobChangeAdapter {
 
 	private Map<IContentType, List<IConsoleJob>> activeStreams = new HashMap<IContentType, List<IConsoleJob>>();
 
-	/** How frequently to check for log changes; defaults to 3 seconds */
-	private long sampleInterval = 3000;
-
 	private final MessageConsole console;
 
 	public CloudFoundryConsole(CloudFoundryApplicationModule app, MessageConsole console) {
@@ -137,9 +135,8 @@ class CloudFoundryConsole extends JobChangeAdapter {
 		if (consoleContents != null) {
 
 			for (ICloudFoundryConsoleStream content : consoleContents) {
-				if (content != null) {
-					startTailing(new ConsoleStreamJob(app.getDeployedApplicationName() + " - "
-							+ content.getConsoleType().getId(), content));
+				if (content instanceof FileConsoleStream) {
+					startTailing(new TailedFileStream((FileConsoleStream) content));
 				}
 			}
 		}
@@ -165,7 +162,7 @@ class CloudFoundryConsole extends JobChangeAdapter {
 			content.initialiseStream(stream);
 
 			streamJobs.add(job);
-			((Job) job).schedule();
+			job.start();
 		}
 
 	}
@@ -209,6 +206,17 @@ class CloudFoundryConsole extends JobChangeAdapter {
 		return console;
 	}
 
+	/**
+	 * Notifies a bounded console of content written to it, so that it can
+	 * account for content it drops.
+	 * @param content written to the console, or null if nothing was written
+	 */
+	protected void written(String content) {
+		if (console instanceof BoundedMessageConsole) {
+			((BoundedMessageConsole) console).written(content);
+		}
+	}
+
 	/**
 	 * Asynchronous write to console. The message is not guaranteed to be
 	 * written immediately, but at the shortest available moment.
@@ -268,7 +276,7 @@ class CloudFoundryConsole extends JobChangeAdapter {
 			ICloudFoundryConsoleStream content = errorJob.getConsoleContent();
 			if (content instanceof LocalConsoleStream) {
 				try {
-					((LocalConsoleStream) content).write(message, monitor);
+					written(((LocalConsoleStream) content).write(message, monitor));
 				}
 				catch (CoreException ce) {
 					CloudFoundryPlugin.logError(ce);
@@ -277,72 +285,79 @@ class CloudFoundryConsole extends JobChangeAdapter {
 		}
 	}
 
-	class ConsoleStreamJob extends Job implements IConsoleJob {
+	/**
+	 * Remote log file tailed by the {@link LogTailScheduler} of the server.
+	 */
+	class TailedFileStream implements IConsoleJob, LogTailScheduler.TailedFile {
+
+		protected final FileConsoleStream content;
 
-		protected final ICloudFoundryConsoleStream content;
+		private final LogTailScheduler scheduler;
 
-		public ConsoleStreamJob(String name, ICloudFoundryConsoleStream content) {
-			super(name);
+		public TailedFileStream(FileConsoleStream content) {
 			this.content = content;
-			setSystem(true);
+			this.scheduler = LogTailScheduler.getScheduler(content.getServer());
 		}
 
-		@Override
-		protected synchronized IStatus run(IProgressMonitor monitor) {
+		public boolean tail(IProgressMonitor monitor) {
 			if (!content.isActive()) {
 				remove(content.getConsoleType(), this);
+				return false;
 			}
-			else {
-
-				try {
-					content.write(monitor);
-				}
-				catch (CoreException e) {
-					String errorMessage = e.getMessage();
 
-					if (errorMessage != null) {
+			int offset = content.getTailingOffset();
+			try {
+				written(content.write(monitor));
+			}
+			catch (CoreException e) {
+				String errorMessage = e.getMessage();
 
-						// Be sure error message is written in the current job,
-						// not the separate
-						// error job, as to avoid race condition (i.e.having the
-						// error message appear in the console if the current
-						// job is stopped.). Also ensure each error message
-						// appears in a new line.
-						errorMessage = '\n' + errorMessage;
+				if (errorMessage != null) {
 
-						synchWriteToStdError(errorMessage, monitor);
-					}
-				}
+					// Be sure error message is written in the current job,
+					// not the separate
+					// error job, as to avoid race condition (i.e.having the
+					// error message appear in the console if the current
+					// job is stopped.). Also ensure each error message
+					// appears in a new line.
+					errorMessage = '\n' + errorMessage;
 
-				// re-schedule even if an error is thrown, as the stream may
-				// want to attempt again regardless of error.
-				if (content.isActive()) {
-					schedule(sampleInterval);
+					synchWriteToStdError(errorMessage, monitor);
 				}
+			}
 
-				// Fetch next ordered content that should follow the current
-				// one, even if error occurred, as errors in one content may
-				// still schedule additional contents for other files
+			// Fetch next ordered content that should follow the current
+			// one, even if error occurred, as errors in one content may
+			// still schedule additional contents for other files
+			List<ICloudFoundryConsoleStream> nextContent = content.getNextContent();
+			if (nextContent != null) {
+				startTailing(nextContent);
+			}
 
-				if (content instanceof FileConsoleStream) {
-					List<ICloudFoundryConsoleStream> nextContent = ((FileConsoleStream) content).getNextContent();
-					if (nextContent != null) {
-						startTailing(nextContent);
-					}
-				}
+			// Keep tailing even if an error is thrown, as the stream may
+			// want to attempt again regardless of error.
+			if (!content.isActive()) {
+				remove(content.getConsoleType(), this);
 			}
-			return Status.OK_STATUS;
+
+			// Retry messages written by the stream do not count as content
+			return content.getTailingOffset() != offset;
 		}
 
-		protected void streamToConsole(IProgressMonitor monitor) throws CoreException {
-			content.write(monitor);
+		public boolean hasMoreContent() {
+			return content.hasMoreContent();
 		}
 
-		public synchronized void close() {
+		public void start() {
+			scheduler.add(this);
+		}
+
+		public void close() {
+			scheduler.remove(this);
 			content.close();
 		}
 
-		public synchronized ICloudFoundryConsoleStream getConsoleContent() {
+		public ICloudFoundryConsoleStream getConsoleContent() {
 			return content;
 		}
 
@@ -363,7 +378,7 @@ class CloudFoundryConsole extends JobChangeAdapter {
 
 			if (toStream != null) {
 				try {
-					content.write(toStream, monitor);
+					written(content.write(toStream, monitor));
 					toStream = null;
 				}
 				catch (CoreException e) {
@@ -382,6 +397,10 @@ class CloudFoundryConsole extends JobChangeAdapter {
 			}
 		}
 
+		public void start() {
+			schedule();
+		}
+
 		public synchronized void close() {
 			content.close();
 		}
@@ -393,6 +412,8 @@ class CloudFoundryConsole extends JobChangeAdapter {
 	}
 
 	interface IConsoleJob {
+		public void start();
+
 		public void close();
 
 		public ICloudFoundryConsoleStream getConsoleContent();
@@ -14,6 +14,7 @@ import org.eclipse.jface.action.IToolBarManager;
 import org.eclipse.ui.console.IConsole;
 import org.eclipse.ui.console.IConsoleConstants;
 import org.eclipse.ui.console.IConsolePageParticipant;
+import org.eclipse.ui.console.MessageConsole;
 import org.eclipse.ui.console.actions.CloseConsoleAction;
 import org.eclipse.ui.part.IPageBookViewPage;
 
@@ -46,6 +47,12 @@ public class CloudFoundryConsolePageParticipant implements IConsolePageParticipa
 
 		IToolBarManager manager = page.getSite().getActionBars().getToolBarManager();
 		manager.appendToGroup(IConsoleConstants.LAUNCH_GROUP, closeAction);
+
+		// Only application consoles have archived logs
+		if (ConsoleManager.getServer(console) != null) {
+			manager.appendToGroup(IConsoleConstants.LAUNCH_GROUP, new SearchArchivedLogsAction(
+					(MessageConsole) console, page.getSite().getShell()));
+		}
 	}
 
 }
@@ -15,6 +15,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServer;
 import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudFoundryApplicationModule;
 import org.cloudfoundry.ide.eclipse.internal.server.core.spaces.CloudFoundrySpace;
@@ -155,8 +156,10 @@ public class ConsoleManager {
 			}
 		}
 		if (appConsole == null) {
-			appConsole = new MessageConsole(getConsoleDisplayName(server, appModule, instanceIndex),
-					CloudFoundryConsole.CONSOLE_TYPE, null, true);
+			String displayName = getConsoleDisplayName(server, appModule, instanceIndex);
+			int bufferSize = CloudFoundryPlugin.getDefault().getConsoleBufferSize();
+			appConsole = bufferSize > 0 ? new BoundedMessageConsole(displayName, CloudFoundryConsole.CONSOLE_TYPE,
+					null, bufferSize) : new MessageConsole(displayName, CloudFoundryConsole.CONSOLE_TYPE, null, true);
 			appConsole.setAttribute(CloudFoundryConsole.ATTRIBUTE_SERVER, server);
 			appConsole.setAttribute(CloudFoundryConsole.ATTRIBUTE_APP, appModule);
 			appConsole.setAttribute(CloudFoundryConsole.ATTRIBUTE_INSTANCE, instanceIndex);
@@ -166,6 +169,21 @@ public class ConsoleManager {
 		return appConsole;
 	}
 
+	/**
+	 * @param console
+	 * @return server of the application shown in the console, or null if the
+	 * console is not a Cloud Foundry console
+	 */
+	public static CloudFoundryServer getServer(IConsole console) {
+		if (CloudFoundryConsole.CONSOLE_TYPE.equals(console.getType()) && console instanceof MessageConsole) {
+			Object server = ((MessageConsole) console).getAttribute(CloudFoundryConsole.ATTRIBUTE_SERVER);
+			if (server instanceof CloudFoundryServer) {
+				return (CloudFoundryServer) server;
+			}
+		}
+		return null;
+	}
+
 	public static String getConsoleId(IServer server, CloudFoundryApplicationModule appModule, int instanceIndex) {
 		return server.getId() + "/" + appModule.getDeployedApplicationName() + "#" + instanceIndex;
 	}
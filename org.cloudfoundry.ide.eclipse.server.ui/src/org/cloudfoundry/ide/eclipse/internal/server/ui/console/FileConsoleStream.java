@@ -16,6 +16,8 @@ import org.cloudfoundry.client.lib.CloudFoundryException;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudErrorUtil;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServer;
+import org.cloudfoundry.ide.eclipse.internal.server.core.LogArchive;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.LogFileTail;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 
@@ -24,10 +26,22 @@ import org.eclipse.core.runtime.IProgressMonitor;
  * new content indefinitely, until the Cloud Foundry manager decided to
  * terminate any further streaming (e.g., application is deleted or stopped, or
  * enough errors have been encountered)
+ * <p/>
+ * The file is fetched in byte ranges of at most
+ * {@link LogFileTail#DEFAULT_MAX_CHUNK_SIZE} through a {@link LogFileTail},
+ * which tracks the offset in bytes and decodes characters split across
+ * ranges.
+ * <p/>
+ * Content received is archived locally in the {@link LogArchive}. When a
+ * stream for a file that was archived before is started, for example when a
+ * console is opened again, the archived content is shown first, and tailing
+ * resumes from where it stopped, rather than fetching the whole file again.
  */
 public class FileConsoleStream extends CloudFoundryConsoleStream {
 
-	protected int tailingOffset = 0;
+	private LogFileTail tail;
+
+	private boolean archiveEnabled = true;
 
 	private final String path;
 
@@ -74,6 +88,24 @@ public class FileConsoleStream extends CloudFoundryConsoleStream {
 		return path;
 	}
 
+	/**
+	 * 
+	 * @return offset in the file from which content is fetched next. It
+	 * changes whenever new content is received.
+	 */
+	public synchronized int getTailingOffset() {
+		return tail != null ? tail.getOffset() : 0;
+	}
+
+	/**
+	 * 
+	 * @return true if the last content received was a full range, meaning
+	 * more content is likely already available.
+	 */
+	public synchronized boolean hasMoreContent() {
+		return tail != null && tail.isChunkFull();
+	}
+
 	protected int getMaximumErrorCount() {
 		return MAX_COUNT;
 	}
@@ -125,10 +157,17 @@ public class FileConsoleStream extends CloudFoundryConsoleStream {
 	 */
 	protected String getContentFromFile(IProgressMonitor monitor) throws CoreException {
 		try {
-			String content = server.getBehaviour().getFile(appName, instanceIndex, path, tailingOffset, monitor);
-			if (content != null) {
-				tailingOffset += content.length();
+			if (tail == null) {
+				tail = new LogFileTail(server.getBehaviour(), appName, instanceIndex, path,
+						LogFileTail.DEFAULT_MAX_CHUNK_SIZE);
+				String archived = resumeFromArchive(monitor);
+				if (archived != null && archived.length() > 0) {
+					return archived;
+				}
 			}
+			int startOffset = tail.getOffset();
+			String content = tail.tail(monitor);
+			archive(startOffset, content);
 			return content;
 		}
 		catch (CloudFoundryException cfex) {
@@ -136,6 +175,73 @@ public class FileConsoleStream extends CloudFoundryConsoleStream {
 		}
 	}
 
+	/**
+	 * 
+	 * @return id of the file in the {@link LogArchive}
+	 */
+	protected String getArchiveId() {
+		return LogArchive.getLogId(server.getServer().getId(), appName, instanceIndex, path);
+	}
+
+	/**
+	 * Resumes tailing from the offset up to which the file was archived, if
+	 * the remote file still holds the bytes archived before that offset.
+	 * @param monitor
+	 * @return archived content to show before tailing resumes, or null if
+	 * tailing starts from the beginning of the file.
+	 */
+	protected String resumeFromArchive(IProgressMonitor monitor) {
+		if (!archiveEnabled) {
+			return null;
+		}
+		try {
+			LogArchive archive = LogArchive.getDefault();
+			String archiveId = getArchiveId();
+			int offset = archive.getOffset(archiveId);
+			if (offset > 0) {
+				if (tail.resume(offset, archive.getEndBytes(archiveId), monitor)) {
+					return archive.read(archiveId, CloudFoundryPlugin.getDefault().getConsoleBufferSize());
+				}
+				archive.restart(archiveId);
+			}
+		}
+		catch (CoreException e) {
+			archiveEnabled = false;
+			CloudFoundryPlugin.logError("Failed to read archived log content for " + path + " due to - "
+					+ e.getMessage(), e);
+		}
+		return null;
+	}
+
+	@Override
+	public synchronized void close() {
+		super.close();
+		if (tail != null && archiveEnabled) {
+			try {
+				LogArchive.getDefault().close(getArchiveId());
+			}
+			catch (CoreException e) {
+				CloudFoundryPlugin.logError("Failed to save archived log content for " + path + " due to - "
+						+ e.getMessage(), e);
+			}
+		}
+	}
+
+	protected void archive(int startOffset, String content) {
+		if (!archiveEnabled || content == null || content.length() == 0) {
+			return;
+		}
+		try {
+			LogArchive.getDefault().append(getArchiveId(), startOffset, tail.getOffset(), tail.getEndBytes(), content);
+		}
+		catch (CoreException e) {
+			// Keep tailing, but stop archiving this file
+			archiveEnabled = false;
+			CloudFoundryPlugin.logError("Failed to archive log content for " + path + " due to - " + e.getMessage(),
+					e);
+		}
+	}
+
 	/**
 	 * Handling error has two options:
 	 * 
@@ -0,0 +1,288 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.ui.console;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServer;
+import org.cloudfoundry.ide.eclipse.internal.server.core.PlatformUtil;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.wst.server.core.IServer;
+import org.eclipse.wst.server.core.IServerLifecycleListener;
+import org.eclipse.wst.server.core.ServerCore;
+
+/**
+ * Tails all remote log files of the applications of one server, for all
+ * consoles of the server, in a single job, rather than one job per file.
+ * <p/>
+ * At most {@link #MAX_REQUESTS_PER_POLL} files are fetched each time the job
+ * runs, and the job runs at most once every {@link #MIN_TAIL_INTERVAL}, which
+ * bounds the number of file requests made to the server. Files that are due
+ * are fetched round-robin, so that every file is eventually fetched even if
+ * more files are due than the budget allows.
+ * <p/>
+ * Each file is fetched at its own interval: every {@link #MIN_TAIL_INTERVAL}
+ * while new content is received, and doubling up to
+ * {@link #MAX_TAIL_INTERVAL} while the file is idle. A file that has more
+ * content available than was fetched is due again on the next run.
+ * <p/>
+ * Schedulers are shared by server id, as the server delegate is recreated
+ * every time a working copy of the server is saved. A scheduler is discarded
+ * once it has no files left to tail, or the server is deleted.
+ */
+public class LogTailScheduler {
+
+	/**
+	 * A file tailed by the scheduler.
+	 */
+	public interface TailedFile {
+
+		/**
+		 * Fetches any new content of the file, and writes it to the console.
+		 * @param monitor
+		 * @return true if new content was received from the file, false if
+		 * there was none or it could not be fetched.
+		 */
+		public boolean tail(IProgressMonitor monitor);
+
+		/**
+		 * 
+		 * @return true if more content was available than was fetched by the
+		 * last call to {@link #tail(IProgressMonitor)}
+		 */
+		public boolean hasMoreContent();
+
+	}
+
+	public static final long MIN_TAIL_INTERVAL = 1000;
+
+	public static final long MAX_TAIL_INTERVAL = 15000;
+
+	public static final int MAX_REQUESTS_PER_POLL = 5;
+
+	private static final Map<String, LogTailScheduler> schedulers = new HashMap<String, LogTailScheduler>();
+
+	private static IServerLifecycleListener serverListener;
+
+	private final String serverId;
+
+	private final LinkedList<Entry> entries = new LinkedList<Entry>();
+
+	private final Job tailJob;
+
+	private long nextRunTime = -1;
+
+	public static synchronized LogTailScheduler getScheduler(CloudFoundryServer server) {
+		if (serverListener == null) {
+			serverListener = new IServerLifecycleListener() {
+
+				public void serverAdded(IServer server) {
+					// ignore
+				}
+
+				public void serverChanged(IServer server) {
+					// ignore
+				}
+
+				public void serverRemoved(IServer server) {
+					removeScheduler(server.getId());
+				}
+			};
+			ServerCore.addServerLifecycleListener(serverListener);
+		}
+
+		String serverId = getServerId(server);
+		LogTailScheduler scheduler = schedulers.get(serverId);
+		if (scheduler == null) {
+			scheduler = new LogTailScheduler(server);
+			schedulers.put(serverId, scheduler);
+		}
+		return scheduler;
+	}
+
+	/**
+	 * Stops tailing all files of the server, and discards its scheduler.
+	 * @param serverId
+	 */
+	protected static synchronized void removeScheduler(String serverId) {
+		LogTailScheduler scheduler = schedulers.remove(serverId);
+		if (scheduler != null) {
+			synchronized (scheduler) {
+				scheduler.entries.clear();
+			}
+			scheduler.tailJob.cancel();
+		}
+	}
+
+	protected static String getServerId(CloudFoundryServer server) {
+		return server.getServer() != null ? server.getServer().getId() : server.getUrl();
+	}
+
+	protected LogTailScheduler(CloudFoundryServer server) {
+		this(getServerId(server), server.getServer() != null ? server.getServer().getName() : server.getUrl());
+	}
+
+	protected LogTailScheduler(String serverId, String serverName) {
+		this.serverId = serverId;
+		this.tailJob = new Job(NLS.bind("Tailing Cloud Foundry logs - {0}", serverName)) {
+
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				tail(monitor);
+				return Status.OK_STATUS;
+			}
+
+		};
+		tailJob.setSystem(true);
+	}
+
+	/**
+	 * Starts tailing the file. The file is fetched as soon as the request
+	 * budget allows.
+	 * @param file
+	 */
+	public void add(TailedFile file) {
+		synchronized (LogTailScheduler.class) {
+			// Registered again if it was discarded after its last file was
+			// removed
+			if (!schedulers.containsKey(serverId)) {
+				schedulers.put(serverId, this);
+			}
+			synchronized (this) {
+				if (getEntry(file) == null) {
+					long now = getCurrentTime();
+					entries.add(new Entry(file, now));
+					scheduleRun(now);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops tailing the file. If it is being fetched, its content is still
+	 * written to the console. The scheduler is discarded if it has no files
+	 * left.
+	 * @param file
+	 */
+	public void remove(TailedFile file) {
+		synchronized (LogTailScheduler.class) {
+			synchronized (this) {
+				Entry entry = getEntry(file);
+				if (entry != null) {
+					entries.remove(entry);
+				}
+				if (entries.isEmpty() && schedulers.get(serverId) == this) {
+					schedulers.remove(serverId);
+				}
+			}
+		}
+	}
+
+	protected Entry getEntry(TailedFile file) {
+		for (Entry entry : entries) {
+			if (entry.file == file) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+	protected void scheduleRun(long time) {
+		if (nextRunTime > 0 && nextRunTime <= time) {
+			return;
+		}
+		nextRunTime = time;
+		long delay = Math.max(0, time - getCurrentTime());
+		PlatformUtil.scheduleOrWakeUp(tailJob, delay);
+	}
+
+	/**
+	 * Fetches the files that are due, within the request budget, and
+	 * schedules the next run.
+	 */
+	protected void tail(IProgressMonitor monitor) {
+		long start = getCurrentTime();
+		List<Entry> due = new ArrayList<Entry>();
+		synchronized (this) {
+			nextRunTime = -1;
+			for (Iterator<Entry> it = entries.iterator(); it.hasNext() && due.size() < MAX_REQUESTS_PER_POLL;) {
+				Entry entry = it.next();
+				if (entry.nextTime <= start) {
+					due.add(entry);
+					it.remove();
+				}
+			}
+			// Files fetched now go to the back of the line
+			entries.addAll(due);
+		}
+
+		for (Entry entry : due) {
+			if (monitor.isCanceled()) {
+				break;
+			}
+			boolean received = false;
+			boolean more = false;
+			try {
+				received = entry.file.tail(monitor);
+				more = received && entry.file.hasMoreContent();
+			}
+			catch (RuntimeException e) {
+				CloudFoundryPlugin.logError("Failed to tail Cloud Foundry log file due to - " + e.getMessage(), e);
+			}
+			synchronized (this) {
+				long now = getCurrentTime();
+				entry.interval = received ? MIN_TAIL_INTERVAL : Math.min(entry.interval * 2, MAX_TAIL_INTERVAL);
+				entry.nextTime = more ? now : now + entry.interval;
+			}
+		}
+
+		synchronized (this) {
+			if (!entries.isEmpty()) {
+				long next = Long.MAX_VALUE;
+				for (Entry entry : entries) {
+					next = Math.min(next, entry.nextTime);
+				}
+				// Keep within the request budget
+				scheduleRun(Math.max(next, start + MIN_TAIL_INTERVAL));
+			}
+		}
+	}
+
+	protected long getCurrentTime() {
+		return System.currentTimeMillis();
+	}
+
+	protected static class Entry {
+
+		final TailedFile file;
+
+		long interval = MIN_TAIL_INTERVAL;
+
+		long nextTime;
+
+		Entry(TailedFile file, long nextTime) {
+			this.file = file;
+			this.nextTime = nextTime;
+		}
+
+	}
+
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2014 Pivotal Software, Inc.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Pivotal Software, Inc. - initial API and implementation
+ *******************************************************************************/
+package org.cloudfoundry.ide.eclipse.internal.server.ui.console;
+
+import java.util.List;
+
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
+import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServer;
+import org.cloudfoundry.ide.eclipse.internal.server.core.LogArchive;
+import org.cloudfoundry.ide.eclipse.internal.server.core.LogArchive.LogMatch;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudFoundryApplicationModule;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.dialogs.InputDialog;
+import org.eclipse.jface.window.Window;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.ui.console.MessageConsole;
+
+/**
+ * Searches the locally archived log files of the application instance shown
+ * in a Cloud Foundry console, including content of earlier runs of the
+ * application that is no longer shown, without fetching anything from the
+ * server. Matching lines are written to the console.
+ */
+public class SearchArchivedLogsAction extends Action {
+
+	/**
+	 * Maximum number of matching lines written per log file
+	 */
+	public static final int MAX_MATCHES = 100;
+
+	private static final String[] LOG_PATHS = { StagingFileConsoleStream.STAGING_LOG,
+			StdConsoleContents.STD_OUT_LOG, StdConsoleContents.STD_ERROR_LOG };
+
+	private final MessageConsole console;
+
+	private final Shell shell;
+
+	private String text = "";
+
+	public SearchArchivedLogsAction(MessageConsole console, Shell shell) {
+		super("Search Archived Logs");
+		setToolTipText("Search the archived log files of the application instance");
+		this.console = console;
+		this.shell = shell;
+	}
+
+	@Override
+	public void run() {
+		final CloudFoundryServer server = ConsoleManager.getServer(console);
+		Object app = console.getAttribute(CloudFoundryConsole.ATTRIBUTE_APP);
+		Object index = console.getAttribute(CloudFoundryConsole.ATTRIBUTE_INSTANCE);
+		if (server == null || !(app instanceof CloudFoundryApplicationModule) || !(index instanceof Integer)) {
+			return;
+		}
+		final CloudFoundryApplicationModule appModule = (CloudFoundryApplicationModule) app;
+		final int instanceIndex = (Integer) index;
+
+		InputDialog dialog = new InputDialog(shell, "Search Archived Logs", "Find lines containing:", text, null);
+		if (dialog.open() != Window.OK || dialog.getValue().length() == 0) {
+			return;
+		}
+		text = dialog.getValue();
+		final String searchText = text;
+
+		Job job = new Job("Searching archived logs of " + appModule.getDeployedApplicationName()) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				try {
+					String results = search(server, appModule.getDeployedApplicationName(), instanceIndex,
+							searchText);
+					ConsoleManager.getInstance().synchWriteToStd(results, server, appModule, instanceIndex, false,
+							false, monitor);
+				}
+				catch (CoreException e) {
+					CloudFoundryPlugin.logError(e);
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		job.setSystem(true);
+		job.schedule();
+	}
+
+	/**
+	 *
+	 * @return matching lines of each archived log file, listed by file
+	 * @throws CoreException if an archived file could not be read
+	 */
+	protected String search(CloudFoundryServer server, String appName, int instanceIndex, String searchText)
+			throws CoreException {
+		StringBuilder results = new StringBuilder();
+		results.append("Archived log lines containing \"").append(searchText).append("\":\n");
+		int count = 0;
+		for (String path : LOG_PATHS) {
+			String logId = LogArchive.getLogId(server.getServer().getId(), appName, instanceIndex, path);
+			List<LogMatch> matches = LogArchive.getDefault().search(logId, searchText, MAX_MATCHES);
+			for (LogMatch match : matches) {
+				results.append(path).append(" [run ").append(match.getGeneration() + 1).append("]: ")
+						.append(match.getLine()).append('\n');
+			}
+			if (matches.size() >= MAX_MATCHES) {
+				results.append(path).append(": only the first ").append(MAX_MATCHES).append(" lines are shown\n");
+			}
+			count += matches.size();
+		}
+		if (count == 0) {
+			results.append("No lines found\n");
+		}
+		return results.toString();
+	}
+
+}
@@ -10,6 +10,8 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.ui.editor;
 
+import java.util.Collection;
+
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServer;
 import org.cloudfoundry.ide.eclipse.internal.server.ui.actions.CloudFoundryEditorAction.RefreshArea;
 import org.eclipse.swt.SWT;
@@ -93,6 +95,18 @@ public class ApplicationMasterDetailsBlock extends MasterDetailsBlock implements
 		}
 	}
 
+	/**
+	 * Refreshes only the given modules, whose application changed, without
+	 * reloading the list of applications.
+	 * @param modules
+	 */
+	public void refreshModules(Collection<IModule> modules) {
+		masterPart.getApplicationsViewer().update(modules.toArray(), null);
+		if (detailsPart != null && modules.contains(getCurrentModule())) {
+			detailsPart.refreshUI();
+		}
+	}
+
 	@Override
 	protected void createMasterPart(IManagedForm managedForm, Composite parent) {
 		FormToolkit toolkit = managedForm.getToolkit();
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.cloudfoundry.ide.eclipse.internal.server.ui.editor;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.cloudfoundry.client.lib.domain.CloudService;
@@ -17,7 +18,9 @@ import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryPlugin;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServer;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudServerEvent;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudServerListener;
+import org.cloudfoundry.ide.eclipse.internal.server.core.ModulesChangedEvent;
 import org.cloudfoundry.ide.eclipse.internal.server.core.ServerEventHandler;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudFoundryApplicationModule;
 import org.cloudfoundry.ide.eclipse.internal.server.ui.CloudFoundryImages;
 import org.cloudfoundry.ide.eclipse.internal.server.ui.actions.CloudFoundryEditorAction.RefreshArea;
 import org.cloudfoundry.ide.eclipse.internal.server.ui.actions.RefreshApplicationEditorAction;
@@ -25,6 +28,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.dialogs.IMessageProvider;
 import org.eclipse.jface.viewers.StructuredSelection;
 import org.eclipse.jface.viewers.TableViewer;
@@ -177,19 +181,24 @@ public class CloudFoundryApplicationsEditorPage extends ServerEditorPart {
 
 	private class ServerListener implements CloudServerListener, IServerListener {
 		public void serverChanged(final CloudServerEvent event) {
-			if (event.getType() == CloudServerEvent.EVENT_UPDATE_SERVICES) {
-				// refresh services
-				try {
-					setServices(cloudServer.getBehaviour().getServices(null));
-				}
-				catch (CoreException e) {
-					// FIXME: error handling
+			if (event instanceof ModulesChangedEvent) {
+				ModulesChangedEvent modulesEvent = (ModulesChangedEvent) event;
+				if (modulesEvent.getAddedModules().isEmpty() && modulesEvent.getRemovedModules().isEmpty()) {
+					refreshModules(modulesEvent.getChangedModules());
+					return;
 				}
 			}
 
-			// ignore EVENT_UPDATE_INSTANCES as refresh will be called after
-			// instances are updated
-			if (event.getType() != CloudServerEvent.EVENT_UPDATE_INSTANCES) {
+			// Services, including for EVENT_UPDATE_SERVICES, are fetched by the
+			// refresh job rather than in the thread that fired the event, which
+			// may be the UI thread.
+			// Ignore EVENT_UPDATE_INSTANCES as refresh will be called after
+			// instances are updated.
+			// Ignore EVENT_CONNECTIVITY_CHANGED as connectivity is shown by the
+			// server status section, and services cannot be fetched from a
+			// server that just became unreachable.
+			if (event.getType() != CloudServerEvent.EVENT_UPDATE_INSTANCES
+					&& event.getType() != CloudServerEvent.EVENT_CONNECTIVITY_CHANGED) {
 				refresh(cloudServer.getServer());
 			}
 		}
@@ -201,12 +210,38 @@ public class CloudFoundryApplicationsEditorPage extends ServerEditorPart {
 			}
 		}
 
-		private void refresh(final IServer server) {
+		private void refreshModules(List<CloudFoundryApplicationModule> changedModules) {
+			final List<IModule> modules = new ArrayList<IModule>();
+			for (CloudFoundryApplicationModule module : changedModules) {
+				if (module.getLocalModule() != null) {
+					modules.add(module.getLocalModule());
+				}
+			}
+			if (modules.isEmpty()) {
+				return;
+			}
 
 			UIJob job = new UIJob("Refreshing editor") {
 
 				@Override
 				public IStatus runInUIThread(IProgressMonitor monitor) {
+					if (mform != null && mform.getForm() != null && !mform.getForm().isDisposed()) {
+						masterDetailsBlock.refreshModules(modules);
+					}
+					return Status.OK_STATUS;
+				}
+			};
+			job.schedule();
+		}
+
+		private void refresh(final IServer server) {
+
+			// Services are fetched from the server, which must not be done in
+			// the UI thread
+			Job job = new Job("Refreshing editor") {
+
+				@Override
+				protected IStatus run(IProgressMonitor monitor) {
 					try {
 						if (server != null) {
 							CloudFoundryServer cloudServer = (CloudFoundryServer) server.loadAdapter(
@@ -215,21 +250,35 @@ public class CloudFoundryApplicationsEditorPage extends ServerEditorPart {
 								setServices(cloudServer.getBehaviour().getServices(monitor));
 							}
 						}
-
-						if (mform != null && mform.getForm() != null && !mform.getForm().isDisposed()) {
-							masterDetailsBlock.refreshUI(RefreshArea.ALL);
-						}
 					}
 					catch (CoreException e) {
 						return e.getStatus();
 					}
+					finally {
+						refreshUI();
+					}
 					return Status.OK_STATUS;
 				}
 			};
-
+			job.setSystem(true);
 			job.schedule();
 
 		}
+
+		private void refreshUI() {
+			UIJob job = new UIJob("Refreshing editor") {
+
+				@Override
+				public IStatus runInUIThread(IProgressMonitor monitor) {
+					if (mform != null && mform.getForm() != null && !mform.getForm().isDisposed()) {
+						masterDetailsBlock.refreshUI(RefreshArea.ALL);
+					}
+					return Status.OK_STATUS;
+				}
+			};
+
+			job.schedule();
+		}
 	}
 
 }
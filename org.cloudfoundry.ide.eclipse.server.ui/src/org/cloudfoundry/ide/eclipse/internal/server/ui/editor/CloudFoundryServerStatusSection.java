@@ -14,6 +14,8 @@ import org.cloudfoundry.ide.eclipse.internal.server.core.CloudFoundryServer;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudServerEvent;
 import org.cloudfoundry.ide.eclipse.internal.server.core.CloudServerListener;
 import org.cloudfoundry.ide.eclipse.internal.server.core.ServerEventHandler;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.CircuitBreaker;
+import org.cloudfoundry.ide.eclipse.internal.server.core.client.CloudFoundryServerBehaviour;
 import org.cloudfoundry.ide.eclipse.internal.server.ui.CloudFoundryServerUiPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -157,6 +159,16 @@ public class CloudFoundryServerStatusSection extends ServerEditorSection impleme
 					String statusString = "Not connected";
 					if (s == IServer.STATE_STARTED) {
 						statusString = "Connected";
+
+						CloudFoundryServerBehaviour behaviour = cfServer.getBehaviour();
+						CircuitBreaker.State circuitState = behaviour != null ? behaviour.getCircuitBreaker()
+								.getState() : CircuitBreaker.State.CLOSED;
+						if (circuitState == CircuitBreaker.State.OPEN) {
+							statusString = "Connected (server not reachable, showing last known state)";
+						}
+						else if (circuitState == CircuitBreaker.State.HALF_OPEN) {
+							statusString = "Connected (checking if server is reachable)";
+						}
 					}
 					statusLabel.setText(statusString);
 					
@@ -293,7 +293,10 @@ public class CloudFoundryServicePlanWizardPage extends WizardPage {
 			getContainer().run(true, false, new IRunnableWithProgress() {
 				public void run(IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
 					try {
-						serviceOfferings = cloudServer.getBehaviour().getServiceOfferings(monitor);
+						// Sort a copy, as the list may be shared with other
+						// callers
+						serviceOfferings = new ArrayList<CloudServiceOffering>(cloudServer.getBehaviour()
+								.getServiceOfferings(monitor));
 						Collections.sort(serviceOfferings, new Comparator<CloudServiceOffering>() {
 							public int compare(CloudServiceOffering o1, CloudServiceOffering o2) {
 								return o1.getDescription().compareTo(o2.getDescription());